@@ -0,0 +1,240 @@
+package consulo.xml.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+/**
+ * The documents the benchmarks run on. Small documents are checked in under {@code corpus/}, larger catalogs are
+ * generated from a fixed seed so that every run sees the same text, and the schemas shipped with the XML plugin itself
+ * are used as they are.
+ *
+ * @since 2026-10-18
+ */
+public final class Corpus {
+    public static final String CATALOG_SCHEMA = "/corpus/catalog.rng";
+    public static final String CATALOG_SCHEMATRON = "/corpus/catalog.sch";
+    public static final String DOCBOOK_SCHEMA = "/corpus/docbook.rnc";
+    public static final String HTML5_SCHEMA = "/resources/html5-schema/xhtml5.rnc";
+    public static final String RELAXNG_SCHEMA = "/resources/relaxng.rng";
+
+    private static final String[] WORDS = {
+        "schema", "element", "attribute", "pattern", "grammar", "parser", "lexer", "token", "namespace", "document",
+        "validation", "derivative", "automaton", "stream", "index", "reference", "entity", "content", "model", "type"
+    };
+    private static final String[] NAMES = {"Ada", "Brian", "Carla", "Dora", "Emil", "Fatima", "Goran", "Hana"};
+    private static final String[] CURRENCIES = {"EUR", "USD", "GBP"};
+
+    private Corpus() {
+    }
+
+    /**
+     * @param size {@code small} for the checked in catalog, {@code medium} or {@code huge} for a generated one of
+     *             about 200 KB or 20 MB
+     */
+    public static String catalog(String size) {
+        return switch (size) {
+            case "small" -> text("/corpus/small.xml");
+            case "medium" -> generateCatalog(500);
+            case "huge" -> generateCatalog(50000);
+            default -> throw new IllegalArgumentException(size);
+        };
+    }
+
+    /**
+     * The XML documents by the names the XML benchmarks take as parameter: the catalog sizes, {@code docbook} and
+     * {@code docbook-large}, and the file names of the large XSDs among the plugin's standard schemas.
+     */
+    public static String xml(String document) {
+        return switch (document) {
+            case "docbook" -> docbook("small");
+            case "docbook-large" -> docbook("large");
+            case "XMLSchema.xsd" -> text("/standardSchemas/XMLSchema.xsd");
+            case "xhtml5.xsd" -> text("/standardSchemas/html5/xhtml5.xsd");
+            default -> catalog(document);
+        };
+    }
+
+    /**
+     * @param size {@code small} for the checked in DocBook article, {@code large} for a generated book of about 2 MB
+     *             with deeply nested sections, lists, tables and cross references
+     */
+    public static String docbook(String size) {
+        return switch (size) {
+            case "small" -> text("/corpus/docbook.xml");
+            case "large" -> generateBook(80);
+            default -> throw new IllegalArgumentException(size);
+        };
+    }
+
+    public static URL url(String resource) {
+        URL url = Corpus.class.getResource(resource);
+        if (url == null) {
+            throw new IllegalArgumentException("Missing corpus resource " + resource);
+        }
+        return url;
+    }
+
+    public static String text(String resource) {
+        try (InputStream in = url(resource).openStream()) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static String generateCatalog(int books) {
+        Random random = new Random(42);
+        StringBuilder sb = new StringBuilder(books * 420);
+        sb.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        sb.append("<catalog xmlns=\"urn:consulo:benchmark:catalog\" version=\"1.0\">\n");
+        for (int i = 1; i <= books; i++) {
+            sb.append("  <book id=\"b").append(i).append('"');
+            if (random.nextInt(3) > 0) {
+                sb.append(" lang=\"").append(random.nextBoolean() ? "en" : "de-AT").append('"');
+            }
+            sb.append(">\n");
+            sb.append("    <title>").append(words(random, 2 + random.nextInt(5))).append("</title>\n");
+            for (int j = 0, authors = 1 + random.nextInt(3); j < authors; j++) {
+                sb.append("    <author>").append(NAMES[random.nextInt(NAMES.length)]).append(' ')
+                    .append(capitalize(WORDS[random.nextInt(WORDS.length)])).append("</author>\n");
+            }
+            sb.append("    <isbn>97").append(8 + random.nextInt(2)).append('-').append(random.nextInt(100)).append('-')
+                .append(10000 + random.nextInt(90000)).append('-').append(100 + random.nextInt(900)).append('-')
+                .append(random.nextInt(10)).append("</isbn>\n");
+            sb.append("    <price currency=\"").append(CURRENCIES[random.nextInt(CURRENCIES.length)]).append("\">")
+                .append(5 + random.nextInt(95)).append('.').append(10 + random.nextInt(90)).append("</price>\n");
+            sb.append("    <published>").append(1980 + random.nextInt(46)).append("-0").append(1 + random.nextInt(9))
+                .append('-').append(10 + random.nextInt(18)).append("</published>\n");
+            sb.append("    <summary>").append(capitalize(words(random, 4 + random.nextInt(8))))
+                .append(" with <em>").append(words(random, 1 + random.nextInt(2))).append("</em> &amp; <code>")
+                .append(WORDS[random.nextInt(WORDS.length)]).append("</code> ").append(words(random, 3 + random.nextInt(10)))
+                .append(".</summary>\n");
+            if (random.nextBoolean()) {
+                sb.append("    <tags>\n");
+                for (int j = 0, tags = 1 + random.nextInt(4); j < tags; j++) {
+                    sb.append("      <tag>").append(WORDS[random.nextInt(WORDS.length)]).append("</tag>\n");
+                }
+                sb.append("    </tags>\n");
+            }
+            sb.append("  </book>\n");
+        }
+        sb.append("</catalog>\n");
+        return sb.toString();
+    }
+
+    static String generateBook(int chapters) {
+        Random random = new Random(42);
+        StringBuilder sb = new StringBuilder(chapters * 36000);
+        sb.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        sb.append("<book xmlns=\"http://docbook.org/ns/docbook\" xmlns:xlink=\"http://www.w3.org/1999/xlink\" version=\"5.0\">\n");
+        sb.append("  <info>\n    <title>").append(capitalize(words(random, 4))).append("</title>\n");
+        sb.append("    <author><personname><firstname>").append(NAMES[0]).append("</firstname><surname>Example</surname></personname></author>\n");
+        sb.append("    <pubdate>2026</pubdate>\n  </info>\n");
+        sb.append("  <preface>\n    <title>Preface</title>\n");
+        appendPara(sb, random, "    ", 0);
+        sb.append("  </preface>\n");
+        for (int i = 1; i <= chapters; i++) {
+            sb.append("  <chapter xml:id=\"ch").append(i).append("\">\n");
+            sb.append("    <title>").append(capitalize(words(random, 2 + random.nextInt(4)))).append("</title>\n");
+            appendPara(sb, random, "    ", i);
+            for (int j = 1; j <= 6; j++) {
+                appendSection(sb, random, "    ", "ch" + i + "." + j, i, 1);
+            }
+            sb.append("  </chapter>\n");
+        }
+        sb.append("</book>\n");
+        return sb.toString();
+    }
+
+    private static void appendSection(StringBuilder sb, Random random, String indent, String id, int chapter, int depth) {
+        sb.append(indent).append("<section xml:id=\"s").append(id).append("\">\n");
+        String inner = indent + "  ";
+        sb.append(inner).append("<title>").append(capitalize(words(random, 1 + random.nextInt(4)))).append("</title>\n");
+        for (int i = 0, blocks = 2 + random.nextInt(4); i < blocks; i++) {
+            switch (random.nextInt(8)) {
+                case 0 -> {
+                    sb.append(inner).append("<itemizedlist>\n");
+                    for (int j = 0, items = 2 + random.nextInt(4); j < items; j++) {
+                        sb.append(inner).append("  <listitem>");
+                        appendPara(sb, random, "", chapter);
+                        sb.append("</listitem>\n");
+                    }
+                    sb.append(inner).append("</itemizedlist>\n");
+                }
+                case 1 -> {
+                    sb.append(inner).append("<programlisting language=\"java\">");
+                    for (int j = 0, lines = 2 + random.nextInt(6); j < lines; j++) {
+                        sb.append(j > 0 ? "\n" : "").append(WORDS[random.nextInt(WORDS.length)]).append(".parse(")
+                            .append(WORDS[random.nextInt(WORDS.length)]).append(") &lt; ").append(random.nextInt(100)).append(';');
+                    }
+                    sb.append("</programlisting>\n");
+                }
+                case 2 -> {
+                    sb.append(inner).append("<informaltable>\n").append(inner).append("  <tgroup cols=\"3\">\n");
+                    sb.append(inner).append("    <tbody>\n");
+                    for (int j = 0, rows = 2 + random.nextInt(5); j < rows; j++) {
+                        sb.append(inner).append("      <row>");
+                        for (int k = 0; k < 3; k++) {
+                            sb.append(k == 2 ? "<entry align=\"right\">" : "<entry>").append(words(random, 1 + random.nextInt(3))).append("</entry>");
+                        }
+                        sb.append("</row>\n");
+                    }
+                    sb.append(inner).append("    </tbody>\n").append(inner).append("  </tgroup>\n").append(inner).append("</informaltable>\n");
+                }
+                case 3 -> {
+                    sb.append(inner).append("<note>");
+                    appendPara(sb, random, "", chapter);
+                    sb.append("</note>\n");
+                }
+                default -> appendPara(sb, random, inner, chapter);
+            }
+        }
+        if (depth < 3) {
+            for (int i = 1, sections = random.nextInt(3); i <= sections; i++) {
+                appendSection(sb, random, inner, id + "." + i, chapter, depth + 1);
+            }
+        }
+        sb.append(indent).append("</section>\n");
+    }
+
+    private static void appendPara(StringBuilder sb, Random random, String indent, int chapter) {
+        sb.append(indent).append("<para>").append(capitalize(words(random, 3 + random.nextInt(10))));
+        for (int i = 0, inlines = random.nextInt(4); i < inlines; i++) {
+            sb.append(' ');
+            switch (random.nextInt(5)) {
+                case 0 -> sb.append("<emphasis>").append(words(random, 1 + random.nextInt(3))).append("</emphasis>");
+                case 1 -> sb.append("<code>").append(WORDS[random.nextInt(WORDS.length)]).append("()</code>");
+                case 2 -> sb.append("<filename>").append(WORDS[random.nextInt(WORDS.length)]).append(".xml</filename>");
+                // only chapters before the current one have been written, and the preface refers to none
+                case 3 -> sb.append(chapter > 1 ? "see <xref linkend=\"ch" + (1 + random.nextInt(chapter - 1)) + "\"/>" : "&amp; more");
+                default -> sb.append("<link xlink:href=\"https://example.org/").append(WORDS[random.nextInt(WORDS.length)])
+                    .append("\">").append(words(random, 1 + random.nextInt(2))).append("</link>");
+            }
+            sb.append(' ').append(words(random, 2 + random.nextInt(8)));
+        }
+        sb.append(".</para>");
+        if (!indent.isEmpty()) {
+            sb.append('\n');
+        }
+    }
+
+    private static String words(Random random, int count) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                sb.append(' ');
+            }
+            sb.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return sb.toString();
+    }
+
+    private static String capitalize(String s) {
+        return Character.toUpperCase(s.charAt(0)) + s.substring(1);
+    }
+}
@@ -0,0 +1,78 @@
+package consulo.xml.benchmark;
+
+import com.thaiopensource.datatype.xsd.DatatypeLibraryFactoryImpl;
+import com.thaiopensource.datatype.xsd.regex.RegexEngine;
+import com.thaiopensource.datatype.xsd.regex.java.DfaRegexEngineImpl;
+import com.thaiopensource.datatype.xsd.regex.java.RegexEngineImpl;
+import com.thaiopensource.util.PropertyMapBuilder;
+import com.thaiopensource.validate.SchemaReader;
+import com.thaiopensource.validate.ValidationDriver;
+import com.thaiopensource.validate.prop.rng.RngProperty;
+import com.thaiopensource.validate.rng.CompactSchemaReader;
+import com.thaiopensource.validate.rng.SAXSchemaReader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Validates catalogs against their RELAX NG schema and DocBook documents against the DocBook subset in the compact
+ * syntax with jing, so mostly {@code PatternMatcher} and the XSD datatypes with either regex engine. The schema is loaded
+ * once, with a shared pattern memo like the plugin's highlighting uses.
+ *
+ * @since 2026-10-18
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JingValidationBenchmark {
+    @Param({"small", "medium", "huge", "docbook", "docbook-large"})
+    public String document;
+
+    @Param({"dfa", "java"})
+    public String regexEngine;
+
+    private String myText;
+    private ValidationDriver myDriver;
+
+    @Setup
+    public void setUp() throws SAXException, IOException {
+        boolean docbook = document.startsWith("docbook");
+        myText = docbook ? Corpus.docbook(document.equals("docbook") ? "small" : "large") : Corpus.catalog(document);
+        String schema = docbook ? Corpus.DOCBOOK_SCHEMA : Corpus.CATALOG_SCHEMA;
+
+        RegexEngine engine = "java".equals(regexEngine) ? new RegexEngineImpl() : new DfaRegexEngineImpl();
+        PropertyMapBuilder properties = new PropertyMapBuilder();
+        properties.put(RngProperty.DATATYPE_LIBRARY_FACTORY, new DatatypeLibraryFactoryImpl(engine));
+        RngProperty.SHARED_PATTERN_MEMO.add(properties);
+        SchemaReader reader = docbook ? CompactSchemaReader.getInstance() : SAXSchemaReader.getInstance();
+        myDriver = new ValidationDriver(properties.toPropertyMap(), reader);
+        if (!myDriver.loadSchema(new InputSource(Corpus.url(schema).toExternalForm()))) {
+            throw new IllegalStateException("Cannot load " + schema);
+        }
+        if (!validate()) {
+            throw new IllegalStateException("The " + document + " document isn't valid");
+        }
+    }
+
+    @Benchmark
+    public boolean validate() throws SAXException, IOException {
+        return myDriver.validate(new InputSource(new StringReader(myText)));
+    }
+}
@@ -0,0 +1,21 @@
+package consulo.xml.benchmark;
+
+import consulo.language.lexer.Lexer;
+
+/**
+ * @since 2026-10-18
+ */
+final class LexerBenchmarks {
+    private LexerBenchmarks() {
+    }
+
+    static int countTokens(Lexer lexer, CharSequence text) {
+        lexer.start(text);
+        int count = 0;
+        while (lexer.getTokenType() != null) {
+            count++;
+            lexer.advance();
+        }
+        return count;
+    }
+}
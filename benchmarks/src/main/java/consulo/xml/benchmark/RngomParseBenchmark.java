@@ -0,0 +1,72 @@
+package consulo.xml.benchmark;
+
+import org.kohsuke.rngom.ast.om.ParsedPattern;
+import org.kohsuke.rngom.digested.DSchemaBuilderImpl;
+import org.kohsuke.rngom.parse.IllegalSchemaException;
+import org.kohsuke.rngom.parse.Parseable;
+import org.kohsuke.rngom.parse.compact.CompactParseable;
+import org.kohsuke.rngom.parse.xml.SAXParseable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xml.sax.ErrorHandler;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXParseException;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parses RELAX NG schemas into rngom's digested model, as {@code RngParser} does for the plugin's schema model: the
+ * HTML5 schema in the compact syntax, which includes several dozen files, the DocBook subset of the corpus, also in the
+ * compact syntax, and the RELAX NG schema for RELAX NG and the benchmark catalog schema in the XML syntax.
+ *
+ * @since 2026-10-18
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RngomParseBenchmark {
+    private static final ErrorHandler ERROR_HANDLER = new ErrorHandler() {
+        @Override
+        public void warning(SAXParseException exception) {
+        }
+
+        @Override
+        public void error(SAXParseException exception) throws SAXParseException {
+            throw exception;
+        }
+
+        @Override
+        public void fatalError(SAXParseException exception) throws SAXParseException {
+            throw exception;
+        }
+    };
+
+    @Param({Corpus.HTML5_SCHEMA, Corpus.DOCBOOK_SCHEMA, Corpus.RELAXNG_SCHEMA, Corpus.CATALOG_SCHEMA})
+    public String schema;
+
+    private String mySystemId;
+
+    @Setup
+    public void setUp() {
+        mySystemId = Corpus.url(schema).toExternalForm();
+    }
+
+    @Benchmark
+    public ParsedPattern parse() throws IllegalSchemaException {
+        InputSource in = new InputSource(mySystemId);
+        Parseable parseable = schema.endsWith(".rnc") ? new CompactParseable(in, ERROR_HANDLER) : new SAXParseable(in, ERROR_HANDLER);
+        return parseable.parse(new DSchemaBuilderImpl());
+    }
+}
@@ -0,0 +1,113 @@
+package consulo.xml.benchmark;
+
+import com.thaiopensource.util.PropertyMapBuilder;
+import com.thaiopensource.validate.SchemaReader;
+import com.thaiopensource.validate.ValidateProperty;
+import com.thaiopensource.validate.ValidationDriver;
+import com.thaiopensource.validate.schematron.SchematronSchemaReaderFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xml.sax.ErrorHandler;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Validates a batch of small catalogs against an ISO Schematron schema with jing, reported as documents per second,
+ * and loads that schema the way {@link ValidationDriver#loadSchema} does, with and without the cache of compiled
+ * schemas. Schematron needs an XSLT processor that can run jing's skeleton stylesheet, which the JDK's XSLTC can't,
+ * so the benchmarks run with Xalan.
+ *
+ * @since 2026-10-18
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SchematronValidationBenchmark {
+    private static final int BATCH = 100;
+    private static final String ISO_SCHEMATRON_URI = "http://purl.oclc.org/dsdl/schematron";
+
+    private static final ErrorHandler ERROR_HANDLER = new ErrorHandler() {
+        @Override
+        public void warning(SAXParseException exception) {
+        }
+
+        @Override
+        public void error(SAXParseException exception) throws SAXParseException {
+            throw exception;
+        }
+
+        @Override
+        public void fatalError(SAXParseException exception) throws SAXParseException {
+            throw exception;
+        }
+    };
+
+    private final String[] myDocuments = new String[BATCH];
+    private String mySystemId;
+    private ValidationDriver myDriver;
+
+    @Setup
+    public void setUp() throws SAXException, IOException {
+        for (int i = 0; i < BATCH; i++) {
+            myDocuments[i] = Corpus.generateCatalog(1 + i % 5);
+        }
+        mySystemId = Corpus.url(Corpus.CATALOG_SCHEMATRON).toExternalForm();
+        myDriver = createDriver();
+        if (!myDriver.loadSchema(new InputSource(mySystemId))) {
+            throw new IllegalStateException("Cannot load " + Corpus.CATALOG_SCHEMATRON);
+        }
+        if (validateBatch() != BATCH) {
+            throw new IllegalStateException("Not all catalogs are valid");
+        }
+    }
+
+    private static ValidationDriver createDriver() {
+        SchemaReader reader = new SchematronSchemaReaderFactory().createSchemaReader(ISO_SCHEMATRON_URI);
+        if (reader == null) {
+            throw new IllegalStateException("No XSLT processor can run the Schematron skeleton");
+        }
+        PropertyMapBuilder properties = new PropertyMapBuilder();
+        properties.put(ValidateProperty.ERROR_HANDLER, ERROR_HANDLER);
+        return new ValidationDriver(properties.toPropertyMap(), reader);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public int validateBatch() throws SAXException, IOException {
+        int valid = 0;
+        for (String document : myDocuments) {
+            if (myDriver.validate(new InputSource(new StringReader(document)))) {
+                valid++;
+            }
+        }
+        return valid;
+    }
+
+    @Benchmark
+    public boolean loadSchema() throws SAXException, IOException {
+        return createDriver().loadSchema(new InputSource(mySystemId));
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = "-Djing.schematron.cache=false")
+    public boolean loadSchemaUncached() throws SAXException, IOException {
+        return createDriver().loadSchema(new InputSource(mySystemId));
+    }
+}
@@ -0,0 +1,84 @@
+package consulo.xml.benchmark;
+
+import com.thaiopensource.relaxng.edit.SchemaCollection;
+import com.thaiopensource.relaxng.input.InputFailedException;
+import com.thaiopensource.relaxng.input.InputFormat;
+import com.thaiopensource.relaxng.input.parse.compact.CompactParseInputFormat;
+import com.thaiopensource.relaxng.input.parse.sax.SAXParseInputFormat;
+import com.thaiopensource.relaxng.output.BufferedOutputDirectory;
+import com.thaiopensource.relaxng.output.LocalOutputDirectory;
+import com.thaiopensource.relaxng.output.OutputFailedException;
+import com.thaiopensource.relaxng.output.OutputFormat;
+import com.thaiopensource.relaxng.output.rnc.RncOutputFormat;
+import com.thaiopensource.relaxng.output.rng.RngOutputFormat;
+import com.thaiopensource.relaxng.translate.util.InvalidParamsException;
+import com.thaiopensource.resolver.BasicResolver;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Converts loaded schemas with trang into either RELAX NG syntax in memory, with one or several threads. Loading isn't
+ * measured, but the schema is loaded again before every conversion because output may rewrite annotations.
+ *
+ * @since 2026-10-18
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TrangOutputBenchmark {
+    @Param({Corpus.CATALOG_SCHEMA, Corpus.HTML5_SCHEMA})
+    public String schema;
+
+    @Param({"rnc", "rng"})
+    public String format;
+
+    @Param({"1", "4"})
+    public int threads;
+
+    private SchemaCollection mySchemas;
+
+    @Setup(Level.Invocation)
+    public void load() throws IOException, SAXException, InputFailedException, InvalidParamsException {
+        mySchemas = loadSchemas(schema);
+    }
+
+    @Benchmark
+    public BufferedOutputDirectory convert() throws IOException, SAXException, OutputFailedException, InvalidParamsException {
+        OutputFormat outputFormat = "rnc".equals(format) ? new RncOutputFormat(threads) : new RngOutputFormat(threads);
+        return output(mySchemas, outputFormat, format);
+    }
+
+    static SchemaCollection loadSchemas(String schema) throws IOException, SAXException, InputFailedException, InvalidParamsException {
+        InputFormat inputFormat = schema.endsWith(".rnc") ? new CompactParseInputFormat() : new SAXParseInputFormat();
+        return inputFormat.load(Corpus.url(schema).toExternalForm(), new String[0], "rng", new DefaultHandler(), BasicResolver.getInstance());
+    }
+
+    static BufferedOutputDirectory output(SchemaCollection schemas, OutputFormat outputFormat, String extension)
+        throws IOException, SAXException, OutputFailedException, InvalidParamsException {
+        // nothing is committed, so the output file is never created
+        LocalOutputDirectory directory = new LocalOutputDirectory(schemas.getMainUri(), new File("schema." + extension), "." + extension,
+            "UTF-8", 72, 2);
+        BufferedOutputDirectory buffer = new BufferedOutputDirectory(directory, "UTF-8");
+        outputFormat.output(schemas, buffer, new String[0], "rng", new DefaultHandler());
+        return buffer;
+    }
+}
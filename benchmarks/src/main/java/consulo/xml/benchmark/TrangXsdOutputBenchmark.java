@@ -0,0 +1,49 @@
+package consulo.xml.benchmark;
+
+import com.thaiopensource.relaxng.edit.SchemaCollection;
+import com.thaiopensource.relaxng.input.InputFailedException;
+import com.thaiopensource.relaxng.output.BufferedOutputDirectory;
+import com.thaiopensource.relaxng.output.OutputFailedException;
+import com.thaiopensource.relaxng.output.xsd.XsdOutputFormat;
+import com.thaiopensource.relaxng.translate.util.InvalidParamsException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xml.sax.SAXException;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Converts the catalog schema to XML Schema with trang. The HTML5 schema is left out, it uses datatypes XML Schema
+ * output can't express.
+ *
+ * @since 2026-10-18
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TrangXsdOutputBenchmark {
+    private SchemaCollection mySchemas;
+
+    @Setup(Level.Invocation)
+    public void load() throws IOException, SAXException, InputFailedException, InvalidParamsException {
+        mySchemas = TrangOutputBenchmark.loadSchemas(Corpus.CATALOG_SCHEMA);
+    }
+
+    @Benchmark
+    public BufferedOutputDirectory convert() throws IOException, SAXException, OutputFailedException, InvalidParamsException {
+        return TrangOutputBenchmark.output(mySchemas, new XsdOutputFormat(), "xsd");
+    }
+}
@@ -0,0 +1,48 @@
+package consulo.xml.benchmark;
+
+import consulo.language.lexer.Lexer;
+import consulo.xml.lexer.XmlLexer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lexes catalogs, DocBook documents and large XSDs with {@link XmlLexer}, the generated {@code _XmlLexer} with the token merging the
+ * parser sees.
+ *
+ * @since 2026-10-18
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class XmlLexerBenchmark {
+    @Param({"small", "medium", "huge", "docbook-large", "XMLSchema.xsd", "xhtml5.xsd"})
+    public String document;
+
+    private CharSequence myText;
+    private Lexer myLexer;
+
+    @Setup
+    public void setUp() {
+        myText = Corpus.xml(document);
+        myLexer = new XmlLexer();
+    }
+
+    @Benchmark
+    public int lex() {
+        return LexerBenchmarks.countTokens(myLexer, myText);
+    }
+}
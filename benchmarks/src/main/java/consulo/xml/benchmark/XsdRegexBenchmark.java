@@ -0,0 +1,91 @@
+package consulo.xml.benchmark;
+
+import com.thaiopensource.datatype.xsd.regex.Regex;
+import com.thaiopensource.datatype.xsd.regex.RegexEngine;
+import com.thaiopensource.datatype.xsd.regex.RegexSyntaxException;
+import com.thaiopensource.datatype.xsd.regex.java.DfaRegexEngineImpl;
+import com.thaiopensource.datatype.xsd.regex.java.RegexEngineImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Matches strings against XSD pattern facets with either regex engine of jing: the lazily built DFA and the
+ * translation to {@code java.util.regex}. The {@code nested} pattern makes the backtracking engine try many ways of
+ * matching inputs that don't match.
+ *
+ * @since 2026-10-18
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class XsdRegexBenchmark {
+    @Param({"dfa", "java"})
+    public String engine;
+
+    @Param({"isbn", "name", "words", "nested"})
+    public String pattern;
+
+    private Regex myRegex;
+    private String[] myInputs;
+
+    @Setup
+    public void setUp() throws RegexSyntaxException {
+        RegexEngine regexEngine = "java".equals(engine) ? new RegexEngineImpl() : new DfaRegexEngineImpl();
+        Random random = new Random(42);
+        myInputs = new String[64];
+        switch (pattern) {
+            case "isbn" -> {
+                myRegex = regexEngine.compile("97[89]-\\d{1,5}-\\d{1,7}-\\d{1,7}-[\\dX]");
+                for (int i = 0; i < myInputs.length; i++) {
+                    myInputs[i] = "97" + (8 + random.nextInt(2)) + "-" + random.nextInt(100) + "-" + random.nextInt(100000) + "-"
+                        + random.nextInt(1000) + "-" + (i % 8 == 0 ? "Y" : String.valueOf(random.nextInt(10)));
+                }
+            }
+            case "name" -> {
+                myRegex = regexEngine.compile("[\\i-[:]][\\c-[:]]*");
+                for (int i = 0; i < myInputs.length; i++) {
+                    myInputs[i] = (i % 8 == 0 ? "1" : "x") + "ml-Name_" + i + ".élément" + "abcdefgh".repeat(i % 5);
+                }
+            }
+            case "words" -> {
+                myRegex = regexEngine.compile("\\p{Lu}\\p{Ll}*( \\p{L}+)*\\.");
+                for (int i = 0; i < myInputs.length; i++) {
+                    myInputs[i] = "Lorem ipsum dolor sit amet consectetur adipiscing elit".substring(0, 11 + i % 40).trim() + ".";
+                }
+            }
+            case "nested" -> {
+                myRegex = regexEngine.compile("(a|aa)+b");
+                for (int i = 0; i < myInputs.length; i++) {
+                    myInputs[i] = "a".repeat(4 + i % 20) + (i % 2 == 0 ? "b" : "c");
+                }
+            }
+            default -> throw new IllegalArgumentException(pattern);
+        }
+    }
+
+    @Benchmark
+    public int match() {
+        int matches = 0;
+        for (String input : myInputs) {
+            if (myRegex.matches(input)) {
+                matches++;
+            }
+        }
+        return matches;
+    }
+}
@@ -0,0 +1,45 @@
+package consulo.xml.benchmark;
+
+import com.intellij.xml.index.XsdSchemaSummary;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scans large XSDs for the namespace, tag names and type inheritance the schema indexes store, with the single NanoXml
+ * pass of {@link XsdSchemaSummary}.
+ *
+ * @since 2026-10-18
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class XsdSchemaSummaryBenchmark {
+    @Param({"/standardSchemas/XMLSchema.xsd", "/standardSchemas/html5/xhtml5.xsd", "/standardSchemas/xslt-2_0.xsd"})
+    public String schema;
+
+    private String myText;
+
+    @Setup
+    public void setUp() {
+        myText = Corpus.text(schema);
+    }
+
+    @Benchmark
+    public XsdSchemaSummary compute() {
+        return XsdSchemaSummary.compute(myText);
+    }
+}
@@ -1,6 +1,8 @@
 package com.thaiopensource.datatype.xsd;
 
 import com.thaiopensource.datatype.xsd.regex.RegexEngine;
+import com.thaiopensource.datatype.xsd.regex.java.DfaRegexEngineImpl;
+import com.thaiopensource.datatype.xsd.regex.java.RegexEngineImpl;
 import com.thaiopensource.util.Service;
 import com.thaiopensource.xml.util.WellKnownNamespaces;
 import org.relaxng.datatype.DatatypeLibrary;
@@ -9,6 +11,11 @@ import org.relaxng.datatype.DatatypeLibraryFactory;
 import java.util.Iterator;
 
 public class DatatypeLibraryFactoryImpl implements DatatypeLibraryFactory {
+  /**
+   * System property selecting the engine returned by <code>createDefaultRegexEngine</code>:
+   * "dfa" (the default) or "java".
+   */
+  public static final String REGEX_ENGINE_PROPERTY = "com.thaiopensource.datatype.xsd.regexEngine";
 
   private DatatypeLibrary datatypeLibrary = null;
   private final RegexEngine regexEngine;
@@ -34,6 +41,17 @@ public class DatatypeLibraryFactoryImpl implements DatatypeLibraryFactory {
     }
   }
 
+  /**
+   * Creates the engine to use for pattern facets when the caller doesn't care: either one matching using
+   * a lazily built DFA, which takes linear time whatever the pattern, or one using <code>java.util.regex</code>,
+   * depending on <code>REGEX_ENGINE_PROPERTY</code>.
+   */
+  public static RegexEngine createDefaultRegexEngine() {
+    if ("java".equals(System.getProperty(REGEX_ENGINE_PROPERTY)))
+      return new RegexEngineImpl();
+    return new DfaRegexEngineImpl();
+  }
+
   private static RegexEngine findRegexEngine() {
     Iterator<RegexEngine> iter = Service.newInstance(RegexEngine.class).getProviders();
     if (!iter.hasNext())
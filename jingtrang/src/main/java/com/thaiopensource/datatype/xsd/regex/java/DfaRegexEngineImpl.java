@@ -0,0 +1,32 @@
+package com.thaiopensource.datatype.xsd.regex.java;
+
+import com.thaiopensource.datatype.xsd.regex.Regex;
+import com.thaiopensource.datatype.xsd.regex.RegexEngine;
+import com.thaiopensource.datatype.xsd.regex.RegexSyntaxException;
+
+/**
+ * An implementation of <code>RegexEngine</code> that matches using a deterministic automaton, which is
+ * built lazily while matching.  XML Schema regular expressions have no backreferences, so matching takes
+ * time linear in the length of the string whatever the regular expression, and doesn't allocate once the
+ * states it passes through have been built.  Regular expressions whose automaton would get too big,
+ * e.g. because of large counted repetitions, are matched using <code>java.util.regex</code> instead.
+ */
+public class DfaRegexEngineImpl implements RegexEngine {
+  private final RegexEngine fallback = new RegexEngineImpl();
+
+  public Regex compile(String str) throws RegexSyntaxException {
+    // The Translator detects all syntax errors
+    RegexNode tree = Translator.parse(str);
+    Regex regex;
+    try {
+      regex = LazyDfa.create(tree);
+    }
+    catch (IllegalArgumentException e) {
+      // a block this JDK doesn't know about; leave it to java.util.regex
+      regex = null;
+    }
+    if (regex == null)
+      return fallback.compile(str);
+    return regex;
+  }
+}
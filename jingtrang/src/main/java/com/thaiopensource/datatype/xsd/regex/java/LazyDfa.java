@@ -0,0 +1,444 @@
+package com.thaiopensource.datatype.xsd.regex.java;
+
+import com.thaiopensource.datatype.xsd.regex.Regex;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.Vector;
+
+/**
+ * A regular expression compiled into a Thompson NFA, which is turned into a DFA one transition at a time
+ * while matching.
+ * <p>
+ * Characters are first mapped to symbols: two characters get the same symbol iff they belong to the same
+ * character classes of the regular expression, so the transition table of a DFA state has one entry per
+ * symbol rather than per character.  Transitions are computed under a lock and then read without one;
+ * this is safe since states are immutable apart from their transition table, and a missing transition
+ * just gets computed again.  Once there are too many DFA states new ones are no longer created; a string that
+ * needs one goes on from there by simulating the NFA, which keeps matching linear, just slower.
+ */
+final class LazyDfa implements Regex {
+  static private final int MAX_NFA_STATES = 10000;
+  static private final int MAX_DFA_STATES = 4000;
+  static private final int MAX_CHAR = 0x10FFFF;
+  static private final int NO_STATE = -1;
+
+  // for each NFA state, the symbols it matches, or null for a state with only epsilon transitions
+  private final boolean[][] stateSymbols;
+  private final int[] out1;
+  private final int[] out2;
+  private final int acceptState;
+
+  private final int[] asciiSymbols = new int[128];
+  // the characters from intervalStarts[i] up to intervalStarts[i + 1] - 1 have symbol intervalSymbols[i]
+  private final int[] intervalStarts;
+  private final int[] intervalSymbols;
+  private final int symbolCount;
+
+  private final Map dStates = new HashMap();
+  private final DState start;
+  // only used under the lock of computeNext
+  private final Scratch scratch;
+
+  static private final class DState {
+    // the NFA states with a symbol transition or accepting, sorted
+    final int[] states;
+    final boolean accepting;
+    final DState[] next;
+
+    DState(int[] states, boolean accepting, int symbolCount) {
+      this.states = states;
+      this.accepting = accepting;
+      this.next = new DState[symbolCount];
+    }
+
+    boolean isDead() {
+      return states.length == 0;
+    }
+  }
+
+  static private final class StateSet {
+    private final int[] states;
+    private final int hashCode;
+
+    StateSet(int[] states) {
+      this.states = states;
+      this.hashCode = Arrays.hashCode(states);
+    }
+
+    public int hashCode() {
+      return hashCode;
+    }
+
+    public boolean equals(Object obj) {
+      return obj instanceof StateSet && Arrays.equals(states, ((StateSet)obj).states);
+    }
+  }
+
+  /**
+   * Arrays for computing closures, each as large as the NFA, so that stepping from one set of NFA states
+   * to the next doesn't allocate.
+   */
+  static private final class Scratch {
+    final int[] targets;
+    final int[] result;
+    final int[] stack;
+    // a state is visited by the current closure iff its mark is the current mark
+    final int[] marks;
+    private int mark;
+
+    Scratch(int stateCount) {
+      targets = new int[stateCount];
+      result = new int[stateCount];
+      stack = new int[stateCount];
+      marks = new int[stateCount];
+    }
+
+    int nextMark() {
+      if (++mark == Integer.MAX_VALUE) {
+        Arrays.fill(marks, 0);
+        mark = 1;
+      }
+      return mark;
+    }
+  }
+
+  static private final class TooLargeException extends Exception {
+  }
+
+  private LazyDfa(Builder builder) {
+    this.stateSymbols = builder.trimStateSymbols();
+    this.out1 = Arrays.copyOf(builder.out1, builder.stateCount);
+    this.out2 = Arrays.copyOf(builder.out2, builder.stateCount);
+    this.acceptState = builder.acceptState;
+    this.intervalStarts = builder.intervalStarts;
+    this.intervalSymbols = builder.intervalSymbols;
+    this.symbolCount = builder.symbolCount;
+    for (int c = 0; c < asciiSymbols.length; c++)
+      asciiSymbols[c] = lookupSymbol(c);
+    this.scratch = new Scratch(stateSymbols.length);
+    DState dead = new DState(new int[0], false, symbolCount);
+    dStates.put(new StateSet(dead.states), dead);
+    scratch.targets[0] = builder.startState;
+    start = getState(sortedResult(closure(scratch.targets, 1, scratch)));
+  }
+
+  /**
+   * Returns an automaton for a tree, or null if it would get too big.
+   *
+   * @throws IllegalArgumentException if the tree refers to a block the JDK doesn't know about
+   */
+  static LazyDfa create(RegexNode tree) {
+    try {
+      return new LazyDfa(new Builder(tree));
+    }
+    catch (TooLargeException e) {
+      return null;
+    }
+  }
+
+  public boolean matches(String str) {
+    DState state = start;
+    for (int i = 0, len = str.length(); i < len;) {
+      int c = str.codePointAt(i);
+      int symbol = getSymbol(c);
+      DState next = state.next[symbol];
+      if (next == null) {
+        next = computeNext(state, symbol);
+        if (next == null)
+          return simulate(state.states, str, i);
+      }
+      if (next.isDead())
+        return false;
+      state = next;
+      i += Character.charCount(c);
+    }
+    return state.accepting;
+  }
+
+  private int getSymbol(int c) {
+    return c < asciiSymbols.length ? asciiSymbols[c] : lookupSymbol(c);
+  }
+
+  private int lookupSymbol(int c) {
+    // find the last interval starting at or before c
+    int low = 0;
+    int high = intervalStarts.length - 1;
+    while (low < high) {
+      int mid = (low + high + 1) >>> 1;
+      if (intervalStarts[mid] <= c)
+        low = mid;
+      else
+        high = mid - 1;
+    }
+    return intervalSymbols[low];
+  }
+
+  /**
+   * Returns null if the next state is new and there are too many DFA states to create it.
+   */
+  private synchronized DState computeNext(DState state, int symbol) {
+    DState next = state.next[symbol];
+    if (next != null)
+      return next;
+    int targetCount = step(state.states, state.states.length, symbol, scratch.targets);
+    int[] states = sortedResult(closure(scratch.targets, targetCount, scratch));
+    next = (DState)dStates.get(new StateSet(states));
+    if (next == null) {
+      if (dStates.size() >= MAX_DFA_STATES)
+        return null;
+      next = getState(states);
+    }
+    state.next[symbol] = next;
+    return next;
+  }
+
+  private DState getState(int[] states) {
+    StateSet key = new StateSet(states);
+    DState state = (DState)dStates.get(key);
+    if (state == null) {
+      state = new DState(states, Arrays.binarySearch(states, acceptState) >= 0, symbolCount);
+      dStates.put(key, state);
+    }
+    return state;
+  }
+
+  /**
+   * Matches the rest of <code>str</code>, starting at index <code>i</code> in the NFA states
+   * <code>states</code>, without creating DFA states.
+   */
+  private boolean simulate(int[] states, String str, int i) {
+    Scratch scratch = new Scratch(stateSymbols.length);
+    int count = states.length;
+    for (int len = str.length(); i < len;) {
+      int c = str.codePointAt(i);
+      i += Character.charCount(c);
+      count = closure(scratch.targets, step(states, count, getSymbol(c), scratch.targets), scratch);
+      if (count == 0)
+        return false;
+      states = scratch.result;
+    }
+    for (int j = 0; j < count; j++) {
+      if (states[j] == acceptState)
+        return true;
+    }
+    return false;
+  }
+
+  /**
+   * Stores the targets of the transitions on <code>symbol</code> from the first <code>count</code> members of
+   * <code>states</code> in <code>targets</code> and returns how many there are.
+   */
+  private int step(int[] states, int count, int symbol, int[] targets) {
+    int targetCount = 0;
+    for (int i = 0; i < count; i++) {
+      int s = states[i];
+      if (stateSymbols[s] != null && stateSymbols[s][symbol])
+        targets[targetCount++] = out1[s];
+    }
+    return targetCount;
+  }
+
+  /**
+   * Stores the states with a symbol transition or accepting that are reachable from the first
+   * <code>count</code> members of <code>states</code> by epsilon transitions in <code>scratch.result</code>,
+   * in no particular order, and returns how many there are.
+   */
+  private int closure(int[] states, int count, Scratch scratch) {
+    int[] marks = scratch.marks;
+    int mark = scratch.nextMark();
+    int[] stack = scratch.stack;
+    int[] result = scratch.result;
+    int top = 0;
+    int resultCount = 0;
+    for (int i = 0; i < count; i++) {
+      if (marks[states[i]] != mark) {
+        marks[states[i]] = mark;
+        stack[top++] = states[i];
+      }
+    }
+    while (top > 0) {
+      int s = stack[--top];
+      if (stateSymbols[s] != null || s == acceptState)
+        result[resultCount++] = s;
+      if (stateSymbols[s] == null) {
+        if (out1[s] != NO_STATE && marks[out1[s]] != mark) {
+          marks[out1[s]] = mark;
+          stack[top++] = out1[s];
+        }
+        if (out2[s] != NO_STATE && marks[out2[s]] != mark) {
+          marks[out2[s]] = mark;
+          stack[top++] = out2[s];
+        }
+      }
+    }
+    return resultCount;
+  }
+
+  private int[] sortedResult(int count) {
+    int[] sorted = Arrays.copyOf(scratch.result, count);
+    Arrays.sort(sorted);
+    return sorted;
+  }
+
+  static private final class Builder {
+    private final Map classIndices = new IdentityHashMap();
+    private final List classRanges = new Vector();
+    private boolean[][] classSymbols;
+    private int[] intervalStarts;
+    private int[] intervalSymbols;
+    private int symbolCount;
+
+    private boolean[][] stateSymbols = new boolean[16][];
+    private int[] out1 = new int[16];
+    private int[] out2 = new int[16];
+    private int stateCount = 0;
+    private final int acceptState;
+    private final int startState;
+
+    Builder(RegexNode tree) throws TooLargeException {
+      collectClasses(tree);
+      computeSymbols();
+      acceptState = newState(null, NO_STATE, NO_STATE);
+      startState = build(tree, acceptState);
+    }
+
+    private void collectClasses(RegexNode node) {
+      if (node instanceof RegexNode.Chars) {
+        Translator.CharClass cc = ((RegexNode.Chars)node).getCharClass();
+        if (!classIndices.containsKey(cc)) {
+          List ranges = new Vector();
+          cc.addRanges(ranges);
+          Translator.CharClass.sortRangeList(ranges);
+          classIndices.put(cc, Integer.valueOf(classRanges.size()));
+          classRanges.add(ranges);
+        }
+      }
+      else if (node instanceof RegexNode.Sequence) {
+        List members = ((RegexNode.Sequence)node).getMembers();
+        for (int i = 0, len = members.size(); i < len; i++)
+          collectClasses((RegexNode)members.get(i));
+      }
+      else if (node instanceof RegexNode.Choice) {
+        List branches = ((RegexNode.Choice)node).getBranches();
+        for (int i = 0, len = branches.size(); i < len; i++)
+          collectClasses((RegexNode)branches.get(i));
+      }
+      else
+        collectClasses(((RegexNode.Repeat)node).getBody());
+    }
+
+    private void computeSymbols() {
+      TreeSet boundaries = new TreeSet();
+      boundaries.add(Integer.valueOf(0));
+      for (int i = 0, len = classRanges.size(); i < len; i++) {
+        List ranges = (List)classRanges.get(i);
+        for (int j = 0, n = ranges.size(); j < n; j++) {
+          Translator.Range r = (Translator.Range)ranges.get(j);
+          boundaries.add(Integer.valueOf(r.getMin()));
+          if (r.getMax() < MAX_CHAR)
+            boundaries.add(Integer.valueOf(r.getMax() + 1));
+        }
+      }
+      intervalStarts = new int[boundaries.size()];
+      int n = 0;
+      for (Object boundary : boundaries)
+        intervalStarts[n++] = ((Integer)boundary).intValue();
+
+      // the classes each interval belongs to
+      BitSet[] memberships = new BitSet[intervalStarts.length];
+      for (int i = 0; i < memberships.length; i++)
+        memberships[i] = new BitSet();
+      for (int i = 0, len = classRanges.size(); i < len; i++) {
+        List ranges = (List)classRanges.get(i);
+        for (int j = 0, m = ranges.size(); j < m; j++) {
+          Translator.Range r = (Translator.Range)ranges.get(j);
+          for (int k = Arrays.binarySearch(intervalStarts, r.getMin());
+               k < intervalStarts.length && intervalStarts[k] <= r.getMax(); k++)
+            memberships[k].set(i);
+        }
+      }
+
+      Map symbols = new HashMap();
+      intervalSymbols = new int[intervalStarts.length];
+      for (int i = 0; i < memberships.length; i++) {
+        Integer symbol = (Integer)symbols.get(memberships[i]);
+        if (symbol == null) {
+          symbol = Integer.valueOf(symbols.size());
+          symbols.put(memberships[i], symbol);
+        }
+        intervalSymbols[i] = symbol.intValue();
+      }
+      symbolCount = symbols.size();
+
+      classSymbols = new boolean[classRanges.size()][symbolCount];
+      for (int i = 0; i < memberships.length; i++)
+        for (int c = memberships[i].nextSetBit(0); c >= 0; c = memberships[i].nextSetBit(c + 1))
+          classSymbols[c][intervalSymbols[i]] = true;
+    }
+
+    /**
+     * Adds the states for <code>node</code>, followed by <code>next</code>, and returns the first of them.
+     */
+    private int build(RegexNode node, int next) throws TooLargeException {
+      if (node instanceof RegexNode.Chars) {
+        Integer ci = (Integer)classIndices.get(((RegexNode.Chars)node).getCharClass());
+        return newState(classSymbols[ci.intValue()], next, NO_STATE);
+      }
+      if (node instanceof RegexNode.Sequence) {
+        List members = ((RegexNode.Sequence)node).getMembers();
+        for (int i = members.size() - 1; i >= 0; i--)
+          next = build((RegexNode)members.get(i), next);
+        return next;
+      }
+      if (node instanceof RegexNode.Choice) {
+        List branches = ((RegexNode.Choice)node).getBranches();
+        int first = build((RegexNode)branches.get(branches.size() - 1), next);
+        for (int i = branches.size() - 2; i >= 0; i--)
+          first = newState(null, build((RegexNode)branches.get(i), next), first);
+        return first;
+      }
+      RegexNode.Repeat repeat = (RegexNode.Repeat)node;
+      RegexNode body = repeat.getBody();
+      int first = next;
+      if (repeat.getMax() == RegexNode.Repeat.UNBOUNDED) {
+        int loop = newState(null, NO_STATE, next);
+        // building the body may grow the arrays, so don't inline this
+        int bodyStart = build(body, loop);
+        out1[loop] = bodyStart;
+        first = loop;
+      }
+      else {
+        // each optional repetition may be skipped, along with all following ones
+        for (int i = repeat.getMin(); i < repeat.getMax(); i++)
+          first = newState(null, build(body, first), next);
+      }
+      for (int i = 0; i < repeat.getMin(); i++)
+        first = build(body, first);
+      return first;
+    }
+
+    private int newState(boolean[] symbols, int next1, int next2) throws TooLargeException {
+      if (stateCount == MAX_NFA_STATES)
+        throw new TooLargeException();
+      if (stateCount == out1.length) {
+        stateSymbols = (boolean[][])Arrays.copyOf(stateSymbols, stateCount * 2);
+        out1 = Arrays.copyOf(out1, stateCount * 2);
+        out2 = Arrays.copyOf(out2, stateCount * 2);
+      }
+      stateSymbols[stateCount] = symbols;
+      out1[stateCount] = next1;
+      out2[stateCount] = next2;
+      return stateCount++;
+    }
+
+    boolean[][] trimStateSymbols() {
+      return (boolean[][])Arrays.copyOf(stateSymbols, stateCount);
+    }
+  }
+}
@@ -0,0 +1,79 @@
+package com.thaiopensource.datatype.xsd.regex.java;
+
+import java.util.List;
+
+/**
+ * A node of the tree the <code>Translator</code> parses a regular expression into.
+ */
+abstract class RegexNode {
+  private RegexNode() {
+  }
+
+  /**
+   * Matches a single character in a class.
+   */
+  static final class Chars extends RegexNode {
+    private final Translator.CharClass charClass;
+
+    Chars(Translator.CharClass charClass) {
+      this.charClass = charClass;
+    }
+
+    Translator.CharClass getCharClass() {
+      return charClass;
+    }
+  }
+
+  static final class Sequence extends RegexNode {
+    private final List members;
+
+    Sequence(List members) {
+      this.members = members;
+    }
+
+    List getMembers() {
+      return members;
+    }
+  }
+
+  static final class Choice extends RegexNode {
+    private final List branches;
+
+    Choice(List branches) {
+      this.branches = branches;
+    }
+
+    List getBranches() {
+      return branches;
+    }
+  }
+
+  static final class Repeat extends RegexNode {
+    static final int UNBOUNDED = -1;
+
+    private final RegexNode body;
+    private final int min;
+    private final int max;
+
+    Repeat(RegexNode body, int min, int max) {
+      this.body = body;
+      this.min = min;
+      this.max = max;
+    }
+
+    RegexNode getBody() {
+      return body;
+    }
+
+    int getMin() {
+      return min;
+    }
+
+    /**
+     * @return the maximum number of repetitions or <code>UNBOUNDED</code>
+     */
+    int getMax() {
+      return max;
+    }
+  }
+}
@@ -6,8 +6,10 @@ import com.thaiopensource.util.Utf16;
 
 import java.math.BigDecimal;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Vector;
 
 /**
@@ -223,6 +225,20 @@ public class Translator {
     return tr.result.toString();
   }
 
+  /**
+   * Parses a regular expression in the syntax of XML Schemas Part 2 into a tree, for engines
+   * that don't match using <code>java.util.regex</code>.
+   *
+   * @param regexp a String containing a regular expression in the syntax of XML Schemas Part 2
+   * @return the root of the tree
+   * @throws RegexSyntaxException if <code>regexp</code> is not a regular expression in the
+   * syntax of XML Schemas Part 2
+   */
+  static RegexNode parse(String regexp) throws RegexSyntaxException {
+    Translator tr = new Translator(regexp);
+    return tr.translateTop();
+  }
+
   private void advance() {
     if (pos < length)
       curChar = regExp.charAt(pos++);
@@ -233,41 +249,57 @@ public class Translator {
     }
   }
 
-  private void translateTop() throws RegexSyntaxException {
-    translateRegExp();
+  private RegexNode translateTop() throws RegexSyntaxException {
+    RegexNode node = translateRegExp();
     if (!eos)
       throw makeException("expected_eos");
+    return node;
   }
 
-  private void translateRegExp() throws RegexSyntaxException {
-    translateBranch();
+  private RegexNode translateRegExp() throws RegexSyntaxException {
+    RegexNode branch = translateBranch();
+    if (curChar != '|')
+      return branch;
+    List branches = new Vector();
+    branches.add(branch);
     while (curChar == '|') {
       copyCurChar();
-      translateBranch();
+      branches.add(translateBranch());
     }
+    return new RegexNode.Choice(branches);
   }
 
-  private void translateBranch() throws RegexSyntaxException {
-    while (translateAtom())
-      translateQuantifier();
+  private RegexNode translateBranch() throws RegexSyntaxException {
+    List atoms = new Vector();
+    for (RegexNode atom = translateAtom(); atom != null; atom = translateAtom())
+      atoms.add(translateQuantifier(atom));
+    if (atoms.size() == 1)
+      return (RegexNode)atoms.get(0);
+    return new RegexNode.Sequence(atoms);
   }
 
-  private void translateQuantifier() throws RegexSyntaxException {
+  private RegexNode translateQuantifier(RegexNode atom) throws RegexSyntaxException {
     switch (curChar) {
     case '*':
+      copyCurChar();
+      return new RegexNode.Repeat(atom, 0, RegexNode.Repeat.UNBOUNDED);
     case '?':
+      copyCurChar();
+      return new RegexNode.Repeat(atom, 0, 1);
     case '+':
       copyCurChar();
-      return;
+      return new RegexNode.Repeat(atom, 1, RegexNode.Repeat.UNBOUNDED);
     case '{':
       copyCurChar();
-      translateQuantity();
+      RegexNode node = translateQuantity(atom);
       expect('}');
       copyCurChar();
+      return node;
     }
+    return atom;
   }
 
-  private void translateQuantity() throws RegexSyntaxException {
+  private RegexNode translateQuantity(RegexNode atom) throws RegexSyntaxException {
     String lower = parseQuantExact();
     int lowerValue = -1;
     try {
@@ -278,6 +310,8 @@ public class Translator {
       // JDK 1.4 cannot handle ranges bigger than this
       result.append(Integer.MAX_VALUE);
     }
+    int min = lowerValue < 0 ? Integer.MAX_VALUE : lowerValue;
+    int max = min;
     if (curChar == ',') {
       copyCurChar();
       if (curChar != '}') {
@@ -287,14 +321,19 @@ public class Translator {
           result.append(upper);
           if (lowerValue < 0 || upperValue < lowerValue)
             throw makeException("invalid_quantity_range");
+          max = upperValue;
         }
         catch (NumberFormatException e) {
           result.append(Integer.MAX_VALUE);
           if (lowerValue < 0 && new BigDecimal(lower).compareTo(new BigDecimal(upper)) > 0)
             throw makeException("invalid_quantity_range");
+          max = Integer.MAX_VALUE;
         }
       }
+      else
+        max = RegexNode.Repeat.UNBOUNDED;
     }
+    return new RegexNode.Repeat(atom, min, max);
   }
 
   private String parseQuantExact() throws RegexSyntaxException {
@@ -529,6 +568,57 @@ public class Translator {
     void addNonBmpRanges(List ranges) {
     }
 
+    /**
+     * Adds ranges for all the characters in this class, whether in the BMP or not.
+     */
+    abstract void addRanges(List ranges);
+
+    static void subtractRanges(List posList, List negList, List ranges) {
+      Iterator negIter = negList.iterator();
+      Range negRange;
+      if (negIter.hasNext())
+        negRange = (Range)negIter.next();
+      else
+        negRange = null;
+      for (int i = 0, len = posList.size(); i < len; i++) {
+        Range posRange = (Range)posList.get(i);
+        while (negRange != null && negRange.getMax() < posRange.getMin()) {
+          if (negIter.hasNext())
+            negRange = (Range)negIter.next();
+          else
+            negRange = null;
+        }
+        // if negRange != null, negRange.max >= posRange.min
+        int min = posRange.getMin();
+        while (negRange != null && negRange.getMin() <= posRange.getMax()) {
+          if (min < negRange.getMin()) {
+            ranges.add(new Range(min, negRange.getMin() - 1));
+          }
+          min = negRange.getMax() + 1;
+          if (min > posRange.getMax())
+            break;
+          if (negIter.hasNext())
+            negRange = (Range)negIter.next();
+          else
+            negRange = null;
+        }
+        if (min <= posRange.getMax())
+          ranges.add(new Range(min, posRange.getMax()));
+      }
+    }
+
+    static void complementRanges(List sortedList, int min, int max, List ranges) {
+      int c = min;
+      for (int i = 0, len = sortedList.size(); i < len; i++) {
+        Range r = (Range)sortedList.get(i);
+        if (r.getMin() > c)
+          ranges.add(new Range(c, r.getMin() - 1));
+        c = r.getMax() + 1;
+      }
+      if (c != max + 1)
+        ranges.add(new Range(c, max));
+    }
+
 
     static void sortRangeList(List ranges) {
       Collections.sort(ranges);
@@ -606,6 +696,9 @@ public class Translator {
       buf.append(c);
     }
 
+    void addRanges(List ranges) {
+      ranges.add(new Range(c, c));
+    }
   }
 
   static class WideSingleChar extends SimpleCharClass {
@@ -629,6 +722,10 @@ public class Translator {
     void addNonBmpRanges(List ranges) {
       ranges.add(new Range(c, c));
     }
+
+    void addRanges(List ranges) {
+      ranges.add(new Range(c, c));
+    }
   }
 
   static class CharRange extends SimpleCharClass {
@@ -669,6 +766,10 @@ public class Translator {
       if (upper >= NONBMP_MIN)
         ranges.add(new Range(lower < NONBMP_MIN ? NONBMP_MIN : lower, upper));
     }
+
+    void addRanges(List ranges) {
+      ranges.add(new Range(lower, upper));
+    }
   }
 
   static class Property extends SimpleCharClass {
@@ -694,6 +795,10 @@ public class Translator {
       buf.append(name);
       buf.append('}');
     }
+
+    void addRanges(List ranges) {
+      ranges.addAll(getPropertyRanges(name));
+    }
   }
 
   static class Subtraction extends CharClass {
@@ -730,37 +835,17 @@ public class Translator {
       cc2.addNonBmpRanges(negList);
       sortRangeList(posList);
       sortRangeList(negList);
-      Iterator negIter = negList.iterator();
-      Range negRange;
-      if (negIter.hasNext())
-        negRange = (Range)negIter.next();
-      else
-        negRange = null;
-      for (int i = 0, len = posList.size(); i < len; i++) {
-        Range posRange = (Range)posList.get(i);
-        while (negRange != null && negRange.getMax() < posRange.getMin()) {
-          if (negIter.hasNext())
-            negRange = (Range)negIter.next();
-          else
-            negRange = null;
-        }
-        // if negRange != null, negRange.max >= posRange.min
-        int min = posRange.getMin();
-        while (negRange != null && negRange.getMin() <= posRange.getMax()) {
-          if (min < negRange.getMin()) {
-            ranges.add(new Range(min, negRange.getMin() - 1));
-          }
-          min = negRange.getMax() + 1;
-          if (min > posRange.getMax())
-            break;
-          if (negIter.hasNext())
-            negRange = (Range)negIter.next();
-          else
-            negRange = null;
-        }
-        if (min <= posRange.getMax())
-          ranges.add(new Range(min, posRange.getMax()));
-      }
+      subtractRanges(posList, negList, ranges);
+    }
+
+    void addRanges(List ranges) {
+      List posList = new Vector();
+      cc1.addRanges(posList);
+      List negList = new Vector();
+      cc2.addRanges(negList);
+      sortRangeList(posList);
+      sortRangeList(negList);
+      subtractRanges(posList, negList, ranges);
     }
   }
 
@@ -836,6 +921,11 @@ public class Translator {
         ((CharClass)members.get(i)).addNonBmpRanges(ranges);
     }
 
+    void addRanges(List ranges) {
+      for (int i = 0, len = members.size(); i < len; i++)
+        ((CharClass)members.get(i)).addRanges(ranges);
+    }
+
     private static int computeContainsBmp(List members) {
       int ret = NONE;
       for (int i = 0, len = members.size(); i < len; i++)
@@ -870,19 +960,19 @@ public class Translator {
       List tem = new Vector();
       cc.addNonBmpRanges(tem);
       sortRangeList(tem);
-      int c = NONBMP_MIN;
-      for (int i = 0, len = tem.size(); i < len; i++) {
-        Range r = (Range)tem.get(i);
-        if (r.getMin() > c)
-          ranges.add(new Range(c, r.getMin() - 1));
-        c = r.getMax() + 1;
-      }
-      if (c != NONBMP_MAX + 1)
-        ranges.add(new Range(c, NONBMP_MAX));
+      complementRanges(tem, NONBMP_MIN, NONBMP_MAX, ranges);
+    }
+
+    void addRanges(List ranges) {
+      List tem = new Vector();
+      cc.addRanges(tem);
+      sortRangeList(tem);
+      complementRanges(tem, 0, NONBMP_MAX, ranges);
     }
   }
 
-  private boolean translateAtom() throws RegexSyntaxException {
+  private RegexNode translateAtom() throws RegexSyntaxException {
+    CharClass cc;
     switch (curChar) {
     case EOS:
       if (!eos)
@@ -896,32 +986,40 @@ public class Translator {
     case '}':
     case '|':
     case ']':
-      return false;
+      return null;
     case '(':
       copyCurChar();
-      translateRegExp();
+      RegexNode group = translateRegExp();
       expect(')');
       copyCurChar();
-      return true;
+      return group;
     case '\\':
       advance();
-      parseEsc().output(result);
-      return true;
+      cc = parseEsc();
+      cc.output(result);
+      return new RegexNode.Chars(cc);
     case '[':
       advance();
-      parseCharClassExpr().output(result);
-      return true;
+      cc = parseCharClassExpr();
+      cc.output(result);
+      return new RegexNode.Chars(cc);
     case '.':
       DOT.output(result);
       advance();
-      return true;
+      return new RegexNode.Chars(DOT);
     case '$':
     case '^':
       result.append('\\');
       break;
     }
+    int c = curChar;
+    if (Utf16.isSurrogate1(curChar) && pos < length && Utf16.isSurrogate2(regExp.charAt(pos))) {
+      // the pair is a single character to quantifiers as well
+      copyCurChar();
+      c = Utf16.scalarValue((char)c, curChar);
+    }
     copyCurChar();
-    return true;
+    return new RegexNode.Chars(c < NONBMP_MIN ? (CharClass)new SingleChar((char)c) : new WideSingleChar(c));
   }
 
 
@@ -1286,6 +1384,52 @@ public class Translator {
     return new Union(classes);
   }
 
+  /**
+   * Names of the general categories, indexed by the values returned by <code>Character.getType</code>.
+   */
+  static private final String javaCategoryNames = "CnLuLlLtLmLoMnMeMcNdNlNoZsZlZpCcCf  CoCsPdPsPePcPoSmScSkSoPiPf";
+  static private final Map propertyRanges = new HashMap();
+
+  /**
+   * Returns the ranges of the characters <code>java.util.regex</code> matches with <code>\p{name}</code>,
+   * where <code>name</code> is a category, a subcategory or "In" followed by a block name.
+   */
+  static private synchronized List getPropertyRanges(String name) {
+    List ranges = (List)propertyRanges.get(name);
+    if (ranges != null)
+      return ranges;
+    Character.UnicodeBlock block = null;
+    int categoryMask = 0;
+    if (name.startsWith("In"))
+      block = Character.UnicodeBlock.forName(name.substring(2));
+    else {
+      for (int i = 0; i < javaCategoryNames.length(); i += 2)
+        if (javaCategoryNames.startsWith(name, i))
+          categoryMask |= 1 << (i / 2);
+      if (categoryMask == 0)
+        throw new IllegalArgumentException(name);
+    }
+    ranges = new Vector();
+    int start = -1;
+    for (int c = 0; c <= NONBMP_MAX + 1; c++) {
+      boolean member = c <= NONBMP_MAX
+                       && (block != null
+                           ? Character.UnicodeBlock.of(c) == block
+                           : (categoryMask & (1 << Character.getType(c))) != 0);
+      if (member) {
+        if (start < 0)
+          start = c;
+      }
+      else if (start >= 0) {
+        ranges.add(new Range(start, c - 1));
+        start = -1;
+      }
+    }
+    ranges = Collections.unmodifiableList(ranges);
+    propertyRanges.put(name, ranges);
+    return ranges;
+  }
+
   private static CharClass makeCharClass(String members) {
     List list = new Vector();
     for (int i = 0, len = members.length(); i < len; i++)
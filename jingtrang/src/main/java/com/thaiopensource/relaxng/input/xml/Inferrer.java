@@ -23,6 +23,7 @@ import com.thaiopensource.resolver.Resolver;
 import com.thaiopensource.resolver.xml.sax.SAXResolver;
 import com.thaiopensource.xml.infer.AttributeDecl;
 import com.thaiopensource.xml.infer.ChoiceParticle;
+import com.thaiopensource.xml.infer.DatatypeRepertoire;
 import com.thaiopensource.xml.infer.ElementDecl;
 import com.thaiopensource.xml.infer.ElementParticle;
 import com.thaiopensource.xml.infer.EmptyParticle;
@@ -33,6 +34,7 @@ import com.thaiopensource.xml.infer.ParticleVisitor;
 import com.thaiopensource.xml.infer.Schema;
 import com.thaiopensource.xml.infer.SequenceParticle;
 import com.thaiopensource.xml.infer.TextParticle;
+import com.thaiopensource.xml.sax.SynchronizedErrorHandler;
 import com.thaiopensource.xml.util.Name;
 import org.xml.sax.ErrorHandler;
 import org.xml.sax.InputSource;
@@ -40,6 +42,8 @@ import org.xml.sax.SAXException;
 import org.xml.sax.XMLReader;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashSet;
@@ -48,6 +52,12 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 class Inferrer {
   private final Schema schema;
@@ -63,6 +73,7 @@ class Inferrer {
   static class Options {
     String encoding;
     Resolver resolver;
+    int threadCount = 1;
   }
 
   private static class PatternComparator implements Comparator<Pattern> {
@@ -215,16 +226,17 @@ class Inferrer {
   }
 
   static SchemaCollection infer(String[] args, Options options, ErrorHandler eh) throws SAXException, IOException {
-    InferHandler handler = new InferHandler(new DatatypeLibraryLoader());
-    XMLReader xr = new SAXResolver(options.resolver).createXMLReader();
-    xr.setErrorHandler(eh);
-    xr.setContentHandler(handler);
-    for (int i = 0; i < args.length; i++) {
-      InputSource in = new InputSource(args[i]);
-      if (options.encoding != null)
-        in.setEncoding(options.encoding);
-      xr.parse(in);
+    InferHandler handler;
+    if (options.threadCount <= 1 || args.length <= 1) {
+      handler = new InferHandler(new DatatypeLibraryLoader());
+      XMLReader xr = new SAXResolver(options.resolver).createXMLReader();
+      xr.setErrorHandler(eh);
+      xr.setContentHandler(handler);
+      for (int i = 0; i < args.length; i++)
+        xr.parse(createInputSource(args[i], options));
     }
+    else
+      handler = inferConcurrently(args, options, eh);
     SchemaCollection sc = new SchemaCollection();
     sc.setMainUri(args[0]);
     SchemaDocument sd = new SchemaDocument(new Inferrer(handler.getSchema()).grammar);
@@ -232,6 +244,82 @@ class Inferrer {
     return sc;
   }
 
+  static private InputSource createInputSource(String uri, Options options) {
+    InputSource in = new InputSource(uri);
+    if (options.encoding != null)
+      in.setEncoding(options.encoding);
+    return in;
+  }
+
+  /**
+   * Parses every document with a handler of its own, on <code>options.threadCount</code> threads, and
+   * merges the handlers in document order, which infers the same schema as parsing all documents with
+   * one handler.
+   */
+  static private InferHandler inferConcurrently(String[] args, final Options options, ErrorHandler eh)
+          throws SAXException, IOException {
+    final DatatypeRepertoire datatypes = new DatatypeRepertoire(new DatatypeLibraryLoader());
+    final ErrorHandler seh = eh == null ? null : new SynchronizedErrorHandler(eh);
+    final ThreadLocal<XMLReader> xmlReaders = new ThreadLocal<XMLReader>();
+    ExecutorService executor = Executors.newFixedThreadPool(Math.min(options.threadCount, args.length), new ThreadFactory() {
+      private int count = 0;
+
+      public synchronized Thread newThread(Runnable r) {
+        Thread thread = new Thread(r, "trang inference " + ++count);
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+    try {
+      List<Future<InferHandler>> futures = new ArrayList<Future<InferHandler>>();
+      for (final String uri : args) {
+        futures.add(executor.submit(new Callable<InferHandler>() {
+          public InferHandler call() throws SAXException, IOException {
+            XMLReader xr = xmlReaders.get();
+            if (xr == null) {
+              xr = new SAXResolver(options.resolver).createXMLReader();
+              xr.setErrorHandler(seh);
+              xmlReaders.set(xr);
+            }
+            InferHandler handler = new InferHandler(datatypes);
+            xr.setContentHandler(handler);
+            xr.parse(createInputSource(uri, options));
+            return handler;
+          }
+        }));
+      }
+      InferHandler handler = await(futures.get(0));
+      for (int i = 1; i < futures.size(); i++)
+        handler.merge(await(futures.get(i)));
+      return handler;
+    }
+    finally {
+      executor.shutdownNow();
+    }
+  }
+
+  static private InferHandler await(Future<InferHandler> future) throws SAXException, IOException {
+    try {
+      return future.get();
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException();
+    }
+    catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException)
+        throw (IOException)cause;
+      if (cause instanceof SAXException)
+        throw (SAXException)cause;
+      if (cause instanceof RuntimeException)
+        throw (RuntimeException)cause;
+      if (cause instanceof Error)
+        throw (Error)cause;
+      throw new SAXException(cause.toString());
+    }
+  }
+
   private Inferrer(Schema schema) {
     this.schema = schema;
     this.grammar = new GrammarPattern();
@@ -13,11 +13,25 @@ import org.xml.sax.SAXException;
 import java.io.IOException;
 
 public class XmlInputFormat extends AbstractMultiInputFormat {
+  private final int threadCount;
+
+  public XmlInputFormat() {
+    this(1);
+  }
+
+  /**
+   * @param threadCount the number of threads parsing the instance documents a schema is inferred from
+   */
+  public XmlInputFormat(int threadCount) {
+    this.threadCount = threadCount;
+  }
+
   public SchemaCollection load(String[] uris, String[] params, String outputFormat, ErrorHandler eh, Resolver resolver)
           throws InputFailedException, InvalidParamsException, IOException, SAXException {
     ParamProcessor pp = new ParamProcessor();
     final Inferrer.Options options = new Inferrer.Options();
     options.resolver = resolver;
+    options.threadCount = threadCount;
     pp.declare("encoding",
                new EncodingParam() {
                  protected void setEncoding(String encoding) {
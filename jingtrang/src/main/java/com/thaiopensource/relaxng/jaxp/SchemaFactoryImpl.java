@@ -1,7 +1,6 @@
 package com.thaiopensource.relaxng.jaxp;
 
 import com.thaiopensource.datatype.xsd.DatatypeLibraryFactoryImpl;
-import com.thaiopensource.datatype.xsd.regex.java.RegexEngineImpl;
 import com.thaiopensource.relaxng.parse.IllegalSchemaException;
 import com.thaiopensource.relaxng.parse.Parseable;
 import com.thaiopensource.relaxng.pattern.SchemaBuilderImpl;
@@ -109,7 +108,7 @@ public abstract class SchemaFactoryImpl extends SchemaFactory2 {
 
   private DatatypeLibraryFactory getDatatypeLibraryFactory() {
     if (defaultDatatypeLibraryFactory) {
-      datatypeLibraryFactory = new DatatypeLibraryFactoryImpl(new RegexEngineImpl());
+      datatypeLibraryFactory = new DatatypeLibraryFactoryImpl(DatatypeLibraryFactoryImpl.createDefaultRegexEngine());
       defaultDatatypeLibraryFactory = false;
     }
     return datatypeLibraryFactory;
@@ -0,0 +1,104 @@
+package com.thaiopensource.relaxng.output;
+
+import com.thaiopensource.xml.out.CharRepertoire;
+import com.thaiopensource.xml.util.EncodingMap;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An <code>OutputDirectory</code> that keeps everything written to it in memory until <code>commit</code>
+ * is called, which writes it to another <code>OutputDirectory</code> in the order in which the streams
+ * were opened.  Nothing reaches the other directory if the output fails before that.  Apart from
+ * <code>commit</code>, this class is safe for access from multiple threads.
+ */
+public class BufferedOutputDirectory implements OutputDirectory {
+  private final OutputDirectory od;
+  private final List<BufferedStream> streams = new ArrayList<BufferedStream>();
+  private String defaultEncoding;
+  private boolean alwaysUseDefaultEncoding;
+
+  static private class BufferedStream {
+    private final String sourceUri;
+    private final String encoding;
+    private final StringWriter writer = new StringWriter() {
+      public void close() {
+      }
+    };
+
+    BufferedStream(String sourceUri, String encoding) {
+      this.sourceUri = sourceUri;
+      this.encoding = encoding;
+    }
+  }
+
+  /**
+   * @param od the directory to which <code>commit</code> writes
+   * @param defaultEncoding the encoding <code>od</code> uses for streams opened without one
+   */
+  public BufferedOutputDirectory(OutputDirectory od, String defaultEncoding) {
+    this.od = od;
+    this.defaultEncoding = defaultEncoding;
+  }
+
+  public synchronized Stream open(String sourceUri, String encoding) throws IOException {
+    if (encoding == null || alwaysUseDefaultEncoding)
+      encoding = defaultEncoding;
+    BufferedStream stream = new BufferedStream(sourceUri, encoding);
+    streams.add(stream);
+    return new Stream(stream.writer, encoding, CharRepertoire.getInstance(EncodingMap.getJavaName(encoding)));
+  }
+
+  /**
+   * Writes the contents of all streams opened so far to the underlying directory and forgets them.
+   */
+  public void commit() throws IOException {
+    List<BufferedStream> toWrite;
+    synchronized (this) {
+      toWrite = new ArrayList<BufferedStream>(streams);
+      streams.clear();
+    }
+    for (BufferedStream stream : toWrite) {
+      Writer w = od.open(stream.sourceUri, stream.encoding).getWriter();
+      try {
+        w.write(stream.writer.getBuffer().toString());
+      }
+      finally {
+        w.close();
+      }
+    }
+  }
+
+  public synchronized String reference(String fromSourceUri, String toSourceUri) {
+    return od.reference(fromSourceUri, toSourceUri);
+  }
+
+  public synchronized String getLineSeparator() {
+    return od.getLineSeparator();
+  }
+
+  public synchronized int getLineLength() {
+    return od.getLineLength();
+  }
+
+  public synchronized void setLineLength(int lineLength) {
+    od.setLineLength(lineLength);
+  }
+
+  public synchronized int getIndent() {
+    return od.getIndent();
+  }
+
+  public synchronized void setIndent(int indent) {
+    od.setIndent(indent);
+  }
+
+  public synchronized void setEncoding(String encoding) {
+    od.setEncoding(encoding);
+    defaultEncoding = encoding;
+    alwaysUseDefaultEncoding = true;
+  }
+}
@@ -0,0 +1,144 @@
+package com.thaiopensource.relaxng.output.common;
+
+import com.thaiopensource.relaxng.edit.SchemaCollection;
+import com.thaiopensource.relaxng.edit.SchemaDocument;
+import com.thaiopensource.relaxng.output.OutputDirectory;
+import com.thaiopensource.xml.sax.SynchronizedErrorHandler;
+import org.xml.sax.ErrorHandler;
+import org.xml.sax.SAXException;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Outputs the documents of a <code>SchemaCollection</code> for output formats that translate each
+ * document on its own, such as RELAX NG in either syntax.  With more than one thread the documents
+ * are output concurrently; the <code>OutputDirectory</code> and <code>ErrorHandler</code> are then
+ * only called by one thread at a time, and the file names of all documents are chosen up front
+ * in document order, so that they don't depend on which document happens to be output first.
+ */
+public class ParallelDocumentOutput {
+  private ParallelDocumentOutput() { }
+
+  /**
+   * Outputs a single document.
+   */
+  public interface DocumentOutput {
+    void output(SchemaDocument sd, String sourceUri, OutputDirectory od, ErrorHandler eh) throws IOException, SAXException;
+  }
+
+  /**
+   * @param threadCount the number of threads outputting documents; at most 1 outputs them one after
+   * the other on the calling thread
+   */
+  static public void output(SchemaCollection sc, OutputDirectory od, ErrorHandler eh, int threadCount,
+                            final DocumentOutput output) throws IOException, SAXException {
+    final List<Map.Entry<String, SchemaDocument>> entries
+      = new ArrayList<Map.Entry<String, SchemaDocument>>(sc.getSchemaDocumentMap().entrySet());
+    if (threadCount <= 1 || entries.size() <= 1) {
+      for (Map.Entry<String, SchemaDocument> entry : entries)
+        output.output(entry.getValue(), entry.getKey(), od, eh);
+      return;
+    }
+    for (Map.Entry<String, SchemaDocument> entry : entries)
+      od.reference(null, entry.getKey());
+    final OutputDirectory sod = new SynchronizedOutputDirectory(od);
+    final ErrorHandler seh = eh == null ? null : new SynchronizedErrorHandler(eh);
+    ExecutorService executor = Executors.newFixedThreadPool(Math.min(threadCount, entries.size()), new ThreadFactory() {
+      private int count = 0;
+
+      public synchronized Thread newThread(Runnable r) {
+        Thread thread = new Thread(r, "trang output " + ++count);
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+    try {
+      List<Future<Object>> futures = new ArrayList<Future<Object>>();
+      for (final Map.Entry<String, SchemaDocument> entry : entries) {
+        futures.add(executor.submit(new Callable<Object>() {
+          public Object call() throws IOException, SAXException {
+            output.output(entry.getValue(), entry.getKey(), sod, seh);
+            return null;
+          }
+        }));
+      }
+      for (Future<Object> future : futures)
+        await(future);
+    }
+    finally {
+      executor.shutdownNow();
+    }
+  }
+
+  static private void await(Future<Object> future) throws IOException, SAXException {
+    try {
+      future.get();
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException();
+    }
+    catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException)
+        throw (IOException)cause;
+      if (cause instanceof SAXException)
+        throw (SAXException)cause;
+      if (cause instanceof RuntimeException)
+        throw (RuntimeException)cause;
+      if (cause instanceof Error)
+        throw (Error)cause;
+      throw new SAXException(cause.toString());
+    }
+  }
+
+  static private class SynchronizedOutputDirectory implements OutputDirectory {
+    private final OutputDirectory od;
+
+    SynchronizedOutputDirectory(OutputDirectory od) {
+      this.od = od;
+    }
+
+    public synchronized Stream open(String sourceUri, String encoding) throws IOException {
+      return od.open(sourceUri, encoding);
+    }
+
+    public synchronized String reference(String fromSourceUri, String toSourceUri) {
+      return od.reference(fromSourceUri, toSourceUri);
+    }
+
+    public synchronized String getLineSeparator() {
+      return od.getLineSeparator();
+    }
+
+    public synchronized int getLineLength() {
+      return od.getLineLength();
+    }
+
+    public synchronized void setLineLength(int lineLength) {
+      od.setLineLength(lineLength);
+    }
+
+    public synchronized int getIndent() {
+      return od.getIndent();
+    }
+
+    public synchronized void setIndent(int indent) {
+      od.setIndent(indent);
+    }
+
+    public synchronized void setEncoding(String encoding) {
+      od.setEncoding(encoding);
+    }
+  }
+}
@@ -7,22 +7,36 @@ import com.thaiopensource.relaxng.output.OutputDirectoryParamProcessor;
 import com.thaiopensource.relaxng.output.OutputFailedException;
 import com.thaiopensource.relaxng.output.OutputFormat;
 import com.thaiopensource.relaxng.output.common.ErrorReporter;
+import com.thaiopensource.relaxng.output.common.ParallelDocumentOutput;
 import com.thaiopensource.relaxng.translate.util.InvalidParamsException;
 import org.xml.sax.ErrorHandler;
 import org.xml.sax.SAXException;
 
 import java.io.IOException;
-import java.util.Map;
 
 public class RncOutputFormat implements OutputFormat {
+  private final int threadCount;
+
+  public RncOutputFormat() {
+    this(1);
+  }
+
+  /**
+   * @param threadCount the number of threads outputting the documents of a schema collection
+   */
+  public RncOutputFormat(int threadCount) {
+    this.threadCount = threadCount;
+  }
+
   public void output(SchemaCollection sc, OutputDirectory od, String[] params, String inputFormat, ErrorHandler eh)
           throws SAXException, IOException, OutputFailedException, InvalidParamsException {
     new OutputDirectoryParamProcessor(od).process(params, eh);
     try {
-      ErrorReporter er = new ErrorReporter(eh, RncOutputFormat.class);
-      for (Map.Entry<String, SchemaDocument> entry : sc.getSchemaDocumentMap().entrySet()) {
-        outputPattern(entry.getValue(), entry.getKey(), od, er);
-      }
+      ParallelDocumentOutput.output(sc, od, eh, threadCount, new ParallelDocumentOutput.DocumentOutput() {
+        public void output(SchemaDocument sd, String sourceUri, OutputDirectory od, ErrorHandler eh) throws IOException {
+          outputPattern(sd, sourceUri, od, new ErrorReporter(eh, RncOutputFormat.class));
+        }
+      });
     }
     catch (ErrorReporter.WrappedSAXException e) {
       throw e.getException();
@@ -5,20 +5,35 @@ import com.thaiopensource.relaxng.edit.SchemaDocument;
 import com.thaiopensource.relaxng.output.OutputDirectory;
 import com.thaiopensource.relaxng.output.OutputDirectoryParamProcessor;
 import com.thaiopensource.relaxng.output.OutputFormat;
+import com.thaiopensource.relaxng.output.common.ParallelDocumentOutput;
 import com.thaiopensource.relaxng.translate.util.InvalidParamsException;
 import org.xml.sax.ErrorHandler;
 import org.xml.sax.SAXException;
 
 import java.io.IOException;
-import java.util.Map;
 
 public class RngOutputFormat implements OutputFormat {
+  private final int threadCount;
+
+  public RngOutputFormat() {
+    this(1);
+  }
+
+  /**
+   * @param threadCount the number of threads outputting the documents of a schema collection
+   */
+  public RngOutputFormat(int threadCount) {
+    this.threadCount = threadCount;
+  }
+
   public void output(SchemaCollection sc, OutputDirectory od, String[] params, String inputFormat, ErrorHandler eh)
           throws IOException, InvalidParamsException, SAXException {
     new OutputDirectoryParamProcessor(od).process(params, eh);
-    for (Map.Entry<String, SchemaDocument> entry : sc.getSchemaDocumentMap().entrySet()) {
-      outputPattern(entry.getValue(), entry.getKey(), od);
-    }
+    ParallelDocumentOutput.output(sc, od, eh, threadCount, new ParallelDocumentOutput.DocumentOutput() {
+      public void output(SchemaDocument sd, String sourceUri, OutputDirectory od, ErrorHandler eh) throws IOException {
+        outputPattern(sd, sourceUri, od);
+      }
+    });
   }
 
   private static void outputPattern(SchemaDocument sd, String sourceUri, OutputDirectory od) throws IOException {
@@ -41,4 +41,8 @@ class DataExceptPattern extends DataPattern {
   Pattern getExcept() {
     return except;
   }
+
+  Locator getLocator() {
+    return loc;
+  }
 }
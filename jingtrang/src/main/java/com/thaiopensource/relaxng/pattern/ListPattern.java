@@ -58,4 +58,8 @@ class ListPattern extends Pattern {
   Pattern getOperand() {
     return p;
   }
+
+  Locator getLocator() {
+    return locator;
+  }
 }
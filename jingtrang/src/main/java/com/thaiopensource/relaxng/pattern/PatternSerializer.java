@@ -0,0 +1,577 @@
+package com.thaiopensource.relaxng.pattern;
+
+import com.thaiopensource.xml.util.Name;
+import org.relaxng.datatype.Datatype;
+import org.relaxng.datatype.DatatypeBuilder;
+import org.relaxng.datatype.DatatypeException;
+import org.relaxng.datatype.DatatypeLibrary;
+import org.relaxng.datatype.DatatypeLibraryFactory;
+import org.relaxng.datatype.ValidationContext;
+import org.xml.sax.Locator;
+import org.xml.sax.helpers.LocatorImpl;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes a simplified start pattern, as produced by {@link SchemaBuilderImpl#parse}, into a compact binary form
+ * and rebuilds it with a {@link SchemaPatternBuilder}.
+ * <p>
+ * Every pattern is written once and referenced by index afterwards, so interned sub-patterns stay shared.
+ * Element patterns are declared up front because recursion in a simplified schema only goes through them.
+ * Datatypes are not written; they are recreated from their library and parameters when reading, which is why
+ * {@link #read} needs a {@link DatatypeLibraryFactory}. Values of context dependent datatypes are only supported
+ * when the value is a {@link Name}, i.e. a QName; anything else makes {@link #write} fail.
+ */
+public class PatternSerializer {
+  private static final int FORMAT_VERSION = 1;
+
+  private static final byte BACK_REF = 0;
+  private static final byte EMPTY = 1;
+  private static final byte NOT_ALLOWED = 2;
+  private static final byte ERROR = 3;
+  private static final byte TEXT = 4;
+  private static final byte GROUP = 5;
+  private static final byte INTERLEAVE = 6;
+  private static final byte CHOICE = 7;
+  private static final byte ONE_OR_MORE = 8;
+  private static final byte LIST = 9;
+  private static final byte ELEMENT = 10;
+  private static final byte ATTRIBUTE = 11;
+  private static final byte DATA = 12;
+  private static final byte DATA_EXCEPT = 13;
+  private static final byte VALUE = 14;
+
+  private static final byte NC_NAME = 0;
+  private static final byte NC_NS_NAME = 1;
+  private static final byte NC_NS_NAME_EXCEPT = 2;
+  private static final byte NC_ANY_NAME = 3;
+  private static final byte NC_ANY_NAME_EXCEPT = 4;
+  private static final byte NC_CHOICE = 5;
+  private static final byte NC_NULL = 6;
+  private static final byte NC_ERROR = 7;
+
+  private PatternSerializer() {
+  }
+
+  static public void write(Pattern start, DataOutput out) throws IOException {
+    out.writeInt(FORMAT_VERSION);
+    new Writer(out).writeAll(start);
+  }
+
+  /**
+   * Reads a pattern written by {@link #write}; the result is expanded and can be passed to a schema directly.
+   *
+   * @throws IOException if the data is malformed or a datatype can no longer be created
+   */
+  static public Pattern read(DataInput in, DatatypeLibraryFactory datatypeLibraryFactory, SchemaPatternBuilder spb)
+          throws IOException {
+    if (in.readInt() != FORMAT_VERSION)
+      throw new IOException("unsupported pattern format");
+    return new Reader(in, new BuiltinDatatypeLibraryFactory(datatypeLibraryFactory), spb).readAll();
+  }
+
+  static private void writeVarInt(DataOutput out, int value) throws IOException {
+    while ((value & ~0x7F) != 0) {
+      out.writeByte((value & 0x7F) | 0x80);
+      value >>>= 7;
+    }
+    out.writeByte(value);
+  }
+
+  static private int readVarInt(DataInput in) throws IOException {
+    int value = 0;
+    for (int shift = 0; shift < 32; shift += 7) {
+      int b = in.readUnsignedByte();
+      value |= (b & 0x7F) << shift;
+      if ((b & 0x80) == 0)
+        return value;
+    }
+    throw new IOException("malformed var int");
+  }
+
+  static private class Writer implements NameClassVisitor {
+    private final DataOutput out;
+    private final Map<String, Integer> strings = new HashMap<String, Integer>();
+    private final Map<Pattern, Integer> written = new IdentityHashMap<Pattern, Integer>();
+    private final Map<ElementPattern, Integer> elementIds = new IdentityHashMap<ElementPattern, Integer>();
+    private final List<ElementPattern> elements = new ArrayList<ElementPattern>();
+    private IOException error;
+
+    Writer(DataOutput out) {
+      this.out = out;
+    }
+
+    void writeAll(Pattern start) throws IOException {
+      collectElements(start);
+      writeVarInt(out, elements.size());
+      for (ElementPattern p : elements) {
+        writeNameClass(p.getNameClass());
+        writeLocator(p.getLocator());
+      }
+      writePattern(start);
+      for (ElementPattern p : elements)
+        writePattern(p.getContent());
+    }
+
+    private void collectElements(Pattern start) {
+      final List<Pattern> queue = new ArrayList<Pattern>();
+      final Map<Pattern, Boolean> seen = new IdentityHashMap<Pattern, Boolean>();
+      queue.add(start);
+      while (!queue.isEmpty()) {
+        Pattern p = queue.remove(queue.size() - 1);
+        if (p instanceof RefPattern)
+          p = ((RefPattern)p).getPattern();
+        if (seen.put(p, Boolean.TRUE) != null)
+          continue;
+        if (p instanceof ElementPattern) {
+          elementIds.put((ElementPattern)p, elements.size());
+          elements.add((ElementPattern)p);
+          queue.add(((ElementPattern)p).getContent());
+        }
+        else if (p instanceof BinaryPattern) {
+          queue.add(((BinaryPattern)p).getOperand2());
+          queue.add(((BinaryPattern)p).getOperand1());
+        }
+        else if (p instanceof OneOrMorePattern)
+          queue.add(((OneOrMorePattern)p).getOperand());
+        else if (p instanceof ListPattern)
+          queue.add(((ListPattern)p).getOperand());
+        else if (p instanceof AttributePattern)
+          queue.add(((AttributePattern)p).getContent());
+        else if (p instanceof DataExceptPattern)
+          queue.add(((DataExceptPattern)p).getExcept());
+      }
+    }
+
+    private void writePattern(Pattern p) throws IOException {
+      while (p instanceof RefPattern)
+        p = ((RefPattern)p).getPattern();
+      Integer id = written.get(p);
+      if (id != null) {
+        out.writeByte(BACK_REF);
+        writeVarInt(out, id);
+        return;
+      }
+      if (p instanceof ElementPattern) {
+        out.writeByte(ELEMENT);
+        writeVarInt(out, elementIds.get(p));
+      }
+      else if (p instanceof EmptyPattern)
+        out.writeByte(EMPTY);
+      else if (p instanceof NotAllowedPattern)
+        out.writeByte(NOT_ALLOWED);
+      else if (p instanceof ErrorPattern)
+        out.writeByte(ERROR);
+      else if (p instanceof TextPattern)
+        out.writeByte(TEXT);
+      else if (p instanceof GroupPattern || p instanceof InterleavePattern || p instanceof ChoicePattern) {
+        out.writeByte(p instanceof GroupPattern ? GROUP : p instanceof InterleavePattern ? INTERLEAVE : CHOICE);
+        writePattern(((BinaryPattern)p).getOperand1());
+        writePattern(((BinaryPattern)p).getOperand2());
+      }
+      else if (p instanceof OneOrMorePattern) {
+        out.writeByte(ONE_OR_MORE);
+        writePattern(((OneOrMorePattern)p).getOperand());
+      }
+      else if (p instanceof ListPattern) {
+        out.writeByte(LIST);
+        writeLocator(((ListPattern)p).getLocator());
+        writePattern(((ListPattern)p).getOperand());
+      }
+      else if (p instanceof AttributePattern) {
+        AttributePattern ap = (AttributePattern)p;
+        out.writeByte(ATTRIBUTE);
+        writeNameClass(ap.getNameClass());
+        writeLocator(ap.getLocator());
+        writeString(ap.getDefaultValue());
+        writePattern(ap.getContent());
+      }
+      else if (p instanceof DataExceptPattern) {
+        DataExceptPattern dp = (DataExceptPattern)p;
+        out.writeByte(DATA_EXCEPT);
+        writeData(dp);
+        writeLocator(dp.getLocator());
+        writePattern(dp.getExcept());
+      }
+      else if (p instanceof DataPattern) {
+        out.writeByte(DATA);
+        writeData((DataPattern)p);
+      }
+      else if (p instanceof ValuePattern)
+        writeValue((ValuePattern)p);
+      else
+        throw new IOException("cannot write " + p.getClass().getName());
+      written.put(p, written.size());
+    }
+
+    private void writeData(DataPattern p) throws IOException {
+      writeName(p.getDatatypeName());
+      List<String> params = p.getParams();
+      writeVarInt(out, params.size());
+      for (String param : params)
+        writeString(param);
+    }
+
+    private void writeValue(ValuePattern p) throws IOException {
+      Datatype dt = p.getDatatype();
+      String stringValue = p.getStringValue();
+      String ns = null;
+      if (dt.isContextDependent()) {
+        Object value = p.getValue();
+        if (!(value instanceof Name))
+          throw new IOException("cannot write context dependent value " + stringValue);
+        ns = ((Name)value).getNamespaceUri();
+      }
+      out.writeByte(VALUE);
+      writeName(p.getDatatypeName());
+      writeString(stringValue);
+      writeString(ns);
+    }
+
+    private void writeName(Name name) throws IOException {
+      writeString(name.getNamespaceUri());
+      writeString(name.getLocalName());
+    }
+
+    private void writeString(String s) throws IOException {
+      if (s == null) {
+        writeVarInt(out, 0);
+        return;
+      }
+      Integer index = strings.get(s);
+      if (index != null)
+        writeVarInt(out, index + 2);
+      else {
+        strings.put(s, strings.size());
+        writeVarInt(out, 1);
+        out.writeUTF(s);
+      }
+    }
+
+    private void writeLocator(Locator loc) throws IOException {
+      if (loc == null) {
+        out.writeBoolean(false);
+        return;
+      }
+      out.writeBoolean(true);
+      writeString(loc.getSystemId());
+      writeVarInt(out, loc.getLineNumber() + 1);
+      writeVarInt(out, loc.getColumnNumber() + 1);
+    }
+
+    private void writeNameClass(NameClass nc) throws IOException {
+      nc.accept(this);
+      if (error != null)
+        throw error;
+    }
+
+    private void tag(byte tag) {
+      try {
+        out.writeByte(tag);
+      }
+      catch (IOException e) {
+        error = e;
+      }
+    }
+
+    public void visitChoice(NameClass nc1, NameClass nc2) {
+      tag(NC_CHOICE);
+      nc1.accept(this);
+      nc2.accept(this);
+    }
+
+    public void visitNsName(String ns) {
+      tag(NC_NS_NAME);
+      try {
+        writeString(ns);
+      }
+      catch (IOException e) {
+        error = e;
+      }
+    }
+
+    public void visitNsNameExcept(String ns, NameClass nc) {
+      tag(NC_NS_NAME_EXCEPT);
+      try {
+        writeString(ns);
+      }
+      catch (IOException e) {
+        error = e;
+      }
+      nc.accept(this);
+    }
+
+    public void visitAnyName() {
+      tag(NC_ANY_NAME);
+    }
+
+    public void visitAnyNameExcept(NameClass nc) {
+      tag(NC_ANY_NAME_EXCEPT);
+      nc.accept(this);
+    }
+
+    public void visitName(Name name) {
+      tag(NC_NAME);
+      try {
+        writeName(name);
+      }
+      catch (IOException e) {
+        error = e;
+      }
+    }
+
+    public void visitNull() {
+      tag(NC_NULL);
+    }
+
+    public void visitError() {
+      tag(NC_ERROR);
+    }
+  }
+
+  static private class Reader {
+    private final DataInput in;
+    private final DatatypeLibraryFactory datatypeLibraryFactory;
+    private final SchemaPatternBuilder spb;
+    private final List<String> strings = new ArrayList<String>();
+    private final List<Pattern> patterns = new ArrayList<Pattern>();
+    private final Map<String, DatatypeLibrary> libraries = new HashMap<String, DatatypeLibrary>();
+    private Pattern[] elements;
+    private RefPattern[] contents;
+
+    Reader(DataInput in, DatatypeLibraryFactory datatypeLibraryFactory, SchemaPatternBuilder spb) {
+      this.in = in;
+      this.datatypeLibraryFactory = datatypeLibraryFactory;
+      this.spb = spb;
+    }
+
+    Pattern readAll() throws IOException {
+      int count = readVarInt(in);
+      elements = new Pattern[count];
+      contents = new RefPattern[count];
+      for (int i = 0; i < count; i++) {
+        NameClass nc = readNameClass();
+        Locator loc = readLocator();
+        // the content is not known yet; it is filled in below and substituted when the start pattern is expanded
+        contents[i] = new RefPattern("element" + i);
+        elements[i] = spb.makeElement(nc, contents[i], loc);
+      }
+      Pattern start = readPattern();
+      for (int i = 0; i < count; i++)
+        contents[i].setPattern(readPattern());
+      return start.expand(spb);
+    }
+
+    private Pattern readPattern() throws IOException {
+      byte tag = in.readByte();
+      Pattern p;
+      switch (tag) {
+      case BACK_REF: {
+        int id = readVarInt(in);
+        if (id >= patterns.size())
+          throw new IOException("malformed pattern reference");
+        return patterns.get(id);
+      }
+      case ELEMENT: {
+        int id = readVarInt(in);
+        if (id >= elements.length)
+          throw new IOException("malformed element reference");
+        p = elements[id];
+        break;
+      }
+      case EMPTY:
+        p = spb.makeEmpty();
+        break;
+      case NOT_ALLOWED:
+        p = spb.makeNotAllowed();
+        break;
+      case ERROR:
+        p = spb.makeError();
+        break;
+      case TEXT:
+        p = spb.makeText();
+        break;
+      case GROUP: {
+        Pattern p1 = readPattern();
+        p = spb.makeGroup(p1, readPattern());
+        break;
+      }
+      case INTERLEAVE: {
+        Pattern p1 = readPattern();
+        p = spb.makeInterleave(p1, readPattern());
+        break;
+      }
+      case CHOICE: {
+        Pattern p1 = readPattern();
+        p = spb.makeChoice(p1, readPattern());
+        break;
+      }
+      case ONE_OR_MORE:
+        p = spb.makeOneOrMore(readPattern());
+        break;
+      case LIST: {
+        Locator loc = readLocator();
+        p = spb.makeList(readPattern(), loc);
+        break;
+      }
+      case ATTRIBUTE: {
+        NameClass nc = readNameClass();
+        Locator loc = readLocator();
+        String defaultValue = readString();
+        p = spb.makeAttribute(nc, readPattern(), loc, defaultValue);
+        break;
+      }
+      case DATA: {
+        Name dtName = readName();
+        List<String> params = readParams();
+        p = spb.makeData(createDatatype(dtName, params), dtName, params);
+        break;
+      }
+      case DATA_EXCEPT: {
+        Name dtName = readName();
+        List<String> params = readParams();
+        Locator loc = readLocator();
+        p = spb.makeDataExcept(createDatatype(dtName, params), dtName, params, readPattern(), loc);
+        break;
+      }
+      case VALUE:
+        p = readValue();
+        break;
+      default:
+        throw new IOException("unknown pattern tag " + tag);
+      }
+      patterns.add(p);
+      return p;
+    }
+
+    private List<String> readParams() throws IOException {
+      int size = readVarInt(in);
+      if (size % 2 != 0)
+        throw new IOException("malformed datatype parameters");
+      List<String> params = new ArrayList<String>(size);
+      for (int i = 0; i < size; i++)
+        params.add(readString());
+      return params;
+    }
+
+    private Pattern readValue() throws IOException {
+      Name dtName = readName();
+      String stringValue = readString();
+      final String ns = readString();
+      Datatype dt = createDatatype(dtName, null);
+      Object value = dt.createValue(stringValue, new RestoredContext() {
+        public String resolveNamespacePrefix(String prefix) {
+          return ns;
+        }
+      });
+      if (value == null)
+        throw new IOException("invalid value " + stringValue);
+      return spb.makeValue(dt, dtName, value, stringValue);
+    }
+
+    private Datatype createDatatype(Name dtName, List<String> params) throws IOException {
+      String uri = dtName.getNamespaceUri();
+      DatatypeLibrary library = libraries.get(uri);
+      if (library == null) {
+        library = datatypeLibraryFactory.createDatatypeLibrary(uri);
+        if (library == null)
+          throw new IOException("unrecognized datatype library " + uri);
+        libraries.put(uri, library);
+      }
+      try {
+        DatatypeBuilder builder = library.createDatatypeBuilder(dtName.getLocalName());
+        if (params != null) {
+          RestoredContext context = new RestoredContext();
+          for (int i = 0; i < params.size(); i += 2)
+            builder.addParameter(params.get(i), params.get(i + 1), context);
+        }
+        return builder.createDatatype();
+      }
+      catch (DatatypeException e) {
+        throw new IOException("cannot create datatype " + dtName.getLocalName(), e);
+      }
+    }
+
+    private Name readName() throws IOException {
+      String ns = readString();
+      return new Name(ns, readString());
+    }
+
+    private String readString() throws IOException {
+      int code = readVarInt(in);
+      if (code == 0)
+        return null;
+      if (code == 1) {
+        String s = in.readUTF();
+        strings.add(s);
+        return s;
+      }
+      if (code - 2 >= strings.size())
+        throw new IOException("malformed string reference");
+      return strings.get(code - 2);
+    }
+
+    private Locator readLocator() throws IOException {
+      if (!in.readBoolean())
+        return null;
+      LocatorImpl loc = new LocatorImpl();
+      loc.setSystemId(readString());
+      loc.setLineNumber(readVarInt(in) - 1);
+      loc.setColumnNumber(readVarInt(in) - 1);
+      return loc;
+    }
+
+    private NameClass readNameClass() throws IOException {
+      byte tag = in.readByte();
+      switch (tag) {
+      case NC_NAME:
+        return new SimpleNameClass(readName());
+      case NC_NS_NAME:
+        return new NsNameClass(readString());
+      case NC_NS_NAME_EXCEPT: {
+        String ns = readString();
+        return new NsNameExceptNameClass(ns, readNameClass());
+      }
+      case NC_ANY_NAME:
+        return new AnyNameClass();
+      case NC_ANY_NAME_EXCEPT:
+        return new AnyNameExceptNameClass(readNameClass());
+      case NC_CHOICE: {
+        NameClass nc1 = readNameClass();
+        return new ChoiceNameClass(nc1, readNameClass());
+      }
+      case NC_NULL:
+        return new NullNameClass();
+      case NC_ERROR:
+        return new ErrorNameClass();
+      default:
+        throw new IOException("unknown name class tag " + tag);
+      }
+    }
+  }
+
+  static private class RestoredContext implements ValidationContext {
+    public String resolveNamespacePrefix(String prefix) {
+      return null;
+    }
+
+    public String getBaseUri() {
+      return null;
+    }
+
+    public boolean isUnparsedEntity(String entityName) {
+      return false;
+    }
+
+    public boolean isNotation(String notationName) {
+      return false;
+    }
+  }
+}
@@ -0,0 +1,125 @@
+package com.thaiopensource.relaxng.pattern;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the derivatives computed while validating one document around for the next documents
+ * validated against the same schema.
+ * <p>
+ * Computing derivatives mutates the pattern memos as well as the interner of a
+ * ValidatorPatternBuilder, so a builder is never used by two validators at the same time.
+ * Instead, a validator takes a builder with warm memos from this pool and hands it back
+ * when it is done. Builders whose memo table has grown beyond the limit are dropped rather
+ * than returned, which bounds the memory held per schema.
+ * <p>
+ * Only schemas read through the validate API with {@code RngProperty.SHARED_PATTERN_MEMO} use one.
+ * The JAXP {@code SchemaImpl}, the JARV schemas and {@link MatchablePatternImpl} still give each
+ * validator or matcher a builder of its own: nothing tells them when a validator is done with a
+ * document, so a builder could never be handed back.
+ */
+public class SharedPatternMemo {
+  static private final int DEFAULT_MAX_PATTERNS = 20000;
+
+  private final SchemaPatternBuilder spb;
+  private final int maxPatterns;
+  private final int maxIdleBuilders;
+  private final Deque<ValidatorPatternBuilder> idleBuilders = new ArrayDeque<ValidatorPatternBuilder>();
+  private final AtomicLong hitCount = new AtomicLong();
+  private final AtomicLong missCount = new AtomicLong();
+  private final AtomicLong reuseCount = new AtomicLong();
+  private final AtomicLong discardCount = new AtomicLong();
+
+  public SharedPatternMemo(SchemaPatternBuilder spb) {
+    this(spb, DEFAULT_MAX_PATTERNS, Runtime.getRuntime().availableProcessors());
+  }
+
+  public SharedPatternMemo(SchemaPatternBuilder spb, int maxPatterns, int maxIdleBuilders) {
+    this.spb = spb;
+    this.maxPatterns = maxPatterns;
+    this.maxIdleBuilders = maxIdleBuilders;
+  }
+
+  /**
+   * The returned builder is owned by the caller until it is passed to {@link #release}.
+   */
+  public ValidatorPatternBuilder acquire() {
+    ValidatorPatternBuilder builder;
+    synchronized (idleBuilders) {
+      builder = idleBuilders.pollFirst();
+    }
+    if (builder == null)
+      return new ValidatorPatternBuilder(spb);
+    reuseCount.incrementAndGet();
+    return builder;
+  }
+
+  /**
+   * Like {@link #acquire()}, but hands out <code>preferred</code> if it is idle.  Matcher states are only
+   * meaningful to the builder that computed them, so a caller that kept states from an earlier run can go on
+   * using them when it gets the same builder back.
+   */
+  public ValidatorPatternBuilder acquire(ValidatorPatternBuilder preferred) {
+    boolean idle;
+    synchronized (idleBuilders) {
+      idle = idleBuilders.remove(preferred);
+    }
+    if (!idle)
+      return acquire();
+    reuseCount.incrementAndGet();
+    return preferred;
+  }
+
+  public void release(ValidatorPatternBuilder builder) {
+    hitCount.addAndGet(builder.getMemoHitCount());
+    missCount.addAndGet(builder.getMemoMissCount());
+    builder.resetMemoCounts();
+    if (builder.getPatternMemoCount() > maxPatterns) {
+      discardCount.incrementAndGet();
+      return;
+    }
+    synchronized (idleBuilders) {
+      if (idleBuilders.size() < maxIdleBuilders) {
+        // most recently used first, so that the warmest builder is handed out next
+        idleBuilders.addFirst(builder);
+        return;
+      }
+    }
+    discardCount.incrementAndGet();
+  }
+
+  /**
+   * Number of pattern memo lookups that found an already computed memo.
+   */
+  public long getHitCount() {
+    return hitCount.get();
+  }
+
+  /**
+   * Number of pattern memo lookups that had to create a new memo.
+   */
+  public long getMissCount() {
+    return missCount.get();
+  }
+
+  /**
+   * Number of times a validator started with a builder that had been used before.
+   */
+  public long getReuseCount() {
+    return reuseCount.get();
+  }
+
+  /**
+   * Number of builders thrown away because they exceeded the size limit or the pool was full.
+   */
+  public long getDiscardCount() {
+    return discardCount.get();
+  }
+
+  public void clear() {
+    synchronized (idleBuilders) {
+      idleBuilders.clear();
+    }
+  }
+}
@@ -9,6 +9,8 @@ import java.util.Set;
 
 public class ValidatorPatternBuilder extends PatternBuilder {
   private final Map<Pattern, PatternMemo> patternMemoMap = new HashMap<Pattern, PatternMemo>();
+  private long memoHitCount;
+  private long memoMissCount;
   private final PatternFunction<Pattern> endAttributesFunction;
   private final PatternFunction<Pattern> ignoreMissingAttributesFunction;
   private final PatternFunction<Pattern> endTagDerivFunction;
@@ -73,12 +75,32 @@ public class ValidatorPatternBuilder extends PatternBuilder {
   PatternMemo getPatternMemo(Pattern p) {
     PatternMemo memo = patternMemoMap.get(p);
     if (memo == null) {
+      memoMissCount++;
       memo = new PatternMemo(p, this);
       patternMemoMap.put(p, memo);
     }
+    else
+      memoHitCount++;
     return memo;
   }
 
+  int getPatternMemoCount() {
+    return patternMemoMap.size();
+  }
+
+  long getMemoHitCount() {
+    return memoHitCount;
+  }
+
+  long getMemoMissCount() {
+    return memoMissCount;
+  }
+
+  void resetMemoCounts() {
+    memoHitCount = 0;
+    memoMissCount = 0;
+  }
+
   PatternFunction<Pattern> getEndAttributesFunction() {
     return endAttributesFunction;
   }
@@ -104,6 +104,25 @@ public class PatternValidator extends Context implements ContentHandler, DTDHand
     this.eh = eh;
   }
 
+  /**
+   * Returns a copy of the current matcher state, or null while character data is being
+   * buffered, in which case the state can't be captured.
+   */
+  public Matcher saveState() {
+    if (bufferingCharacters)
+      return null;
+    return matcher.copy();
+  }
+
+  public void restoreState(Matcher state) {
+    bufferingCharacters = false;
+    matcher = state.copy();
+  }
+
+  protected void setBuilder(Pattern pattern, ValidatorPatternBuilder builder) {
+    this.matcher = new PatternMatcher(pattern, builder);
+  }
+
   public void reset() {
     super.reset();
     bufferingCharacters = false;
@@ -0,0 +1,331 @@
+package com.thaiopensource.validate;
+
+import com.thaiopensource.util.PropertyMap;
+import com.thaiopensource.util.PropertyMapBuilder;
+import com.thaiopensource.validate.auto.AutoSchemaReader;
+import com.thaiopensource.xml.sax.CountingErrorHandler;
+import com.thaiopensource.xml.sax.ErrorHandlerImpl;
+import org.xml.sax.DTDHandler;
+import org.xml.sax.ErrorHandler;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+import org.xml.sax.XMLReader;
+
+import javax.xml.transform.sax.SAXSource;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Validates many documents against a single schema using several threads.  The schema is loaded
+ * once and shared by all threads, since a <code>Schema</code> is safe for concurrent access; each
+ * thread has its own <code>XMLReader</code> and <code>Validator</code>, which are reused for all the
+ * documents it validates.
+ * <p>
+ * The errors of each document are collected while it is validated and reported together with
+ * its result, in the order in which the documents were supplied.  The <code>ErrorHandler</code> in the
+ * instance properties is not used, because it would be called from several threads at once.
+ * This class itself is neither reentrant nor safe for access from multiple threads.
+ *
+ * @see ValidationDriver
+ */
+public class BatchValidationDriver {
+  private final SchemaReader sr;
+  private final PropertyMap schemaProperties;
+  private final PropertyMap instanceProperties;
+  private final int threadCount;
+  private Schema schema;
+
+  /**
+   * The outcome of validating a single document.
+   */
+  public static class Result {
+    private final String systemId;
+    private final List<SAXParseException> errors;
+    private final List<SAXParseException> warnings;
+    private final IOException ioException;
+
+    Result(String systemId, List<SAXParseException> errors, List<SAXParseException> warnings, IOException ioException) {
+      this.systemId = systemId;
+      this.errors = Collections.unmodifiableList(errors);
+      this.warnings = Collections.unmodifiableList(warnings);
+      this.ioException = ioException;
+    }
+
+    /**
+     * @return the system id of the document, which may be <code>null</code>
+     */
+    public String getSystemId() {
+      return systemId;
+    }
+
+    /**
+     * @return <code>true</code> if the document could be read and is valid
+     */
+    public boolean isValid() {
+      return errors.isEmpty() && ioException == null;
+    }
+
+    /**
+     * @return the errors and fatal errors reported for the document
+     */
+    public List<SAXParseException> getErrors() {
+      return errors;
+    }
+
+    public List<SAXParseException> getWarnings() {
+      return warnings;
+    }
+
+    /**
+     * @return the exception that prevented the document from being read, or <code>null</code>
+     */
+    public IOException getIOException() {
+      return ioException;
+    }
+  }
+
+  /**
+   * Receives the result of each document, in the order in which the documents were supplied.
+   * Always called from the thread calling <code>validate</code>.
+   */
+  public interface ResultHandler {
+    /**
+     * @throws SAXException to stop validating any further documents
+     */
+    void result(Result result) throws SAXException;
+  }
+
+  /**
+   * Aggregate figures for one call of <code>validate</code>.
+   */
+  public static class Summary {
+    private final int documentCount;
+    private final int invalidCount;
+    private final long elapsedNanos;
+
+    Summary(int documentCount, int invalidCount, long elapsedNanos) {
+      this.documentCount = documentCount;
+      this.invalidCount = invalidCount;
+      this.elapsedNanos = elapsedNanos;
+    }
+
+    public int getDocumentCount() {
+      return documentCount;
+    }
+
+    public int getInvalidCount() {
+      return invalidCount;
+    }
+
+    public long getElapsedNanos() {
+      return elapsedNanos;
+    }
+
+    public double getDocumentsPerSecond() {
+      return elapsedNanos == 0 ? 0 : documentCount * 1e9 / elapsedNanos;
+    }
+  }
+
+  /**
+   * Creates and initializes a BatchValidationDriver.
+   *
+   * @param schemaProperties a PropertyMap specifying properties controlling schema creation;
+   * must not be <code>null</code>
+   * @param instanceProperties a PropertyMap specifying properties controlling validation;
+   * must not be <code>null</code>
+   * @param schemaReader the SchemaReader to use; if this is <code>null</code>, then the schema
+   * must be in XML, and the namespace URI of the root element will be used to determine what
+   * the schema language is
+   * @param threadCount the number of threads validating documents; must be positive
+   */
+  public BatchValidationDriver(PropertyMap schemaProperties,
+                               PropertyMap instanceProperties,
+                               SchemaReader schemaReader,
+                               int threadCount) {
+    if (threadCount <= 0)
+      throw new IllegalArgumentException("threadCount must be positive");
+    if (schemaProperties.get(ValidateProperty.ERROR_HANDLER) == null) {
+      PropertyMapBuilder builder = new PropertyMapBuilder(schemaProperties);
+      builder.put(ValidateProperty.ERROR_HANDLER, new ErrorHandlerImpl());
+      this.schemaProperties = builder.toPropertyMap();
+    }
+    else
+      this.schemaProperties = schemaProperties;
+    this.instanceProperties = instanceProperties;
+    this.sr = schemaReader == null ? new AutoSchemaReader() : schemaReader;
+    this.threadCount = threadCount;
+  }
+
+  /**
+   * Equivalent to BatchValidationDriver(properties, properties, sr, Runtime.getRuntime().availableProcessors()).
+   *
+   * @see #BatchValidationDriver(PropertyMap,PropertyMap,SchemaReader,int)
+   */
+  public BatchValidationDriver(PropertyMap properties, SchemaReader sr) {
+    this(properties, properties, sr, Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * Loads the schema subsequent calls to <code>validate</code> validate against.
+   *
+   * @param in the InputSource for the schema
+   * @return <code>true</code> if the schema was loaded successfully; <code>false</code> otherwise
+   * @throws IOException if an I/O error occurred
+   * @throws SAXException if an XMLReader or ErrorHandler threw a SAXException
+   */
+  public boolean loadSchema(InputSource in) throws SAXException, IOException {
+    try {
+      schema = sr.createSchema(new SAXSource(in), schemaProperties);
+      return true;
+    }
+    catch (IncorrectSchemaException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Validates documents against the currently loaded schema.  At most a few documents per thread
+   * are read ahead of the one whose result is reported next, so <code>inputs</code> may be produced
+   * lazily.
+   *
+   * @param inputs the documents to be validated
+   * @param handler receives the result of each document
+   * @return figures for all documents validated
+   * @throws java.lang.IllegalStateException if there is no currently loaded schema
+   * @throws SAXException if <code>handler</code> threw a SAXException, or an XMLReader threw
+   * a SAXException that isn't about the document being invalid
+   * @throws InterruptedException if the calling thread was interrupted
+   */
+  public Summary validate(Iterator<InputSource> inputs, ResultHandler handler)
+          throws SAXException, InterruptedException {
+    if (schema == null)
+      throw new IllegalStateException("cannot validate without schema");
+    final long start = System.nanoTime();
+    final ThreadLocal<Worker> workers = new ThreadLocal<Worker>();
+    ExecutorService executor = Executors.newFixedThreadPool(threadCount, new ThreadFactory() {
+      private int count = 0;
+
+      public synchronized Thread newThread(Runnable r) {
+        Thread thread = new Thread(r, "jing batch validation " + ++count);
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+    int documentCount = 0;
+    int invalidCount = 0;
+    try {
+      Deque<Future<Result>> pending = new ArrayDeque<Future<Result>>();
+      final int maxPending = threadCount * 4;
+      while (inputs.hasNext() || !pending.isEmpty()) {
+        while (pending.size() < maxPending && inputs.hasNext()) {
+          final InputSource in = inputs.next();
+          pending.add(executor.submit(new Callable<Result>() {
+            public Result call() throws SAXException {
+              Worker worker = workers.get();
+              if (worker == null) {
+                worker = new Worker();
+                workers.set(worker);
+              }
+              return worker.validate(in);
+            }
+          }));
+        }
+        Result result = getResult(pending.removeFirst());
+        documentCount++;
+        if (!result.isValid())
+          invalidCount++;
+        handler.result(result);
+      }
+    }
+    finally {
+      executor.shutdownNow();
+    }
+    return new Summary(documentCount, invalidCount, System.nanoTime() - start);
+  }
+
+  private static Result getResult(Future<Result> future) throws SAXException, InterruptedException {
+    try {
+      return future.get();
+    }
+    catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof SAXException)
+        throw (SAXException)cause;
+      if (cause instanceof RuntimeException)
+        throw (RuntimeException)cause;
+      if (cause instanceof Error)
+        throw (Error)cause;
+      throw new SAXException(cause.toString());
+    }
+  }
+
+  /**
+   * The reader and validator of one thread.
+   */
+  private class Worker {
+    private final CountingErrorHandler eh = new CountingErrorHandler();
+    private final Validator validator;
+    private final XMLReader xr;
+
+    Worker() throws SAXException {
+      PropertyMapBuilder builder = new PropertyMapBuilder(instanceProperties);
+      builder.put(ValidateProperty.ERROR_HANDLER, eh);
+      PropertyMap properties = builder.toPropertyMap();
+      validator = schema.createValidator(properties);
+      xr = ResolverFactory.createResolver(properties).createXMLReader();
+      xr.setErrorHandler(eh);
+    }
+
+    Result validate(InputSource in) throws SAXException {
+      final List<SAXParseException> errors = new ArrayList<SAXParseException>();
+      final List<SAXParseException> warnings = new ArrayList<SAXParseException>();
+      eh.reset();
+      eh.setErrorHandler(new ErrorHandler() {
+        public void warning(SAXParseException exception) {
+          warnings.add(exception);
+        }
+
+        public void error(SAXParseException exception) {
+          errors.add(exception);
+        }
+
+        public void fatalError(SAXParseException exception) {
+          errors.add(exception);
+        }
+      });
+      xr.setContentHandler(validator.getContentHandler());
+      DTDHandler dh = validator.getDTDHandler();
+      if (dh != null)
+        xr.setDTDHandler(dh);
+      IOException ioException = null;
+      try {
+        xr.parse(in);
+      }
+      catch (SAXParseException e) {
+        // already reported to the error handler unless the parser gave up on its own
+        if (!errors.contains(e))
+          errors.add(e);
+      }
+      catch (IOException e) {
+        ioException = e;
+      }
+      finally {
+        validator.reset();
+        eh.setErrorHandler(null);
+      }
+      return new Result(in.getSystemId(), errors, warnings, ioException);
+    }
+  }
+}
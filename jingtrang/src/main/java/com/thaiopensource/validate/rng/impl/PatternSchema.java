@@ -2,25 +2,46 @@ package com.thaiopensource.validate.rng.impl;
 
 import com.thaiopensource.relaxng.pattern.Pattern;
 import com.thaiopensource.relaxng.pattern.SchemaPatternBuilder;
+import com.thaiopensource.relaxng.pattern.SharedPatternMemo;
 import com.thaiopensource.relaxng.pattern.ValidatorPatternBuilder;
 import com.thaiopensource.util.PropertyMap;
 import com.thaiopensource.validate.AbstractSchema;
 import com.thaiopensource.validate.ValidateProperty;
 import com.thaiopensource.validate.Validator;
+import com.thaiopensource.validate.prop.rng.RngProperty;
 import org.xml.sax.ErrorHandler;
 
 public class PatternSchema extends AbstractSchema {
   private final SchemaPatternBuilder spb;
   private final Pattern start;
+  private final SharedPatternMemo sharedMemo;
 
   public PatternSchema(SchemaPatternBuilder spb, Pattern start, PropertyMap properties) {
     super(properties);
     this.spb = spb;
     this.start = start;
+    this.sharedMemo = properties.contains(RngProperty.SHARED_PATTERN_MEMO) ? new SharedPatternMemo(spb) : null;
+  }
+
+  public SchemaPatternBuilder getPatternBuilder() {
+    return spb;
+  }
+
+  public Pattern getStart() {
+    return start;
+  }
+
+  /**
+   * Returns null unless the schema was created with {@link RngProperty#SHARED_PATTERN_MEMO}.
+   */
+  public SharedPatternMemo getSharedMemo() {
+    return sharedMemo;
   }
 
   public Validator createValidator(PropertyMap properties) {
     ErrorHandler eh = properties.get(ValidateProperty.ERROR_HANDLER);
+    if (sharedMemo != null)
+      return new RngValidator(start, sharedMemo, eh);
     return new RngValidator(start, new ValidatorPatternBuilder(spb), eh);
   }
 }
@@ -2,15 +2,32 @@ package com.thaiopensource.validate.rng.impl;
 
 import com.thaiopensource.relaxng.sax.PatternValidator;
 import com.thaiopensource.relaxng.pattern.Pattern;
+import com.thaiopensource.relaxng.pattern.SharedPatternMemo;
 import com.thaiopensource.relaxng.pattern.ValidatorPatternBuilder;
 import com.thaiopensource.validate.Validator;
 import org.xml.sax.ErrorHandler;
 import org.xml.sax.ContentHandler;
 import org.xml.sax.DTDHandler;
+import org.xml.sax.SAXException;
 
 public class RngValidator extends PatternValidator implements Validator {
+  private final Pattern pattern;
+  private final SharedPatternMemo sharedMemo;
+  private ValidatorPatternBuilder builder;
+
   public RngValidator(Pattern pattern, ValidatorPatternBuilder builder, ErrorHandler eh) {
+    this(pattern, builder, null, eh);
+  }
+
+  public RngValidator(Pattern pattern, SharedPatternMemo sharedMemo, ErrorHandler eh) {
+    this(pattern, sharedMemo.acquire(), sharedMemo, eh);
+  }
+
+  private RngValidator(Pattern pattern, ValidatorPatternBuilder builder, SharedPatternMemo sharedMemo, ErrorHandler eh) {
     super(pattern, builder, eh);
+    this.pattern = pattern;
+    this.builder = builder;
+    this.sharedMemo = sharedMemo;
   }
 
   public ContentHandler getContentHandler() {
@@ -21,7 +38,33 @@ public class RngValidator extends PatternValidator implements Validator {
     return this;
   }
 
+  public void startDocument() throws SAXException {
+    reacquireBuilder();
+    super.startDocument();
+  }
+
+  public void endDocument() throws SAXException {
+    try {
+      super.endDocument();
+    }
+    finally {
+      // the builder may be in use by another validator from now on
+      if (sharedMemo != null && builder != null) {
+        sharedMemo.release(builder);
+        builder = null;
+      }
+    }
+  }
+
   public void reset() {
+    reacquireBuilder();
     super.reset();
   }
+
+  private void reacquireBuilder() {
+    if (sharedMemo != null && builder == null) {
+      builder = sharedMemo.acquire();
+      setBuilder(pattern, builder);
+    }
+  }
 }
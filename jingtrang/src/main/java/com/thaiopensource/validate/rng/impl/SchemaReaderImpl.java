@@ -45,6 +45,7 @@ public abstract class SchemaReaderImpl extends AbstractSchemaReader {
     RngProperty.DATATYPE_LIBRARY_FACTORY,
     RngProperty.CHECK_ID_IDREF,
     RngProperty.FEASIBLE,
+    RngProperty.SHARED_PATTERN_MEMO,
     WrapProperty.ATTRIBUTE_OWNER,
   };
 
@@ -101,7 +102,11 @@ public abstract class SchemaReaderImpl extends AbstractSchemaReader {
     }
   }
 
-  static Schema wrapPattern(Pattern start, SchemaPatternBuilder spb, PropertyMap properties) throws SAXException, IncorrectSchemaException {
+  /**
+   * Creates a schema for an already simplified start pattern, e.g. one restored by
+   * {@link com.thaiopensource.relaxng.pattern.PatternSerializer}.
+   */
+  public static Schema wrapPattern(Pattern start, SchemaPatternBuilder spb, PropertyMap properties) throws SAXException, IncorrectSchemaException {
     if (properties.contains(RngProperty.FEASIBLE))
       start = FeasibleTransform.transform(spb, start);
     properties = new SimplifiedSchemaPropertyMap(AbstractSchema.filterProperties(properties, supportedPropertyIds),
@@ -11,12 +11,9 @@ import com.thaiopensource.validate.ResolverFactory;
 import com.thaiopensource.validate.Schema;
 import com.thaiopensource.validate.ValidateProperty;
 import com.thaiopensource.validate.Validator;
-import com.thaiopensource.validate.prop.rng.RngProperty;
 import com.thaiopensource.validate.prop.schematron.SchematronProperty;
-import com.thaiopensource.validate.rng.CompactSchemaReader;
 import com.thaiopensource.xml.sax.CountingErrorHandler;
 import com.thaiopensource.xml.sax.DelegatingContentHandler;
-import com.thaiopensource.xml.sax.DraconianErrorHandler;
 import org.xml.sax.Attributes;
 import org.xml.sax.ContentHandler;
 import org.xml.sax.ErrorHandler;
@@ -38,9 +35,7 @@ import javax.xml.transform.sax.SAXSource;
 import javax.xml.transform.sax.SAXTransformerFactory;
 import javax.xml.transform.sax.TemplatesHandler;
 import javax.xml.transform.sax.TransformerHandler;
-import javax.xml.transform.stream.StreamSource;
 import java.io.IOException;
-import java.io.InputStream;
 
 class ISOSchemaReaderImpl extends AbstractSchemaReader {
   static final String SCHEMATRON_URI = "http://purl.oclc.org/dsdl/schematron";
@@ -75,16 +70,9 @@ class ISOSchemaReaderImpl extends AbstractSchemaReader {
     this.transformerFactoryInitializer = transformerFactoryInitializer;
     final boolean isXsltc = isXsltc(transformerFactoryClass);
     final String stylesheet = isXsltc ? SCHEMATRON_XSLTC_STYLESHEET : SCHEMATRON_STYLESHEET;
-    final String resourceName = fullResourceName(stylesheet);
-    final StreamSource source = new StreamSource(getResourceAsStream(resourceName));
-    initTransformerFactory(transformerFactory);
-    schematron = transformerFactory.newTemplates(source);
-    InputSource schemaSource = new InputSource(getResourceAsStream(fullResourceName(SCHEMATRON_SCHEMA)));
-    PropertyMapBuilder builder = new PropertyMapBuilder();
-    builder.put(ValidateProperty.ERROR_HANDLER, new DraconianErrorHandler());
-    RngProperty.CHECK_ID_IDREF.add(builder);
+    schematron = TemplatesCache.getSkeleton(transformerFactory, transformerFactoryInitializer, fullResourceName(stylesheet));
     try {
-      schematronSchema = CompactSchemaReader.getInstance().createSchema(schemaSource, builder.toPropertyMap());
+      schematronSchema = TemplatesCache.getSchematronSchema(fullResourceName(SCHEMATRON_SCHEMA));
     }
     catch (SAXException e) {
       throw new IncorrectSchemaException();
@@ -338,7 +326,11 @@ class ISOSchemaReaderImpl extends AbstractSchemaReader {
             throws IOException, SAXException, IncorrectSchemaException {
     ErrorHandler eh = properties.get(ValidateProperty.ERROR_HANDLER);
     CountingErrorHandler ceh = new CountingErrorHandler(eh);
-    InputSource in = source.getInputSource();
+    TemplatesCache.Key key = TemplatesCache.createKey(schematron, source.getInputSource(), properties);
+    Templates cached = TemplatesCache.getSchema(key);
+    if (cached != null)
+      return new SchemaImpl(cached, transformerFactoryClass, properties, supportedPropertyIds);
+    InputSource in = key.getInputSource();
     String systemId = in.getSystemId();
     IfValidHandler ifValidHandler = new IfValidHandler();
     ifValidHandler.setErrorHandler(ceh);
@@ -379,6 +371,9 @@ class ISOSchemaReaderImpl extends AbstractSchemaReader {
       Templates templates = templatesHandler.getTemplates();
       if (ceh.getHadErrorOrFatalError())
         throw new IncorrectSchemaException();
+      // a hit wouldn't repeat the warnings
+      if (ceh.getWarningCount() == 0)
+        TemplatesCache.putSchema(key, templates);
       return new SchemaImpl(templates,
                             transformerFactoryClass,
                             properties,
@@ -403,15 +398,6 @@ class ISOSchemaReaderImpl extends AbstractSchemaReader {
     return className.substring(0, className.lastIndexOf('.')).replace('.', '/') + "/resources/" + name;
   }
 
-  private static InputStream getResourceAsStream(String resourceName) {
-    ClassLoader cl = ISOSchemaReaderImpl.class.getClassLoader();
-    // XXX see if we should borrow 1.2 code from Service
-    if (cl == null)
-      return ClassLoader.getSystemResourceAsStream(resourceName);
-    else
-      return cl.getResourceAsStream(resourceName);
-  }
-
   private static SAXException cleanupSAXException(SAXException saxException) {
     if (exceptionHasLocation(saxException))
       return saxException;
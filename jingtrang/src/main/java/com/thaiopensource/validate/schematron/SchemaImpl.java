@@ -6,11 +6,27 @@ import com.thaiopensource.validate.AbstractSchema;
 import com.thaiopensource.validate.Validator;
 
 import javax.xml.transform.Templates;
+import javax.xml.transform.TransformerConfigurationException;
 import javax.xml.transform.sax.SAXTransformerFactory;
+import javax.xml.transform.sax.TransformerHandler;
 
 class SchemaImpl extends AbstractSchema {
   private final Templates templates;
   private final Class<? extends SAXTransformerFactory> factoryClass;
+  // a TransformerFactory must not be used by multiple threads at once, so each thread gets its own
+  private final ThreadLocal<SAXTransformerFactory> factories = new ThreadLocal<SAXTransformerFactory>() {
+    protected SAXTransformerFactory initialValue() {
+      try {
+        return factoryClass.newInstance();
+      }
+      catch (InstantiationException e) {
+        throw new RuntimeException("unexpected InstantiationException creating SAXTransformerFactory");
+      }
+      catch (IllegalAccessException e) {
+        throw new RuntimeException("unexpected IllegalAccessException creating SAXTransformerFactory");
+      }
+    }
+  };
 
   SchemaImpl(Templates templates, Class<? extends SAXTransformerFactory> factoryClass,
              PropertyMap properties, PropertyId<?>[] supportedPropertyIds) {
@@ -20,14 +36,17 @@ class SchemaImpl extends AbstractSchema {
   }
 
   public Validator createValidator(PropertyMap properties) {
-    try {
-      return new ValidatorImpl(templates, factoryClass.newInstance(), properties);
-    }
-    catch (InstantiationException e) {
-      throw new RuntimeException("unexpected InstantiationException creating SAXTransformerFactory");
-    }
-    catch (IllegalAccessException e) {
-      throw new RuntimeException("unexpected IllegalAccessException creating SAXTransformerFactory");
-    }
+    return new ValidatorImpl(this, properties);
+  }
+
+  /**
+   * A <code>TransformerHandler</code> runs a single transformation, so one is needed for every document.
+   */
+  TransformerHandler newTransformerHandler() throws TransformerConfigurationException {
+    return factories.get().newTransformerHandler(templates);
+  }
+
+  boolean isXsltc() {
+    return SchemaReaderImpl.isXsltc(factoryClass);
   }
 }
@@ -0,0 +1,232 @@
+package com.thaiopensource.validate.schematron;
+
+import com.thaiopensource.util.PropertyMap;
+import com.thaiopensource.util.PropertyMapBuilder;
+import com.thaiopensource.validate.IncorrectSchemaException;
+import com.thaiopensource.validate.ResolverFactory;
+import com.thaiopensource.validate.Schema;
+import com.thaiopensource.validate.ValidateProperty;
+import com.thaiopensource.validate.prop.rng.RngProperty;
+import com.thaiopensource.validate.prop.schematron.SchematronProperty;
+import com.thaiopensource.validate.rng.CompactSchemaReader;
+import com.thaiopensource.xml.sax.DraconianErrorHandler;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+
+import javax.xml.transform.Templates;
+import javax.xml.transform.TransformerConfigurationException;
+import javax.xml.transform.sax.SAXTransformerFactory;
+import javax.xml.transform.stream.StreamSource;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.CharArrayReader;
+import java.io.CharArrayWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compiled stylesheets shared by all Schematron schema readers.
+ * <p>
+ * The skeleton stylesheet, which turns a Schematron schema into a validating stylesheet, and the RELAX NG schema
+ * for Schematron schemas are compiled once per transformer factory class instead of once per reader.  The
+ * validating stylesheets are kept in a small LRU cache keyed by the content, system id, phase and diagnose setting
+ * of the schema they were compiled from, so reading the same schema again neither runs the skeleton nor compiles
+ * its output.  <code>Templates</code> may be used from multiple threads, so can all of these.
+ * <p>
+ * A schema with a DOCTYPE or anything that looks like an include may depend on other documents and is never cached.
+ * The cache can be turned off with <code>-Djing.schematron.cache=false</code>.
+ */
+class TemplatesCache {
+  static private final boolean ENABLED = Boolean.parseBoolean(System.getProperty("jing.schematron.cache", "true"));
+  static private final int MAX_SCHEMAS = 32;
+  static private final String[] UNCACHEABLE = { "<!DOCTYPE", "include", "extends" };
+
+  // the initializer is assumed to set up all factories of a class the same way
+  static private final Map<List<Object>, Templates> skeletons = new HashMap<List<Object>, Templates>();
+  static private final Map<String, Schema> schematronSchemas = new HashMap<String, Schema>();
+  static private final Map<List<Object>, Templates> schemas = new LinkedHashMap<List<Object>, Templates>(16, 0.75f, true) {
+    protected boolean removeEldestEntry(Map.Entry<List<Object>, Templates> eldest) {
+      return size() > MAX_SCHEMAS;
+    }
+  };
+
+  private TemplatesCache() { }
+
+  static Templates getSkeleton(SAXTransformerFactory factory, TransformerFactoryInitializer initializer, String resourceName)
+          throws TransformerConfigurationException {
+    List<Object> key = Arrays.<Object>asList(factory.getClass(), initializer.getClass(), resourceName);
+    synchronized (skeletons) {
+      Templates templates = skeletons.get(key);
+      if (templates != null)
+        return templates;
+    }
+    initializer.initTransformerFactory(factory);
+    Templates templates = factory.newTemplates(new StreamSource(getResourceAsStream(resourceName)));
+    synchronized (skeletons) {
+      Templates existing = skeletons.get(key);
+      if (existing != null)
+        return existing;
+      skeletons.put(key, templates);
+    }
+    return templates;
+  }
+
+  static Schema getSchematronSchema(String resourceName) throws IOException, SAXException, IncorrectSchemaException {
+    synchronized (schematronSchemas) {
+      Schema schema = schematronSchemas.get(resourceName);
+      if (schema != null)
+        return schema;
+    }
+    InputSource schemaSource = new InputSource(getResourceAsStream(resourceName));
+    PropertyMapBuilder builder = new PropertyMapBuilder();
+    builder.put(ValidateProperty.ERROR_HANDLER, new DraconianErrorHandler());
+    RngProperty.CHECK_ID_IDREF.add(builder);
+    Schema schema = CompactSchemaReader.getInstance().createSchema(schemaSource, builder.toPropertyMap());
+    synchronized (schematronSchemas) {
+      Schema existing = schematronSchemas.get(resourceName);
+      if (existing != null)
+        return existing;
+      schematronSchemas.put(resourceName, schema);
+    }
+    return schema;
+  }
+
+  /**
+   * Identifies the validating stylesheet compiled from a schema.  To compute it, the schema is read into memory;
+   * <code>getInputSource</code> returns the input to parse instead of the original one.
+   */
+  static class Key {
+    private final List<Object> id;
+    private final InputSource inputSource;
+
+    private Key(List<Object> id, InputSource inputSource) {
+      this.id = id;
+      this.inputSource = inputSource;
+    }
+
+    InputSource getInputSource() {
+      return inputSource;
+    }
+  }
+
+  static Key createKey(Templates skeleton, InputSource in, PropertyMap properties) throws IOException, SAXException {
+    if (!ENABLED)
+      return new Key(null, in);
+    in = ResolverFactory.createResolver(properties).open(in);
+    InputSource buffered = new InputSource();
+    buffered.setSystemId(in.getSystemId());
+    buffered.setPublicId(in.getPublicId());
+    buffered.setEncoding(in.getEncoding());
+    byte[] bytes;
+    String text;
+    if (in.getCharacterStream() != null) {
+      char[] chars = readAll(in.getCharacterStream());
+      buffered.setCharacterStream(new CharArrayReader(chars));
+      text = new String(chars);
+      bytes = text.getBytes(StandardCharsets.UTF_16BE);
+    }
+    else if (in.getByteStream() != null) {
+      bytes = readAll(in.getByteStream());
+      buffered.setByteStream(new ByteArrayInputStream(bytes));
+      // in UTF-16 the markup can't be searched for, so such schemas aren't cached
+      text = isAsciiCompatible(bytes) ? new String(bytes, StandardCharsets.ISO_8859_1) : null;
+    }
+    else
+      return new Key(null, in);
+    if (text == null || !isCacheable(text))
+      return new Key(null, buffered);
+    return new Key(Arrays.<Object>asList(skeleton,
+                                         in.getCharacterStream() != null,
+                                         ByteBuffer.wrap(digest(bytes)),
+                                         in.getSystemId(),
+                                         properties.get(SchematronProperty.PHASE),
+                                         properties.contains(SchematronProperty.DIAGNOSE)),
+                   buffered);
+  }
+
+  static Templates getSchema(Key key) {
+    if (key.id == null)
+      return null;
+    synchronized (schemas) {
+      return schemas.get(key.id);
+    }
+  }
+
+  static void putSchema(Key key, Templates templates) {
+    if (key.id == null)
+      return;
+    synchronized (schemas) {
+      schemas.put(key.id, templates);
+    }
+  }
+
+  static private boolean isCacheable(String text) {
+    for (int i = 0; i < UNCACHEABLE.length; i++)
+      if (text.indexOf(UNCACHEABLE[i]) >= 0)
+        return false;
+    return true;
+  }
+
+  static private boolean isAsciiCompatible(byte[] bytes) {
+    if (bytes.length >= 2
+        && ((bytes[0] == (byte)0xFE && bytes[1] == (byte)0xFF) || (bytes[0] == (byte)0xFF && bytes[1] == (byte)0xFE)))
+      return false;
+    for (int i = 0; i < bytes.length; i++)
+      if (bytes[i] == 0)
+        return false;
+    return true;
+  }
+
+  static private byte[] digest(byte[] bytes) {
+    try {
+      return MessageDigest.getInstance("SHA-1").digest(bytes);
+    }
+    catch (NoSuchAlgorithmException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  static private byte[] readAll(InputStream in) throws IOException {
+    try {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      byte[] buf = new byte[8192];
+      for (int n; (n = in.read(buf)) >= 0;)
+        out.write(buf, 0, n);
+      return out.toByteArray();
+    }
+    finally {
+      in.close();
+    }
+  }
+
+  static private char[] readAll(Reader in) throws IOException {
+    try {
+      CharArrayWriter out = new CharArrayWriter();
+      char[] buf = new char[8192];
+      for (int n; (n = in.read(buf)) >= 0;)
+        out.write(buf, 0, n);
+      return out.toCharArray();
+    }
+    finally {
+      in.close();
+    }
+  }
+
+  static private InputStream getResourceAsStream(String resourceName) {
+    ClassLoader cl = TemplatesCache.class.getClassLoader();
+    if (cl == null)
+      return ClassLoader.getSystemResourceAsStream(resourceName);
+    else
+      return cl.getResourceAsStream(resourceName);
+  }
+}
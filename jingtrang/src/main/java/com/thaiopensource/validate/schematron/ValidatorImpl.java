@@ -1,6 +1,5 @@
 package com.thaiopensource.validate.schematron;
 
-import com.thaiopensource.resolver.Resolver;
 import com.thaiopensource.resolver.xml.transform.Transform;
 import com.thaiopensource.util.PropertyMap;
 import com.thaiopensource.validate.ResolverFactory;
@@ -10,53 +9,56 @@ import org.xml.sax.ContentHandler;
 import org.xml.sax.DTDHandler;
 import org.xml.sax.ErrorHandler;
 
-import javax.xml.transform.Templates;
 import javax.xml.transform.TransformerConfigurationException;
+import javax.xml.transform.URIResolver;
 import javax.xml.transform.sax.SAXResult;
-import javax.xml.transform.sax.SAXTransformerFactory;
 import javax.xml.transform.sax.TransformerHandler;
 
 class ValidatorImpl implements Validator {
-  private final Templates templates;
-  private final SAXTransformerFactory factory;
+  private final SchemaImpl schema;
   private final ContentHandler outputHandler;
+  private final URIResolver uriResolver;
+  // created when a document starts rather than on reset, so that a validator that isn't used again costs nothing
   private TransformerHandler transformerHandler;
-  private final Resolver resolver;
 
-  ValidatorImpl(Templates templates, SAXTransformerFactory factory, PropertyMap properties) {
-    this.templates = templates;
-    this.factory = factory;
+  ValidatorImpl(SchemaImpl schema, PropertyMap properties) {
+    this.schema = schema;
     ErrorHandler eh = properties.get(ValidateProperty.ERROR_HANDLER);
     outputHandler = new OutputHandler(eh);
-    resolver = ResolverFactory.createResolver(properties).getResolver();
-    initTransformerHandler();
+    // When you specify a URIResolver, XSLTC uses a DOMCache, which
+    // doesn't seem to work too well.
+    if (!schema.isXsltc())
+      uriResolver = Transform.createSAXURIResolver(ResolverFactory.createResolver(properties).getResolver());
+    else
+      uriResolver = null;
   }
 
   public ContentHandler getContentHandler() {
-    return transformerHandler;
+    return getTransformerHandler();
   }
 
   public DTDHandler getDTDHandler() {
-    return transformerHandler;
+    return getTransformerHandler();
   }
 
   public void reset() {
-    initTransformerHandler();
+    transformerHandler = null;
   }
 
-  private void initTransformerHandler() {
-    try {
-      transformerHandler = factory.newTransformerHandler(templates);
-      // When you specify a URIResolver, XSLTC uses a DOMCache, which
-      // doesn't seem to work too well.
-      if (!SchemaReaderImpl.isXsltc(factory.getClass()))
-        transformerHandler.getTransformer().setURIResolver(Transform.createSAXURIResolver(resolver));
-      // XXX set up transformer with an ErrorListener that just throws
-      // XXX (what about errors from document() calls?)
+  private TransformerHandler getTransformerHandler() {
+    if (transformerHandler == null) {
+      try {
+        transformerHandler = schema.newTransformerHandler();
+        if (uriResolver != null)
+          transformerHandler.getTransformer().setURIResolver(uriResolver);
+        // XXX set up transformer with an ErrorListener that just throws
+        // XXX (what about errors from document() calls?)
+      }
+      catch (TransformerConfigurationException e) {
+        throw new RuntimeException("could not create transformer");
+      }
+      transformerHandler.setResult(new SAXResult(outputHandler));
     }
-    catch (TransformerConfigurationException e) {
-      throw new RuntimeException("could not create transformer");
-    }
-    transformerHandler.setResult(new SAXResult(outputHandler));
+    return transformerHandler;
   }
 }
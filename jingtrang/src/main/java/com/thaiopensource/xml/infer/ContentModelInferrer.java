@@ -13,6 +13,12 @@ public abstract class ContentModelInferrer {
 
   public abstract Set<Name> getElementNames();
 
+  /**
+   * Adds what <code>other</code> has inferred, as if its sequences had been added to this one after
+   * those already added.  Both must be between sequences.  <code>other</code> must not be used afterwards.
+   */
+  public abstract void merge(ContentModelInferrer other);
+
   public static ContentModelInferrer createContentModelInferrer() {
     return new ContentModelInferrerImpl();
   }
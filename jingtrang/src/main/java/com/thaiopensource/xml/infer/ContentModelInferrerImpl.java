@@ -7,6 +7,7 @@ import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 import java.util.Stack;
+import java.util.TreeSet;
 
 class ContentModelInferrerImpl extends ContentModelInferrer {
   private static final Name START = new Name("", "#start");
@@ -21,8 +22,10 @@ class ContentModelInferrerImpl extends ContentModelInferrer {
   private final SingleNode startNode;
   private final SingleNode endNode;
 
-  private static class SingleNode {
-    final Set<SingleNode> followingNodes = new HashSet<SingleNode>();
+  // Nodes are kept in sets ordered by index rather than by identity hash code, so that the
+  // inferred content model doesn't depend on where objects happen to be allocated.
+  private static class SingleNode implements Comparable<SingleNode> {
+    final Set<SingleNode> followingNodes = new TreeSet<SingleNode>();
     final Name name;
     final int index;
     boolean repeated = false;
@@ -31,18 +34,26 @@ class ContentModelInferrerImpl extends ContentModelInferrer {
       this.name = name;
       this.index = index;
     }
+
+    public int compareTo(SingleNode other) {
+      return index - other.index;
+    }
   }
 
-  private static class ParticleNode {
+  private static class ParticleNode implements Comparable<ParticleNode> {
     final int index;
     Particle particle;
     int refCount = 0;
-    Set<ParticleNode> followingNodes = new HashSet<ParticleNode>();
+    Set<ParticleNode> followingNodes = new TreeSet<ParticleNode>();
 
     ParticleNode(int index) {
       this.index = index;
     }
 
+    public int compareTo(ParticleNode other) {
+      return index - other.index;
+    }
+
     void addFollowing(ParticleNode p) {
       if (p != this) {
         if (!followingNodes.contains(p)) {
@@ -223,6 +234,26 @@ class ContentModelInferrerImpl extends ContentModelInferrer {
     prevNode = startNode;
   }
 
+  public void merge(ContentModelInferrer other) {
+    ContentModelInferrerImpl impl = (ContentModelInferrerImpl)other;
+    if (prevNode != startNode || impl.prevNode != impl.startNode)
+      throw new IllegalStateException();
+    // other numbers its nodes in the order in which they first occur, so looking them up in that
+    // order numbers the new ones here as if they had occurred here
+    SingleNode[] otherNodes = new SingleNode[impl.nameMap.size()];
+    for (SingleNode node : impl.nameMap.values())
+      otherNodes[node.index] = node;
+    SingleNode[] nodes = new SingleNode[otherNodes.length];
+    for (int i = 0; i < otherNodes.length; i++)
+      nodes[i] = lookup(otherNodes[i].name);
+    for (int i = 0; i < otherNodes.length; i++) {
+      if (otherNodes[i].repeated)
+        nodes[i].repeated = true;
+      for (SingleNode follower : otherNodes[i].followingNodes)
+        nodes[i].followingNodes.add(nodes[follower.index]);
+    }
+  }
+
   private SingleNode lookup(Name name) {
     SingleNode node = nameMap.get(name);
     if (node == null) {
@@ -37,6 +37,33 @@ class DatatypeInferrer {
       allWhiteSpace = false;
   }
 
+  /**
+   * Adds the values of <code>other</code> as if they had been added to this one.  Only the types that
+   * all values match are kept, and for these a value is typical no matter which inferrer it was added to.
+   */
+  void merge(DatatypeInferrer other) {
+    int nDeleted = 0;
+    for (int i = 0; i < nTypes; i++) {
+      if (!other.isPossible(possibleTypes[i]))
+        nDeleted++;
+      else if (nDeleted > 0) {
+        possibleTypes[i - nDeleted] = possibleTypes[i];
+        possibleTypes[i] = null;
+      }
+    }
+    nTypes -= nDeleted;
+    typicalMask |= other.typicalMask;
+    if (!other.allWhiteSpace)
+      allWhiteSpace = false;
+  }
+
+  private boolean isPossible(DatatypeRepertoire.Type type) {
+    for (int i = 0; i < nTypes; i++)
+      if (possibleTypes[i].getIndex() == type.getIndex())
+        return true;
+    return false;
+  }
+
   static boolean isWhiteSpace(String value) {
     for (int i = 0; i < value.length(); i++)
       switch (value.charAt(i)) {
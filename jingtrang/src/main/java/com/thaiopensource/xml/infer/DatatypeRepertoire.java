@@ -123,7 +123,7 @@ public class DatatypeRepertoire {
   private final Type[] types = new Type[typeNames.length];
   private int nTypes = 0;
 
-  DatatypeRepertoire(DatatypeLibraryFactory factory) {
+  public DatatypeRepertoire(DatatypeLibraryFactory factory) {
     DatatypeLibrary lib = factory.createDatatypeLibrary(WellKnownNamespaces.XML_SCHEMA_DATATYPES);
     if (lib == null)
       return;
@@ -106,6 +106,68 @@ class ElementDeclInferrer {
     }
   }
 
+  /**
+   * Adds what <code>other</code> has inferred from later documents, as if those documents had been
+   * added to this one after its own.  Between documents, the content is in one of three states, which
+   * only ever change from values to elements and from either to mixed content, so the result is the
+   * state that the elements of <code>other</code> would have left this one in.
+   * <code>other</code> must not be used afterwards.
+   */
+  void merge(ElementDeclInferrer other) {
+    requiredAttributeNames.retainAll(other.requiredAttributeNames);
+    for (Map.Entry<Name, DatatypeInferrer> entry : other.attributeTypeMap.entrySet()) {
+      DatatypeInferrer dt = attributeTypeMap.get(entry.getKey());
+      if (dt == null)
+        attributeTypeMap.put(entry.getKey(), entry.getValue());
+      else
+        dt.merge(entry.getValue());
+    }
+    if (mixedContentNames != null) {
+      if (other.mixedContentNames != null)
+        mixedContentNames.addAll(other.mixedContentNames);
+      else if (other.contentModelInferrer != null)
+        mixedContentNames.addAll(other.contentModelInferrer.getElementNames());
+    }
+    else if (contentModelInferrer != null) {
+      if (other.mixedContentNames != null) {
+        useMixedContent();
+        mixedContentNames.addAll(other.mixedContentNames);
+      }
+      else if (other.contentModelInferrer != null)
+        contentModelInferrer.merge(other.contentModelInferrer);
+      else if (other.valueInferrer != null) {
+        // the values of other would have been text added to this one's content model
+        if (other.valueInferrer.isAllWhiteSpace())
+          contentModelInferrer.endSequence();
+        else
+          useMixedContent();
+      }
+    }
+    else if (valueInferrer == null) {
+      contentModelInferrer = other.contentModelInferrer;
+      mixedContentNames = other.mixedContentNames;
+      valueInferrer = other.valueInferrer;
+    }
+    else if (other.mixedContentNames != null) {
+      useMixedContent();
+      mixedContentNames.addAll(other.mixedContentNames);
+    }
+    else if (other.contentModelInferrer != null) {
+      // as in addElement when the first element occurs
+      if (valueInferrer.isAllWhiteSpace()) {
+        contentModelInferrer = other.contentModelInferrer;
+        contentModelInferrer.endSequence();
+        valueInferrer = null;
+      }
+      else {
+        useMixedContent();
+        mixedContentNames.addAll(other.contentModelInferrer.getElementNames());
+      }
+    }
+    else if (other.valueInferrer != null)
+      valueInferrer.merge(other.valueInferrer);
+  }
+
   void addAttributeNames(List<Name> attributeNames) {
     requiredAttributeNames.retainAll(attributeNames);
   }
@@ -6,6 +6,8 @@ import org.xml.sax.Attributes;
 import org.xml.sax.SAXException;
 import org.xml.sax.helpers.DefaultHandler;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -13,6 +15,12 @@ import java.util.Map;
 import java.util.Set;
 import java.util.Vector;
 
+/**
+ * Infers a schema from the documents parsed with it as handler.  The documents can also be split up
+ * between several handlers, for example to parse them concurrently, and the handlers then merged in
+ * document order with <code>merge</code>; the resulting schema is the same as if a single handler
+ * had parsed all of them.
+ */
 public class InferHandler extends DefaultHandler {
   private final Map<Name, ElementDeclInferrer> inferrerMap = new HashMap<Name, ElementDeclInferrer>();
   private OpenElement openElement = null;
@@ -23,6 +31,9 @@ public class InferHandler extends DefaultHandler {
   private final Set<String> usedNamespaceUris = new HashSet<String>();
   private final Schema schema = new Schema();
   private final Set<String> assignedPrefixes = new HashSet<String>();
+  // every distinct prefix mapping seen, in order, since whether one is used depends on those before it
+  private final List<String[]> prefixMappings = new ArrayList<String[]>();
+  private final Set<List<String>> seenPrefixMappings = new HashSet<List<String>>();
 
   private static class OpenElement {
     final OpenElement parent;
@@ -65,6 +76,12 @@ public class InferHandler extends DefaultHandler {
 
   public void startPrefixMapping(String prefix, String uri)
           throws SAXException {
+    if (prefix != null && seenPrefixMappings.add(Arrays.asList(prefix, uri)))
+      prefixMappings.add(new String[] { prefix, uri });
+    addPrefixMapping(prefix, uri);
+  }
+
+  private void addPrefixMapping(String prefix, String uri) {
     if (prefix != null
         && !prefix.equals("")
         && schema.getPrefixMap().get(uri) == null
@@ -110,6 +127,29 @@ public class InferHandler extends DefaultHandler {
     openElement = openElement.parent;
   }
 
+  /**
+   * Adds what <code>other</code> has inferred, as if the documents it parsed had been parsed by this
+   * handler after its own documents.  <code>other</code> must not be used afterwards.
+   */
+  public void merge(InferHandler other) {
+    if (openElement != null || other.openElement != null)
+      throw new IllegalStateException();
+    for (Map.Entry<Name, ElementDeclInferrer> entry : other.inferrerMap.entrySet()) {
+      ElementDeclInferrer inferrer = inferrerMap.get(entry.getKey());
+      if (inferrer == null)
+        inferrerMap.put(entry.getKey(), entry.getValue());
+      else
+        inferrer.merge(entry.getValue());
+    }
+    startSet.addAll(other.startSet);
+    usedNamespaceUris.addAll(other.usedNamespaceUris);
+    for (String[] mapping : other.prefixMappings) {
+      if (seenPrefixMappings.add(Arrays.asList(mapping)))
+        prefixMappings.add(mapping);
+      addPrefixMapping(mapping[0], mapping[1]);
+    }
+  }
+
   public Schema getSchema() {
     for (Map.Entry<Name, ElementDeclInferrer> entry : inferrerMap.entrySet()) {
       ElementDecl decl = (entry.getValue()).infer();
@@ -134,6 +174,13 @@ public class InferHandler extends DefaultHandler {
   }
 
   public InferHandler(DatatypeLibraryFactory factory) {
-    this.datatypes = new DatatypeRepertoire(factory);
+    this(new DatatypeRepertoire(factory));
+  }
+
+  /**
+   * @param datatypes may be shared by handlers used concurrently
+   */
+  public InferHandler(DatatypeRepertoire datatypes) {
+    this.datatypes = datatypes;
   }
 }
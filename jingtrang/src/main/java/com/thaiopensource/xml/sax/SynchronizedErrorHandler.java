@@ -0,0 +1,28 @@
+package com.thaiopensource.xml.sax;
+
+import org.xml.sax.ErrorHandler;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+
+/**
+ * An <code>ErrorHandler</code> that passes errors on to another one, from one thread at a time.
+ */
+public class SynchronizedErrorHandler implements ErrorHandler {
+  private final ErrorHandler eh;
+
+  public SynchronizedErrorHandler(ErrorHandler eh) {
+    this.eh = eh;
+  }
+
+  public synchronized void warning(SAXParseException exception) throws SAXException {
+    eh.warning(exception);
+  }
+
+  public synchronized void error(SAXParseException exception) throws SAXException {
+    eh.error(exception);
+  }
+
+  public synchronized void fatalError(SAXParseException exception) throws SAXException {
+    eh.fatalError(exception);
+  }
+}
@@ -0,0 +1,100 @@
+package com.thaiopensource.datatype.xsd.regex.java;
+
+import com.thaiopensource.datatype.xsd.regex.Regex;
+import com.thaiopensource.datatype.xsd.regex.RegexSyntaxException;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the automaton against <code>java.util.regex</code>, in particular for characters outside the BMP
+ * and for automata with more states than are remembered.
+ */
+public class LazyDfaTest {
+  static private final String CLEF = new String(Character.toChars(0x1D11E));
+  static private final String LINEAR_B = new String(Character.toChars(0x10000));
+  static private final String LAST = new String(Character.toChars(0x10FFFF));
+
+  private final RegexEngineImpl reference = new RegexEngineImpl();
+
+  @Test
+  public void testSupplementaryCharacterIsOneCharacter() throws RegexSyntaxException {
+    Regex any = compile(".");
+    assertTrue(any.matches(CLEF));
+    assertFalse(any.matches(CLEF + CLEF));
+    assertTrue(compile("..").matches(CLEF + "a"));
+    assertFalse(compile("..").matches(CLEF));
+    assertTrue(compile(".{3}").matches(LINEAR_B + CLEF + LAST));
+    assertTrue(compile("[^a]").matches(CLEF));
+    assertTrue(compile(CLEF + "+").matches(CLEF + CLEF + CLEF));
+    assertFalse(compile(CLEF + "+").matches(CLEF + "\uD834"));
+  }
+
+  @Test
+  public void testRangesAcrossPlanes() throws RegexSyntaxException {
+    Regex range = compile("[\uFFFD-" + LINEAR_B + "]*");
+    assertTrue(range.matches("\uFFFD\uFFFF" + LINEAR_B));
+    assertFalse(range.matches(CLEF));
+    Regex supplementary = compile("[" + LINEAR_B + "-" + LAST + "]");
+    assertTrue(supplementary.matches(CLEF));
+    assertTrue(supplementary.matches(LAST));
+    assertFalse(supplementary.matches("\uFFFF"));
+  }
+
+  @Test
+  public void testSameAsJavaRegex() throws RegexSyntaxException {
+    String[] regexes = {
+      ".*", "[^a]*b", "(a|" + CLEF + ")*" + LINEAR_B, "\\p{L}+", "\\P{Lu}*", "[\\i-[:]][\\c-[:]]*",
+      "[a-z" + LINEAR_B + "-" + CLEF + "]{2,4}", "\\s*[^\\s]+\\s*", "(\\d|" + LAST + ")+\\.?"
+    };
+    String[] strings = {
+      "", "a", "b", "ab", CLEF, CLEF + "b", "a" + LINEAR_B, CLEF + CLEF + LINEAR_B, "Abc", "abc", "x:y", "_x1",
+      "\uD834", "\uDD1E", "\uDD1E\uD834", "a\uD834b", LAST + "1.", " \t" + CLEF + " ", "aa" + LINEAR_B + "b"
+    };
+    for (String regex : regexes)
+      assertSameMatches(regex, strings);
+  }
+
+  @Test
+  public void testMoreStatesThanRemembered() throws RegexSyntaxException {
+    // the n-th symbol from the end needs 2^n DFA states
+    String regex = "(a|b|" + CLEF + ")*a(a|b|" + CLEF + "){12}";
+    Random random = new Random(42);
+    String[] strings = new String[2000];
+    for (int i = 0; i < strings.length; i++) {
+      StringBuilder sb = new StringBuilder();
+      for (int j = 0, len = 10 + random.nextInt(40); j < len; j++) {
+        int k = random.nextInt(5);
+        sb.append(k < 2 ? "a" : k < 4 ? "b" : CLEF);
+      }
+      strings[i] = sb.toString();
+    }
+    assertSameMatches(regex, strings);
+    // once all states are taken, the same strings go through the simulation again
+    assertSameMatches(regex, strings);
+  }
+
+  private void assertSameMatches(String regex, String[] strings) throws RegexSyntaxException {
+    Regex dfa = compile(regex);
+    Regex expected = reference.compile(regex);
+    for (String str : strings)
+      assertEquals(expected.matches(str), dfa.matches(str), regex + " on " + codePoints(str));
+  }
+
+  static private Regex compile(String regex) throws RegexSyntaxException {
+    Regex dfa = LazyDfa.create(Translator.parse(regex));
+    assertNotNull(dfa, regex);
+    return dfa;
+  }
+
+  static private String codePoints(String str) {
+    StringBuilder sb = new StringBuilder();
+    str.codePoints().forEach(c -> sb.append(String.format("U+%04X ", c)));
+    return sb.toString().trim();
+  }
+}
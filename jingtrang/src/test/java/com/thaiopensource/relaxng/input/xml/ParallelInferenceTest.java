@@ -0,0 +1,98 @@
+package com.thaiopensource.relaxng.input.xml;
+
+import com.thaiopensource.relaxng.edit.SchemaCollection;
+import com.thaiopensource.relaxng.output.LocalOutputDirectory;
+import com.thaiopensource.relaxng.output.rnc.RncOutputFormat;
+import com.thaiopensource.resolver.BasicResolver;
+import com.thaiopensource.xml.sax.ErrorHandlerImpl;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Checks that inferring a schema from several documents on several threads gives the same schema, in the
+ * same order, as inferring it on one thread. The documents are random, with namespaces, mixed content,
+ * empty and repeated elements, and attribute values of different datatypes.
+ */
+public class ParallelInferenceTest {
+  static private final int SEEDS = 60;
+  static private final String[] NAMES = { "a", "b", "c", "d", "e" };
+  static private final String[] VALUES = {
+    "1", "42", "-3", "3.5", "true", "false", "  ", "", "hello", "foo bar", "2020-01-02", "http://x.org/y",
+    "abc123", "P1D", "0f0f"
+  };
+  static private final String[] PREFIXES = { "p", "q" };
+
+  @TempDir
+  Path dir;
+
+  @Test
+  public void testSameSchemaAsOneThread() throws Exception {
+    for (int seed = 0; seed < SEEDS; seed++) {
+      Random random = new Random(seed);
+      Path seedDir = Files.createDirectory(dir.resolve("seed" + seed));
+      String[] uris = new String[2 + random.nextInt(12)];
+      for (int i = 0; i < uris.length; i++) {
+        Path file = seedDir.resolve("d" + i + ".xml");
+        Files.write(file, document(random).getBytes(StandardCharsets.UTF_8));
+        uris[i] = file.toUri().toString();
+      }
+      String serial = infer(uris, 1, seedDir.resolve("serial"));
+      String parallel = infer(uris, 2 + seed % 6, seedDir.resolve("parallel"));
+      assertEquals(serial, parallel, "seed " + seed);
+    }
+  }
+
+  static private String infer(String[] uris, int threads, Path out) throws Exception {
+    SchemaCollection sc = new XmlInputFormat(threads).load(uris, new String[0], "rnc", new ErrorHandlerImpl(),
+                                                           BasicResolver.getInstance());
+    File file = Files.createDirectory(out).resolve("out.rnc").toFile();
+    new RncOutputFormat().output(sc, new LocalOutputDirectory(sc.getMainUri(), file, ".rnc", "UTF-8", 72, 2),
+                                 new String[0], "xml", new ErrorHandlerImpl());
+    return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+  }
+
+  static private String document(Random random) {
+    StringBuilder sb = new StringBuilder();
+    sb.append("<root xmlns:p='urn:").append(random.nextInt(3)).append("' xmlns:q='urn:").append(random.nextInt(3)).append('\'');
+    if (random.nextBoolean())
+      sb.append(" xmlns:z='urn:z").append(random.nextInt(2)).append('\'');
+    sb.append('>');
+    for (int i = 0, n = 1 + random.nextInt(4); i < n; i++)
+      element(random, sb, 0);
+    return sb.append("</root>").toString();
+  }
+
+  static private void element(Random random, StringBuilder sb, int depth) {
+    String name = NAMES[random.nextInt(NAMES.length)];
+    if (random.nextInt(6) == 0)
+      name = PREFIXES[random.nextInt(PREFIXES.length)] + ":" + name;
+    sb.append('<').append(name);
+    for (int i = 0; i < 3; i++) {
+      if (random.nextBoolean())
+        sb.append(" at").append(i).append("='").append(VALUES[random.nextInt(VALUES.length)].trim()).append('\'');
+    }
+    sb.append('>');
+    // 0: text only, 1 and 2: element content, 3: mixed content
+    int mode = depth > 3 ? 0 : random.nextInt(4);
+    if (mode == 0)
+      sb.append(VALUES[random.nextInt(VALUES.length)]);
+    else {
+      for (int i = 0, n = random.nextInt(4); i < n; i++) {
+        if (mode == 3 && random.nextInt(3) == 0)
+          sb.append("txt");
+        else if (random.nextBoolean())
+          sb.append("\n  ");
+        element(random, sb, depth + 1);
+      }
+    }
+    sb.append("</").append(name).append('>');
+  }
+}
@@ -0,0 +1,707 @@
+package org.kohsuke.rngom.digested;
+
+import org.kohsuke.rngom.ast.builder.GrammarSection;
+import org.kohsuke.rngom.ast.util.LocatorImpl;
+import org.kohsuke.rngom.nc.AnyNameExceptNameClass;
+import org.kohsuke.rngom.nc.ChoiceNameClass;
+import org.kohsuke.rngom.nc.NameClass;
+import org.kohsuke.rngom.nc.NameClassVisitor;
+import org.kohsuke.rngom.nc.NsNameClass;
+import org.kohsuke.rngom.nc.NsNameExceptNameClass;
+import org.kohsuke.rngom.nc.SimpleNameClass;
+import org.kohsuke.rngom.parse.Context;
+import org.xml.sax.Locator;
+
+import javax.xml.namespace.QName;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes a {@link DPattern} into a compact binary form and reads it back.
+ *
+ * <p>
+ * Strings (names, namespace URIs, system ids) are written once and referenced by index afterwards,
+ * and {@link DDefine}s are written after the pattern that first references them, so cyclic
+ * grammars don't need deep recursion. Locations, values, parameters, contexts and annotation
+ * attributes are preserved; child elements of annotations are not.
+ */
+public final class DPatternSerializer {
+    private static final int FORMAT_VERSION = 1;
+
+    private static final byte NULL = 0;
+    private static final byte EMPTY = 1;
+    private static final byte NOT_ALLOWED = 2;
+    private static final byte TEXT = 3;
+    private static final byte CHOICE = 4;
+    private static final byte GROUP = 5;
+    private static final byte INTERLEAVE = 6;
+    private static final byte ONE_OR_MORE = 7;
+    private static final byte ZERO_OR_MORE = 8;
+    private static final byte OPTIONAL = 9;
+    private static final byte LIST = 10;
+    private static final byte MIXED = 11;
+    private static final byte ELEMENT = 12;
+    private static final byte ATTRIBUTE = 13;
+    private static final byte DATA = 14;
+    private static final byte VALUE = 15;
+    private static final byte REF = 16;
+    private static final byte GRAMMAR = 17;
+
+    private static final byte NC_NAME = 0;
+    private static final byte NC_NS_NAME = 1;
+    private static final byte NC_NS_NAME_EXCEPT = 2;
+    private static final byte NC_ANY_NAME = 3;
+    private static final byte NC_ANY_NAME_EXCEPT = 4;
+    private static final byte NC_CHOICE = 5;
+    private static final byte NC_NULL = 6;
+
+    private DPatternSerializer() {
+    }
+
+    public static void write(DPattern pattern, DataOutput out) throws IOException {
+        out.writeInt(FORMAT_VERSION);
+        new Writer(out).writeAll(pattern);
+    }
+
+    /**
+     * @throws IOException
+     *      if the data is truncated or has been written by an incompatible version.
+     */
+    public static DPattern read(DataInput in) throws IOException {
+        if (in.readInt() != FORMAT_VERSION)
+            throw new IOException("unsupported pattern format");
+        return new Reader(in).readAll();
+    }
+
+    private static void writeVarInt(DataOutput out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int readVarInt(DataInput in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0)
+                return value;
+        }
+        throw new IOException("malformed var int");
+    }
+
+    private static final class Writer implements DPatternVisitor<Void>, NameClassVisitor<Void> {
+        private final DataOutput out;
+        private final Map<String,Integer> strings = new HashMap<String,Integer>();
+        private final Map<DDefine,Integer> defineIds = new IdentityHashMap<DDefine,Integer>();
+        private final List<DDefine> defines = new ArrayList<DDefine>();
+
+        /**
+         * First I/O failure, rethrown once the visitor returns.
+         */
+        private IOException error;
+
+        Writer(DataOutput out) {
+            this.out = out;
+        }
+
+        void writeAll(DPattern pattern) throws IOException {
+            writePattern(pattern);
+            // defines discovered while writing a define body are appended to the list
+            for (int i = 0; i < defines.size(); i++) {
+                DDefine d = defines.get(i);
+                GrammarSection.Combine combine = d.getCombine();
+                out.writeByte(combine == null ? 0 : combine == GrammarSection.COMBINE_CHOICE ? 1 : 2);
+                writeAnnotation(d.annotation);
+                writePattern(d.getPattern());
+            }
+        }
+
+        private void writePattern(DPattern p) throws IOException {
+            if (p == null) {
+                out.writeByte(NULL);
+                return;
+            }
+            p.accept(this);
+            if (error != null)
+                throw error;
+        }
+
+        private void writeString(String s) throws IOException {
+            if (s == null) {
+                writeVarInt(out, 0);
+                return;
+            }
+            Integer index = strings.get(s);
+            if (index != null) {
+                writeVarInt(out, index + 2);
+            }
+            else {
+                strings.put(s, strings.size());
+                writeVarInt(out, 1);
+                out.writeUTF(s);
+            }
+        }
+
+        private void writeLocator(Locator loc) throws IOException {
+            if (loc == null) {
+                out.writeBoolean(false);
+                return;
+            }
+            out.writeBoolean(true);
+            writeString(loc.getSystemId());
+            writeVarInt(out, loc.getLineNumber() + 1);
+            writeVarInt(out, loc.getColumnNumber() + 1);
+        }
+
+        private void writeAnnotation(DAnnotation annotation) throws IOException {
+            Map<QName,DAnnotation.Attribute> attributes =
+                annotation == null ? Collections.<QName,DAnnotation.Attribute>emptyMap() : annotation.getAttributes();
+            writeVarInt(out, attributes.size());
+            for (DAnnotation.Attribute a : attributes.values()) {
+                writeString(a.getNs());
+                writeString(a.getLocalName());
+                writeString(a.getPrefix());
+                writeString(a.getValue());
+                writeLocator(a.getLoc());
+            }
+        }
+
+        private void writeContext(Context context) throws IOException {
+            List<String> prefixes = new ArrayList<String>();
+            for (Enumeration e = context.prefixes(); e.hasMoreElements(); )
+                prefixes.add((String)e.nextElement());
+            writeVarInt(out, prefixes.size());
+            for (String prefix : prefixes) {
+                writeString(prefix);
+                writeString(context.resolveNamespacePrefix(prefix));
+            }
+            writeString(context.getBaseUri());
+        }
+
+        private void writeHeader(byte tag, DPattern p) throws IOException {
+            out.writeByte(tag);
+            writeLocator(p.location);
+            writeAnnotation(p.annotation);
+        }
+
+        private Void container(byte tag, DContainerPattern p) {
+            try {
+                writeHeader(tag, p);
+                writeVarInt(out, p.countChildren());
+                for (DPattern c = p.firstChild(); c != null; c = c.next)
+                    writePattern(c);
+            } catch (IOException e) {
+                error = e;
+            }
+            return null;
+        }
+
+        private Void unary(byte tag, DUnaryPattern p) {
+            try {
+                writeHeader(tag, p);
+                if (p instanceof DXmlTokenPattern)
+                    writeNameClass(((DXmlTokenPattern)p).getName());
+                writePattern(p.getChild());
+            } catch (IOException e) {
+                error = e;
+            }
+            return null;
+        }
+
+        private Void leaf(byte tag, DPattern p) {
+            try {
+                writeHeader(tag, p);
+            } catch (IOException e) {
+                error = e;
+            }
+            return null;
+        }
+
+        public Void onAttribute(DAttributePattern p) {
+            return unary(ATTRIBUTE, p);
+        }
+
+        public Void onChoice(DChoicePattern p) {
+            return container(CHOICE, p);
+        }
+
+        public Void onData(DDataPattern p) {
+            try {
+                writeHeader(DATA, p);
+                writeString(p.getDatatypeLibrary());
+                writeString(p.getType());
+                writeVarInt(out, p.getParams().size());
+                for (DDataPattern.Param param : p.getParams()) {
+                    writeString(param.getName());
+                    writeString(param.getValue());
+                    writeString(param.getNs());
+                    writeContext(param.getContext());
+                    writeLocator(param.getLoc() instanceof Locator ? (Locator)param.getLoc() : null);
+                }
+                writePattern(p.getExcept());
+            } catch (IOException e) {
+                error = e;
+            }
+            return null;
+        }
+
+        public Void onElement(DElementPattern p) {
+            return unary(ELEMENT, p);
+        }
+
+        public Void onEmpty(DEmptyPattern p) {
+            return leaf(EMPTY, p);
+        }
+
+        public Void onGrammar(DGrammarPattern p) {
+            try {
+                writeHeader(GRAMMAR, p);
+                // defines are declared before the start pattern, so that refs read back resolve to the grammar's own defines
+                List<DDefine> own = new ArrayList<DDefine>();
+                for (DDefine d : p)
+                    own.add(d);
+                writeVarInt(out, own.size());
+                for (DDefine d : own)
+                    writeDefine(d);
+                writePattern(p.getStart());
+            } catch (IOException e) {
+                error = e;
+            }
+            return null;
+        }
+
+        public Void onGroup(DGroupPattern p) {
+            return container(GROUP, p);
+        }
+
+        public Void onInterleave(DInterleavePattern p) {
+            return container(INTERLEAVE, p);
+        }
+
+        public Void onList(DListPattern p) {
+            return unary(LIST, p);
+        }
+
+        public Void onMixed(DMixedPattern p) {
+            return unary(MIXED, p);
+        }
+
+        public Void onNotAllowed(DNotAllowedPattern p) {
+            return leaf(NOT_ALLOWED, p);
+        }
+
+        public Void onOneOrMore(DOneOrMorePattern p) {
+            return unary(ONE_OR_MORE, p);
+        }
+
+        public Void onOptional(DOptionalPattern p) {
+            return unary(OPTIONAL, p);
+        }
+
+        public Void onRef(DRefPattern p) {
+            try {
+                writeHeader(REF, p);
+                writeDefine(p.getTarget());
+            } catch (IOException e) {
+                error = e;
+            }
+            return null;
+        }
+
+        private void writeDefine(DDefine d) throws IOException {
+            Integer id = defineIds.get(d);
+            if (id != null) {
+                writeVarInt(out, id + 1);
+            }
+            else {
+                defineIds.put(d, defines.size());
+                defines.add(d);
+                writeVarInt(out, 0);
+                writeString(d.getName());
+            }
+        }
+
+        public Void onText(DTextPattern p) {
+            return leaf(TEXT, p);
+        }
+
+        public Void onValue(DValuePattern p) {
+            try {
+                writeHeader(VALUE, p);
+                writeString(p.getDatatypeLibrary());
+                writeString(p.getType());
+                writeString(p.getValue());
+                writeString(p.getNs());
+                writeContext(p.getContext());
+            } catch (IOException e) {
+                error = e;
+            }
+            return null;
+        }
+
+        public Void onZeroOrMore(DZeroOrMorePattern p) {
+            return unary(ZERO_OR_MORE, p);
+        }
+
+        private void writeNameClass(NameClass nc) throws IOException {
+            nc.accept(this);
+            if (error != null)
+                throw error;
+        }
+
+        public Void visitChoice(NameClass nc1, NameClass nc2) {
+            try {
+                out.writeByte(NC_CHOICE);
+                writeNameClass(nc1);
+                writeNameClass(nc2);
+            } catch (IOException e) {
+                error = e;
+            }
+            return null;
+        }
+
+        public Void visitNsName(String ns) {
+            try {
+                out.writeByte(NC_NS_NAME);
+                writeString(ns);
+            } catch (IOException e) {
+                error = e;
+            }
+            return null;
+        }
+
+        public Void visitNsNameExcept(String ns, NameClass nc) {
+            try {
+                out.writeByte(NC_NS_NAME_EXCEPT);
+                writeString(ns);
+                writeNameClass(nc);
+            } catch (IOException e) {
+                error = e;
+            }
+            return null;
+        }
+
+        public Void visitAnyName() {
+            try {
+                out.writeByte(NC_ANY_NAME);
+            } catch (IOException e) {
+                error = e;
+            }
+            return null;
+        }
+
+        public Void visitAnyNameExcept(NameClass nc) {
+            try {
+                out.writeByte(NC_ANY_NAME_EXCEPT);
+                writeNameClass(nc);
+            } catch (IOException e) {
+                error = e;
+            }
+            return null;
+        }
+
+        public Void visitName(QName name) {
+            try {
+                out.writeByte(NC_NAME);
+                writeString(name.getNamespaceURI());
+                writeString(name.getLocalPart());
+                writeString(name.getPrefix());
+            } catch (IOException e) {
+                error = e;
+            }
+            return null;
+        }
+
+        public Void visitNull() {
+            try {
+                out.writeByte(NC_NULL);
+            } catch (IOException e) {
+                error = e;
+            }
+            return null;
+        }
+    }
+
+    private static final class Reader {
+        private final DataInput in;
+        private final List<String> strings = new ArrayList<String>();
+        private final List<DDefine> defines = new ArrayList<DDefine>();
+
+        Reader(DataInput in) {
+            this.in = in;
+        }
+
+        DPattern readAll() throws IOException {
+            DPattern pattern = readPattern();
+            for (int i = 0; i < defines.size(); i++) {
+                DDefine d = defines.get(i);
+                switch (in.readByte()) {
+                case 1:
+                    d.setCombine(GrammarSection.COMBINE_CHOICE);
+                    break;
+                case 2:
+                    d.setCombine(GrammarSection.COMBINE_INTERLEAVE);
+                    break;
+                }
+                d.annotation = readAnnotation();
+                d.setPattern(readPattern());
+            }
+            return pattern;
+        }
+
+        private String readString() throws IOException {
+            int code = readVarInt(in);
+            if (code == 0)
+                return null;
+            if (code == 1) {
+                String s = in.readUTF();
+                strings.add(s);
+                return s;
+            }
+            if (code - 2 >= strings.size())
+                throw new IOException("malformed string reference");
+            return strings.get(code - 2);
+        }
+
+        private LocatorImpl readLocator() throws IOException {
+            if (!in.readBoolean())
+                return null;
+            String systemId = readString();
+            int line = readVarInt(in) - 1;
+            int column = readVarInt(in) - 1;
+            return new LocatorImpl(systemId, line, column);
+        }
+
+        private DAnnotation readAnnotation() throws IOException {
+            int size = readVarInt(in);
+            if (size == 0)
+                return null;
+            DAnnotation annotation = new DAnnotation();
+            annotation.attributes = new HashMap<QName,DAnnotation.Attribute>();
+            for (int i = 0; i < size; i++) {
+                String ns = readString();
+                String localName = readString();
+                String prefix = readString();
+                String value = readString();
+                LocatorImpl loc = readLocator();
+                annotation.attributes.put(new QName(ns, localName, prefix == null ? "" : prefix),
+                    new DAnnotation.Attribute(ns, localName, prefix, value, loc));
+            }
+            return annotation;
+        }
+
+        private Context readContext() throws IOException {
+            int size = readVarInt(in);
+            Map<String,String> prefixes = new HashMap<String,String>();
+            for (int i = 0; i < size; i++)
+                prefixes.put(readString(), readString());
+            return new ContextSnapshot(prefixes, readString());
+        }
+
+        private DDefine readDefine() throws IOException {
+            int code = readVarInt(in);
+            if (code == 0) {
+                DDefine d = new DDefine(readString());
+                defines.add(d);
+                return d;
+            }
+            if (code - 1 >= defines.size())
+                throw new IOException("malformed define reference");
+            return defines.get(code - 1);
+        }
+
+        private DPattern readPattern() throws IOException {
+            byte tag = in.readByte();
+            if (tag == NULL)
+                return null;
+            LocatorImpl loc = readLocator();
+            DAnnotation annotation = readAnnotation();
+            DPattern p;
+            switch (tag) {
+            case EMPTY:
+                p = new DEmptyPattern();
+                break;
+            case NOT_ALLOWED:
+                p = new DNotAllowedPattern();
+                break;
+            case TEXT:
+                p = new DTextPattern();
+                break;
+            case CHOICE:
+                p = readChildren(new DChoicePattern());
+                break;
+            case GROUP:
+                p = readChildren(new DGroupPattern());
+                break;
+            case INTERLEAVE:
+                p = readChildren(new DInterleavePattern());
+                break;
+            case ONE_OR_MORE:
+                p = readChild(new DOneOrMorePattern());
+                break;
+            case ZERO_OR_MORE:
+                p = readChild(new DZeroOrMorePattern());
+                break;
+            case OPTIONAL:
+                p = readChild(new DOptionalPattern());
+                break;
+            case LIST:
+                p = readChild(new DListPattern());
+                break;
+            case MIXED:
+                p = readChild(new DMixedPattern());
+                break;
+            case ELEMENT:
+                p = readChild(new DElementPattern(readNameClass()));
+                break;
+            case ATTRIBUTE:
+                p = readChild(new DAttributePattern(readNameClass()));
+                break;
+            case DATA:
+                p = readData();
+                break;
+            case VALUE: {
+                String datatypeLibrary = readString();
+                String type = readString();
+                String value = readString();
+                String ns = readString();
+                p = new DValuePattern(datatypeLibrary, type, value, readContext(), ns);
+                break;
+            }
+            case REF:
+                p = new DRefPattern(readDefine());
+                break;
+            case GRAMMAR:
+                p = readGrammar();
+                break;
+            default:
+                throw new IOException("unknown pattern tag " + tag);
+            }
+            p.location = loc;
+            p.annotation = annotation;
+            return p;
+        }
+
+        private DPattern readChildren(DContainerPattern p) throws IOException {
+            int size = readVarInt(in);
+            for (int i = 0; i < size; i++) {
+                DPattern child = readPattern();
+                if (child != null)
+                    p.add(child);
+            }
+            return p;
+        }
+
+        private DPattern readChild(DUnaryPattern p) throws IOException {
+            p.setChild(readPattern());
+            return p;
+        }
+
+        private DPattern readData() throws IOException {
+            DDataPattern p = new DDataPattern();
+            p.datatypeLibrary = readString();
+            p.type = readString();
+            int size = readVarInt(in);
+            for (int i = 0; i < size; i++) {
+                String name = readString();
+                String value = readString();
+                String ns = readString();
+                Context context = readContext();
+                p.params.add(p.new Param(name, value, context, ns, readLocator(), null));
+            }
+            p.except = readPattern();
+            return p;
+        }
+
+        private DPattern readGrammar() throws IOException {
+            DGrammarPattern grammar = new DGrammarPattern();
+            int size = readVarInt(in);
+            for (int i = 0; i < size; i++) {
+                if (readVarInt(in) != 0)
+                    throw new IOException("grammar define has been written before its grammar");
+                DDefine d = grammar.getOrAdd(readString());
+                defines.add(d);
+            }
+            grammar.start = readPattern();
+            return grammar;
+        }
+
+        private NameClass readNameClass() throws IOException {
+            byte tag = in.readByte();
+            switch (tag) {
+            case NC_NAME: {
+                String ns = readString();
+                String localName = readString();
+                String prefix = readString();
+                return new SimpleNameClass(ns, localName, prefix == null || prefix.length() == 0 ? null : prefix);
+            }
+            case NC_NS_NAME:
+                return new NsNameClass(readString());
+            case NC_NS_NAME_EXCEPT: {
+                String ns = readString();
+                return new NsNameExceptNameClass(ns, readNameClass());
+            }
+            case NC_ANY_NAME:
+                return NameClass.ANY;
+            case NC_ANY_NAME_EXCEPT:
+                return new AnyNameExceptNameClass(readNameClass());
+            case NC_CHOICE: {
+                NameClass nc1 = readNameClass();
+                return new ChoiceNameClass(nc1, readNameClass());
+            }
+            case NC_NULL:
+                return NameClass.NULL;
+            default:
+                throw new IOException("unknown name class tag " + tag);
+            }
+        }
+    }
+
+    /**
+     * Immutable {@link Context} restored from the prefix bindings recorded by the writer.
+     */
+    private static final class ContextSnapshot implements Context {
+        private final Map<String,String> prefixes;
+        private final String baseUri;
+
+        ContextSnapshot(Map<String,String> prefixes, String baseUri) {
+            this.prefixes = prefixes;
+            this.baseUri = baseUri;
+        }
+
+        public Enumeration prefixes() {
+            return Collections.enumeration(prefixes.keySet());
+        }
+
+        public Context copy() {
+            return this;
+        }
+
+        public String resolveNamespacePrefix(String prefix) {
+            return prefixes.get(prefix);
+        }
+
+        public String getBaseUri() {
+            return baseUri;
+        }
+
+        public boolean isUnparsedEntity(String entityName) {
+            return false;
+        }
+
+        public boolean isNotation(String notationName) {
+            return false;
+        }
+    }
+}
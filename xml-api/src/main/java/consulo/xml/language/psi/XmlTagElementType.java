@@ -0,0 +1,187 @@
+package consulo.xml.language.psi;
+
+import consulo.language.Language;
+import consulo.language.ast.ASTNode;
+import consulo.language.ast.ICustomParsingType;
+import consulo.language.ast.IElementType;
+import consulo.language.ast.IReparseableElementTypeBase;
+import consulo.language.ast.TokenSet;
+import consulo.language.lexer.Lexer;
+import consulo.language.parser.ParserDefinition;
+import consulo.language.parser.PsiBuilder;
+import consulo.language.parser.PsiBuilderFactory;
+import consulo.language.util.CharTable;
+import consulo.language.version.LanguageVersion;
+import consulo.language.version.LanguageVersionUtil;
+import consulo.project.Project;
+import consulo.xml.language.XMLLanguage;
+import consulo.xml.language.psi.parser.XmlParsing;
+import org.jspecify.annotations.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Lets an edit inside of a tag of a plain XML file reparse just that tag instead of the whole file, provided the new
+ * text of the tag still is one balanced tag on its own. Root tags and anything whose parsing depends on the enclosing
+ * tags (unbalanced end tags, too deep nesting) are left to the reparse of the whole file.
+ *
+ * @since 2026-10-18
+ */
+class XmlTagElementType extends IXmlElementType implements ICustomParsingType, IReparseableElementTypeBase {
+  XmlTagElementType() {
+    super("XML_TAG");
+  }
+
+  @Override
+  public boolean isParsable(@Nullable ASTNode parent, CharSequence buffer, Language fileLanguage, Project project) {
+    // HTML, XHTML and languages built on XML parse tags differently or lex them with a different lexer
+    // root tags are parsed with the document, e.g. a second one gets an error
+    if (fileLanguage != XMLLanguage.INSTANCE || parent == null || parent.getElementType() != XmlElementType.XML_TAG) {
+      return false;
+    }
+    int depth = 0;
+    for (ASTNode node = parent; node != null; node = node.getTreeParent()) {
+      if (node.getElementType() == XmlElementType.XML_TAG) {
+        depth++;
+      }
+    }
+    LanguageVersion version = LanguageVersionUtil.findDefaultVersion(XMLLanguage.INSTANCE);
+    return isSingleBalancedTag(buffer, getParserDefinition().createLexer(version), XmlParsing.BALANCING_DEPTH_THRESHOLD - depth);
+  }
+
+  /**
+   * Checks with the lexer alone that {@link XmlParsing#parseSingleTag()} would read all of {@code buffer} as one tag. Anything
+   * the parser might read differently, e.g. an erroneous header or a mismatched end tag, is rejected.
+   */
+  private static boolean isSingleBalancedTag(CharSequence buffer, Lexer lexer, int maxDepth) {
+    lexer.start(buffer);
+    if (lexer.getTokenType() != XmlTokenType.XML_START_TAG_START) {
+      return false;
+    }
+    Deque<CharSequence> names = new ArrayDeque<>();
+    for (IElementType type; (type = lexer.getTokenType()) != null; lexer.advance()) {
+      if (type == XmlTokenType.XML_START_TAG_START) {
+        lexer.advance();
+        if (lexer.getTokenType() != XmlTokenType.XML_NAME) {
+          return false;
+        }
+        names.push(buffer.subSequence(lexer.getTokenStart(), lexer.getTokenEnd()));
+        if (names.size() > maxDepth) {
+          return false;
+        }
+        IElementType headerEnd = skipTagHeader(lexer);
+        if (headerEnd == null) {
+          return false;
+        }
+        if (headerEnd == XmlTokenType.XML_EMPTY_ELEMENT_END) {
+          names.pop();
+          if (names.isEmpty()) {
+            return isLastToken(lexer);
+          }
+        }
+      }
+      else if (type == XmlTokenType.XML_END_TAG_START) {
+        lexer.advance();
+        if (lexer.getTokenType() != XmlTokenType.XML_NAME || names.isEmpty() ||
+            !names.peek().toString().contentEquals(buffer.subSequence(lexer.getTokenStart(), lexer.getTokenEnd()))) {
+          // the parser would close the enclosing tags here, which depends on the context of the tag
+          return false;
+        }
+        lexer.advance();
+        skipWhiteSpace(lexer);
+        if (lexer.getTokenType() != XmlTokenType.XML_TAG_END) {
+          return false;
+        }
+        names.pop();
+        if (names.isEmpty()) {
+          return isLastToken(lexer);
+        }
+      }
+      else if (type == XmlTokenType.XML_DOCTYPE_START) {
+        return false;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Moves the lexer from the name of a start tag to the token that ends its header, reading attributes and references the
+   * way {@code XmlParsing.parseTagHeader} does.
+   *
+   * @return {@link XmlTokenType#XML_TAG_END} or {@link XmlTokenType#XML_EMPTY_ELEMENT_END}, or null if the header is one the
+   * parser ends early or reports errors in
+   */
+  @Nullable
+  private static IElementType skipTagHeader(Lexer lexer) {
+    lexer.advance();
+    while (true) {
+      skipWhiteSpace(lexer);
+      IElementType type = lexer.getTokenType();
+      if (type == XmlTokenType.XML_TAG_END || type == XmlTokenType.XML_EMPTY_ELEMENT_END) {
+        return type;
+      }
+      if (type == XmlTokenType.XML_CHAR_ENTITY_REF || type == XmlTokenType.XML_ENTITY_REF_TOKEN) {
+        lexer.advance();
+        continue;
+      }
+      if (type != XmlTokenType.XML_NAME) {
+        return null;
+      }
+      lexer.advance();
+      skipWhiteSpace(lexer);
+      if (lexer.getTokenType() != XmlTokenType.XML_EQ) {
+        return null;
+      }
+      lexer.advance();
+      skipWhiteSpace(lexer);
+      if (lexer.getTokenType() != XmlTokenType.XML_ATTRIBUTE_VALUE_START_DELIMITER) {
+        return null;
+      }
+      lexer.advance();
+      for (; (type = lexer.getTokenType()) != XmlTokenType.XML_ATTRIBUTE_VALUE_END_DELIMITER; lexer.advance()) {
+        // the lexer leaves an unterminated attribute value at the next tag
+        if (type == null || type == XmlTokenType.XML_START_TAG_START || type == XmlTokenType.XML_END_TAG_START ||
+            type == XmlTokenType.XML_EMPTY_ELEMENT_END) {
+          return null;
+        }
+      }
+      lexer.advance();
+    }
+  }
+
+  private static void skipWhiteSpace(Lexer lexer) {
+    // the same tokens as the builder skips in parse()
+    while (lexer.getTokenType() == XmlTokenType.XML_WHITE_SPACE || lexer.getTokenType() == XmlTokenType.XML_REAL_WHITE_SPACE) {
+      lexer.advance();
+    }
+  }
+
+  private static boolean isLastToken(Lexer lexer) {
+    lexer.advance();
+    return lexer.getTokenType() == null;
+  }
+
+  @Override
+  public ASTNode parse(CharSequence text, CharTable table) {
+    PsiBuilder builder = createBuilder(text);
+    new XmlParsing(builder).parseSingleTag();
+    return builder.getTreeBuilt();
+  }
+
+  private static PsiBuilder createBuilder(CharSequence text) {
+    LanguageVersion version = LanguageVersionUtil.findDefaultVersion(XMLLanguage.INSTANCE);
+    ParserDefinition parserDefinition = getParserDefinition();
+    PsiBuilder builder = PsiBuilderFactory.getInstance().createBuilder(parserDefinition, parserDefinition.createLexer(version), version, text);
+    // the same setup as for the whole file
+    builder.enforceCommentTokens(TokenSet.EMPTY);
+    builder.registerWhitespaceToken(XmlTokenType.XML_REAL_WHITE_SPACE);
+    return builder;
+  }
+
+  private static ParserDefinition getParserDefinition() {
+    ParserDefinition parserDefinition = ParserDefinition.forLanguage(XMLLanguage.INSTANCE);
+    assert parserDefinition != null;
+    return parserDefinition;
+  }
+}
@@ -31,7 +31,7 @@ import static consulo.xml.language.psi.XmlElementType.*;
  * @author max
  */
 public class XmlParsing {
-  private static final int BALANCING_DEPTH_THRESHOLD = 1000;
+  public static final int BALANCING_DEPTH_THRESHOLD = 1000;
 
   protected final PsiBuilder myBuilder;
   private final Stack<String> myTagNamesStack = new Stack<String>();
@@ -90,6 +90,13 @@ public class XmlParsing {
     document.done(XML_DOCUMENT);
   }
 
+  /**
+   * Parses the text of a single non-root tag on its own, when an edit inside of it doesn't require reparsing the whole file.
+   */
+  public void parseSingleTag() {
+    parseTag(false);
+  }
+
   private static PsiBuilder.@Nullable Marker flushError(PsiBuilder.Marker error) {
     if (error != null) {
       error.error(XmlErrorLocalize.xmlParsingUnexpectedTokens());
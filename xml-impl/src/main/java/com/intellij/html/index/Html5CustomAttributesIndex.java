@@ -24,7 +24,6 @@ import consulo.index.io.KeyDescriptor;
 import consulo.language.Language;
 import consulo.language.ast.IElementType;
 import consulo.language.file.LanguageFileType;
-import consulo.language.lexer.Lexer;
 import consulo.language.psi.stub.FileBasedIndex;
 import consulo.language.psi.stub.FileContent;
 import consulo.language.psi.stub.ScalarIndexExtension;
@@ -36,8 +35,7 @@ import consulo.xhtml.language.XHtmlFileType;
 import consulo.html.language.HTMLLanguage;
 import consulo.xhtml.language.XHTMLLanguage;
 import consulo.xml.language.psi.XmlTokenType;
-import consulo.xml.lexer.HtmlHighlightingLexer;
-import consulo.xml.lexer.XHtmlHighlightingLexer;
+import consulo.xml.psi.impl.cache.impl.idCache.HtmlTokenStream;
 
 import java.util.Collections;
 import java.util.HashMap;
@@ -56,23 +54,20 @@ public class Html5CustomAttributesIndex extends ScalarIndexExtension<String> {
             CharSequence input = inputData.getContentAsText();
             Language language = ((LanguageFileType)inputData.getFileType()).getLanguage();
             if (language == HTMLLanguage.INSTANCE || language == XHTMLLanguage.INSTANCE) {
-                final Lexer lexer = (language == HTMLLanguage.INSTANCE ? new HtmlHighlightingLexer() : new XHtmlHighlightingLexer());
-                lexer.start(input);
+                // the same tokens the id and todo indexers of the file use
+                HtmlTokenStream tokens = HtmlTokenStream.get(input, language == XHTMLLanguage.INSTANCE);
                 Map<String, Void> result = new HashMap<>();
-                IElementType tokenType = lexer.getTokenType();
-                while (tokenType != null) {
+                for (int i = 0; i < tokens.getTokenCount(); i++) {
+                    IElementType tokenType = tokens.getTokenType(i);
                     if (tokenType == XmlTokenType.XML_NAME) {
-                        String xmlName = input.subSequence(lexer.getTokenStart(), lexer.getTokenEnd()).toString();
-                        if (HtmlUtil.isCustomHtml5Attribute(xmlName)) {
-                            result.put(xmlName, null);
+                        if (tokens.tokenStartsWith(i, HtmlUtil.HTML5_DATA_ATTR_PREFIX)) {
+                            result.put(tokens.getTokenText(i), null);
                         }
                     }
                     else if (tokenType == XmlTokenType.XML_DOCTYPE_PUBLIC || tokenType == XmlTokenType.XML_DOCTYPE_SYSTEM) {
                         // this is not an HTML5 context
                         break;
                     }
-                    lexer.advance();
-                    tokenType = lexer.getTokenType();
                 }
                 return result;
             }
@@ -2,6 +2,7 @@
 package com.intellij.xml.actions.validate;
 
 import com.intellij.xml.util.XmlResourceResolver;
+import com.intellij.xml.util.XmlUtil;
 import consulo.language.psi.PsiFile;
 import consulo.language.psi.PsiManager;
 import consulo.logging.Logger;
@@ -19,7 +20,6 @@ import org.apache.xerces.impl.XMLEntityManager;
 import org.apache.xerces.jaxp.JAXPConstants;
 import org.apache.xerces.jaxp.SAXParserFactoryImpl;
 import org.apache.xerces.util.SecurityManager;
-import org.apache.xerces.util.XMLGrammarPoolImpl;
 import org.apache.xerces.xni.grammars.XMLGrammarPool;
 import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
@@ -32,7 +32,6 @@ import javax.xml.XMLConstants;
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.parsers.SAXParser;
 import javax.xml.parsers.SAXParserFactory;
-import java.io.StringReader;
 import java.util.Arrays;
 import java.util.Map;
 
@@ -50,6 +49,7 @@ public class ValidateXmlActionHandler implements ValidateXmlHandler {
     private static final Key<Long> GRAMMAR_POOL_TIME_STAMP_KEY = Key.create("GrammarPoolTimeStampKey");
     private static final Key<VirtualFile[]> DEPENDENT_FILES_KEY = Key.create("GrammarPoolFilesKey");
     private static final Key<String[]> KNOWN_NAMESPACES_KEY = Key.create("KnownNamespacesKey");
+    private static final Key<String> GRAMMAR_POOL_SCHEMAS_KEY = Key.create("GrammarPoolSchemasKey");
     private static final Key<Map<String, XMLEntityManager.Entity>> ENTITIES_KEY = Key.create("EntityManagerKey");
     public static final String JDK_XML_MAX_OCCUR_LIMIT = "jdk.xml.maxOccurLimit";
 
@@ -57,6 +57,9 @@ public class ValidateXmlActionHandler implements ValidateXmlHandler {
     private XmlFile myFile;
     private ErrorReporter myErrorReporter;
     private SAXParser myParser;
+    // the shared pool this validation reads grammars into, until its dependencies are registered
+    @Nullable
+    private XMLGrammarPool myGrammarPool;
     private XmlResourceResolver myXmlResourceResolver;
     private final boolean myForceChecking;
     private static final String ENTITY_RESOLVER_PROPERTY_NAME = "http://apache.org/xml/properties/internal/entity-resolver";
@@ -137,18 +140,29 @@ public class ValidateXmlActionHandler implements ValidateXmlHandler {
             }
 
             if (myParser == null) {
+                abandonGrammarPool();
                 return;
             }
 
             myErrorReporter.startProcessing();
         }
         catch (XmlResourceResolver.IgnoredResourceException ignore) {
+            abandonGrammarPool();
         }
         catch (Exception exception) {
+            abandonGrammarPool();
             filterAppException(exception);
         }
     }
 
+    private void abandonGrammarPool() {
+        XMLGrammarPool grammarPool = myGrammarPool;
+        if (grammarPool != null) {
+            myGrammarPool = null;
+            XmlGrammarPoolManager.getInstance(myProject).abandon(grammarPool);
+        }
+    }
+
     private void filterAppException(Exception exception) {
         if (!myErrorReporter.filterValidationException(exception)) {
             LOG.error(exception);
@@ -157,7 +171,7 @@ public class ValidateXmlActionHandler implements ValidateXmlHandler {
 
     public void doParse() {
         try {
-            InputSource inputSource = new InputSource(new StringReader(myFile.getText()));
+            InputSource inputSource = new InputSource(XmlUtil.createTextReader(myFile));
             inputSource.setSystemId(myFile.getVirtualFile().getUrl().replace("file:", "file:/"));
             myParser.parse(inputSource, new DefaultHandler() {
                 @Override
@@ -187,7 +201,7 @@ public class ValidateXmlActionHandler implements ValidateXmlHandler {
                     if (psiFile == null) {
                         return null;
                     }
-                    return new InputSource(new StringReader(psiFile.getText()));
+                    return new InputSource(XmlUtil.createTextReader(psiFile));
                 }
 
                 @Override
@@ -201,16 +215,6 @@ public class ValidateXmlActionHandler implements ValidateXmlHandler {
                 }
             });
 
-            final String[] resourcePaths = myXmlResourceResolver.getResourcePaths();
-            if (resourcePaths.length > 0) { // if caches are used
-                final VirtualFile[] files = new VirtualFile[resourcePaths.length];
-                for (int i = 0; i < resourcePaths.length; ++i) {
-                    files[i] = UriUtil.findRelativeFile(resourcePaths[i], null);
-                }
-
-                myFile.putUserData(DEPENDENT_FILES_KEY, files);
-                myFile.putUserData(GRAMMAR_POOL_TIME_STAMP_KEY, calculateTimeStamp(files, myProject));
-            }
             myFile.putUserData(KNOWN_NAMESPACES_KEY, getNamespaces(myFile));
         }
         catch (SAXException e) {
@@ -222,6 +226,28 @@ public class ValidateXmlActionHandler implements ValidateXmlHandler {
         catch (StackOverflowError error) {
             // http://issues.apache.org/jira/browse/XERCESJ-589
         }
+        finally {
+            registerDependencies();
+        }
+    }
+
+    private void registerDependencies() {
+        final String[] resourcePaths = myXmlResourceResolver.getResourcePaths();
+        final VirtualFile[] files = new VirtualFile[resourcePaths.length];
+        for (int i = 0; i < resourcePaths.length; ++i) {
+            files[i] = UriUtil.findRelativeFile(resourcePaths[i], null);
+        }
+        if (files.length > 0) { // if caches are used
+            myFile.putUserData(DEPENDENT_FILES_KEY, files);
+            myFile.putUserData(GRAMMAR_POOL_TIME_STAMP_KEY, calculateTimeStamp(files, myProject));
+        }
+
+        // even without any files the pool holds the grammars that have been read, and others may be waiting for them
+        XMLGrammarPool grammarPool = myGrammarPool;
+        if (grammarPool != null) {
+            myGrammarPool = null;
+            XmlGrammarPoolManager.getInstance(myProject).registerDependencies(grammarPool, files);
+        }
     }
 
     protected SAXParser createParser() throws SAXException, ParserConfigurationException {
@@ -272,6 +298,7 @@ public class ValidateXmlActionHandler implements ValidateXmlHandler {
 
         if (schemaChecking) { // when dtd checking schema refs could not be validated @see http://marc.theaimsgroup.com/?l=xerces-j-user&m=112504202423704&w=2
             XMLGrammarPool grammarPool = getGrammarPool(myFile, myForceChecking);
+            myGrammarPool = grammarPool;
             configureEntityManager(myFile, parser);
             parser.getXMLReader().setProperty(GRAMMAR_FEATURE_ID, grammarPool);
         }
@@ -301,18 +328,14 @@ public class ValidateXmlActionHandler implements ValidateXmlHandler {
 
     public static XMLGrammarPool getGrammarPool(XmlFile file, boolean forceChecking) {
         final XMLGrammarPool previousGrammarPool = getGrammarPool(file);
-        XMLGrammarPool grammarPool = null;
+        // files referring to the same schemas share their grammars
+        XMLGrammarPool grammarPool = XmlGrammarPoolManager.getInstance(file.getProject()).getPool(file, forceChecking);
 
-        // check if the pool is valid
-        if (!forceChecking && !isValidationDependentFilesOutOfDate(file)) {
-            grammarPool = previousGrammarPool;
-        }
-
-        if (grammarPool == null) {
+        if (grammarPool != previousGrammarPool) {
             invalidateEntityManager(file);
-            grammarPool = new XMLGrammarPoolImpl();
             file.putUserData(GRAMMAR_POOL_KEY, grammarPool);
         }
+        file.putUserData(GRAMMAR_POOL_SCHEMAS_KEY, XmlGrammarPoolManager.getPoolKey(file));
         return grammarPool;
     }
 
@@ -330,6 +353,11 @@ public class ValidateXmlActionHandler implements ValidateXmlHandler {
             return true;
         }
 
+        // the DOCTYPE or a schema location hint has been edited since the grammar pool was picked
+        if (!XmlGrammarPoolManager.getPoolKey(myFile).equals(myFile.getUserData(GRAMMAR_POOL_SCHEMAS_KEY))) {
+            return true;
+        }
+
         if (grammarPoolTimeStamp != null && files != null) {
             long dependentFilesTimestamp = calculateTimeStamp(files, myFile.getProject());
 
@@ -370,7 +398,7 @@ public class ValidateXmlActionHandler implements ValidateXmlHandler {
         return ContainerUtil.mapNotNull(rootTag.getAttributes(), attribute -> attribute.getValue(), ArrayUtil.EMPTY_STRING_ARRAY);
     }
 
-    private static long calculateTimeStamp(final VirtualFile[] files, Project myProject) {
+    static long calculateTimeStamp(final VirtualFile[] files, Project myProject) {
         long timestamp = 0;
 
         for (VirtualFile file : files) {
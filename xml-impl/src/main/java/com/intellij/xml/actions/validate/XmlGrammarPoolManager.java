@@ -0,0 +1,247 @@
+package com.intellij.xml.actions.validate;
+
+import com.intellij.xml.util.XmlUtil;
+import consulo.annotation.component.ComponentScope;
+import consulo.annotation.component.ServiceAPI;
+import consulo.annotation.component.ServiceImpl;
+import consulo.project.Project;
+import consulo.util.dataholder.Key;
+import consulo.util.lang.StringUtil;
+import consulo.virtualFileSystem.VirtualFile;
+import consulo.xml.language.psi.XmlAttribute;
+import consulo.xml.language.psi.XmlDoctype;
+import consulo.xml.language.psi.XmlDocument;
+import consulo.xml.language.psi.XmlFile;
+import consulo.xml.language.psi.XmlProlog;
+import consulo.xml.language.psi.XmlTag;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import org.apache.xerces.util.XMLGrammarPoolImpl;
+import org.apache.xerces.xni.grammars.XMLGrammarPool;
+import org.jspecify.annotations.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Xerces grammar pools shared by all files of a project that refer to the same schemas, so that e.g. hundreds of
+ * Spring or Maven descriptors don't each parse and keep their own copy of the same XSDs.
+ * <p>
+ * Xerces pools grammars by target namespace only, so a pool can't simply be shared by everybody: files are grouped
+ * by their DOCTYPE, the namespace declarations of their root tag and the schema location hints of all their tags
+ * (plus their directory if a location is relative); the key of a file is kept until the file changes. A pool is pending
+ * until the validation that created it has read its grammars; validations running meanwhile get a private pool rather
+ * than waiting, since they run in read actions. A pool becomes stale as soon as one of the files it was built from
+ * changes; the least recently used pools are dropped when there are too many of them.
+ *
+ * @since 2026-10-18
+ */
+@Singleton
+@ServiceAPI(ComponentScope.PROJECT)
+@ServiceImpl
+public class XmlGrammarPoolManager {
+    private static final int MAX_POOLS = 64;
+    private static final Key<PoolKey> POOL_KEY = Key.create("XML_GRAMMAR_POOL_KEY");
+
+    private final Project myProject;
+
+    private final Map<String, PoolEntry> myPools = new LinkedHashMap<>(MAX_POOLS, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, PoolEntry> eldest) {
+            return size() > MAX_POOLS;
+        }
+    };
+
+    private static class PoolEntry {
+        private final XMLGrammarPool myPool = new XMLGrammarPoolImpl();
+        // null while the validation that created the pool is still running
+        private VirtualFile @Nullable [] myDependencies;
+        private long myTimeStamp;
+
+        boolean isPending() {
+            return myDependencies == null;
+        }
+    }
+
+    @Inject
+    public XmlGrammarPoolManager(Project project) {
+        myProject = project;
+    }
+
+    public static XmlGrammarPoolManager getInstance(Project project) {
+        return project.getInstance(XmlGrammarPoolManager.class);
+    }
+
+    /**
+     * Never blocks: while another validation is still reading the grammars of the shared pool, a private pool is
+     * returned. The caller has to pass the pool to {@link #registerDependencies} or {@link #abandon} once it is done with
+     * it, whether the validation succeeded or not.
+     *
+     * @param forceChecking whether all grammars have to be parsed again, even if nothing seems to have changed
+     */
+    public XMLGrammarPool getPool(XmlFile file, boolean forceChecking) {
+        String key = getPoolKey(file);
+        synchronized (myPools) {
+            PoolEntry entry = myPools.get(key);
+            if (entry != null && entry.isPending()) {
+                // unknown to the manager, so registering or abandoning it does nothing
+                return new XMLGrammarPoolImpl();
+            }
+            if (entry == null || forceChecking || !isUpToDate(entry)) {
+                entry = new PoolEntry();
+                myPools.put(key, entry);
+            }
+            return entry.myPool;
+        }
+    }
+
+    /**
+     * Remembers the files the grammars in a pending {@code pool} have been read from, which makes it available to
+     * other validations; the pool is discarded once one of these files changes.
+     */
+    public void registerDependencies(XMLGrammarPool pool, VirtualFile[] dependencies) {
+        long timeStamp = ValidateXmlActionHandler.calculateTimeStamp(dependencies, myProject);
+        synchronized (myPools) {
+            PoolEntry entry = findPendingEntry(pool);
+            if (entry != null) {
+                entry.myDependencies = dependencies;
+                entry.myTimeStamp = timeStamp;
+            }
+        }
+    }
+
+    /**
+     * Drops a pending {@code pool} whose validation didn't get to read the grammars.
+     */
+    public void abandon(XMLGrammarPool pool) {
+        synchronized (myPools) {
+            for (Iterator<PoolEntry> iterator = myPools.values().iterator(); iterator.hasNext(); ) {
+                PoolEntry entry = iterator.next();
+                if (entry.myPool == pool && entry.isPending()) {
+                    iterator.remove();
+                    return;
+                }
+            }
+        }
+    }
+
+    public void clear() {
+        synchronized (myPools) {
+            myPools.clear();
+        }
+    }
+
+    @Nullable
+    private PoolEntry findPendingEntry(XMLGrammarPool pool) {
+        // not by key: the file may have been edited while it was validated
+        for (PoolEntry entry : myPools.values()) {
+            if (entry.myPool == pool) {
+                return entry.isPending() ? entry : null;
+            }
+        }
+        return null;
+    }
+
+    private boolean isUpToDate(PoolEntry entry) {
+        VirtualFile[] dependencies = entry.myDependencies;
+        return dependencies != null && ValidateXmlActionHandler.calculateTimeStamp(dependencies, myProject) == entry.myTimeStamp;
+    }
+
+    /**
+     * What the pool of {@code file} is shared by: its DOCTYPE, the namespace declarations of its root tag and the schema
+     * location hints of all its tags, plus its directory if a location is relative.
+     */
+    public static String getPoolKey(XmlFile file) {
+        long stamp = file.getModificationStamp();
+        PoolKey poolKey = file.getUserData(POOL_KEY);
+        if (poolKey == null || poolKey.stamp() != stamp) {
+            poolKey = computePoolKey(file, stamp);
+            file.putUserData(POOL_KEY, poolKey);
+        }
+        if (!poolKey.relative()) {
+            return poolKey.key();
+        }
+        // relative schema locations are resolved against the directory of the file, which may change with the same text
+        VirtualFile virtualFile = file.getVirtualFile();
+        VirtualFile parent = virtualFile != null ? virtualFile.getParent() : null;
+        return poolKey.key() + (parent != null ? parent.getUrl() : file.getName());
+    }
+
+    /**
+     * Reads the DOCTYPE and the root tag. Hints on nested tags are rare, so the tags below the root are only walked if the
+     * text after the root start tag mentions a schema location at all.
+     */
+    private static PoolKey computePoolKey(XmlFile file, long stamp) {
+        StringBuilder key = new StringBuilder();
+        boolean relative = false;
+        XmlDocument document = file.getDocument();
+        XmlProlog prolog = document != null ? document.getProlog() : null;
+        XmlDoctype doctype = prolog != null ? prolog.getDoctype() : null;
+        if (doctype != null) {
+            // DTD grammars are pooled as well, the internal subset is part of them
+            key.append(doctype.getText()).append('\n');
+            String dtdUri = doctype.getDtdUri();
+            relative = dtdUri != null && isRelative(dtdUri);
+        }
+        XmlTag rootTag = file.getRootTag();
+        if (rootTag != null) {
+            for (XmlAttribute attribute : rootTag.getAttributes()) {
+                String value = attribute.getValue();
+                if (value != null && attribute.isNamespaceDeclaration()) {
+                    key.append(attribute.getName()).append('=').append(value).append('\n');
+                }
+            }
+            relative |= appendSchemaLocations(rootTag, key);
+            int contentStart = rootTag.getValue().getTextRange().getStartOffset();
+            if (StringUtil.indexOf(file.getViewProvider().getContents(), "schemaLocation", contentStart) >= 0) {
+                // Xerces honours schema location hints on any element
+                Deque<XmlTag> tags = new ArrayDeque<>(Arrays.asList(rootTag.getSubTags()));
+                while (!tags.isEmpty()) {
+                    XmlTag tag = tags.pop();
+                    relative |= appendSchemaLocations(tag, key);
+                    XmlTag[] subTags = tag.getSubTags();
+                    for (int i = subTags.length - 1; i >= 0; i--) {
+                        tags.push(subTags[i]);
+                    }
+                }
+            }
+        }
+        return new PoolKey(stamp, key.toString(), relative);
+    }
+
+    /**
+     * @return whether one of the locations appended is relative
+     */
+    private static boolean appendSchemaLocations(XmlTag tag, StringBuilder key) {
+        boolean relative = false;
+        for (XmlAttribute attribute : tag.getAttributes()) {
+            if (isSchemaLocation(attribute)) {
+                String value = attribute.getValue();
+                key.append(attribute.getLocalName()).append('=').append(value).append('\n');
+                for (String location : StringUtil.tokenize(value, " \t\r\n")) {
+                    relative |= isRelative(location);
+                }
+            }
+        }
+        return relative;
+    }
+
+    private static boolean isSchemaLocation(XmlAttribute attribute) {
+        if (attribute.getValue() == null || !XmlUtil.XML_SCHEMA_INSTANCE_URI.equals(attribute.getNamespace())) {
+            return false;
+        }
+        String name = attribute.getLocalName();
+        return XmlUtil.SCHEMA_LOCATION_ATT.equals(name) || XmlUtil.NO_NAMESPACE_SCHEMA_LOCATION_ATT.equals(name);
+    }
+
+    private static boolean isRelative(String location) {
+        return location.indexOf(':') < 0;
+    }
+
+    private record PoolKey(long stamp, String key, boolean relative) {
+    }
+}
@@ -64,8 +64,8 @@ public class XmlNSDescriptorImpl implements XmlNSDescriptorEx, Validator<XmlDocu
     private static final Logger LOG = Logger.getInstance("#XmlNSDescriptorImpl");
     private static final Set<String> STD_TYPES = new HashSet<>();
     private static final Set<String> UNDECLARED_STD_TYPES = new HashSet<>();
-    private static final String INCLUDE_TAG_NAME = "include";
-    private static final String REDEFINE_TAG_NAME = "redefine";
+    static final String INCLUDE_TAG_NAME = "include";
+    static final String REDEFINE_TAG_NAME = "redefine";
     private static final ThreadLocal<Set<PsiFile>> myRedefinedDescriptorsInProcessing = new ThreadLocal<>();
     private final Map<QNameKey, CachedValue<XmlElementDescriptor>> myDescriptorsMap =
         Collections.synchronizedMap(new HashMap<QNameKey, CachedValue<XmlElementDescriptor>>());
@@ -283,7 +283,7 @@ public class XmlNSDescriptorImpl implements XmlNSDescriptorEx, Validator<XmlDocu
         }
         visited.add(rootTag);
 
-        XmlTag[] tags = rootTag.getSubTags();
+        XmlTag[] tags = XsdDeclarationTable.getSubTags(rootTag, name, specialName);
 
         return findSpecialTagIn(tags, specialName, name, rootTag, descriptor, visited);
     }
@@ -415,7 +415,7 @@ public class XmlNSDescriptorImpl implements XmlNSDescriptorEx, Validator<XmlDocu
         if (rootTag == null) {
             return null;
         }
-        XmlTag[] tags = rootTag.getSubTags();
+        XmlTag[] tags = XsdDeclarationTable.getSubTags(rootTag, localName, ELEMENT_TAG_NAME);
         visited.add(this);
 
         LOG.assertTrue(rootTag.isValid());
@@ -539,7 +539,7 @@ public class XmlNSDescriptorImpl implements XmlNSDescriptorEx, Validator<XmlDocu
             return null;
         }
         visited.add(myTag);
-        XmlTag[] tags = myTag.getSubTags();
+        XmlTag[] tags = XsdDeclarationTable.getSubTags(myTag, localName, ATTRIBUTE_TAG_NAME);
 
         for (XmlTag tag : tags) {
             if (equalsToSchemaName(tag, ATTRIBUTE_TAG_NAME)) {
@@ -680,7 +680,7 @@ public class XmlNSDescriptorImpl implements XmlNSDescriptorEx, Validator<XmlDocu
                 }
             }
 
-            XmlTag[] tags = rootTag.getSubTags();
+            XmlTag[] tags = XsdDeclarationTable.getSubTags(rootTag, name, "complexType", "simpleType");
             return doFindIn(tags, name, namespace, pair, rootTag);
         });
     }
@@ -954,7 +954,7 @@ public class XmlNSDescriptorImpl implements XmlNSDescriptorEx, Validator<XmlDocu
                 return false;
             }
 
-            XmlTag[] tags = myTag.getSubTags();
+            XmlTag[] tags = XsdDeclarationTable.getSubstitutingSubTags(myTag);
 
             for (XmlTag tag : tags) {
                 if (equalsToSchemaName(tag, ELEMENT_TAG_NAME)) {
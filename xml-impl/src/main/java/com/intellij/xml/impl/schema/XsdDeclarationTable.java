@@ -0,0 +1,449 @@
+package com.intellij.xml.impl.schema;
+
+import com.intellij.xml.util.XmlUtil;
+import consulo.container.boot.ContainerPathManager;
+import consulo.language.psi.PsiFile;
+import consulo.logging.Logger;
+import consulo.util.dataholder.Key;
+import consulo.util.io.Readers;
+import consulo.util.lang.StringUtil;
+import consulo.util.xml.fastReader.NanoXmlUtil;
+import consulo.virtualFileSystem.VirtualFile;
+import consulo.xml.language.psi.XmlDocument;
+import consulo.xml.language.psi.XmlTag;
+import org.jspecify.annotations.Nullable;
+
+import java.io.*;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/**
+ * A lookup table of the top-level declarations of a read-only XSD file (from a jar, the bundled standard schemas, ...):
+ * for every sub tag of the root tag its local tag name, the local part of its {@code name} attribute and of its
+ * {@code substitutionGroup} attribute, with all names interned.
+ * <p>
+ * {@link XmlNSDescriptorImpl} uses it to look at the few declarations that can match a name, plus the
+ * {@code include}/{@code import}/{@code redefine} tags, instead of checking the namespace and attributes of every sub tag
+ * of the schema on each lookup. This is not a PSI-free descriptor model: the schema is still parsed, and the
+ * descriptors are still created from the PSI of the selected tags.
+ * <p>
+ * Tables are computed with NanoXml and kept with the file for its modification stamp. They are also stored under the
+ * system directory by the SHA-1 of the file content, so that the bundled schemas are scanned once rather than once per
+ * session. A table is only used for a root tag whose sub tags have exactly the recorded names.
+ *
+ * @since 2026-10-18
+ */
+final class XsdDeclarationTable {
+    private static final Logger LOG = Logger.getInstance(XsdDeclarationTable.class);
+
+    private static final boolean ENABLED = Boolean.parseBoolean(System.getProperty("xml.xsd.declaration.tables", "true"));
+
+    private static final Key<XsdDeclarationTable> TABLE_KEY = Key.create("XSD_DECLARATION_TABLE");
+    private static final Key<StampedSchema> FILE_TABLE_KEY = Key.create("XSD_DECLARATION_TABLE_OF_FILE");
+    private static final XsdDeclarationTable NONE = new XsdDeclarationTable(new String[0], new int[0], new int[0], new int[0]);
+
+    private static final String CACHE_DIR = "xsd-declaration-tables";
+    private static final String SUFFIX = ".table";
+    private static final int FORMAT_VERSION = 2;
+    private static final long MAX_CACHE_SIZE = 8L * 1024 * 1024;
+
+    private static final Set<String> DIRECTIVES =
+        Set.of(XmlNSDescriptorImpl.IMPORT_TAG_NAME, XmlNSDescriptorImpl.INCLUDE_TAG_NAME, XmlNSDescriptorImpl.REDEFINE_TAG_NAME);
+
+    private static final int NO_NAME = -1;
+
+    private final String[] myStrings;
+    // per sub tag of the root tag, indices into myStrings
+    private final int[] myTagNames;
+    private final int[] myNames;
+    private final int[] mySubstitutionGroups;
+
+    // "tagName:name" -> ascending positions
+    private final Map<String, int[]> myDeclarations = new HashMap<>();
+    private final int[] myDirectives;
+    private final int[] mySubstitutingElements;
+
+    private XsdDeclarationTable(String[] strings, int[] tagNames, int[] names, int[] substitutionGroups) {
+        myStrings = strings;
+        myTagNames = tagNames;
+        myNames = names;
+        mySubstitutionGroups = substitutionGroups;
+
+        Map<String, List<Integer>> declarations = new HashMap<>();
+        List<Integer> directives = new ArrayList<>();
+        List<Integer> substitutingElements = new ArrayList<>();
+        for (int i = 0; i < tagNames.length; i++) {
+            String tagName = strings[tagNames[i]];
+            if (DIRECTIVES.contains(tagName)) {
+                directives.add(i);
+            }
+            else if (names[i] != NO_NAME) {
+                declarations.computeIfAbsent(getKey(tagName, strings[names[i]]), k -> new ArrayList<>()).add(i);
+            }
+            if (substitutionGroups[i] != NO_NAME) {
+                substitutingElements.add(i);
+            }
+        }
+        for (Map.Entry<String, List<Integer>> entry : declarations.entrySet()) {
+            myDeclarations.put(entry.getKey(), toArray(entry.getValue()));
+        }
+        myDirectives = toArray(directives);
+        mySubstitutingElements = toArray(substitutingElements);
+    }
+
+    /**
+     * Narrows the sub tags of {@code rootTag} down to the ones a lookup has to check: the {@code tagNames} declarations
+     * whose name has the same local part as {@code name} and all {@code include}/{@code import}/{@code redefine} tags,
+     * in document order. Returns all sub tags if there is no compiled table for {@code rootTag} or {@code name} is null.
+     */
+    static XmlTag[] getSubTags(XmlTag rootTag, @Nullable String name, String... tagNames) {
+        XmlTag[] tags = rootTag.getSubTags();
+        if (name == null) {
+            return tags;
+        }
+        XsdDeclarationTable schema = getSchema(rootTag, tags);
+        if (schema == null) {
+            return tags;
+        }
+        String localName = XmlUtil.findLocalNameByQualifiedName(name);
+        int[] positions = schema.myDirectives;
+        for (String tagName : tagNames) {
+            int[] declarations = schema.myDeclarations.get(getKey(tagName, localName));
+            if (declarations != null) {
+                positions = merge(positions, declarations);
+            }
+        }
+        return select(tags, positions);
+    }
+
+    /**
+     * @return the sub tags of {@code rootTag} that have a {@code substitutionGroup} attribute, or all of them if there
+     * is no compiled table for {@code rootTag}
+     */
+    static XmlTag[] getSubstitutingSubTags(XmlTag rootTag) {
+        XmlTag[] tags = rootTag.getSubTags();
+        XsdDeclarationTable schema = getSchema(rootTag, tags);
+        return schema == null ? tags : select(tags, schema.mySubstitutingElements);
+    }
+
+    @Nullable
+    private static XsdDeclarationTable getSchema(XmlTag rootTag, XmlTag[] tags) {
+        XsdDeclarationTable schema = rootTag.getUserData(TABLE_KEY);
+        if (schema == null) {
+            // the user data is dropped together with the tag when the file is reparsed
+            schema = computeSchema(rootTag, tags);
+            rootTag.putUserData(TABLE_KEY, schema);
+        }
+        return schema == NONE ? null : schema;
+    }
+
+    private static XsdDeclarationTable computeSchema(XmlTag rootTag, XmlTag[] tags) {
+        if (!ENABLED || !(rootTag.getParent() instanceof XmlDocument)) {
+            return NONE;
+        }
+        PsiFile file = rootTag.getContainingFile();
+        VirtualFile virtualFile = file != null ? file.getOriginalFile().getVirtualFile() : null;
+        if (virtualFile == null || virtualFile.isWritable() && virtualFile.isInLocalFileSystem()) {
+            return NONE;
+        }
+        XsdDeclarationTable schema = get(virtualFile);
+        return schema != null && schema.matches(tags) ? schema : NONE;
+    }
+
+    private boolean matches(XmlTag[] tags) {
+        if (tags.length != myTagNames.length) {
+            return false;
+        }
+        for (int i = 0; i < tags.length; i++) {
+            if (!myStrings[myTagNames[i]].equals(tags[i].getLocalName())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Nullable
+    private static XsdDeclarationTable get(VirtualFile file) {
+        long stamp = file.getModificationStamp();
+        StampedSchema stamped = file.getUserData(FILE_TABLE_KEY);
+        if (stamped != null && stamped.stamp() == stamp) {
+            return stamped.schema();
+        }
+
+        XsdDeclarationTable schema;
+        try {
+            byte[] content = file.contentsToByteArray();
+            String key = getCacheKey(content);
+            schema = key != null ? read(key) : null;
+            if (schema == null) {
+                String text = new String(content, file.getCharset());
+                schema = compute(StringUtil.startsWithChar(text, '\uFEFF') ? text.substring(1) : text);
+                if (schema != null && key != null) {
+                    write(key, schema);
+                }
+            }
+        }
+        catch (IOException e) {
+            schema = null;
+        }
+        file.putUserData(FILE_TABLE_KEY, new StampedSchema(stamp, schema));
+        return schema;
+    }
+
+    /**
+     * @return null if {@code text} isn't well-formed enough to be scanned
+     */
+    @Nullable
+    static XsdDeclarationTable compute(CharSequence text) {
+        TableBuilder builder = new TableBuilder();
+        Reader reader = Readers.readerFromCharSequence(text);
+        try {
+            NanoXmlUtil.parse(reader, builder);
+        }
+        finally {
+            try {
+                reader.close();
+            }
+            catch (IOException e) {
+                // can never happen
+            }
+        }
+        return builder.myDepth == 0 ? builder.build() : null;
+    }
+
+    private static class TableBuilder extends NanoXmlUtil.IXMLBuilderAdapter {
+        private final Map<String, Integer> myStringIds = new HashMap<>();
+        private final List<String> myStrings = new ArrayList<>();
+        private final List<int[]> myEntries = new ArrayList<>();
+        private int myDepth;
+
+        @Override
+        public void startElement(String name, String nsPrefix, String nsURI, String systemID, int lineNr) {
+            if (++myDepth == 2) {
+                myEntries.add(new int[]{getId(name), NO_NAME, NO_NAME});
+            }
+        }
+
+        @Override
+        public void addAttribute(String key, String nsPrefix, String nsURI, String value, String type) {
+            if (myDepth != 2 || StringUtil.isNotEmpty(nsPrefix)) {
+                return;
+            }
+            int[] entry = myEntries.get(myEntries.size() - 1);
+            if ("name".equals(key)) {
+                entry[1] = getId(XmlUtil.findLocalNameByQualifiedName(value));
+            }
+            else if ("substitutionGroup".equals(key)) {
+                entry[2] = getId(XmlUtil.findLocalNameByQualifiedName(value));
+            }
+        }
+
+        @Override
+        public void endElement(String name, String nsPrefix, String nsURI) {
+            myDepth--;
+        }
+
+        private int getId(String s) {
+            Integer id = myStringIds.get(s);
+            if (id == null) {
+                id = myStrings.size();
+                myStringIds.put(s, id);
+                myStrings.add(s);
+            }
+            return id;
+        }
+
+        XsdDeclarationTable build() {
+            int count = myEntries.size();
+            int[] tagNames = new int[count];
+            int[] names = new int[count];
+            int[] substitutionGroups = new int[count];
+            for (int i = 0; i < count; i++) {
+                int[] entry = myEntries.get(i);
+                tagNames[i] = entry[0];
+                names[i] = entry[1];
+                substitutionGroups[i] = entry[2];
+            }
+            return new XsdDeclarationTable(myStrings.toArray(new String[0]), tagNames, names, substitutionGroups);
+        }
+    }
+
+    void write(DataOutput out) throws IOException {
+        out.writeInt(FORMAT_VERSION);
+        out.writeInt(myStrings.length);
+        for (String s : myStrings) {
+            out.writeUTF(s);
+        }
+        out.writeInt(myTagNames.length);
+        for (int i = 0; i < myTagNames.length; i++) {
+            out.writeInt(myTagNames[i]);
+            out.writeInt(myNames[i]);
+            out.writeInt(mySubstitutionGroups[i]);
+        }
+    }
+
+    static XsdDeclarationTable read(DataInput in) throws IOException {
+        if (in.readInt() != FORMAT_VERSION) {
+            throw new IOException("Unsupported format");
+        }
+        String[] strings = new String[in.readInt()];
+        for (int i = 0; i < strings.length; i++) {
+            strings[i] = in.readUTF();
+        }
+        int count = in.readInt();
+        int[] tagNames = new int[count];
+        int[] names = new int[count];
+        int[] substitutionGroups = new int[count];
+        for (int i = 0; i < count; i++) {
+            tagNames[i] = checkIndex(in.readInt(), strings, false);
+            names[i] = checkIndex(in.readInt(), strings, true);
+            substitutionGroups[i] = checkIndex(in.readInt(), strings, true);
+        }
+        return new XsdDeclarationTable(strings, tagNames, names, substitutionGroups);
+    }
+
+    private static int checkIndex(int index, String[] strings, boolean optional) throws IOException {
+        if (index >= strings.length || index < (optional ? NO_NAME : 0)) {
+            throw new IOException("Bad string index " + index);
+        }
+        return index;
+    }
+
+    @Nullable
+    private static XsdDeclarationTable read(String key) {
+        File file = new File(getCacheDir(), key + SUFFIX);
+        if (!file.isFile()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            XsdDeclarationTable schema = read(in);
+            file.setLastModified(System.currentTimeMillis());
+            return schema;
+        }
+        catch (IOException | RuntimeException e) {
+            LOG.info("Dropping unreadable schema table " + file, e);
+            file.delete();
+            return null;
+        }
+    }
+
+    private static void write(String key, XsdDeclarationTable schema) {
+        File dir = getCacheDir();
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            return;
+        }
+        File tmp = null;
+        try {
+            tmp = File.createTempFile(key, ".tmp", dir);
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+                schema.write(out);
+            }
+            File target = new File(dir, key + SUFFIX);
+            try {
+                Files.move(tmp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+            catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            tmp = null;
+        }
+        catch (IOException e) {
+            LOG.debug(e);
+        }
+        finally {
+            if (tmp != null) {
+                tmp.delete();
+            }
+        }
+        evictIfNeeded(dir);
+    }
+
+    private static synchronized void evictIfNeeded(File dir) {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        long size = 0;
+        for (File file : files) {
+            size += file.length();
+        }
+        if (size <= MAX_CACHE_SIZE) {
+            return;
+        }
+        Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+        for (File file : files) {
+            if (size <= MAX_CACHE_SIZE * 3 / 4) {
+                break;
+            }
+            long length = file.length();
+            if (file.delete()) {
+                size -= length;
+            }
+        }
+    }
+
+    private static File getCacheDir() {
+        return new File(ContainerPathManager.get().getSystemPath(), CACHE_DIR);
+    }
+
+    /**
+     * A file name for the table of a file with the given content: the hex SHA-1 of the content, so that a table is
+     * shared by all copies of a schema and a new version of it gets a new one.
+     */
+    @Nullable
+    private static String getCacheKey(byte[] content) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-1").digest(content);
+            StringBuilder key = new StringBuilder();
+            for (byte b : hash) {
+                key.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return key.toString();
+        }
+        catch (NoSuchAlgorithmException e) {
+            return null;
+        }
+    }
+
+    private static String getKey(String tagName, String localName) {
+        return tagName + ':' + localName;
+    }
+
+    private static XmlTag[] select(XmlTag[] tags, int[] positions) {
+        XmlTag[] result = new XmlTag[positions.length];
+        for (int i = 0; i < positions.length; i++) {
+            result[i] = tags[positions[i]];
+        }
+        return result;
+    }
+
+    private static int[] merge(int[] a, int[] b) {
+        int[] result = new int[a.length + b.length];
+        int i = 0, j = 0, k = 0;
+        while (i < a.length && j < b.length) {
+            result[k++] = a[i] <= b[j] ? a[i++] : b[j++];
+        }
+        while (i < a.length) {
+            result[k++] = a[i++];
+        }
+        while (j < b.length) {
+            result[k++] = b[j++];
+        }
+        return result;
+    }
+
+    private record StampedSchema(long stamp, @Nullable XsdDeclarationTable schema) {
+    }
+
+    private static int[] toArray(List<Integer> list) {
+        int[] result = new int[list.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = list.get(i);
+        }
+        return result;
+    }
+}
@@ -27,7 +27,6 @@ import consulo.language.psi.stub.FileContent;
 import consulo.logging.Logger;
 import consulo.project.Project;
 import consulo.util.collection.MultiMap;
-import consulo.util.io.Readers;
 import consulo.util.lang.Pair;
 import consulo.virtualFileSystem.VirtualFile;
 
@@ -62,7 +61,6 @@ public class SchemaTypeInheritanceIndex extends XmlIndex<Set<SchemaTypeInfo>> {
         private final VirtualFile myCurrentFile;
         private final GlobalSearchScope myFilter;
         private final boolean myShouldParseCurrent;
-        private MultiMap<SchemaTypeInfo, SchemaTypeInfo> myMap;
 
         private MyWorker(VirtualFile currentFile, Project project) {
             myCurrentFile = currentFile;
@@ -76,9 +74,9 @@ public class SchemaTypeInheritanceIndex extends XmlIndex<Set<SchemaTypeInfo>> {
         public List<Set<SchemaTypeInfo>> apply(String ns, String name) {
             List<Set<SchemaTypeInfo>> type = getDirectChildrenOfType(myProject, ns, name);
             if (myShouldParseCurrent) {
-                if (myMap == null) {
-                    myMap = XsdComplexTypeInfoBuilder.parse(Readers.readerFromCharSequence(myCurrentFile.loadText()));
-                    type.add(new HashSet<SchemaTypeInfo>(myMap.get(new SchemaTypeInfo(name, true, ns))));
+                XsdSchemaSummary summary = XsdSchemaSummary.get(myCurrentFile);
+                if (summary != null) {
+                    type.add(new HashSet<>(summary.getTypeInheritance().get(new SchemaTypeInfo(name, true, ns))));
                 }
             }
             return type;
@@ -106,8 +104,7 @@ public class SchemaTypeInheritanceIndex extends XmlIndex<Set<SchemaTypeInfo>> {
             @Override
             public Map<String, Set<SchemaTypeInfo>> map(FileContent inputData) {
                 final Map<String, Set<SchemaTypeInfo>> map = new HashMap<>();
-                final MultiMap<SchemaTypeInfo, SchemaTypeInfo> multiMap =
-                    XsdComplexTypeInfoBuilder.parse(Readers.readerFromCharSequence(inputData.getContentAsText()));
+                final MultiMap<SchemaTypeInfo, SchemaTypeInfo> multiMap = XsdSchemaSummary.get(inputData).getTypeInheritance();
                 for (SchemaTypeInfo key : multiMap.keySet()) {
                     map.put(
                         NsPlusTag.INSTANCE.encode(Pair.create(key.getNamespaceUri(), key.getTagName())),
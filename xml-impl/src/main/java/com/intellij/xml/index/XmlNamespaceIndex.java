@@ -28,8 +28,6 @@ import consulo.language.util.ModuleUtilCore;
 import consulo.module.Module;
 import consulo.project.DumbService;
 import consulo.project.Project;
-import consulo.util.io.Readers;
-import consulo.util.io.StreamUtil;
 import consulo.util.lang.Comparing;
 import consulo.virtualFileSystem.VirtualFile;
 import consulo.xml.language.psi.XmlFile;
@@ -55,17 +53,8 @@ public class XmlNamespaceIndex extends XmlIndex<XsdNamespaceBuilder> {
 
     @Nullable
     public static String computeNamespace(VirtualFile file) {
-        InputStream stream = null;
-        try {
-            stream = file.getInputStream();
-            return XsdNamespaceBuilder.computeNamespace(stream);
-        }
-        catch (IOException e) {
-            return null;
-        }
-        finally {
-            StreamUtil.closeStream(stream);
-        }
+        XsdSchemaSummary summary = XsdSchemaSummary.get(file);
+        return summary == null ? null : summary.getNamespaceBuilder().getNamespace();
     }
 
     public static List<IndexedRelevantResource<String, XsdNamespaceBuilder>> getResourcesByNamespace(
@@ -99,17 +88,7 @@ public class XmlNamespaceIndex extends XmlIndex<XsdNamespaceBuilder> {
         return new DataIndexer<String, XsdNamespaceBuilder, FileContent>() {
             @Override
             public Map<String, XsdNamespaceBuilder> map(final FileContent inputData) {
-                final XsdNamespaceBuilder builder;
-                if ("dtd".equals(inputData.getFile().getExtension())) {
-                    builder = new XsdNamespaceBuilder(inputData.getFileName(),
-                        "",
-                        Collections.<String>emptyList(),
-                        Collections.<String>emptyList()
-                    );
-                }
-                else {
-                    builder = XsdNamespaceBuilder.computeNamespace(Readers.readerFromCharSequence(inputData.getContentAsText()));
-                }
+                final XsdNamespaceBuilder builder = XsdSchemaSummary.get(inputData).getNamespaceBuilder();
                 final HashMap<String, XsdNamespaceBuilder> map = new HashMap<>(2);
                 String namespace = builder.getNamespace();
                 if (namespace != null) {
@@ -15,7 +15,6 @@
  */
 package com.intellij.xml.index;
 
-import com.intellij.xml.util.XmlUtil;
 import consulo.annotation.component.ExtensionImpl;
 import consulo.index.io.DataIndexer;
 import consulo.index.io.ID;
@@ -24,8 +23,6 @@ import consulo.language.psi.stub.FileBasedIndex;
 import consulo.language.psi.stub.FileContent;
 import consulo.language.psi.stub.ScalarIndexExtension;
 import consulo.project.Project;
-import consulo.util.io.Readers;
-import consulo.util.lang.StringUtil;
 import consulo.virtualFileSystem.VirtualFile;
 
 import java.util.Collection;
@@ -58,11 +55,10 @@ public class XmlTagNamesIndex extends XmlIndex<Void> {
         return new DataIndexer<>() {
             @Override
             public Map<String, Void> map(final FileContent inputData) {
-                CharSequence text = inputData.getContentAsText();
-                if (StringUtil.indexOf(text, XmlUtil.XML_SCHEMA_URI) == -1) {
+                Collection<String> tags = XsdSchemaSummary.get(inputData).getTagNames();
+                if (tags.isEmpty()) {
                     return Collections.emptyMap();
                 }
-                Collection<String> tags = XsdTagNameBuilder.computeTagNames(Readers.readerFromCharSequence(text));
                 Map<String, Void> map = new HashMap<>(tags.size());
                 for (String tag : tags) {
                     map.put(tag, null);
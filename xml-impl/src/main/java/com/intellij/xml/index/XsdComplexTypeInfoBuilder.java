@@ -68,7 +68,7 @@ public class XsdComplexTypeInfoBuilder extends NanoXmlUtil.IXMLBuilderAdapter {
         }
     }
 
-    private XsdComplexTypeInfoBuilder() {
+    XsdComplexTypeInfoBuilder() {
         myMap = new MultiMap<SchemaTypeInfo, SchemaTypeInfo>();
     }
 
@@ -210,13 +210,13 @@ public class XsdComplexTypeInfoBuilder extends NanoXmlUtil.IXMLBuilderAdapter {
         return new SchemaTypeInfo(element, isType, nsUri);
     }
 
-    private static class NameSpaceHelper extends NanoXmlUtil.EmptyValidator {
+    static class NameSpaceHelper extends NanoXmlUtil.EmptyValidator {
         public static final String XMLNS = "xmlns";
         public static final String XMLNS_ = "xmlns:";
         private boolean myInSchema;
         private final Map<String, String> myNamespaces;
 
-        private NameSpaceHelper() {
+        NameSpaceHelper() {
             myNamespaces = new HashMap<String, String>();
         }
 
@@ -44,9 +44,7 @@ public class XsdNamespaceBuilder extends NanoXmlUtil.IXMLBuilderAdapter implemen
         try {
             final XsdNamespaceBuilder builder = new XsdNamespaceBuilder();
             NanoXmlUtil.parse(reader, builder);
-            HashSet<String> tags = new HashSet<String>(builder.getTags());
-            tags.removeAll(builder.myReferencedTags);
-            builder.getRootTags().addAll(tags);
+            builder.computeRootTags();
             return builder;
         }
         finally {
@@ -119,6 +117,12 @@ public class XsdNamespaceBuilder extends NanoXmlUtil.IXMLBuilderAdapter implemen
         }
     }
 
+    void computeRootTags() {
+        HashSet<String> tags = new HashSet<String>(myTags);
+        tags.removeAll(myReferencedTags);
+        myRootTags.addAll(tags);
+    }
+
     @Override
     public int compareTo(XsdNamespaceBuilder o) {
         return Comparing.compare(myNamespace, o.myNamespace);
@@ -139,7 +143,7 @@ public class XsdNamespaceBuilder extends NanoXmlUtil.IXMLBuilderAdapter implemen
         return rate;
     }
 
-    private XsdNamespaceBuilder() {
+    XsdNamespaceBuilder() {
         myTags = new ArrayList<>();
         myRootTags = new ArrayList<>();
     }
@@ -0,0 +1,226 @@
+package com.intellij.xml.index;
+
+import com.intellij.xml.util.XmlUtil;
+import consulo.language.psi.stub.FileContent;
+import consulo.util.collection.MultiMap;
+import consulo.util.dataholder.Key;
+import consulo.util.io.Readers;
+import consulo.util.lang.StringUtil;
+import consulo.util.xml.fastReader.NanoXmlUtil;
+import consulo.virtualFileSystem.VirtualFile;
+import org.jspecify.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Everything the schema indexes need to know about a single XSD/DTD file, collected in one NanoXml pass.
+ * <p>
+ * {@link XmlNamespaceIndex}, {@link XmlTagNamesIndex} and {@link SchemaTypeInheritanceIndex} all obtain it through
+ * {@link #get(FileContent)}, so the content is tokenized once per file instead of once per index.
+ * Summaries are also remembered by content hash, which lets identical schemas vendored into many jars share one scan.
+ * <p>
+ * Code running outside of indexing, e.g. for schemas not in the index scope, uses {@link #get(VirtualFile)} instead of
+ * reading and parsing the file itself; its summaries are remembered by file and modification stamp.
+ *
+ * @since 2026-10-18
+ */
+public final class XsdSchemaSummary {
+    private static final Key<XsdSchemaSummary> SUMMARY_KEY = Key.create("XSD_SCHEMA_SUMMARY");
+
+    private static final int MAX_CACHED_SUMMARIES = 256;
+    private static final int MAX_CACHED_FILES = 64;
+
+    private static final Map<ByteBuffer, XsdSchemaSummary> ourSummaries =
+        new LinkedHashMap<ByteBuffer, XsdSchemaSummary>(MAX_CACHED_SUMMARIES, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<ByteBuffer, XsdSchemaSummary> eldest) {
+                return size() > MAX_CACHED_SUMMARIES;
+            }
+        };
+
+    private static final Map<VirtualFile, FileSummary> ourFileSummaries =
+        new LinkedHashMap<VirtualFile, FileSummary>(MAX_CACHED_FILES, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<VirtualFile, FileSummary> eldest) {
+                return size() > MAX_CACHED_FILES;
+            }
+        };
+
+    private record FileSummary(long modificationStamp, XsdSchemaSummary summary) {
+    }
+
+    private final XsdNamespaceBuilder myNamespaceBuilder;
+    private final Collection<String> myTagNames;
+    private final MultiMap<SchemaTypeInfo, SchemaTypeInfo> myTypeInheritance;
+
+    private XsdSchemaSummary(
+        XsdNamespaceBuilder namespaceBuilder,
+        Collection<String> tagNames,
+        MultiMap<SchemaTypeInfo, SchemaTypeInfo> typeInheritance
+    ) {
+        myNamespaceBuilder = namespaceBuilder;
+        myTagNames = tagNames;
+        myTypeInheritance = typeInheritance;
+    }
+
+    public static XsdSchemaSummary get(FileContent content) {
+        XsdSchemaSummary summary = content.getUserData(SUMMARY_KEY);
+        if (summary != null) {
+            return summary;
+        }
+
+        ByteBuffer hash = computeHash(content.getContent());
+        if (hash != null) {
+            synchronized (ourSummaries) {
+                summary = ourSummaries.get(hash);
+            }
+        }
+        if (summary == null) {
+            summary = compute(content.getContentAsText());
+            if (hash != null) {
+                synchronized (ourSummaries) {
+                    ourSummaries.put(hash, summary);
+                }
+            }
+        }
+
+        if ("dtd".equals(content.getFile().getExtension())) {
+            // dtd files are indexed by their name, so the namespace part can't be shared between equal contents
+            XsdNamespaceBuilder builder =
+                new XsdNamespaceBuilder(content.getFileName(), "", Collections.<String>emptyList(), Collections.<String>emptyList());
+            summary = new XsdSchemaSummary(builder, summary.myTagNames, summary.myTypeInheritance);
+        }
+        content.putUserData(SUMMARY_KEY, summary);
+        return summary;
+    }
+
+    /**
+     * Unlike {@link #get(FileContent)}, doesn't substitute the namespace of DTDs by their name.
+     *
+     * @return the summary of the current content of {@code file}, or {@code null} if it can't be read
+     */
+    @Nullable
+    public static XsdSchemaSummary get(VirtualFile file) {
+        long stamp = file.getModificationStamp();
+        synchronized (ourFileSummaries) {
+            FileSummary fileSummary = ourFileSummaries.get(file);
+            if (fileSummary != null && fileSummary.modificationStamp() == stamp) {
+                return fileSummary.summary();
+            }
+        }
+
+        byte[] content;
+        try {
+            content = file.contentsToByteArray();
+        }
+        catch (IOException e) {
+            return null;
+        }
+        XsdSchemaSummary summary = null;
+        ByteBuffer hash = computeHash(content);
+        if (hash != null) {
+            synchronized (ourSummaries) {
+                summary = ourSummaries.get(hash);
+            }
+        }
+        if (summary == null) {
+            String text = new String(content, file.getCharset());
+            summary = compute(StringUtil.startsWithChar(text, '\uFEFF') ? text.substring(1) : text);
+            if (hash != null) {
+                synchronized (ourSummaries) {
+                    ourSummaries.put(hash, summary);
+                }
+            }
+        }
+
+        synchronized (ourFileSummaries) {
+            ourFileSummaries.put(file, new FileSummary(stamp, summary));
+        }
+        return summary;
+    }
+
+    public static XsdSchemaSummary compute(CharSequence text) {
+        XsdNamespaceBuilder namespaceBuilder = new XsdNamespaceBuilder();
+        XsdTagNameBuilder tagNameBuilder = new XsdTagNameBuilder();
+        XsdComplexTypeInfoBuilder typeInfoBuilder = new XsdComplexTypeInfoBuilder();
+        // every builder only reacts to elements from the XML Schema namespace
+        if (StringUtil.indexOf(text, XmlUtil.XML_SCHEMA_URI) != -1) {
+            XsdComplexTypeInfoBuilder.NameSpaceHelper helper = new XsdComplexTypeInfoBuilder.NameSpaceHelper();
+            typeInfoBuilder.setNameSpaceHelper(helper);
+            Reader reader = Readers.readerFromCharSequence(text);
+            try {
+                NanoXmlUtil.parse(reader, new CompositeBuilder(namespaceBuilder, tagNameBuilder, typeInfoBuilder), helper);
+            }
+            finally {
+                try {
+                    reader.close();
+                }
+                catch (IOException e) {
+                    // can never happen
+                }
+            }
+        }
+        namespaceBuilder.computeRootTags();
+        return new XsdSchemaSummary(namespaceBuilder, tagNameBuilder.getTagNames(), typeInfoBuilder.getMap());
+    }
+
+    public XsdNamespaceBuilder getNamespaceBuilder() {
+        return myNamespaceBuilder;
+    }
+
+    public Collection<String> getTagNames() {
+        return myTagNames;
+    }
+
+    public MultiMap<SchemaTypeInfo, SchemaTypeInfo> getTypeInheritance() {
+        return myTypeInheritance;
+    }
+
+    private static ByteBuffer computeHash(byte[] content) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            digest.update(content);
+            return ByteBuffer.wrap(digest.digest());
+        }
+        catch (NoSuchAlgorithmException e) {
+            return null;
+        }
+    }
+
+    private static class CompositeBuilder extends NanoXmlUtil.IXMLBuilderAdapter {
+        private final NanoXmlUtil.IXMLBuilderAdapter[] myBuilders;
+
+        private CompositeBuilder(NanoXmlUtil.IXMLBuilderAdapter... builders) {
+            myBuilders = builders;
+        }
+
+        @Override
+        public void startElement(String name, String nsPrefix, String nsURI, String systemID, int lineNr) throws Exception {
+            for (NanoXmlUtil.IXMLBuilderAdapter builder : myBuilders) {
+                builder.startElement(name, nsPrefix, nsURI, systemID, lineNr);
+            }
+        }
+
+        @Override
+        public void addAttribute(String key, String nsPrefix, String nsURI, String value, String type) throws Exception {
+            for (NanoXmlUtil.IXMLBuilderAdapter builder : myBuilders) {
+                builder.addAttribute(key, nsPrefix, nsURI, value, type);
+            }
+        }
+
+        @Override
+        public void endElement(String name, String nsPrefix, String nsURI) throws Exception {
+            for (NanoXmlUtil.IXMLBuilderAdapter builder : myBuilders) {
+                builder.endElement(name, nsPrefix, nsURI);
+            }
+        }
+    }
+}
@@ -57,6 +57,10 @@ public class XsdTagNameBuilder extends NanoXmlUtil.IXMLBuilderAdapter {
     private final Collection<String> myTagNames = new ArrayList<String>();
     private boolean myElementStarted;
 
+    Collection<String> getTagNames() {
+        return myTagNames;
+    }
+
     public void startElement(
         final String name,
         final String nsPrefix,
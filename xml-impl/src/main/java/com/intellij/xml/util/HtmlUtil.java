@@ -64,7 +64,7 @@ public class HtmlUtil {
 
     private static final String JSFC = "jsfc";
 
-    private static final String HTML5_DATA_ATTR_PREFIX = "data-";
+    public static final String HTML5_DATA_ATTR_PREFIX = "data-";
 
     public static final String SCRIPT_TAG_NAME = "script";
     public static final String STYLE_TAG_NAME = "style";
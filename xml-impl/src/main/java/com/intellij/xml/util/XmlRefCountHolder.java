@@ -18,130 +18,365 @@ package com.intellij.xml.util;
 import consulo.xml.descriptor.XmlAttributeDescriptor;
 import consulo.xml.descriptor.XmlElementDescriptor;
 import consulo.annotation.access.RequiredReadAction;
-import consulo.application.util.CachedValue;
-import consulo.application.util.CachedValueProvider;
-import consulo.application.util.CachedValuesManager;
-import consulo.application.util.UserDataCache;
-import consulo.language.Language;
+import consulo.language.file.FileViewProvider;
 import consulo.language.psi.*;
 import consulo.language.psi.util.PsiTreeUtil;
-import consulo.util.collection.ContainerUtil;
+import consulo.logging.Logger;
+import consulo.project.Project;
+import consulo.util.dataholder.Key;
 import consulo.util.lang.Pair;
 import consulo.xml.codeInsight.daemon.impl.analysis.XmlHighlightVisitor;
+import consulo.xml.javaee.ExternalResourceManagerEx;
 import consulo.xml.language.psi.*;
 import consulo.xml.psi.impl.source.resolve.reference.impl.providers.IdReferenceProvider;
 import consulo.xml.psi.impl.source.xml.PossiblePrefixReference;
 import consulo.xml.psi.impl.source.xml.SchemaPrefix;
 import consulo.xml.psi.impl.source.xml.SchemaPrefixReference;
+import consulo.xml.psi.impl.source.xml.XmlSchemaModificationTracker;
 
 import org.jspecify.annotations.Nullable;
 import java.util.*;
 
 /**
+ * The holder of a physical file is kept up to date incrementally: the file is split into chunks, i.e. the tags of at most
+ * {@link #CHUNK_SIZE} characters plus the attributes and text of the larger tags and of the file itself, and
+ * {@link XmlRefCountHolderUpdater} marks the chunks PSI change events touch so that only those are gathered again.
+ *
  * @author spleaner
  */
 public class XmlRefCountHolder {
-    private final static UserDataCache<CachedValue<XmlRefCountHolder>, XmlFile, @Nullable Void> CACHE =
-        new UserDataCache<CachedValue<XmlRefCountHolder>, XmlFile, @Nullable Void>("xml ref count holder") {
-            @Override
-            protected CachedValue<XmlRefCountHolder> compute(XmlFile file, @Nullable Void p) {
-                return CachedValuesManager.getManager(file.getProject()).createCachedValue(
-                    () -> {
-                        XmlRefCountHolder holder = new XmlRefCountHolder();
-                        Language language = file.getViewProvider().getBaseLanguage();
-                        PsiFile psiFile = file.getViewProvider().getPsi(language);
-                        assert psiFile != null;
-                        psiFile.accept(new IdGatheringRecursiveVisitor(holder));
-                        return new CachedValueProvider.Result<>(holder, file);
-                    },
-                    false
-                );
-            }
-        };
-
-    private final Map<String, List<Pair<XmlAttributeValue, Boolean>>> myId2AttributeListMap = new HashMap<>();
-    private final Set<XmlAttributeValue> myPossiblyDuplicateIds = new HashSet<>();
-    private final List<XmlAttributeValue> myIdReferences = new ArrayList<>();
-    private final Set<String> myAdditionallyDeclaredIds = new HashSet<>();
-    private final Set<PsiElement> myDoNotValidateParentsList = new HashSet<>();
-    private final Set<String> myUsedPrefixes = new HashSet<>();
-    private final Set<String> myUsedNamespaces = new HashSet<>();
+    private static final Logger LOG = Logger.getInstance(XmlRefCountHolder.class);
+    private static final Key<XmlRefCountHolder> KEY = Key.create("xml ref count holder");
+
+    static final int CHUNK_SIZE = 4096;
+
+    /**
+     * Set the property to true to update the counts of the changed chunks only instead of rebuilding them after each
+     * change. Off by default until the incremental updates have been checked against full rebuilds.
+     */
+    private static final boolean INCREMENTAL = Boolean.getBoolean("xml.ref.count.holder.incremental");
+
+    /**
+     * Set the property to true to compare every incremental update with a full rebuild.
+     */
+    private static final boolean CONSISTENCY_CHECK = Boolean.getBoolean("xml.ref.count.holder.check");
+
+    private final Map<String, Integer> myIdCounts = new HashMap<>();
+    private final Map<String, Integer> myHardIdCounts = new HashMap<>();
+    private final Map<XmlAttributeValue, String> myHardIds = new HashMap<>();
+    private final Set<XmlAttributeValue> myIdReferences = new HashSet<>();
+    private final Map<String, Integer> myAdditionallyDeclaredIds = new HashMap<>();
+    private final Map<PsiElement, Integer> myDoNotValidateParents = new HashMap<>();
+    private final Map<String, Integer> myUsedPrefixes = new HashMap<>();
+    private final Map<String, Integer> myUsedNamespaces = new HashMap<>();
+
+    private Map<PsiElement, Chunk> myChunks = new HashMap<>();
+    private final Set<PsiElement> myDirtyChunks = new HashSet<>();
+    private final Set<PsiElement> myDirtySubtrees = new HashSet<>();
+    private boolean myRebuildNeeded = true;
+    private long myModificationStamp = -1;
+    private long mySchemaModificationCount = -1;
+    private long myExternalResourcesModificationCount = -1;
 
     @Nullable
+    @RequiredReadAction
     public static XmlRefCountHolder getRefCountHolder(XmlElement element) {
-        return element.getContainingFile() instanceof XmlFile xmlFile ? CACHE.get(xmlFile, null).getValue() : null;
+        if (!(element.getContainingFile() instanceof XmlFile xmlFile)) {
+            return null;
+        }
+        XmlRefCountHolderUpdater.getInstance(xmlFile.getProject());
+        XmlRefCountHolder holder;
+        synchronized (KEY) {
+            holder = xmlFile.getUserData(KEY);
+            if (holder == null) {
+                holder = new XmlRefCountHolder();
+                xmlFile.putUserData(KEY, holder);
+            }
+        }
+        holder.ensureUpToDate(xmlFile);
+        return holder;
     }
 
-    private XmlRefCountHolder() {
+    @Nullable
+    static XmlRefCountHolder getExistingHolder(PsiFile file) {
+        return file.getUserData(KEY);
     }
 
+    private XmlRefCountHolder() {
+    }
 
-    public boolean isDuplicateIdAttributeValue(XmlAttributeValue value) {
-        return myPossiblyDuplicateIds.contains(value);
+    public synchronized boolean isDuplicateIdAttributeValue(XmlAttributeValue value) {
+        String id = myHardIds.get(value);
+        return id != null && myHardIdCounts.getOrDefault(id, 0) > 1;
     }
 
-    public boolean isValidatable(@Nullable PsiElement element) {
-        return !myDoNotValidateParentsList.contains(element);
+    public synchronized boolean isValidatable(@Nullable PsiElement element) {
+        return !myDoNotValidateParents.containsKey(element);
     }
 
-    public boolean hasIdDeclaration(String idRef) {
-        return myId2AttributeListMap.get(idRef) != null || myAdditionallyDeclaredIds.contains(idRef);
+    public synchronized boolean hasIdDeclaration(String idRef) {
+        return myIdCounts.containsKey(idRef) || myAdditionallyDeclaredIds.containsKey(idRef);
     }
 
-    public boolean isIdReferenceValue(XmlAttributeValue value) {
+    public synchronized boolean isIdReferenceValue(XmlAttributeValue value) {
         return myIdReferences.contains(value);
     }
 
-    private void registerId(String id, XmlAttributeValue attributeValue, boolean soft) {
-        List<Pair<XmlAttributeValue, Boolean>> list = myId2AttributeListMap.get(id);
-        if (list == null) {
-            list = new ArrayList<>();
-            myId2AttributeListMap.put(id, list);
-        }
-        else if (!soft) {
-            // mark as duplicate
-            List<XmlAttributeValue> notSoft = ContainerUtil.mapNotNull(list, pair -> pair.second ? null : pair.first);
-            if (!notSoft.isEmpty()) {
-                myPossiblyDuplicateIds.addAll(notSoft);
-                myPossiblyDuplicateIds.add(attributeValue);
+    public synchronized boolean isInUse(String prefix) {
+        return myUsedPrefixes.containsKey(prefix);
+    }
+
+    public synchronized boolean isUsedNamespace(String ns) {
+        return myUsedNamespaces.containsKey(ns);
+    }
+
+    /**
+     * Marks the chunk containing {@code parent} for gathering again. If the change is within a tag's attributes or name
+     * rather than its content, the chunks of all nested tags are marked as well, since their descriptors may depend on it.
+     * Called for each PSI change in the file.
+     */
+    synchronized void changed(@Nullable PsiElement parent, @Nullable PsiElement child) {
+        if (myRebuildNeeded) {
+            return;
+        }
+        PsiElement below = child;
+        for (PsiElement e = parent; e != null; below = e, e = e.getParent()) {
+            Chunk chunk = myChunks.get(e);
+            if (chunk != null) {
+                if (chunk.myChildTags != null && !isTagContent(below)) {
+                    myDirtySubtrees.add(e);
+                }
+                else {
+                    myDirtyChunks.add(e);
+                }
+                return;
+            }
+            if (e instanceof PsiFile) {
+                break;
             }
         }
+        myRebuildNeeded = true;
+    }
 
-        list.add(new Pair<>(attributeValue, soft));
+    private static boolean isTagContent(@Nullable PsiElement element) {
+        return element instanceof XmlTag || element instanceof XmlText || element instanceof PsiWhiteSpace || element instanceof PsiComment;
     }
 
-    private void registerAdditionalId(String id) {
-        myAdditionallyDeclaredIds.add(id);
+    synchronized void invalidate() {
+        myRebuildNeeded = true;
     }
 
-    private void registerIdReference(XmlAttributeValue value) {
-        myIdReferences.add(value);
+    @RequiredReadAction
+    private synchronized void ensureUpToDate(XmlFile file) {
+        Project project = file.getProject();
+        long stamp = file.getModificationStamp();
+        long schemaCount = XmlSchemaModificationTracker.getInstance(project).getModificationCount();
+        long externalResourcesCount = ExternalResourceManagerEx.getInstanceEx().getModificationCount(project);
+        boolean dirty = !myDirtyChunks.isEmpty() || !myDirtySubtrees.isEmpty();
+        if (stamp == myModificationStamp && !dirty && !myRebuildNeeded) {
+            return;
+        }
+
+        FileViewProvider viewProvider = file.getViewProvider();
+        PsiFile psiFile = viewProvider.getPsi(viewProvider.getBaseLanguage());
+        assert psiFile != null;
+        boolean incremental = INCREMENTAL && !myRebuildNeeded && dirty
+            && schemaCount == mySchemaModificationCount
+            && externalResourcesCount == myExternalResourcesModificationCount
+            // other roots of the view provider don't report their changes against the chunks of this one
+            && psiFile == file && file.isPhysical() && viewProvider.getAllFiles().size() == 1;
+        if (incremental) {
+            update(psiFile, myChunks);
+            if (CONSISTENCY_CHECK) {
+                XmlRefCountHolder expected = new XmlRefCountHolder();
+                expected.update(psiFile, Collections.emptyMap());
+                String difference = getDifference(expected);
+                if (difference != null) {
+                    LOG.error("Incremental update of " + file.getName() + " differs from a full rebuild in " + difference);
+                }
+            }
+        }
+        else {
+            clear();
+            update(psiFile, Collections.emptyMap());
+        }
+
+        myRebuildNeeded = false;
+        myModificationStamp = stamp;
+        mySchemaModificationCount = schemaCount;
+        myExternalResourcesModificationCount = externalResourcesCount;
     }
 
-    private void registerOuterLanguageElement(PsiElement element) {
-        PsiElement parent = element.getParent();
+    private void clear() {
+        myIdCounts.clear();
+        myHardIdCounts.clear();
+        myHardIds.clear();
+        myIdReferences.clear();
+        myAdditionallyDeclaredIds.clear();
+        myDoNotValidateParents.clear();
+        myUsedPrefixes.clear();
+        myUsedNamespaces.clear();
+        myChunks.clear();
+    }
 
-        if (parent instanceof XmlText) {
-            parent = parent.getParent();
+    @RequiredReadAction
+    private void update(PsiFile file, Map<PsiElement, Chunk> oldChunks) {
+        Map<PsiElement, Chunk> old = new HashMap<>(oldChunks);
+        myChunks = new HashMap<>();
+        update(file, old, false);
+        for (Chunk chunk : old.values()) {
+            apply(chunk.myContribution, -1);
         }
+        myDirtyChunks.clear();
+        myDirtySubtrees.clear();
+    }
 
-        myDoNotValidateParentsList.add(parent);
+    @RequiredReadAction
+    private void update(PsiElement element, Map<PsiElement, Chunk> old, boolean dirty) {
+        dirty |= myDirtySubtrees.contains(element);
+        boolean split = element instanceof PsiFile || element.getTextLength() > CHUNK_SIZE;
+        Chunk chunk = old.remove(element);
+        if (chunk != null && (dirty || myDirtyChunks.contains(element) || split != (chunk.myChildTags != null))) {
+            apply(chunk.myContribution, -1);
+            chunk = null;
+        }
+        if (chunk == null) {
+            chunk = new Chunk(element, split);
+            apply(chunk.myContribution, 1);
+        }
+        myChunks.put(element, chunk);
+        if (chunk.myChildTags != null) {
+            for (XmlTag tag : chunk.myChildTags) {
+                update(tag, old, dirty);
+            }
+        }
     }
 
-    public boolean isInUse(String prefix) {
-        return myUsedPrefixes.contains(prefix);
+    private void apply(Contribution contribution, int delta) {
+        count(myIdCounts, contribution.myIds, delta);
+        count(myAdditionallyDeclaredIds, contribution.myAdditionallyDeclaredIds, delta);
+        count(myDoNotValidateParents, contribution.myDoNotValidateParents, delta);
+        count(myUsedPrefixes, contribution.myUsedPrefixes, delta);
+        count(myUsedNamespaces, contribution.myUsedNamespaces, delta);
+        for (Pair<XmlAttributeValue, String> hardId : contribution.myHardIds) {
+            count(myHardIdCounts, Collections.singleton(hardId.second), delta);
+            if (delta > 0) {
+                myHardIds.put(hardId.first, hardId.second);
+            }
+            else {
+                myHardIds.remove(hardId.first);
+            }
+        }
+        for (XmlAttributeValue value : contribution.myIdReferences) {
+            if (delta > 0) {
+                myIdReferences.add(value);
+            }
+            else {
+                myIdReferences.remove(value);
+            }
+        }
     }
 
-    public boolean isUsedNamespace(String ns) {
-        return myUsedNamespaces.contains(ns);
+    private static <T> void count(Map<T, Integer> counts, Collection<T> items, int delta) {
+        for (T item : items) {
+            counts.merge(item, delta, (a, b) -> a + b == 0 ? null : a + b);
+        }
+    }
+
+    @Nullable
+    private String getDifference(XmlRefCountHolder expected) {
+        if (!myIdCounts.equals(expected.myIdCounts) || !myHardIdCounts.equals(expected.myHardIdCounts)
+            || !myHardIds.equals(expected.myHardIds)) {
+            return "ids " + myIdCounts + " / " + expected.myIdCounts;
+        }
+        if (!myIdReferences.equals(expected.myIdReferences)) {
+            return "id references";
+        }
+        if (!myAdditionallyDeclaredIds.equals(expected.myAdditionallyDeclaredIds)) {
+            return "additionally declared ids " + myAdditionallyDeclaredIds + " / " + expected.myAdditionallyDeclaredIds;
+        }
+        if (!myDoNotValidateParents.equals(expected.myDoNotValidateParents)) {
+            return "outer language elements";
+        }
+        if (!myUsedPrefixes.keySet().equals(expected.myUsedPrefixes.keySet())) {
+            return "used prefixes " + myUsedPrefixes.keySet() + " / " + expected.myUsedPrefixes.keySet();
+        }
+        if (!myUsedNamespaces.keySet().equals(expected.myUsedNamespaces.keySet())) {
+            return "used namespaces " + myUsedNamespaces.keySet() + " / " + expected.myUsedNamespaces.keySet();
+        }
+        return null;
+    }
+
+    /**
+     * A tag gathered with everything below it, or, if it is too large or the file itself, only the parts that aren't
+     * within its child tags.
+     */
+    private static class Chunk {
+        private final Contribution myContribution = new Contribution();
+        @Nullable
+        private final List<XmlTag> myChildTags;
+
+        @RequiredReadAction
+        private Chunk(PsiElement element, boolean split) {
+            myChildTags = split ? new ArrayList<>() : null;
+            element.accept(new IdGatheringRecursiveVisitor(myContribution, element, myChildTags));
+        }
+    }
+
+    private static class Contribution {
+        private final List<String> myIds = new ArrayList<>();
+        private final List<Pair<XmlAttributeValue, String>> myHardIds = new ArrayList<>();
+        private final List<XmlAttributeValue> myIdReferences = new ArrayList<>();
+        private final List<String> myAdditionallyDeclaredIds = new ArrayList<>();
+        private final List<PsiElement> myDoNotValidateParents = new ArrayList<>();
+        private final Set<String> myUsedPrefixes = new HashSet<>();
+        private final Set<String> myUsedNamespaces = new HashSet<>();
+
+        private void registerId(String id, XmlAttributeValue attributeValue, boolean soft) {
+            myIds.add(id);
+            if (!soft) {
+                myHardIds.add(Pair.create(attributeValue, id));
+            }
+        }
+
+        private void registerAdditionalId(String id) {
+            myAdditionallyDeclaredIds.add(id);
+        }
+
+        private void registerIdReference(XmlAttributeValue value) {
+            myIdReferences.add(value);
+        }
+
+        private void registerOuterLanguageElement(PsiElement element) {
+            PsiElement parent = element.getParent();
+
+            if (parent instanceof XmlText) {
+                parent = parent.getParent();
+            }
+
+            myDoNotValidateParents.add(parent);
+        }
+
+        private void addUsedPrefix(String prefix) {
+            myUsedPrefixes.add(prefix);
+        }
+
+        private void addUsedNamespace(String ns) {
+            myUsedNamespaces.add(ns);
+        }
     }
 
     private static class IdGatheringRecursiveVisitor extends XmlRecursiveElementVisitor {
-        private final XmlRefCountHolder myHolder;
+        private final Contribution myContribution;
+        private final PsiElement myRoot;
+        @Nullable
+        private final List<XmlTag> myChildTags;
 
-        private IdGatheringRecursiveVisitor(XmlRefCountHolder holder) {
+        private IdGatheringRecursiveVisitor(Contribution contribution, PsiElement root, @Nullable List<XmlTag> childTags) {
             super(true);
-            myHolder = holder;
+            myContribution = contribution;
+            myRoot = root;
+            myChildTags = childTags;
         }
 
         @Override
@@ -155,11 +390,11 @@ public class XmlRefCountHolder {
 
         @RequiredReadAction
         private void visitOuterLanguageElement(PsiElement element) {
-            myHolder.registerOuterLanguageElement(element);
+            myContribution.registerOuterLanguageElement(element);
             for (PsiReference reference : element.getReferences()) {
                 if (reference instanceof PossiblePrefixReference possiblePrefixReference && possiblePrefixReference.isPrefixReference()
                     && reference.resolve() instanceof SchemaPrefix schemaPrefix) {
-                    myHolder.addUsedPrefix(schemaPrefix.getName());
+                    myContribution.addUsedPrefix(schemaPrefix.getName());
                 }
             }
         }
@@ -182,14 +417,18 @@ public class XmlRefCountHolder {
         private void doVisitAnyComment(PsiComment comment) {
             String id = XmlDeclareIdInCommentAction.getImplicitlyDeclaredId(comment);
             if (id != null) {
-                myHolder.registerAdditionalId(id);
+                myContribution.registerAdditionalId(id);
             }
         }
 
         @Override
         public void visitXmlTag(XmlTag tag) {
-            myHolder.addUsedPrefix(tag.getNamespacePrefix());
-            myHolder.addUsedNamespace(tag.getNamespace());
+            if (myChildTags != null && tag != myRoot) {
+                myChildTags.add(tag);
+                return;
+            }
+            myContribution.addUsedPrefix(tag.getNamespacePrefix());
+            myContribution.addUsedNamespace(tag.getNamespace());
             String text = tag.getValue().getTrimmedText();
             detectPrefix(text);
             super.visitXmlTag(tag);
@@ -198,9 +437,9 @@ public class XmlRefCountHolder {
         @Override
         public void visitXmlAttribute(XmlAttribute attribute) {
             if (!attribute.isNamespaceDeclaration()) {
-                myHolder.addUsedPrefix(attribute.getNamespacePrefix());
+                myContribution.addUsedPrefix(attribute.getNamespacePrefix());
             }
-            myHolder.addUsedNamespace(attribute.getNamespace());
+            myContribution.addUsedNamespace(attribute.getNamespace());
             super.visitXmlAttribute(attribute);
         }
 
@@ -235,14 +474,14 @@ public class XmlRefCountHolder {
                         else if (r instanceof SchemaPrefixReference schemaPrefixReference) {
                             SchemaPrefix prefix = schemaPrefixReference.resolve();
                             if (prefix != null) {
-                                myHolder.addUsedPrefix(prefix.getName());
+                                myContribution.addUsedPrefix(prefix.getName());
                             }
                         }
                     }
                 }
 
                 if (attributeDescriptor.hasIdRefType() && PsiTreeUtil.getChildOfType(value, OuterLanguageElement.class) == null) {
-                    myHolder.registerIdReference(value);
+                    myContribution.registerIdReference(value);
                 }
             }
 
@@ -255,7 +494,7 @@ public class XmlRefCountHolder {
             if (s != null) {
                 int pos = s.indexOf(':');
                 if (pos > 0) {
-                    myHolder.addUsedPrefix(s.substring(0, pos));
+                    myContribution.addUsedPrefix(s.substring(0, pos));
                 }
             }
         }
@@ -265,16 +504,9 @@ public class XmlRefCountHolder {
             String id = XmlHighlightVisitor.getUnquotedValue(value, attribute.getParent());
             if (XmlUtil.isSimpleValue(id, value)
                 && PsiTreeUtil.getChildOfType(value, OuterLanguageElement.class) == null) {
-                myHolder.registerId(id, value, soft);
+                myContribution.registerId(id, value, soft);
             }
         }
     }
 
-    private void addUsedPrefix(String prefix) {
-        myUsedPrefixes.add(prefix);
-    }
-
-    private void addUsedNamespace(String ns) {
-        myUsedNamespaces.add(ns);
-    }
 }
@@ -0,0 +1,94 @@
+package com.intellij.xml.util;
+
+import consulo.annotation.component.ComponentScope;
+import consulo.annotation.component.ServiceAPI;
+import consulo.annotation.component.ServiceImpl;
+import consulo.disposer.Disposable;
+import consulo.language.psi.PsiFile;
+import consulo.language.psi.PsiManager;
+import consulo.language.psi.event.PsiTreeChangeAdapter;
+import consulo.language.psi.event.PsiTreeChangeEvent;
+import consulo.project.Project;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * Reports PSI changes to the {@link XmlRefCountHolder} of the changed file, so that it gathers only the changed parts
+ * of the file again.
+ *
+ * @since 2026-10-18
+ */
+@Singleton
+@ServiceAPI(ComponentScope.PROJECT)
+@ServiceImpl
+public class XmlRefCountHolderUpdater implements Disposable {
+    @Inject
+    public XmlRefCountHolderUpdater(Project project) {
+        PsiManager.getInstance(project).addPsiTreeChangeListener(new PsiTreeChangeAdapter() {
+            @Override
+            public void childAdded(PsiTreeChangeEvent event) {
+                XmlRefCountHolder holder = getHolder(event);
+                if (holder != null) {
+                    holder.changed(event.getParent(), event.getChild());
+                }
+            }
+
+            @Override
+            public void childRemoved(PsiTreeChangeEvent event) {
+                XmlRefCountHolder holder = getHolder(event);
+                if (holder != null) {
+                    holder.changed(event.getParent(), event.getChild());
+                }
+            }
+
+            @Override
+            public void childReplaced(PsiTreeChangeEvent event) {
+                XmlRefCountHolder holder = getHolder(event);
+                if (holder != null) {
+                    holder.changed(event.getParent(), event.getOldChild());
+                    holder.changed(event.getParent(), event.getNewChild());
+                }
+            }
+
+            @Override
+            public void childMoved(PsiTreeChangeEvent event) {
+                XmlRefCountHolder holder = getHolder(event);
+                if (holder != null) {
+                    holder.changed(event.getOldParent(), event.getChild());
+                    holder.changed(event.getNewParent(), event.getChild());
+                }
+            }
+
+            @Override
+            public void childrenChanged(PsiTreeChangeEvent event) {
+                XmlRefCountHolder holder = getHolder(event);
+                if (holder != null) {
+                    holder.changed(event.getParent(), null);
+                }
+            }
+
+            @Override
+            public void propertyChanged(PsiTreeChangeEvent event) {
+                XmlRefCountHolder holder = getHolder(event);
+                if (holder != null) {
+                    holder.invalidate();
+                }
+            }
+        }, this);
+    }
+
+    public static XmlRefCountHolderUpdater getInstance(Project project) {
+        return project.getInstance(XmlRefCountHolderUpdater.class);
+    }
+
+    @Nullable
+    private static XmlRefCountHolder getHolder(PsiTreeChangeEvent event) {
+        PsiFile file = event.getFile();
+        return file == null ? null : XmlRefCountHolder.getExistingHolder(file);
+    }
+
+    @Override
+    public void dispose() {
+    }
+}
@@ -300,7 +300,7 @@ public class XmlResourceResolver implements XMLEntityResolver {
             }
         }
         source.setPublicId(publicId);
-        source.setCharacterStream(new StringReader(psiFile.getText()));
+        source.setCharacterStream(XmlUtil.createTextReader(psiFile));
 
         return source;
     }
@@ -48,6 +48,7 @@ import consulo.util.collection.ArrayUtil;
 import consulo.util.collection.ContainerUtil;
 import consulo.util.dataholder.Key;
 import consulo.util.io.FileUtil;
+import consulo.util.io.Readers;
 import consulo.util.lang.Pair;
 import consulo.util.lang.StringUtil;
 import consulo.util.xml.fastReader.XmlCharsetDetector;
@@ -74,6 +75,7 @@ import consulo.xml.psi.impl.source.xml.XmlEntityRefImpl;
 import consulo.xml.standardResource.XmlStandardResourceUtil;
 import org.jspecify.annotations.Nullable;
 
+import java.io.Reader;
 import java.net.URL;
 import java.util.*;
 import java.util.function.Predicate;
@@ -466,6 +468,14 @@ public class XmlUtil {
         return null;
     }
 
+    /**
+     * Reader over the text of the file as seen by PSI. Unlike {@code new StringReader(file.getText())} it doesn't
+     * copy the whole text, which matters for validating big documents.
+     */
+    public static Reader createTextReader(PsiFile file) {
+        return Readers.readerFromCharSequence(file.getViewProvider().getContents());
+    }
+
     @Nullable
     public static String getCommentText(XmlComment comment) {
         final PsiElement firstChild = comment.getFirstChild();
@@ -57,10 +57,13 @@ import consulo.xml.descriptor.XmlAttributeDescriptor;
 import consulo.xml.descriptor.XmlElementDescriptor;
 import consulo.xml.localize.XmlErrorLocalize;
 import consulo.xml.lang.dtd.DTDLanguage;
+import consulo.xml.psi.impl.source.xml.XmlSchemaModificationTracker;
 import consulo.html.language.psi.HtmlTag;
 import org.jspecify.annotations.Nullable;
 
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -101,6 +104,10 @@ public class XmlHighlightVisitor extends XmlElementVisitor implements HighlightV
         }
     };
     private HighlightInfoHolder myHolder;
+    private XmlResolveCache myResolveCache;
+    // attribute descriptors looked up during the current pass, null values are stored as NO_DESCRIPTOR
+    private final Map<XmlAttribute, Object> myAttributeDescriptors = new HashMap<>();
+    private static final Object NO_DESCRIPTOR = new Object();
 
     public XmlHighlightVisitor() {
     }
@@ -473,7 +480,7 @@ public class XmlHighlightVisitor extends XmlElementVisitor implements HighlightV
             return;
         }
 
-        XmlAttributeDescriptor attributeDescriptor = elementDescriptor.getAttributeDescriptor(attribute);
+        XmlAttributeDescriptor attributeDescriptor = getAttributeDescriptor(elementDescriptor, attribute);
 
         if (attributeDescriptor == null) {
             if (!XmlUtil.attributeFromTemplateFramework(name, tag)) {
@@ -595,7 +602,7 @@ public class XmlHighlightVisitor extends XmlElementVisitor implements HighlightV
         XmlTag tag = attribute.getParent();
 
         XmlElementDescriptor elementDescriptor = tag.getDescriptor();
-        XmlAttributeDescriptor attributeDescriptor = elementDescriptor != null ? elementDescriptor.getAttributeDescriptor(attribute) : null;
+        XmlAttributeDescriptor attributeDescriptor = elementDescriptor != null ? getAttributeDescriptor(elementDescriptor, attribute) : null;
 
         if (attributeDescriptor != null && !skipValidation(value)) {
             String error = attributeDescriptor.validateValue(value, attribute.getValue());
@@ -607,6 +614,17 @@ public class XmlHighlightVisitor extends XmlElementVisitor implements HighlightV
         }
     }
 
+    @Nullable
+    @RequiredReadAction
+    private XmlAttributeDescriptor getAttributeDescriptor(XmlElementDescriptor elementDescriptor, XmlAttribute attribute) {
+        Object descriptor = myAttributeDescriptors.get(attribute);
+        if (descriptor == null) {
+            descriptor = elementDescriptor.getAttributeDescriptor(attribute);
+            myAttributeDescriptors.put(attribute, descriptor != null ? descriptor : NO_DESCRIPTOR);
+        }
+        return descriptor instanceof XmlAttributeDescriptor attributeDescriptor ? attributeDescriptor : null;
+    }
+
     @RequiredReadAction
     private void checkReferences(PsiElement value) {
         if (value == null) {
@@ -618,13 +636,14 @@ public class XmlHighlightVisitor extends XmlElementVisitor implements HighlightV
 
     @RequiredReadAction
     private void doCheckRefs(PsiElement value, PsiReference[] references, int start) {
+        if (start >= references.length) {
+            return;
+        }
+        boolean[] badResolves = myResolveCache.getBadResolves(value, references, start);
         for (int i = start; i < references.length; ++i) {
             PsiReference reference = references[i];
             ProgressManager.checkCanceled();
-            if (isUrlReference(reference)) {
-                continue;
-            }
-            if (!hasBadResolve(reference, false)) {
+            if (!badResolves[i - start]) {
                 continue;
             }
             String description = ProblemsHolder.unresolvedReferenceMessage(reference).get();
@@ -770,11 +789,19 @@ public class XmlHighlightVisitor extends XmlElementVisitor implements HighlightV
         Runnable action
     ) {
         myHolder = holder;
+        myResolveCache = new XmlResolveCache();
         try {
             action.run();
+            myResolveCache.finishPass(file);
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Recomputed caches during the pass over " + file.getName() + ": " +
+                    XmlSchemaModificationTracker.getInstance(file.getProject()).resetRecomputationCounts());
+            }
         }
         finally {
             myHolder = null;
+            myResolveCache = null;
+            myAttributeDescriptors.clear();
         }
         return true;
     }
@@ -0,0 +1,274 @@
+package consulo.xml.codeInsight.daemon.impl.analysis;
+
+import com.intellij.xml.util.XmlUtil;
+import consulo.annotation.access.RequiredReadAction;
+import consulo.application.util.CachedValue;
+import consulo.application.util.CachedValueProvider;
+import consulo.application.util.CachedValuesManager;
+import consulo.component.util.ModificationTracker;
+import consulo.document.util.TextRange;
+import consulo.language.psi.PsiElement;
+import consulo.language.psi.PsiFile;
+import consulo.language.psi.PsiModificationTracker;
+import consulo.language.psi.PsiReference;
+import consulo.language.psi.util.PsiTreeUtil;
+import consulo.logging.Logger;
+import consulo.util.dataholder.Key;
+import consulo.xml.language.psi.XmlAttribute;
+import consulo.xml.language.psi.XmlDoctype;
+import consulo.xml.language.psi.XmlDocument;
+import consulo.xml.language.psi.XmlFile;
+import consulo.xml.language.psi.XmlProlog;
+import consulo.xml.language.psi.XmlTag;
+import consulo.xml.psi.impl.source.xml.XmlResolveDependencies;
+import org.jspecify.annotations.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Remembers which references of an element {@link XmlHighlightVisitor} found unresolved, so that later highlighting
+ * passes don't resolve them again as long as nothing they depend on has changed. An element's results are keyed by the
+ * classes, ranges and texts of its references and depend on whatever the references report via
+ * {@link XmlResolveDependencies}, i.e. the schema files they were resolved against; any other reference makes them
+ * depend on all PSI changes.
+ * <p>
+ * The file of the element itself usually isn't a dependency, every keystroke would invalidate all results. Edits within
+ * the element replace it or change its references; of the rest of the file, only the parts descriptors are looked up
+ * from are compared, see {@link #getContext}. References whose declarations may come from elsewhere in the file, or
+ * from nowhere known, report it themselves.
+ * <p>
+ * One instance counts the resolves of one highlighting pass, see {@link #getLastPassStatistics(PsiFile)}, and computes the
+ * context of each tag only once during it.
+ *
+ * @since 2026-10-18
+ */
+public final class XmlResolveCache {
+  private static final Logger LOG = Logger.getInstance(XmlResolveCache.class);
+  private static final Key<Statistics> LAST_PASS_STATISTICS = Key.create("XML_RESOLVE_CACHE_LAST_PASS_STATISTICS");
+  private static final Key<CachedValue<Entry>> ENTRY_KEY = Key.create("XML_RESOLVE_CACHE_ENTRY");
+
+  private int myResolved;
+  private int myReused;
+  // the context of each tag is built from that of its parent, once per pass
+  private final Map<XmlTag, String> myTagContexts = new HashMap<>();
+
+  public static final class Statistics {
+    private final int myResolved;
+    private final int myReused;
+
+    Statistics(int resolved, int reused) {
+      myResolved = resolved;
+      myReused = reused;
+    }
+
+    /**
+     * @return the number of references actually resolved
+     */
+    public int getResolved() {
+      return myResolved;
+    }
+
+    /**
+     * @return the number of references whose result was taken from the cache
+     */
+    public int getReused() {
+      return myReused;
+    }
+
+    public double getHitRate() {
+      int total = myResolved + myReused;
+      return total == 0 ? 0 : (double)myReused / total;
+    }
+
+    @Override
+    public String toString() {
+      return myResolved + " resolved, " + myReused + " reused (" + Math.round(getHitRate() * 100) + "% hits)";
+    }
+  }
+
+  private static final class Entry {
+    private final int myStart;
+    private final Class<?>[] myClasses;
+    private final TextRange[] myRanges;
+    // null for references whose results depend on all PSI changes anyway
+    private final @Nullable String[] myTexts;
+    private final String myContext;
+    private final boolean[] myBadResolves;
+
+    Entry(int start, Class<?>[] classes, TextRange[] ranges, @Nullable String[] texts, String context, boolean[] badResolves) {
+      myStart = start;
+      myClasses = classes;
+      myRanges = ranges;
+      myTexts = texts;
+      myContext = context;
+      myBadResolves = badResolves;
+    }
+
+    @RequiredReadAction
+    boolean matches(PsiReference[] references, int start, String context) {
+      if (start != myStart || references.length - start != myClasses.length || !context.equals(myContext)) {
+        return false;
+      }
+      for (int i = start; i < references.length; i++) {
+        if (references[i].getClass() != myClasses[i - start] || !references[i].getRangeInElement().equals(myRanges[i - start]) ||
+            !Objects.equals(getText(references[i]), myTexts[i - start])) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+
+  /**
+   * @return for each of {@code references} starting at {@code start}, whether {@link XmlHighlightVisitor#hasBadResolve}
+   * is {@code true} for it; {@code false} for URL references, which aren't resolved at all
+   */
+  @RequiredReadAction
+  boolean[] getBadResolves(PsiElement element, PsiReference[] references, int start) {
+    String context = getContext(element);
+    CachedValue<Entry> cached = element.getUserData(ENTRY_KEY);
+    if (cached != null && cached.hasUpToDateValue()) {
+      Entry entry = cached.getValue();
+      if (entry.matches(references, start, context)) {
+        myReused += references.length - start;
+        return entry.myBadResolves;
+      }
+    }
+
+    Entry entry = computeEntry(references, start, context);
+    Object[] dependencies = getDependencies(references, start);
+    CachedValue<Entry> value = CachedValuesManager.getManager(element.getProject())
+      .createCachedValue(() -> CachedValueProvider.Result.create(entry, dependencies), false);
+    // records the current state of the dependencies
+    value.getValue();
+    element.putUserData(ENTRY_KEY, value);
+    myResolved += references.length - start;
+    return entry.myBadResolves;
+  }
+
+  @RequiredReadAction
+  private static Entry computeEntry(PsiReference[] references, int start, String context) {
+    int count = references.length - start;
+    Class<?>[] classes = new Class<?>[count];
+    TextRange[] ranges = new TextRange[count];
+    String[] texts = new String[count];
+    boolean[] badResolves = new boolean[count];
+    for (int i = 0; i < count; i++) {
+      PsiReference reference = references[start + i];
+      classes[i] = reference.getClass();
+      ranges[i] = reference.getRangeInElement();
+      texts[i] = getText(reference);
+      badResolves[i] = !XmlHighlightVisitor.isUrlReference(reference) && XmlHighlightVisitor.hasBadResolve(reference, false);
+    }
+    return new Entry(start, classes, ranges, texts, context, badResolves);
+  }
+
+  /**
+   * A reference keeps its range when e.g. a tag is renamed to a name of the same length.
+   */
+  @Nullable
+  @RequiredReadAction
+  private static String getText(PsiReference reference) {
+    return reference instanceof XmlResolveDependencies ? reference.getCanonicalText() : null;
+  }
+
+  private static Object[] getDependencies(PsiReference[] references, int start) {
+    Set<Object> dependencies = new LinkedHashSet<>();
+    for (int i = start; i < references.length; i++) {
+      if (references[i] instanceof XmlResolveDependencies resolveDependencies) {
+        dependencies.addAll(Arrays.asList(resolveDependencies.getResolveDependencies()));
+      }
+      else if (!XmlHighlightVisitor.isUrlReference(references[i])) {
+        dependencies.add(PsiModificationTracker.MODIFICATION_COUNT);
+      }
+    }
+    if (dependencies.isEmpty()) {
+      // URL references only
+      dependencies.add(ModificationTracker.NEVER_CHANGED);
+    }
+    return dependencies.toArray();
+  }
+
+  /**
+   * What descriptors are looked up from in the file of {@code element} outside of it: the names, namespace
+   * declarations and {@code xsi} attributes of the enclosing tags, the attributes of the root tag and the DOCTYPE.
+   */
+  @RequiredReadAction
+  private String getContext(PsiElement element) {
+    XmlTag tag = PsiTreeUtil.getParentOfType(element, XmlTag.class, false);
+    if (tag == null) {
+      return getDoctypeContext(element.getContainingFile());
+    }
+    String context = myTagContexts.get(tag);
+    if (context != null) {
+      return context;
+    }
+    // the ancestors whose context isn't known yet, from the outermost one
+    Deque<XmlTag> tags = new ArrayDeque<>();
+    for (; tag != null && (context = myTagContexts.get(tag)) == null; tag = tag.getParentTag()) {
+      tags.push(tag);
+    }
+    for (XmlTag each : tags) {
+      StringBuilder sb = new StringBuilder();
+      sb.append('<').append(each.getName());
+      for (XmlAttribute attribute : each.getAttributes()) {
+        if (attribute.isNamespaceDeclaration() || XmlUtil.XML_SCHEMA_INSTANCE_URI.equals(attribute.getNamespace())) {
+          sb.append(' ').append(attribute.getName()).append('=').append(attribute.getValue());
+        }
+      }
+      if (context != null) {
+        sb.append(context);
+      }
+      else {
+        // the root tag
+        sb.append('\n');
+        for (XmlAttribute attribute : each.getAttributes()) {
+          sb.append(' ').append(attribute.getName()).append('=').append(attribute.getValue());
+        }
+        sb.append(getDoctypeContext(each.getContainingFile()));
+      }
+      context = sb.toString();
+      myTagContexts.put(each, context);
+    }
+    return context;
+  }
+
+  @RequiredReadAction
+  private static String getDoctypeContext(PsiFile file) {
+    if (file instanceof XmlFile xmlFile) {
+      XmlDocument document = xmlFile.getDocument();
+      XmlProlog prolog = document != null ? document.getProlog() : null;
+      XmlDoctype doctype = prolog != null ? prolog.getDoctype() : null;
+      if (doctype != null) {
+        return "\n" + doctype.getText();
+      }
+    }
+    return "";
+  }
+
+  /**
+   * Records the figures of the pass that used this instance for {@code file}.
+   */
+  void finishPass(PsiFile file) {
+    Statistics statistics = new Statistics(myResolved, myReused);
+    file.putUserData(LAST_PASS_STATISTICS, statistics);
+    if (LOG.isDebugEnabled()) {
+      LOG.debug("References in " + file.getName() + ": " + statistics);
+    }
+  }
+
+  /**
+   * @return how many references the last highlighting pass of {@code file} resolved and how many results it reused
+   */
+  @Nullable
+  public static Statistics getLastPassStatistics(PsiFile file) {
+    return file.getUserData(LAST_PASS_STATISTICS);
+  }
+}
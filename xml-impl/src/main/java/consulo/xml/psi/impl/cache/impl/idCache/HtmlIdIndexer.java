@@ -21,7 +21,6 @@ import consulo.language.psi.stub.LexerBasedIdIndexer;
 import consulo.language.psi.stub.OccurrenceConsumer;
 import consulo.virtualFileSystem.fileType.FileType;
 import consulo.html.language.HtmlFileType;
-import consulo.xml.lexer.HtmlHighlightingLexer;
 
 
 @ExtensionImpl
@@ -31,7 +30,7 @@ public class HtmlIdIndexer extends LexerBasedIdIndexer {
   }
 
   static XHtmlFilterLexer createIndexingLexer(OccurrenceConsumer consumer) {
-    return new XHtmlFilterLexer(new HtmlHighlightingLexer(), consumer);
+    return new XHtmlFilterLexer(HtmlTokenStream.createLexer(false), consumer);
   }
 
   @Override
@@ -0,0 +1,216 @@
+package consulo.xml.psi.impl.cache.impl.idCache;
+
+import consulo.language.ast.IElementType;
+import consulo.language.lexer.Lexer;
+import consulo.language.lexer.LexerBase;
+import consulo.xml.lexer.HtmlHighlightingLexer;
+import consulo.xml.lexer.XHtmlHighlightingLexer;
+import org.jspecify.annotations.Nullable;
+
+import java.lang.ref.SoftReference;
+import java.util.Arrays;
+
+/**
+ * The tokens of an HTML or XHTML file as produced by {@link HtmlHighlightingLexer} / {@link XHtmlHighlightingLexer}, kept in
+ * two flat arrays of token types and offsets.
+ * <p>
+ * The id, todo and custom attribute indexers of a file all run on the same content, one after the other on the same
+ * thread, so {@link #get(CharSequence, boolean)} remembers the last stream of each thread and the file is lexed once
+ * instead of once per indexer. The id and todo indexers read it through {@link #createLexer(boolean)}.
+ *
+ * @since 2026-10-18
+ */
+public final class HtmlTokenStream {
+  private static final ThreadLocal<SoftReference<HtmlTokenStream>> ourLastStream = new ThreadLocal<>();
+
+  private final CharSequence myText;
+  private final boolean myXhtml;
+  private final IElementType[] myTypes;
+  // myStarts[i + 1] is the end of token i
+  private final int[] myStarts;
+  private final int[] myStates;
+
+  private HtmlTokenStream(CharSequence text, boolean xhtml, IElementType[] types, int[] starts, int[] states) {
+    myText = text;
+    myXhtml = xhtml;
+    myTypes = types;
+    myStarts = starts;
+    myStates = states;
+  }
+
+  /**
+   * @return the tokens of all of {@code text}, shared with the previous caller on this thread if it was for the same text
+   */
+  public static HtmlTokenStream get(CharSequence text, boolean xhtml) {
+    SoftReference<HtmlTokenStream> ref = ourLastStream.get();
+    HtmlTokenStream stream = ref != null ? ref.get() : null;
+    if (stream != null && stream.myXhtml == xhtml && isSameText(stream.myText, text)) {
+      return stream;
+    }
+    stream = lex(createOriginalLexer(xhtml), text, 0, text.length(), 0, xhtml);
+    ourLastStream.set(new SoftReference<>(stream));
+    return stream;
+  }
+
+  private static boolean isSameText(CharSequence s1, CharSequence s2) {
+    if (s1 == s2) {
+      return true;
+    }
+    if (s1.length() != s2.length()) {
+      return false;
+    }
+    for (int i = 0; i < s1.length(); i++) {
+      if (s1.charAt(i) != s2.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static Lexer createOriginalLexer(boolean xhtml) {
+    return xhtml ? new XHtmlHighlightingLexer() : new HtmlHighlightingLexer();
+  }
+
+  private static HtmlTokenStream lex(Lexer lexer, CharSequence text, int startOffset, int endOffset, int initialState, boolean xhtml) {
+    IElementType[] types = new IElementType[Math.max(16, (endOffset - startOffset) / 8)];
+    int[] starts = new int[types.length + 1];
+    int[] states = new int[types.length];
+    int count = 0;
+    lexer.start(text, startOffset, endOffset, initialState);
+    IElementType type;
+    while ((type = lexer.getTokenType()) != null) {
+      if (count == types.length) {
+        types = Arrays.copyOf(types, count * 2);
+        starts = Arrays.copyOf(starts, count * 2 + 1);
+        states = Arrays.copyOf(states, count * 2);
+      }
+      types[count] = type;
+      starts[count] = lexer.getTokenStart();
+      states[count] = lexer.getState();
+      count++;
+      starts[count] = lexer.getTokenEnd();
+      lexer.advance();
+    }
+    if (count == 0) {
+      starts[0] = startOffset;
+    }
+    return new HtmlTokenStream(text, xhtml, Arrays.copyOf(types, count), Arrays.copyOf(starts, count + 1), Arrays.copyOf(states, count));
+  }
+
+  public int getTokenCount() {
+    return myTypes.length;
+  }
+
+  public IElementType getTokenType(int index) {
+    return myTypes[index];
+  }
+
+  public int getTokenStart(int index) {
+    return myStarts[index];
+  }
+
+  public int getTokenEnd(int index) {
+    return myStarts[index + 1];
+  }
+
+  public CharSequence getText() {
+    return myText;
+  }
+
+  /**
+   * Compares the text of a token without creating a string for it.
+   */
+  public boolean tokenStartsWith(int index, String prefix) {
+    int start = myStarts[index];
+    if (myStarts[index + 1] - start < prefix.length()) {
+      return false;
+    }
+    for (int i = 0; i < prefix.length(); i++) {
+      if (myText.charAt(start + i) != prefix.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  public String getTokenText(int index) {
+    return myText.subSequence(myStarts[index], myStarts[index + 1]).toString();
+  }
+
+  /**
+   * @return a lexer producing the same tokens as {@link HtmlHighlightingLexer} (or {@link XHtmlHighlightingLexer}) that
+   * replays the stream of {@link #get(CharSequence, boolean)} when started on a whole text
+   */
+  public static Lexer createLexer(boolean xhtml) {
+    return new ReplayingLexer(xhtml);
+  }
+
+  private static class ReplayingLexer extends LexerBase {
+    private final boolean myXhtml;
+    @Nullable
+    private HtmlTokenStream myStream;
+    private int myIndex;
+
+    ReplayingLexer(boolean xhtml) {
+      myXhtml = xhtml;
+    }
+
+    @Override
+    public void start(CharSequence buffer, int startOffset, int endOffset, int initialState) {
+      if (startOffset == 0 && endOffset == buffer.length() && initialState == 0) {
+        myStream = get(buffer, myXhtml);
+      }
+      else {
+        myStream = lex(createOriginalLexer(myXhtml), buffer, startOffset, endOffset, initialState, myXhtml);
+      }
+      myIndex = 0;
+    }
+
+    private HtmlTokenStream getStream() {
+      assert myStream != null : "not started";
+      return myStream;
+    }
+
+    @Override
+    public int getState() {
+      HtmlTokenStream stream = getStream();
+      return myIndex < stream.myStates.length ? stream.myStates[myIndex] : 0;
+    }
+
+    @Nullable
+    @Override
+    public IElementType getTokenType() {
+      HtmlTokenStream stream = getStream();
+      return myIndex < stream.myTypes.length ? stream.myTypes[myIndex] : null;
+    }
+
+    @Override
+    public int getTokenStart() {
+      return getStream().myStarts[myIndex];
+    }
+
+    @Override
+    public int getTokenEnd() {
+      HtmlTokenStream stream = getStream();
+      return myIndex < stream.myTypes.length ? stream.myStarts[myIndex + 1] : stream.myStarts[myIndex];
+    }
+
+    @Override
+    public void advance() {
+      if (myIndex < getStream().myTypes.length) {
+        myIndex++;
+      }
+    }
+
+    @Override
+    public CharSequence getBufferSequence() {
+      return getStream().myText;
+    }
+
+    @Override
+    public int getBufferEnd() {
+      HtmlTokenStream stream = getStream();
+      return stream.myStarts[stream.myTypes.length];
+    }
+  }
+}
@@ -21,7 +21,6 @@ import consulo.language.psi.stub.LexerBasedIdIndexer;
 import consulo.language.psi.stub.OccurrenceConsumer;
 import consulo.virtualFileSystem.fileType.FileType;
 import consulo.xhtml.language.XHtmlFileType;
-import consulo.xml.lexer.XHtmlHighlightingLexer;
 
 
 @ExtensionImpl
@@ -31,7 +30,7 @@ public class XHtmlIdIndexer extends LexerBasedIdIndexer {
   }
 
   static XHtmlFilterLexer createIndexingLexer(OccurrenceConsumer consumer) {
-    return new XHtmlFilterLexer(new XHtmlHighlightingLexer(), consumer);
+    return new XHtmlFilterLexer(HtmlTokenStream.createLexer(true), consumer);
   }
 
   @Override
@@ -34,7 +34,7 @@ import consulo.xml.language.psi.XmlElement;
 import consulo.xml.language.psi.XmlTag;
 import org.jspecify.annotations.Nullable;
 
-public class TagNameReference implements PsiReference
+public class TagNameReference implements PsiReference, XmlResolveDependencies
 {
 	private static final Logger LOG = Logger.getInstance("#TagNameReference");
 
@@ -221,6 +221,13 @@ public class TagNameReference implements PsiReference
 		return false;
 	}
 
+	@Override
+	public Object[] getResolveDependencies()
+	{
+		XmlTag tag = getTagElement();
+		return tag != null ? XmlSchemaModificationTracker.getResolveDependencies(tag) : XmlSchemaModificationTracker.getDescriptorDependencies(getElement());
+	}
+
 	@Nullable
 	static TagNameReference createTagNameReference(XmlElement element, ASTNode nameElement, boolean startTagFlag)
 	{
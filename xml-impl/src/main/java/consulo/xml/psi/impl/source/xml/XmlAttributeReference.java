@@ -31,7 +31,7 @@ import consulo.xml.language.psi.XmlAttribute;
 import consulo.xml.language.psi.XmlTag;
 import org.jspecify.annotations.Nullable;
 
-public class XmlAttributeReference implements PsiReference {
+public class XmlAttributeReference implements PsiReference, XmlResolveDependencies {
   private final NullableLazyValue<XmlAttributeDescriptor> myDescriptor = new NullableLazyValue<XmlAttributeDescriptor>() {
     protected XmlAttributeDescriptor compute() {
       XmlTag parent = myAttribute.getParent();
@@ -103,6 +103,12 @@ public class XmlAttributeReference implements PsiReference {
     return getDescriptor() == null;
   }
 
+  @Override
+  public Object[] getResolveDependencies() {
+    XmlTag tag = myAttribute.getParent();
+    return tag != null ? XmlSchemaModificationTracker.getResolveDependencies(tag) : XmlSchemaModificationTracker.getDescriptorDependencies(myAttribute);
+  }
+
   @Nullable
   private XmlAttributeDescriptor getDescriptor() {
     return myDescriptor.getValue();
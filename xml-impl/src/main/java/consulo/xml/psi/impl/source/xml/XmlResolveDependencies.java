@@ -0,0 +1,12 @@
+package consulo.xml.psi.impl.source.xml;
+
+/**
+ * Implemented by references that know what their resolve result depends on, so that it can be reused until one of
+ * these dependencies changes. Dependencies are the same kinds of objects a {@code CachedValueProvider.Result} accepts.
+ * The file of the reference itself may be left out: callers check the parts of it the resolve looks at.
+ *
+ * @since 2026-10-18
+ */
+public interface XmlResolveDependencies {
+  Object[] getResolveDependencies();
+}
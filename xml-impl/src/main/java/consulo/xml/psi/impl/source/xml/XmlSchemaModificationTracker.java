@@ -0,0 +1,221 @@
+package consulo.xml.psi.impl.source.xml;
+
+import consulo.annotation.component.ComponentScope;
+import consulo.annotation.component.ServiceAPI;
+import consulo.annotation.component.ServiceImpl;
+import consulo.component.util.ModificationTracker;
+import consulo.disposer.Disposable;
+import consulo.language.psi.PsiElement;
+import consulo.language.psi.PsiFile;
+import consulo.language.psi.PsiManager;
+import consulo.language.psi.PsiModificationTracker;
+import consulo.language.psi.event.PsiTreeChangeAdapter;
+import consulo.language.psi.event.PsiTreeChangeEvent;
+import consulo.project.Project;
+import consulo.util.collection.ArrayUtil;
+import consulo.virtualFileSystem.VirtualFile;
+import consulo.xml.javaee.ExternalResourceManagerEx;
+import consulo.xml.lang.dtd.DTDLanguage;
+import consulo.xml.language.XMLLanguage;
+import consulo.xml.language.psi.XmlFile;
+import consulo.xml.descriptor.XmlElementDescriptor;
+import consulo.xml.descriptor.XmlNSDescriptor;
+import consulo.xml.language.psi.XmlTag;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import org.jspecify.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Changes whenever something a tag's descriptors may be computed from changes: schemas (XSD, DTD, RELAX NG, ...)
+ * and any non-XML file, e.g. the sources behind DOM based descriptors. Edits of ordinary XML documents don't count,
+ * they only affect the tags of the edited file itself.
+ * <p>
+ * Together with the containing file and the external resource mappings this is what the descriptor and namespace
+ * caches of {@link XmlTagImpl} depend on, instead of every PSI modification in the project. Descriptors that don't
+ * come from a schema file (DOM based descriptors, descriptors computed from other XML documents like parent POMs or
+ * plugin.xml extension points) still depend on every PSI modification, see
+ * {@link #getDescriptorDependencies(PsiElement, XmlElementDescriptor)}.
+ *
+ * @since 2026-10-18
+ */
+@Singleton
+@ServiceAPI(ComponentScope.PROJECT)
+@ServiceImpl
+public class XmlSchemaModificationTracker implements ModificationTracker, Disposable {
+    public enum CacheKind {
+        SUB_TAGS,
+        NS_DESCRIPTORS,
+        DESCRIPTOR,
+        NAMESPACE,
+        NAMESPACE_MAP
+    }
+
+    private static final Set<String> SCHEMA_EXTENSIONS = Set.of("xsd", "dtd", "ent", "mod", "rng", "rnc", "wsdl");
+    private static final Set<String> SCHEMA_ROOT_TAGS = Set.of("schema", "grammar", "definitions");
+
+    private final AtomicLong myModificationCount = new AtomicLong();
+    private final AtomicLongArray myRecomputations = new AtomicLongArray(CacheKind.values().length);
+
+    @Inject
+    public XmlSchemaModificationTracker(Project project) {
+        PsiManager.getInstance(project).addPsiTreeChangeListener(new PsiTreeChangeAdapter() {
+            @Override
+            public void childAdded(PsiTreeChangeEvent event) {
+                changed(event);
+            }
+
+            @Override
+            public void childRemoved(PsiTreeChangeEvent event) {
+                changed(event);
+            }
+
+            @Override
+            public void childReplaced(PsiTreeChangeEvent event) {
+                changed(event);
+            }
+
+            @Override
+            public void childMoved(PsiTreeChangeEvent event) {
+                changed(event);
+            }
+
+            @Override
+            public void childrenChanged(PsiTreeChangeEvent event) {
+                changed(event);
+            }
+
+            @Override
+            public void propertyChanged(PsiTreeChangeEvent event) {
+                changed(event);
+            }
+        }, this);
+    }
+
+    public static XmlSchemaModificationTracker getInstance(Project project) {
+        return project.getInstance(XmlSchemaModificationTracker.class);
+    }
+
+    /**
+     * The dependencies of anything computed from the descriptors of tags in the file of {@code element}:
+     * that file, the schemas and the external resource mappings.
+     */
+    public static Object[] getDescriptorDependencies(PsiElement element) {
+        Project project = element.getProject();
+        ExternalResourceManagerEx manager = ExternalResourceManagerEx.getInstanceEx();
+        ModificationTracker externalResources = () -> manager.getModificationCount(project);
+        return new Object[]{element.getContainingFile(), getInstance(project), externalResources};
+    }
+
+    /**
+     * The dependencies of {@code descriptor}, computed for the tag {@code element}: those of
+     * {@link #getDescriptorDependencies(PsiElement)} if the descriptor comes from a schema file or from the file of the
+     * tag, otherwise every PSI modification, as the descriptor may be computed from any other XML document.
+     */
+    public static Object[] getDescriptorDependencies(PsiElement element, @Nullable XmlElementDescriptor descriptor) {
+        Object[] dependencies = getDescriptorDependencies(element);
+        if (isSchemaDescriptor(descriptor != null ? descriptor.getNSDescriptor() : null, element.getContainingFile())) {
+            return dependencies;
+        }
+        return ArrayUtil.append(dependencies, PsiModificationTracker.MODIFICATION_COUNT);
+    }
+
+    /**
+     * What resolving the name of {@code tag} or of one of its attributes depends on: the dependencies of the namespace
+     * descriptors of the tag and of its parent, plus the external resource mappings. The file of the tag is only among
+     * them when a namespace descriptor depends on it (e.g. an internal DTD subset), otherwise edits elsewhere in it are
+     * up to the caller. Where nothing tells where a declaration would come from, or it comes from neither a schema nor
+     * the file of the tag, every PSI modification counts, the file of the tag included.
+     */
+    public static Object[] getResolveDependencies(XmlTag tag) {
+        Project project = tag.getProject();
+        PsiFile file = tag.getContainingFile();
+        Set<Object> dependencies = new LinkedHashSet<>();
+        XmlTag parent = tag.getParentTag();
+        for (XmlTag each : parent != null ? new XmlTag[]{tag, parent} : new XmlTag[]{tag}) {
+            XmlElementDescriptor descriptor = each.getDescriptor();
+            XmlNSDescriptor nsDescriptor = descriptor != null ? descriptor.getNSDescriptor() : null;
+            Object[] schemaDependencies = nsDescriptor != null ? nsDescriptor.getDependences() : null;
+            if (schemaDependencies == null || schemaDependencies.length == 0) {
+                // nothing tells where a declaration would come from
+                dependencies.add(file);
+                dependencies.add(PsiModificationTracker.MODIFICATION_COUNT);
+                continue;
+            }
+            dependencies.addAll(Arrays.asList(schemaDependencies));
+            if (!isSchemaDescriptor(nsDescriptor, file)) {
+                dependencies.add(file);
+                dependencies.add(PsiModificationTracker.MODIFICATION_COUNT);
+            }
+        }
+        ExternalResourceManagerEx manager = ExternalResourceManagerEx.getInstanceEx();
+        dependencies.add((ModificationTracker)() -> manager.getModificationCount(project));
+        return dependencies.toArray();
+    }
+
+    /**
+     * Whether {@code nsDescriptor} is built from a schema file this tracker counts or from {@code file} itself.
+     */
+    private static boolean isSchemaDescriptor(@Nullable XmlNSDescriptor nsDescriptor, PsiFile file) {
+        XmlFile descriptorFile = nsDescriptor != null ? nsDescriptor.getDescriptorFile() : null;
+        return descriptorFile != null && (descriptorFile == file || !isInstanceDocument(descriptorFile));
+    }
+
+    @Override
+    public long getModificationCount() {
+        return myModificationCount.get();
+    }
+
+    void countRecomputation(CacheKind kind) {
+        myRecomputations.incrementAndGet(kind.ordinal());
+    }
+
+    public long getRecomputationCount(CacheKind kind) {
+        return myRecomputations.get(kind.ordinal());
+    }
+
+    /**
+     * Returns how often each cache has been recomputed since the previous call. The XML highlighting pass logs these
+     * at debug level when it finishes.
+     */
+    public Map<CacheKind, Long> resetRecomputationCounts() {
+        Map<CacheKind, Long> result = new EnumMap<>(CacheKind.class);
+        for (CacheKind kind : CacheKind.values()) {
+            result.put(kind, myRecomputations.getAndSet(kind.ordinal(), 0));
+        }
+        return result;
+    }
+
+    private void changed(PsiTreeChangeEvent event) {
+        PsiFile file = event.getFile();
+        if (file == null || !isInstanceDocument(file)) {
+            myModificationCount.incrementAndGet();
+        }
+    }
+
+    private static boolean isInstanceDocument(PsiFile file) {
+        if (!(file instanceof XmlFile) || !file.getLanguage().isKindOf(XMLLanguage.INSTANCE) || file.getLanguage() instanceof DTDLanguage) {
+            return false;
+        }
+        VirtualFile virtualFile = file.getVirtualFile();
+        if (virtualFile != null) {
+            String extension = virtualFile.getExtension();
+            if (extension != null && SCHEMA_EXTENSIONS.contains(extension.toLowerCase())) {
+                return false;
+            }
+        }
+        XmlTag rootTag = ((XmlFile)file).getRootTag();
+        return rootTag == null || !SCHEMA_ROOT_TAGS.contains(rootTag.getLocalName());
+    }
+
+    @Override
+    public void dispose() {
+    }
+}
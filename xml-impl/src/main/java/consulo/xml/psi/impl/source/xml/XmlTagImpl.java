@@ -23,11 +23,11 @@ import com.intellij.xml.impl.schema.AnyXmlElementDescriptor;
 import com.intellij.xml.impl.schema.XmlNSDescriptorImpl;
 import com.intellij.xml.index.XmlNamespaceIndex;
 import consulo.xml.language.psi.*;
+import consulo.xml.language.psi.util.XmlIncludeHandler;
 import consulo.xml.language.psi.util.XmlTagUtil;
 import com.intellij.xml.util.XmlUtil;
 import consulo.application.progress.ProgressManager;
 import consulo.application.util.*;
-import consulo.component.util.ModificationTracker;
 import consulo.document.util.TextRange;
 import consulo.language.ast.ASTNode;
 import consulo.language.ast.ChildRoleBase;
@@ -47,7 +47,6 @@ import consulo.language.util.ModuleUtilCore;
 import consulo.logging.Logger;
 import consulo.module.Module;
 import consulo.project.DumbService;
-import consulo.project.Project;
 import consulo.util.collection.ArrayUtil;
 import consulo.util.collection.BidirectionalMap;
 import consulo.util.collection.ContainerUtil;
@@ -56,7 +55,6 @@ import consulo.util.dataholder.Key;
 import consulo.util.lang.Comparing;
 import consulo.util.lang.StringUtil;
 import consulo.xml.javaee.ExternalResourceManager;
-import consulo.xml.javaee.ExternalResourceManagerEx;
 import consulo.xml.javaee.ImplicitNamespaceDescriptorProvider;
 
 import org.jspecify.annotations.Nullable;
@@ -81,7 +79,12 @@ public class XmlTagImpl extends XmlElementImpl implements XmlTag, HintedReferenc
 
       final int s = result.size();
       XmlTag[] tags = s > 0 ? result.toArray(new XmlTag[s]) : EMPTY;
-      return CachedValueProvider.Result.create(tags, PsiModificationTracker.MODIFICATION_COUNT, tag.getContainingFile());
+      tag.countRecomputation(XmlSchemaModificationTracker.CacheKind.SUB_TAGS);
+      if (tag.hasIncludedContent()) {
+        // entities and xincludes pull in content of arbitrary other files
+        return CachedValueProvider.Result.create(tags, PsiModificationTracker.MODIFICATION_COUNT, tag.getContainingFile());
+      }
+      return CachedValueProvider.Result.create(tags, tag.getContainingFile());
     }
   };
   private static final Comparator<TextRange> RANGE_COMPARATOR = (range1, range2) -> range1.getStartOffset() - range2.getStartOffset();
@@ -297,8 +300,10 @@ public class XmlTagImpl extends XmlElementImpl implements XmlTag, HintedReferenc
   }
 
   protected final Map<String, CachedValue<XmlNSDescriptor>> getNSDescriptorsMap() {
-    return LanguageCachedValueUtil.getCachedValue(this, () -> CachedValueProvider.Result.create(computeNsDescriptorMap(), PsiModificationTracker.MODIFICATION_COUNT,
-        externalResourceModificationTracker()));
+    return LanguageCachedValueUtil.getCachedValue(this, () -> {
+      countRecomputation(XmlSchemaModificationTracker.CacheKind.NS_DESCRIPTORS);
+      return CachedValueProvider.Result.create(computeNsDescriptorMap(), getDescriptorDependencies());
+    });
   }
 
   private Map<String, CachedValue<XmlNSDescriptor>> computeNsDescriptorMap() {
@@ -445,14 +450,35 @@ public class XmlTagImpl extends XmlElementImpl implements XmlTag, HintedReferenc
 
   @Override
   public XmlElementDescriptor getDescriptor() {
-    return LanguageCachedValueUtil.getCachedValue(this, () -> CachedValueProvider.Result.create(computeElementDescriptor(), PsiModificationTracker.MODIFICATION_COUNT,
-        externalResourceModificationTracker()));
+    return LanguageCachedValueUtil.getCachedValue(this, () -> {
+      countRecomputation(XmlSchemaModificationTracker.CacheKind.DESCRIPTOR);
+      XmlElementDescriptor descriptor = computeElementDescriptor();
+      return CachedValueProvider.Result.create(descriptor, XmlSchemaModificationTracker.getDescriptorDependencies(this, descriptor));
+    });
   }
 
-  private ModificationTracker externalResourceModificationTracker() {
-    Project project = getProject();
-    ExternalResourceManagerEx manager = ExternalResourceManagerEx.getInstanceEx();
-    return () -> manager.getModificationCount(project);
+  /**
+   * Descriptors and namespaces are computed from this file, the schemas it refers to and the external resource
+   * mappings, so changes in other XML documents don't need to invalidate them.
+   */
+  private Object[] getDescriptorDependencies() {
+    return XmlSchemaModificationTracker.getDescriptorDependencies(this);
+  }
+
+  private void countRecomputation(XmlSchemaModificationTracker.CacheKind kind) {
+    XmlSchemaModificationTracker.getInstance(getProject()).countRecomputation(kind);
+  }
+
+  private boolean hasIncludedContent() {
+    for (PsiElement child = getFirstChild(); child != null; child = child.getNextSibling()) {
+      if (child instanceof XmlEntityRef || child instanceof XmlTag && XmlIncludeHandler.isXInclude(child)) {
+        return true;
+      }
+      if (child instanceof XmlText && PsiTreeUtil.getChildOfType(child, XmlEntityRef.class) != null) {
+        return true;
+      }
+    }
+    return false;
   }
 
   @Nullable
@@ -721,7 +747,10 @@ public class XmlTagImpl extends XmlElementImpl implements XmlTag, HintedReferenc
 
   @Override
   public String getNamespace() {
-    return LanguageCachedValueUtil.getCachedValue(this, () -> CachedValueProvider.Result.create(getNamespaceByPrefix(getNamespacePrefix()), PsiModificationTracker.MODIFICATION_COUNT));
+    return LanguageCachedValueUtil.getCachedValue(this, () -> {
+      countRecomputation(XmlSchemaModificationTracker.CacheKind.NAMESPACE);
+      return CachedValueProvider.Result.create(getNamespaceByPrefix(getNamespacePrefix()), getDescriptorDependencies());
+    });
   }
 
   @Override
@@ -823,7 +852,10 @@ public class XmlTagImpl extends XmlElementImpl implements XmlTag, HintedReferenc
 
   @Nullable
   private BidirectionalMap<String, String> getNamespaceMap() {
-    return LanguageCachedValueUtil.getCachedValue(this, () -> CachedValueProvider.Result.create(computeNamespaceMap(getParent()), PsiModificationTracker.MODIFICATION_COUNT));
+    return LanguageCachedValueUtil.getCachedValue(this, () -> {
+      countRecomputation(XmlSchemaModificationTracker.CacheKind.NAMESPACE_MAP);
+      return CachedValueProvider.Result.create(computeNamespaceMap(getParent()), getDescriptorDependencies());
+    });
   }
 
   @Nullable
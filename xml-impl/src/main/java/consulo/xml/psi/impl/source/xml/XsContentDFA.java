@@ -22,6 +22,7 @@ import consulo.application.ApplicationManager;
 import consulo.application.util.function.Computable;
 import consulo.language.psi.PsiFile;
 import consulo.util.collection.ContainerUtil;
+import consulo.util.dataholder.Key;
 import consulo.util.lang.function.Condition;
 import consulo.xml.language.psi.XmlFile;
 import consulo.xml.language.psi.XmlTag;
@@ -45,8 +46,10 @@ import org.xml.sax.SAXParseException;
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.parsers.SAXParser;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
 import java.util.function.Supplier;
 
 /**
@@ -66,6 +69,84 @@ class XsContentDFA extends XmlContentDFA
 		}
 	}
 
+	private static final Key<ChildDeclarations> CHILD_DECLARATIONS_KEY = Key.create("XS_CHILD_DECLARATIONS");
+
+	// pools are shared and filled while files are validated, so a model is only reused for the grammar set it was built from
+	private static final Map<XMLGrammarPool, PoolModel> ourModels = new WeakHashMap<XMLGrammarPool, PoolModel>();
+
+	private static class PoolModel
+	{
+		private final Grammar[] myGrammars;
+		private final XSModel myModel;
+
+		private PoolModel(Grammar[] grammars, XSModel model)
+		{
+			myGrammars = grammars;
+			myModel = model;
+		}
+
+		boolean isBuiltFrom(Grammar[] grammars)
+		{
+			if(grammars.length != myGrammars.length)
+			{
+				return false;
+			}
+			// grammars are never modified once they are in a pool, only added or replaced
+			for(int i = 0; i < grammars.length; i++)
+			{
+				if(grammars[i] != myGrammars[i])
+				{
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+
+	private static class ChildDeclarations
+	{
+		private final XSModel myModel;
+		private final XSElementDeclaration myDeclaration;
+		private final long mySchemaCount;
+		private final XmlTag[] mySubTags;
+		private final String[] myNames;
+		private final String[] myNamespaces;
+		private final Map<XmlTag, XSElementDeclaration> myDeclarations;
+
+		private ChildDeclarations(XSModel model, XSElementDeclaration declaration, long schemaCount, XmlTag[] subTags, Map<XmlTag, XSElementDeclaration> declarations)
+		{
+			myModel = model;
+			myDeclaration = declaration;
+			mySchemaCount = schemaCount;
+			mySubTags = subTags;
+			myNames = new String[subTags.length];
+			myNamespaces = new String[subTags.length];
+			for(int i = 0; i < subTags.length; i++)
+			{
+				myNames[i] = subTags[i].getName();
+				myNamespaces[i] = subTags[i].getNamespace();
+			}
+			myDeclarations = declarations;
+		}
+
+		boolean isUpToDate(XSModel model, XSElementDeclaration declaration, long schemaCount, XmlTag[] subTags)
+		{
+			if(model != myModel || declaration != myDeclaration || schemaCount != mySchemaCount || subTags.length != mySubTags.length)
+			{
+				return false;
+			}
+			// the declarations only depend on the sequence of subtag names, not on what's inside of the subtags
+			for(int i = 0; i < subTags.length; i++)
+			{
+				if(subTags[i] != mySubTags[i] || !subTags[i].getName().equals(myNames[i]) || !subTags[i].getNamespace().equals(myNamespaces[i]))
+				{
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+
 	private final XSCMValidator myContentModel;
 	private final SubstitutionGroupHandler myHandler;
 	private final int[] myState;
@@ -152,63 +233,96 @@ class XsContentDFA extends XmlContentDFA
 	@Nullable
 	private static XSElementDeclaration getElementDeclaration(XmlTag tag, XSModel xsModel)
 	{
-
-		List<XmlTag> ancestors = new ArrayList<XmlTag>();
-		for(XmlTag t = tag; t != null; t = t.getParentTag())
+		XmlTag parentTag = tag.getParentTag();
+		if(parentTag == null)
 		{
-			ancestors.add(t);
+			return xsModel.getElementDeclaration(tag.getLocalName(), tag.getNamespace());
 		}
-		Collections.reverse(ancestors);
-		XSElementDeclaration declaration = null;
-		SubstitutionGroupHandler fSubGroupHandler = new SubstitutionGroupHandler(new MyXSElementDeclHelper());
-		CMBuilder cmBuilder = new CMBuilder(new CMNodeFactory());
-		for(XmlTag ancestor : ancestors)
+		XSElementDeclaration parentDeclaration = getElementDeclaration(parentTag, xsModel);
+		if(parentDeclaration == null)
 		{
-			if(declaration == null)
-			{
-				declaration = xsModel.getElementDeclaration(ancestor.getLocalName(), ancestor.getNamespace());
-				if(declaration == null)
-				{
-					return null;
-				}
-				else
-				{
-					continue;
-				}
-			}
-			XSTypeDefinition typeDefinition = declaration.getTypeDefinition();
-			if(!(typeDefinition instanceof XSComplexTypeDecl))
-			{
-				return null;
-			}
+			return null;
+		}
+		return getChildDeclarations(parentTag, parentDeclaration, xsModel).get(tag);
+	}
 
-			XSCMValidator model = ((XSComplexTypeDecl) typeDefinition).getContentModel(cmBuilder);
-			int[] ints = model.startContentModel();
-			for(XmlTag subTag : ancestor.getParentTag().getSubTags())
+	/**
+	 * The declarations of all subtags of {@code parentTag}, computed by a single run over its content model and
+	 * remembered until the schemas or the sequence of subtags change, so that walking up the ancestors of the next tag
+	 * completed in the same file is mostly a matter of map lookups, also after typing elsewhere in the file.
+	 */
+	private static Map<XmlTag, XSElementDeclaration> getChildDeclarations(XmlTag parentTag, XSElementDeclaration parentDeclaration, XSModel xsModel)
+	{
+		long schemaCount = XmlSchemaModificationTracker.getInstance(parentTag.getProject()).getModificationCount();
+		XmlTag[] subTags = parentTag.getSubTags();
+		ChildDeclarations cached = parentTag.getUserData(CHILD_DECLARATIONS_KEY);
+		if(cached != null && cached.isUpToDate(xsModel, parentDeclaration, schemaCount, subTags))
+		{
+			return cached.myDeclarations;
+		}
+
+		Map<XmlTag, XSElementDeclaration> declarations = new HashMap<XmlTag, XSElementDeclaration>();
+		XSTypeDefinition typeDefinition = parentDeclaration.getTypeDefinition();
+		if(typeDefinition instanceof XSComplexTypeDecl)
+		{
+			// Xerces keeps the content model in the type declaration once it has been built
+			XSCMValidator model = ((XSComplexTypeDecl) typeDefinition).getContentModel(new CMBuilder(new CMNodeFactory()));
+			if(model != null)
 			{
-				QName qName = createQName(subTag);
-				Object o = model.oneTransition(qName, ints, fSubGroupHandler);
-				if(subTag == ancestor)
+				SubstitutionGroupHandler subGroupHandler = new SubstitutionGroupHandler(new MyXSElementDeclHelper());
+				int[] state = model.startContentModel();
+				for(XmlTag subTag : subTags)
 				{
+					Object o = model.oneTransition(createQName(subTag), state, subGroupHandler);
 					if(o instanceof XSElementDecl)
 					{
-						declaration = (XSElementDecl) o;
-						break;
-					}
-					else
-					{
-						return null;
+						declarations.put(subTag, (XSElementDecl) o);
 					}
 				}
 			}
 		}
-		return declaration;
+		parentTag.putUserData(CHILD_DECLARATIONS_KEY, new ChildDeclarations(xsModel, parentDeclaration, schemaCount, subTags, declarations));
+		return declarations;
 	}
 
 	@Nullable
 	private static XSModel getXSModel(XmlFile file)
 	{
+		XMLGrammarPool grammarPool = ValidateXmlActionHandler.getGrammarPool(file);
+		if(grammarPool == null || ValidateXmlActionHandler.isValidationDependentFilesOutOfDate(file))
+		{
+			grammarPool = loadGrammars(file);
+		}
+		if(grammarPool == null)
+		{
+			return null;
+		}
+
+		Grammar[] grammars = grammarPool.retrieveInitialGrammarSet(XMLGrammarDescription.XML_SCHEMA);
+		if(grammars.length == 0)
+		{
+			return null;
+		}
+		// grammar pools are shared by all files referring to the same schemas, and so are the models built from them
+		synchronized(ourModels)
+		{
+			PoolModel cached = ourModels.get(grammarPool);
+			if(cached != null && cached.isBuiltFrom(grammars))
+			{
+				return cached.myModel;
+			}
+		}
+		XSModel model = ((XSGrammar) grammars[0]).toXSModel(ContainerUtil.map(grammars, grammar -> (XSGrammar) grammar, new XSGrammar[0]));
+		synchronized(ourModels)
+		{
+			ourModels.put(grammarPool, new PoolModel(grammars, model));
+		}
+		return model;
+	}
 
+	@Nullable
+	private static XMLGrammarPool loadGrammars(XmlFile file)
+	{
 		ValidateXmlActionHandler handler = new ValidateXmlActionHandler(false)
 		{
 			@Override
@@ -241,14 +355,7 @@ class XsContentDFA extends XmlContentDFA
 		});
 
 		handler.doValidate(file);
-		XMLGrammarPool grammarPool = ValidateXmlActionHandler.getGrammarPool(file);
-		if(grammarPool == null)
-		{
-			return null;
-		}
-		Grammar[] grammars = grammarPool.retrieveInitialGrammarSet(XMLGrammarDescription.XML_SCHEMA);
-
-		return grammars.length == 0 ? null : ((XSGrammar) grammars[0]).toXSModel(ContainerUtil.map(grammars, grammar -> (XSGrammar) grammar, new XSGrammar[0]));
+		return ValidateXmlActionHandler.getGrammarPool(file);
 	}
 
 }
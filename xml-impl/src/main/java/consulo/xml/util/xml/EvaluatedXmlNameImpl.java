@@ -24,7 +24,6 @@ import consulo.util.lang.Comparing;
 import consulo.util.lang.StringUtil;
 import consulo.xml.dom.DomFileDescription;
 import consulo.xml.dom.DomFileElement;
-import consulo.xml.dom.DomManager;
 import consulo.xml.dom.EvaluatedXmlName;
 import consulo.xml.language.XmlName;
 import consulo.xml.language.psi.XmlAttribute;
@@ -32,6 +31,7 @@ import consulo.xml.language.psi.XmlDocument;
 import consulo.xml.language.psi.XmlElement;
 import consulo.xml.language.psi.XmlFile;
 import consulo.xml.language.psi.XmlTag;
+import consulo.xml.util.xml.impl.DomManagerImpl;
 
 import org.jspecify.annotations.Nullable;
 import java.util.Collections;
@@ -143,7 +143,8 @@ public class EvaluatedXmlNameImpl implements EvaluatedXmlName
 				public Result<Map<String, List<String>>> compute()
 				{
 					final Map<String, List<String>> map = ConcurrentFactoryMap.createMap(key -> {
-						final DomFileDescription<?> description = DomManager.getDomManager(file.getProject()).getDomFileDescription(file);
+						// the description alone, stubs are built without a DOM file element
+						final DomFileDescription<?> description = DomManagerImpl.getDomManager(file.getProject()).findFileDescription(file);
 						if(description == null)
 						{
 							return Collections.emptyList();
@@ -171,9 +172,21 @@ public class EvaluatedXmlNameImpl implements EvaluatedXmlName
 		return myNamespaceKey == null || myEqualToParent && !qualified || isNamespaceAllowed(namespace, getNamespaceList(file));
 	}
 
+	/**
+	 * @return whether {@link #isNamespaceAllowed(String, XmlFile, boolean)} depends on the namespace it's given
+	 */
+	public final boolean isNamespaceSensitive(boolean qualified)
+	{
+		return myNamespaceKey != null && (!myEqualToParent || qualified);
+	}
+
 	public final String getNamespace(XmlElement parentElement, final XmlFile file)
 	{
-		final String xmlElementNamespace = getXmlElementNamespace(parentElement);
+		return getNamespace(getXmlElementNamespace(parentElement), file);
+	}
+
+	public final String getNamespace(String xmlElementNamespace, final XmlFile file)
+	{
 		if(myNamespaceKey != null && !myEqualToParent)
 		{
 			final List<String> strings = getAllowedNamespaces(file);
@@ -73,7 +73,7 @@ public class CollectionElementInvocationHandler extends DomInvocationHandler<Abs
     final DomElement parent = getParent();
     assert parent != null;
     final DomElement parentCopy = parent.createStableCopy();
-    final int index = description.getValues(parent).indexOf(getProxy());
+    final int index = getIndex(description, parent);
     return getManager().createStableValue(new Supplier<DomElement>() {
       @Nullable
       public DomElement get() {
@@ -88,11 +88,24 @@ public class CollectionElementInvocationHandler extends DomInvocationHandler<Abs
     });
   }
 
+  private int getIndex(AbstractDomChildDescriptionImpl description, DomElement parent) {
+    final DomInvocationHandler parentHandler = getParentHandler();
+    final XmlTag tag = getXmlTag();
+    if (description instanceof CollectionChildDescriptionImpl && tag != null && parentHandler != null && parentHandler.getStub() == null) {
+      final XmlTag parentTag = parentHandler.getXmlTag();
+      if (parentTag != null) {
+        final EvaluatedXmlName name = parentHandler.createEvaluatedXmlName(((CollectionChildDescriptionImpl)description).getXmlName());
+        return DomChildPositions.getIndex(parentTag, tag, name, parentHandler.getFile());
+      }
+    }
+    return description.getValues(parent).indexOf(getProxy());
+  }
+
   @Override
   public int hashCode() {
     ElementStub stub = getStub();
     if (stub != null) {
-      return stub.getName().hashCode() + stub.getStubId();
+      return stub.getName().hashCode() + stub.getNodeId();
     }
     final XmlElement element = getXmlElement();
     return element == null ? super.hashCode() : element.hashCode();
@@ -143,7 +143,7 @@ public class DomApplicationComponent
 	}
 
 	@Nullable
-	final Class<? extends DomElement> getImplementation(final Class concreteInterface)
+	public final Class<? extends DomElement> getImplementation(final Class concreteInterface)
 	{
 		//noinspection unchecked
 		DomElementImplementationProvider provider = myCachedImplementationClasses.get(concreteInterface);
@@ -0,0 +1,87 @@
+package consulo.xml.util.xml.impl;
+
+import consulo.application.util.CachedValueProvider;
+import consulo.language.psi.PsiElement;
+import consulo.language.psi.util.LanguageCachedValueUtil;
+import consulo.xml.dom.EvaluatedXmlName;
+import consulo.xml.language.psi.XmlFile;
+import consulo.xml.language.psi.XmlTag;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Positions of the sub tags of a tag among their equally named siblings. Computed once for all children of a parent
+ * after each modification of the file, instead of walking the preceding siblings whenever a DOM handler for one of
+ * thousands of children is created or copied.
+ *
+ * @since 2026-10-18
+ */
+final class DomChildPositions {
+  private final PsiElement myParent;
+  private volatile Map<XmlTag, Integer> mySiblingIndices;
+  private final Map<EvaluatedXmlName, Map<XmlTag, Integer>> myIndicesByName = new ConcurrentHashMap<>();
+
+  private DomChildPositions(PsiElement parent) {
+    myParent = parent;
+  }
+
+  private static DomChildPositions getInstance(PsiElement parent) {
+    return LanguageCachedValueUtil.getCachedValue(parent, () -> CachedValueProvider.Result.create(new DomChildPositions(parent),
+                                                                                                 parent.getContainingFile()));
+  }
+
+  /**
+   * @return the number of preceding sibling tags with the same local name and namespace as {@code tag}
+   */
+  static int getSiblingIndex(XmlTag tag) {
+    PsiElement parent = tag.getParent();
+    if (parent == null) {
+      return 0;
+    }
+    Integer index = getInstance(parent).getSiblingIndices().get(tag);
+    return index != null ? index : 0;
+  }
+
+  /**
+   * @return the index of {@code tag} in {@code DomImplUtil.findSubTags(parent, name, file)}, or -1 if it's not there
+   */
+  static int getIndex(XmlTag parent, XmlTag tag, EvaluatedXmlName name, XmlFile file) {
+    Integer index = getInstance(parent).getIndicesByName(name, file).get(tag);
+    return index != null ? index : -1;
+  }
+
+  private Map<XmlTag, Integer> getSiblingIndices() {
+    Map<XmlTag, Integer> indices = mySiblingIndices;
+    if (indices == null) {
+      indices = new HashMap<>();
+      Map<String, Map<String, Integer>> counts = new HashMap<>();
+      for (PsiElement child = myParent.getFirstChild(); child != null; child = child.getNextSibling()) {
+        if (child instanceof XmlTag) {
+          XmlTag tag = (XmlTag)child;
+          Map<String, Integer> byNamespace = counts.computeIfAbsent(tag.getLocalName(), k -> new HashMap<>());
+          Integer count = byNamespace.get(tag.getNamespace());
+          int index = count == null ? 0 : count;
+          byNamespace.put(tag.getNamespace(), index + 1);
+          indices.put(tag, index);
+        }
+      }
+      mySiblingIndices = indices;
+    }
+    return indices;
+  }
+
+  private Map<XmlTag, Integer> getIndicesByName(EvaluatedXmlName name, XmlFile file) {
+    Map<XmlTag, Integer> indices = myIndicesByName.get(name);
+    if (indices == null) {
+      indices = new HashMap<>();
+      int index = 0;
+      for (XmlTag tag : DomImplUtil.findSubTags((XmlTag)myParent, name, file)) {
+        indices.put(tag, index++);
+      }
+      myIndicesByName.put(name, indices);
+    }
+    return indices;
+  }
+}
@@ -792,9 +792,16 @@ public abstract class DomInvocationHandler<T extends AbstractDomChildDescription
 			return invocation;
 		}
 
+		invocation = myInvocationCache.getDispatchedInvocation(method);
+		if(invocation != null)
+		{
+			return invocation;
+		}
+
 		invocation = myInvocationCache.getInvocation(method);
 		if(invocation != null)
 		{
+			myInvocationCache.putDispatchedInvocation(method, invocation);
 			return invocation;
 		}
 
@@ -803,6 +810,7 @@ public abstract class DomInvocationHandler<T extends AbstractDomChildDescription
 		if(invocation != null)
 		{
 			myInvocationCache.putInvocation(method, invocation);
+			myInvocationCache.putDispatchedInvocation(method, invocation);
 			return invocation;
 		}
 
@@ -357,6 +357,21 @@ public final class DomManagerImpl extends DomManager {
         return this.<T>getOrCreateCachedValueProvider(file).getFileElement();
     }
 
+    /**
+     * The description of the file element {@link #getFileElement(XmlFile)} would return, without creating it.
+     */
+    @Nullable
+    public final <T extends DomElement> DomFileDescription<T> findFileDescription(XmlFile file) {
+        if (!DomSupportProviders.isSupported(file.getApplication(), file.getFileType())) {
+            return null;
+        }
+        final VirtualFile virtualFile = file.getVirtualFile();
+        if (virtualFile != null && virtualFile.isDirectory()) {
+            return null;
+        }
+        return this.<T>getOrCreateCachedValueProvider(file).getFileDescription();
+    }
+
     @Nullable
     static <T extends DomElement> DomFileElementImpl<T> getCachedFileElement(XmlFile file) {
         //noinspection unchecked
@@ -89,32 +89,14 @@ public class DomSemContributor extends SemContributor {
       DomInvocationHandler parent = getParentDom(parentTag);
       if (parent == null) return null;
 
-      final String localName = tag.getLocalName();
-      final String namespace = tag.getNamespace();
-
       final DomFixedChildDescription description =
         findChildrenDescription(parent.getGenericInfo().getFixedChildrenDescriptions(), tag, parent);
 
       if (description != null) {
 
-        final int totalCount = description.getCount();
-
-        int index = 0;
-        PsiElement current = tag;
-        while (true) {
-          current = current.getPrevSibling();
-          if (current == null) {
-            break;
-          }
-          if (current instanceof XmlTag) {
-            final XmlTag xmlTag = (XmlTag)current;
-            if (localName.equals(xmlTag.getLocalName()) && namespace.equals(xmlTag.getNamespace())) {
-              index++;
-              if (index >= totalCount) {
-                return null;
-              }
-            }
-          }
+        final int index = DomChildPositions.getSiblingIndex(tag);
+        if (index >= description.getCount()) {
+          return null;
         }
 
         final DomManagerImpl myDomManager = parent.getManager();
@@ -87,6 +87,17 @@ class FileDescriptionCachedValueProvider<T extends DomElement> implements SemEle
     }
   }
 
+  /**
+   * The description {@link #getFileElement()} uses, found without creating the file element.
+   */
+  @Nullable
+  public final DomFileDescription<T> getFileDescription() {
+    if (myComputed) {
+      return myLastResult == null ? null : myLastResult.getFileDescription();
+    }
+    return myXmlFile.isValid() ? findFileDescription(myDomService.getXmlFileHeader(myXmlFile), null) : null;
+  }
+
   @Nullable
   private DomFileElementImpl<T> _computeFileElement(final boolean fireEvents, final XmlFileHeader rootTagName, @Nullable StringBuilder sb) {
     if (sb != null) {
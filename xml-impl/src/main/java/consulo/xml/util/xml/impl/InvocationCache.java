@@ -14,7 +14,9 @@ import consulo.xml.language.psi.XmlAttribute;
 import org.jspecify.annotations.Nullable;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Method;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Map;
 
 /**
@@ -32,6 +34,17 @@ public class InvocationCache
 	private final Map<Class, Object> myClassAnnotations = ConcurrentFactoryMap.createMap(annoClass -> getType().getAnnotation(annoClass));
 	private final Class myType;
 
+	/**
+	 * Set the property to false to always look invocations up by method signature.
+	 */
+	static final boolean DIRECT_DISPATCH = Boolean.parseBoolean(System.getProperty("xml.dom.direct.dispatch", "true"));
+
+	// Proxy classes pass the same Method instances on every call, so once an invocation has been found for one of them
+	// it's looked up by identity: no hashing of method names, no comparison of parameter types, no locking.
+	// Copied on write, there are only as many entries as there are methods times implementation classes of the type.
+	// Handlers consult it after InvocationHandlerOwner.METHOD and their own accessor invocations, never before
+	private volatile Map<Method, Invocation> myDispatchTable = Collections.emptyMap();
+
 	static
 	{
 		addCoreInvocations(DomElement.class);
@@ -214,6 +227,29 @@ public class InvocationCache
 		return myInvocations.get(method);
 	}
 
+	@Nullable
+	public Invocation getDispatchedInvocation(Method method)
+	{
+		return myDispatchTable.get(method);
+	}
+
+	public void putDispatchedInvocation(Method method, Invocation invocation)
+	{
+		if(!DIRECT_DISPATCH)
+		{
+			return;
+		}
+		synchronized(this)
+		{
+			if(myDispatchTable.get(method) == null)
+			{
+				Map<Method, Invocation> table = new IdentityHashMap<Method, Invocation>(myDispatchTable);
+				table.put(method, invocation);
+				myDispatchTable = table;
+			}
+		}
+	}
+
 	public JavaMethod getInternedMethod(Method method)
 	{
 		return myJavaMethods.get(method);
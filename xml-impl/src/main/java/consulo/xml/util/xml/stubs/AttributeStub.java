@@ -15,29 +15,44 @@
  */
 package consulo.xml.util.xml.stubs;
 
-import consulo.index.io.StringRef;
 import consulo.language.psi.stub.ObjectStubSerializer;
 
 import java.util.Collections;
 import java.util.List;
 
 /**
+ * A view of an attribute node of a {@link FileStub}.
+ *
  * @author Dmitry Avdeev
  * @since 2012-08-02
  */
 public class AttributeStub extends DomStub
 {
-	private final String myValue;
+	private final FileStub myFile;
+	private final int myNode;
 
-	public AttributeStub(DomStub parent, StringRef name, StringRef namespace, String value)
+	AttributeStub(DomStub parent, FileStub file, int node)
+	{
+		super(parent);
+		myFile = file;
+		myNode = node;
+	}
+
+	@Override
+	public String getName()
+	{
+		return myFile.getName(myNode);
+	}
+
+	@Override
+	public String getNamespaceKey()
 	{
-		super(parent, name, namespace);
-		myValue = value;
+		return myFile.getNamespaceKey(myNode);
 	}
 
 	public String getValue()
 	{
-		return myValue;
+		return myFile.getExtra(myNode);
 	}
 
 	@Override
@@ -52,10 +67,13 @@ public class AttributeStub extends DomStub
 		return 0;
 	}
 
+	/**
+	 * Attribute stubs are never serialized on their own, see {@link FileStubSerializer}.
+	 */
 	@Override
 	public ObjectStubSerializer getStubType()
 	{
-		return DomElementTypeHolder.AttributeStub;
+		return null;
 	}
 
 	@Override
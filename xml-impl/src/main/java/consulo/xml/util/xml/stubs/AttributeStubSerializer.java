@@ -1,56 +0,0 @@
-/*
- * Copyright 2000-2012 JetBrains s.r.o.
- *
- * Licensed under the Apache License, Version 2.0 (the "License");
- * you may not use this file except in compliance with the License.
- * You may obtain a copy of the License at
- *
- * http://www.apache.org/licenses/LICENSE-2.0
- *
- * Unless required by applicable law or agreed to in writing, software
- * distributed under the License is distributed on an "AS IS" BASIS,
- * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
- * See the License for the specific language governing permissions and
- * limitations under the License.
- */
-package consulo.xml.util.xml.stubs;
-
-import consulo.language.psi.stub.IndexSink;
-import consulo.language.psi.stub.ObjectStubSerializer;
-import consulo.language.psi.stub.StubInputStream;
-import consulo.language.psi.stub.StubOutputStream;
-
-
-import java.io.IOException;
-
-/**
- * @author Dmitry Avdeev
- * @since 2012-08-03
- */
-public class AttributeStubSerializer implements ObjectStubSerializer<AttributeStub, ElementStub> {
-  @Override
-  public String getExternalId() {
-    return "xml.AttributeStub";
-  }
-
-  @Override
-  public void serialize(AttributeStub stub, StubOutputStream dataStream) throws IOException {
-    dataStream.writeName(stub.getName());
-    dataStream.writeName(stub.getNamespaceKey());
-    dataStream.writeUTFFast(stub.getValue() == null ? "" : stub.getValue());
-  }
-
-  @Override
-  public AttributeStub deserialize(StubInputStream dataStream, ElementStub parentStub) throws IOException {
-    return new AttributeStub(parentStub, dataStream.readName(), dataStream.readName(), dataStream.readUTFFast());
-  }
-
-  @Override
-  public void indexStub(AttributeStub stub, IndexSink sink) {
-  }
-
-  @Override
-  public String toString() {
-    return "Attribute";
-  }
-}
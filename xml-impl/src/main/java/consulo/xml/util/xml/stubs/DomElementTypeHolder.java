@@ -21,7 +21,5 @@ package consulo.xml.util.xml.stubs;
  */
 public interface DomElementTypeHolder
 {
-	ElementStubSerializer ElementStubSerializer = new ElementStubSerializer();
-	AttributeStubSerializer AttributeStub = new AttributeStubSerializer();
 	FileStubSerializer FileStubSerializer = new FileStubSerializer();
 }
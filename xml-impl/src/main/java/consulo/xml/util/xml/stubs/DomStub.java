@@ -22,7 +22,6 @@ import org.jspecify.annotations.Nullable;
 import consulo.util.lang.Comparing;
 import consulo.language.psi.stub.ObjectStubBase;
 import consulo.util.collection.SmartList;
-import consulo.index.io.StringRef;
 import consulo.xml.util.xml.EvaluatedXmlNameImpl;
 import consulo.xml.language.XmlName;
 import consulo.xml.util.xml.impl.CollectionElementInvocationHandler;
@@ -37,34 +36,19 @@ import com.intellij.xml.util.XmlUtil;
  */
 public abstract class DomStub extends ObjectStubBase<DomStub>
 {
-
-	protected final StringRef myLocalName;
-	private final StringRef myNamespace;
 	private DomInvocationHandler myHandler;
 
-	public DomStub(DomStub parent, StringRef localName, StringRef namespace)
+	public DomStub(@Nullable DomStub parent)
 	{
 		super(parent);
-		myNamespace = namespace;
-		if(parent != null)
-		{
-			((ElementStub) parent).addChild(this);
-		}
-		myLocalName = localName;
 	}
 
 	public abstract List<DomStub> getChildrenStubs();
 
-	public String getName()
-	{
-		return myLocalName.getString();
-	}
+	public abstract String getName();
 
 	@Nullable
-	public String getNamespaceKey()
-	{
-		return myNamespace == null ? null : myNamespace.getString();
-	}
+	public abstract String getNamespaceKey();
 
 	public List<DomStub> getChildrenByName(final CharSequence name, @Nullable final String nsKey)
 	{
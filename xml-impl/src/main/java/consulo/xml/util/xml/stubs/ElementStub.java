@@ -15,52 +15,120 @@
  */
 package consulo.xml.util.xml.stubs;
 
-import consulo.index.io.StringRef;
+import com.intellij.xml.util.XmlUtil;
 import consulo.language.psi.stub.ObjectStubSerializer;
 import consulo.util.collection.SmartList;
+import consulo.util.lang.Comparing;
 import consulo.util.lang.StringUtil;
-
+import consulo.xml.language.XmlName;
 import org.jspecify.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
+ * A view of an element node of a {@link FileStub}.
+ *
  * @author Dmitry Avdeev
  * @since 2012-08-02
  */
 public class ElementStub extends DomStub
 {
+	private final FileStub myFile;
+	private final int myNode;
+
+	ElementStub(DomStub parent, FileStub file, int node)
+	{
+		super(parent);
+		myFile = file;
+		myNode = node;
+	}
 
-	private final List<DomStub> myChildren = new SmartList<DomStub>();
-	private final int myIndex;
-	private final boolean myCustom;
+	@Override
+	public String getName()
+	{
+		return myFile.getName(myNode);
+	}
 
 	@Nullable
-	private final StringRef myElementClass;
+	@Override
+	public String getNamespaceKey()
+	{
+		return myFile.getNamespaceKey(myNode);
+	}
 
-	public ElementStub(@Nullable ElementStub parent, StringRef name, @Nullable StringRef namespace, int index, boolean custom,
-										 @Nullable StringRef elementClass)
+	@Override
+	public List<DomStub> getChildrenStubs()
 	{
-		super(parent, name, namespace);
-		myIndex = index;
-		myCustom = custom;
-		myElementClass = elementClass;
+		int end = myFile.getSubtreeEnd(myNode);
+		if(end == myNode + 1)
+		{
+			return Collections.emptyList();
+		}
+		List<DomStub> children = new ArrayList<DomStub>();
+		for(int child = myNode + 1; child < end; child = myFile.getSubtreeEnd(child))
+		{
+			children.add(myFile.getView(child));
+		}
+		return children;
 	}
 
-	void addChild(DomStub child)
+	@Override
+	public List<DomStub> getChildrenByName(CharSequence name, @Nullable String nsKey)
 	{
-		myChildren.add(child);
+		String s = nsKey == null ? "" : nsKey;
+		List<DomStub> result = null;
+		for(int child = myNode + 1, end = myFile.getSubtreeEnd(myNode); child < end; child = myFile.getSubtreeEnd(child))
+		{
+			if(XmlUtil.getLocalName(myFile.getName(child)).equals(name) && Comparing.equal(s, myFile.getNamespaceKey(child)))
+			{
+				if(result == null)
+				{
+					result = new SmartList<DomStub>();
+				}
+				result.add(myFile.getView(child));
+			}
+		}
+		return result == null ? Collections.<DomStub>emptyList() : result;
 	}
 
+	@Nullable
 	@Override
-	public List<DomStub> getChildrenStubs()
+	public AttributeStub getAttributeStub(XmlName name)
 	{
-		return myChildren;
+		for(int child = myNode + 1, end = myFile.getSubtreeEnd(myNode); child < end; child = myFile.getSubtreeEnd(child))
+		{
+			if(myFile.isAttribute(child) && myFile.getName(child).equals(name.getLocalName()))
+			{
+				return (AttributeStub) myFile.getView(child);
+			}
+		}
+		return null;
 	}
 
+	@Nullable
+	@Override
+	public ElementStub getElementStub(String name, int index)
+	{
+		int i = 0;
+		for(int child = myNode + 1, end = myFile.getSubtreeEnd(myNode); child < end; child = myFile.getSubtreeEnd(child))
+		{
+			if(!myFile.isAttribute(child) && name.equals(myFile.getName(child)) && i++ == index)
+			{
+				return (ElementStub) myFile.getView(child);
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Element stubs are never serialized on their own, see {@link FileStubSerializer}.
+	 */
 	@Override
 	public ObjectStubSerializer getStubType()
 	{
-		return DomElementTypeHolder.ElementStubSerializer;
+		return null;
 	}
 
 	@Override
@@ -72,18 +140,20 @@ public class ElementStub extends DomStub
 
 	public boolean isCustom()
 	{
-		return myCustom;
+		return (myFile.myFlags[myNode] & FileStub.CUSTOM) != 0;
 	}
 
 	@Override
 	public int getIndex()
 	{
-		return myIndex;
+		return myFile.myIndices[myNode];
 	}
 
-	@Nullable
-	String getElementClass()
+	/**
+	 * @return the position of the element among all nodes of the file
+	 */
+	public int getNodeId()
 	{
-		return myElementClass == null ? null : myElementClass.getString();
+		return myNode;
 	}
 }
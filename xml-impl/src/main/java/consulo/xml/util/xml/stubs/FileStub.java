@@ -15,33 +15,74 @@
  */
 package consulo.xml.util.xml.stubs;
 
-import consulo.index.io.StringRef;
 import consulo.language.psi.stub.ObjectStubSerializer;
-import consulo.language.psi.stub.Stub;
 import consulo.util.xml.fastReader.XmlFileHeader;
-
 import org.jspecify.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
+ * The stubs of all elements and attributes of a file, kept in parallel arrays in document order rather than as a tree
+ * of objects: the descendants of node {@code i} are the nodes from {@code i + 1} up to {@code getSubtreeEnd(i)}.
+ * The {@link ElementStub} and {@link AttributeStub} of a node are created on first access and are the only objects
+ * per node. For the stub tree machinery the file stub is a leaf, {@link FileStubSerializer} writes the whole tree.
+ *
  * @author Dmitry Avdeev
  * @since 2012-08-08
  */
-public class FileStub extends ElementStub
+public class FileStub extends DomStub
 {
+	static final int NONE = -1;
+
+	static final byte ATTRIBUTE = 1;
+	static final byte CUSTOM = 2;
+
 	private final XmlFileHeader myHeader;
 
-	public FileStub(StringRef tagName, StringRef tagNamespace, StringRef publicId, StringRef systemId)
-	{
-		super(null, tagName, tagNamespace, 0, false, null);
-		myHeader = new XmlFileHeader(tagName.getString(), tagNamespace == null ? null : tagNamespace.getString(),
-				publicId == null ? null : publicId.getString(), systemId == null ? null : systemId.getString());
-	}
+	// names, namespace keys and element classes
+	final String[] myStrings;
+	// attribute values
+	final String[] myValues;
+	final byte[] myFlags;
+	final int[] myParents;
+	final int[] mySubtreeEnds;
+	final int[] myNames;
+	final int[] myNamespaces;
+	final int[] myIndices;
+	// the element class of an element, the value of an attribute
+	final int[] myExtras;
+
+	private final DomStub[] myViews;
 
-	public FileStub(XmlFileHeader header)
+	FileStub(XmlFileHeader header, String[] strings, String[] values, byte[] flags, int[] parents, int[] names, int[] namespaces,
+			int[] indices, int[] extras)
 	{
-		super(null, StringRef.fromString(header.getRootTagLocalName()), StringRef.fromString(header.getRootTagNamespace()), 0, false, null);
+		super(null);
 		myHeader = header;
+		myStrings = strings;
+		myValues = values;
+		myFlags = flags;
+		myParents = parents;
+		myNames = names;
+		myNamespaces = namespaces;
+		myIndices = indices;
+		myExtras = extras;
+		myViews = new DomStub[parents.length];
+
+		mySubtreeEnds = new int[parents.length];
+		for(int i = parents.length - 1; i >= 0; i--)
+		{
+			mySubtreeEnds[i] = Math.max(mySubtreeEnds[i], i + 1);
+			if(parents[i] != NONE)
+			{
+				mySubtreeEnds[parents[i]] = Math.max(mySubtreeEnds[parents[i]], mySubtreeEnds[i]);
+			}
+		}
 	}
 
 	public XmlFileHeader getHeader()
@@ -52,8 +93,35 @@ public class FileStub extends ElementStub
 	@Nullable
 	public ElementStub getRootTagStub()
 	{
-		List<? extends Stub> stubs = getChildrenStubs();
-		return stubs.isEmpty() ? null : (ElementStub) stubs.get(0);
+		return myParents.length == 0 ? null : (ElementStub) getView(0);
+	}
+
+	@Override
+	public String getName()
+	{
+		return myHeader.getRootTagLocalName();
+	}
+
+	@Nullable
+	@Override
+	public String getNamespaceKey()
+	{
+		return myHeader.getRootTagNamespace();
+	}
+
+	/**
+	 * Always empty, the root tag is available via {@link #getRootTagStub()}.
+	 */
+	@Override
+	public List<DomStub> getChildrenStubs()
+	{
+		return Collections.emptyList();
+	}
+
+	@Override
+	public int getIndex()
+	{
+		return 0;
 	}
 
 	@Override
@@ -61,4 +129,200 @@ public class FileStub extends ElementStub
 	{
 		return DomElementTypeHolder.FileStubSerializer;
 	}
+
+	int getNodeCount()
+	{
+		return myParents.length;
+	}
+
+	boolean isAttribute(int node)
+	{
+		return (myFlags[node] & ATTRIBUTE) != 0;
+	}
+
+	String getName(int node)
+	{
+		return myStrings[myNames[node]];
+	}
+
+	@Nullable
+	String getNamespaceKey(int node)
+	{
+		return myNamespaces[node] == NONE ? null : myStrings[myNamespaces[node]];
+	}
+
+	@Nullable
+	String getExtra(int node)
+	{
+		int extra = myExtras[node];
+		return extra == NONE ? null : isAttribute(node) ? myValues[extra] : myStrings[extra];
+	}
+
+	int getSubtreeEnd(int node)
+	{
+		return mySubtreeEnds[node];
+	}
+
+	synchronized DomStub getView(int node)
+	{
+		DomStub view = myViews[node];
+		if(view == null)
+		{
+			DomStub parent = myParents[node] == NONE ? this : getView(myParents[node]);
+			view = isAttribute(node) ? new AttributeStub(parent, this, node) : new ElementStub(parent, this, node);
+			myViews[node] = view;
+		}
+		return view;
+	}
+
+	/**
+	 * Collects the stubs of a file in any order, as long as a node is added after its parent and the children of a node
+	 * are added in document order.
+	 */
+	public static class Builder
+	{
+		/**
+		 * The parent of the root tag.
+		 */
+		public static final int FILE = NONE;
+
+		private final XmlFileHeader myHeader;
+		private final Map<String, Integer> myStringIds = new HashMap<String, Integer>();
+		private final List<String> myStrings = new ArrayList<String>();
+		private final Map<String, Integer> myValueIds = new HashMap<String, Integer>();
+		private final List<String> myValues = new ArrayList<String>();
+
+		private int myCount;
+		private byte[] myFlags = new byte[16];
+		private int[] myParents = new int[16];
+		private int[] myNames = new int[16];
+		private int[] myNamespaces = new int[16];
+		private int[] myIndices = new int[16];
+		private int[] myExtras = new int[16];
+		private int[] myFirstChildren = new int[16];
+		private int[] myLastChildren = new int[16];
+		private int[] myNextSiblings = new int[16];
+
+		public Builder(XmlFileHeader header)
+		{
+			myHeader = header;
+		}
+
+		/**
+		 * @return the node of the element, to be passed as the parent of its attributes and sub tags
+		 */
+		public int addElement(int parent, String name, @Nullable String namespaceKey, int index, boolean custom, @Nullable String elementClass)
+		{
+			return add(parent, custom ? CUSTOM : 0, name, namespaceKey, index, elementClass == null ? NONE : getId(elementClass, myStringIds, myStrings));
+		}
+
+		public void addAttribute(int parent, String name, @Nullable String namespaceKey, @Nullable String value)
+		{
+			add(parent, ATTRIBUTE, name, namespaceKey, 0, value == null ? NONE : getId(value, myValueIds, myValues));
+		}
+
+		private int add(int parent, byte flags, String name, @Nullable String namespaceKey, int index, int extra)
+		{
+			if(myCount == myParents.length)
+			{
+				int size = myCount * 2;
+				myFlags = Arrays.copyOf(myFlags, size);
+				myParents = Arrays.copyOf(myParents, size);
+				myNames = Arrays.copyOf(myNames, size);
+				myNamespaces = Arrays.copyOf(myNamespaces, size);
+				myIndices = Arrays.copyOf(myIndices, size);
+				myExtras = Arrays.copyOf(myExtras, size);
+				myFirstChildren = Arrays.copyOf(myFirstChildren, size);
+				myLastChildren = Arrays.copyOf(myLastChildren, size);
+				myNextSiblings = Arrays.copyOf(myNextSiblings, size);
+			}
+			int node = myCount++;
+			myFlags[node] = flags;
+			myParents[node] = parent;
+			myNames[node] = getId(name, myStringIds, myStrings);
+			myNamespaces[node] = namespaceKey == null ? NONE : getId(namespaceKey, myStringIds, myStrings);
+			myIndices[node] = index;
+			myExtras[node] = extra;
+			myFirstChildren[node] = NONE;
+			myLastChildren[node] = NONE;
+			myNextSiblings[node] = NONE;
+			if(parent != NONE)
+			{
+				if(myLastChildren[parent] == NONE)
+				{
+					myFirstChildren[parent] = node;
+				}
+				else
+				{
+					myNextSiblings[myLastChildren[parent]] = node;
+				}
+				myLastChildren[parent] = node;
+			}
+			return node;
+		}
+
+		private static int getId(String s, Map<String, Integer> ids, List<String> strings)
+		{
+			Integer id = ids.get(s);
+			if(id == null)
+			{
+				id = strings.size();
+				ids.put(s, id);
+				strings.add(s);
+			}
+			return id;
+		}
+
+		public FileStub build()
+		{
+			// renumber the nodes in document order; only the first root tag is kept, like before
+			int[] order = new int[myCount];
+			int[] newIds = new int[myCount];
+			int count = 0;
+			if(myCount > 0)
+			{
+				int[] stack = new int[myCount];
+				int top = 0;
+				stack[top++] = 0;
+				while(top > 0)
+				{
+					int node = stack[--top];
+					newIds[node] = count;
+					order[count++] = node;
+					int childCount = 0;
+					for(int child = myFirstChildren[node]; child != NONE; child = myNextSiblings[child])
+					{
+						stack[top + childCount++] = child;
+					}
+					// push in reverse so that the first child is visited first
+					for(int i = 0, j = childCount - 1; i < j; i++, j--)
+					{
+						int tmp = stack[top + i];
+						stack[top + i] = stack[top + j];
+						stack[top + j] = tmp;
+					}
+					top += childCount;
+				}
+			}
+
+			byte[] flags = new byte[count];
+			int[] parents = new int[count];
+			int[] names = new int[count];
+			int[] namespaces = new int[count];
+			int[] indices = new int[count];
+			int[] extras = new int[count];
+			for(int i = 0; i < count; i++)
+			{
+				int node = order[i];
+				flags[i] = myFlags[node];
+				parents[i] = myParents[node] == NONE ? NONE : newIds[myParents[node]];
+				names[i] = myNames[node];
+				namespaces[i] = myNamespaces[node];
+				indices[i] = myIndices[node];
+				extras[i] = myExtras[node];
+			}
+			return new FileStub(myHeader, myStrings.toArray(new String[0]), myValues.toArray(new String[0]), flags, parents, names, namespaces,
+					indices, extras);
+		}
+	}
 }
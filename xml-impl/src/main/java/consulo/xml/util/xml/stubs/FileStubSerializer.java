@@ -16,11 +16,16 @@
 package consulo.xml.util.xml.stubs;
 
 import consulo.language.psi.stub.*;
+import consulo.util.lang.StringUtil;
 import consulo.util.xml.fastReader.XmlFileHeader;
+import consulo.xml.util.xml.stubs.index.DomElementClassIndex;
+import consulo.xml.util.xml.stubs.index.DomNamespaceKeyIndex;
 
 import java.io.IOException;
 
 /**
+ * Writes the whole stub tree of a file: the header, the string tables and then each node in document order.
+ *
  * @author Dmitry Avdeev
  * @since 2012-08-08
  */
@@ -40,17 +45,90 @@ public class FileStubSerializer implements ObjectStubSerializer<FileStub, Stub>
 		dataStream.writeName(header.getRootTagNamespace());
 		dataStream.writeName(header.getPublicId());
 		dataStream.writeName(header.getSystemId());
+
+		dataStream.writeVarInt(stub.myStrings.length);
+		for(String s : stub.myStrings)
+		{
+			dataStream.writeName(s);
+		}
+		dataStream.writeVarInt(stub.myValues.length);
+		for(String value : stub.myValues)
+		{
+			dataStream.writeUTFFast(value);
+		}
+
+		int count = stub.getNodeCount();
+		dataStream.writeVarInt(count);
+		for(int i = 0; i < count; i++)
+		{
+			dataStream.writeByte(stub.myFlags[i]);
+			// the parent always precedes its children
+			dataStream.writeVarInt(i - stub.myParents[i]);
+			dataStream.writeVarInt(stub.myNames[i]);
+			dataStream.writeVarInt(stub.myNamespaces[i] + 1);
+			dataStream.writeVarInt(stub.myIndices[i]);
+			dataStream.writeVarInt(stub.myExtras[i] + 1);
+		}
 	}
 
 	@Override
 	public FileStub deserialize(StubInputStream dataStream, Stub parentStub) throws IOException
 	{
-		return new FileStub(dataStream.readName(), dataStream.readName(), dataStream.readName(), dataStream.readName());
+		XmlFileHeader header = new XmlFileHeader(dataStream.readNameString(), dataStream.readNameString(), dataStream.readNameString(),
+				dataStream.readNameString());
+
+		String[] strings = new String[dataStream.readVarInt()];
+		for(int i = 0; i < strings.length; i++)
+		{
+			strings[i] = dataStream.readNameString();
+		}
+		String[] values = new String[dataStream.readVarInt()];
+		for(int i = 0; i < values.length; i++)
+		{
+			values[i] = dataStream.readUTFFast();
+		}
+
+		int count = dataStream.readVarInt();
+		byte[] flags = new byte[count];
+		int[] parents = new int[count];
+		int[] names = new int[count];
+		int[] namespaces = new int[count];
+		int[] indices = new int[count];
+		int[] extras = new int[count];
+		for(int i = 0; i < count; i++)
+		{
+			flags[i] = dataStream.readByte();
+			parents[i] = i - dataStream.readVarInt();
+			names[i] = dataStream.readVarInt();
+			namespaces[i] = dataStream.readVarInt() - 1;
+			indices[i] = dataStream.readVarInt();
+			extras[i] = dataStream.readVarInt() - 1;
+		}
+		return new FileStub(header, strings, values, flags, parents, names, namespaces, indices, extras);
 	}
 
 	@Override
 	public void indexStub(FileStub stub, IndexSink sink)
 	{
+		for(int i = 0, count = stub.getNodeCount(); i < count; i++)
+		{
+			if(stub.isAttribute(i))
+			{
+				continue;
+			}
+
+			final String namespaceKey = stub.getNamespaceKey(i);
+			if(StringUtil.isNotEmpty(namespaceKey))
+			{
+				sink.occurrence(DomNamespaceKeyIndex.KEY, namespaceKey);
+			}
+
+			final String elementClass = stub.getExtra(i);
+			if(elementClass != null)
+			{
+				sink.occurrence(DomElementClassIndex.KEY, elementClass);
+			}
+		}
 	}
 
 	@Override
@@ -35,6 +35,7 @@ import consulo.xml.language.psi.XmlFile;
 import consulo.xml.language.psi.XmlTag;
 import consulo.xml.util.xml.impl.DomManagerImpl;
 import consulo.xml.util.xml.stubs.FileStub;
+import org.jspecify.annotations.Nullable;
 
 
 /**
@@ -47,6 +48,12 @@ public class DomStubBuilder implements BinaryFileStubBuilder {
   public final static Key<FileContent> CONTENT_FOR_DOM_STUBS = Key.create("dom stubs content");
   private final static Logger LOG = Logger.getInstance(DomStubBuilder.class);
 
+  /**
+   * Set the property to true to build the stubs from the XML event stream instead of PSI. Off by default until the
+   * streamed stubs have been checked against the PSI-built ones.
+   */
+  private static final boolean STREAMING = Boolean.getBoolean("xml.dom.streaming.stubs");
+
   @Override
   public FileType getFileType() {
     return XmlFileType.INSTANCE;
@@ -71,30 +78,47 @@ public class DomStubBuilder implements BinaryFileStubBuilder {
     try {
       XmlUtil.BUILDING_DOM_STUBS.set(Boolean.TRUE);
       psiFile.putUserData(CONTENT_FOR_DOM_STUBS, fileContent);
-      DomFileElement<? extends DomElement> fileElement = DomManager.getDomManager(project).getFileElement(xmlFile);
-      if (fileElement == null || !fileElement.getFileDescription().hasStubs()) {
+      DomManagerImpl domManager = DomManagerImpl.getDomManager(project);
+      DomFileDescription<?> description = domManager.findFileDescription(xmlFile);
+      if (description == null || !description.hasStubs()) {
         return null;
       }
 
       XmlFileHeader header = DomService.getInstance().getXmlFileHeader(xmlFile);
       if (header.getRootTagLocalName() == null) {
-        LOG.error("null root tag for " + fileElement + " for " + file);
+        LOG.error("null root tag for " + description + " for " + file);
       }
-      FileStub fileStub = new FileStub(header);
-      XmlTag rootTag = xmlFile.getRootTag();
-      if (rootTag != null) {
-        new DomStubBuilderVisitor(DomManagerImpl.getDomManager(project)).visitXmlElement(rootTag, fileStub, 0);
+      if (STREAMING) {
+        // neither the PSI tree nor the DOM file element are created unless the file has to be visited
+        FileStub fileStub = StreamingDomStubBuilder.build(domManager, xmlFile, description, fileContent.getContentAsText(), header);
+        if (fileStub != null) {
+          return fileStub;
+        }
       }
-      return fileStub;
+      return buildByPsi(domManager, xmlFile, header);
     } finally {
       XmlUtil.BUILDING_DOM_STUBS.set(Boolean.FALSE);
       psiFile.putUserData(CONTENT_FOR_DOM_STUBS, null);
     }
   }
 
+  @Nullable
+  static FileStub buildByPsi(DomManagerImpl domManager, XmlFile xmlFile, XmlFileHeader header) {
+    DomFileElement<? extends DomElement> fileElement = domManager.getFileElement(xmlFile);
+    if (fileElement == null) {
+      return null;
+    }
+    FileStub.Builder stubs = new FileStub.Builder(header);
+    XmlTag rootTag = xmlFile.getRootTag();
+    if (rootTag != null) {
+      new DomStubBuilderVisitor(domManager, stubs).visitXmlElement(rootTag, FileStub.Builder.FILE, 0);
+    }
+    return stubs.build();
+  }
+
   @Override
   public int getStubVersion() {
-    int version = 11;
+    int version = 12;
     for (DomFileDescription description : DomFileDescription.EP_NAME.getExtensionList()) {
       version += description.getStubVersion();
     }
@@ -22,7 +22,6 @@ import java.util.Map;
 import consulo.xml.language.psi.XmlAttribute;
 import consulo.xml.language.psi.XmlElement;
 import consulo.xml.language.psi.XmlTag;
-import consulo.index.io.StringRef;
 import consulo.xml.dom.Stubbed;
 import consulo.xml.dom.StubbedOccurrence;
 import consulo.xml.util.xml.impl.DomInvocationHandler;
@@ -30,8 +29,7 @@ import consulo.xml.util.xml.impl.DomManagerImpl;
 import consulo.xml.dom.reflect.AbstractDomChildrenDescription;
 import consulo.xml.dom.reflect.CustomDomChildrenDescription;
 import consulo.xml.dom.reflect.DomChildrenDescription;
-import consulo.xml.util.xml.stubs.AttributeStub;
-import consulo.xml.util.xml.stubs.ElementStub;
+import consulo.xml.util.xml.stubs.FileStub;
 
 /**
  * @author Dmitry Avdeev
@@ -40,13 +38,15 @@ import consulo.xml.util.xml.stubs.ElementStub;
 class DomStubBuilderVisitor
 {
 	private final DomManagerImpl myManager;
+	private final FileStub.Builder myStubs;
 
-	DomStubBuilderVisitor(DomManagerImpl manager)
+	DomStubBuilderVisitor(DomManagerImpl manager, FileStub.Builder stubs)
 	{
 		myManager = manager;
+		myStubs = stubs;
 	}
 
-	void visitXmlElement(XmlElement element, ElementStub parent, int index)
+	void visitXmlElement(XmlElement element, int parent, int index)
 	{
 		DomInvocationHandler handler = myManager.getDomHandler(element);
 		if(handler == null || handler.getAnnotation(Stubbed.class) == null && !handler.getChildDescription().isStubbed())
@@ -67,8 +67,7 @@ class DomStubBuilderVisitor
 				elementClass = ((Class) type).getName();
 			}
 
-			ElementStub stub = new ElementStub(parent, StringRef.fromString(tag.getName()), StringRef.fromNullableString(nsKey), index,
-					description instanceof CustomDomChildrenDescription, elementClass == null ? null : StringRef.fromNullableString(elementClass));
+			int stub = myStubs.addElement(parent, tag.getName(), nsKey, index, description instanceof CustomDomChildrenDescription, elementClass);
 			for(XmlAttribute attribute : tag.getAttributes())
 			{
 				visitXmlElement(attribute, stub, 0);
@@ -85,8 +84,7 @@ class DomStubBuilderVisitor
 		}
 		else if(element instanceof XmlAttribute)
 		{
-			new AttributeStub(parent, StringRef.fromString(((XmlAttribute) element).getLocalName()), StringRef.fromNullableString(nsKey),
-					((XmlAttribute) element).getValue());
+			myStubs.addAttribute(parent, ((XmlAttribute) element).getLocalName(), nsKey, ((XmlAttribute) element).getValue());
 		}
 	}
 
@@ -0,0 +1,594 @@
+package consulo.xml.util.xml.stubs.builder;
+
+import com.intellij.xml.util.XmlUtil;
+import consulo.annotation.access.RequiredReadAction;
+import consulo.localize.LocalizeValue;
+import consulo.util.lang.reflect.ReflectionUtil;
+import consulo.util.xml.fastReader.XmlFileHeader;
+import consulo.xml.dom.DomElement;
+import consulo.xml.dom.DomFileDescription;
+import consulo.xml.dom.Stubbed;
+import consulo.xml.dom.StubbedOccurrence;
+import consulo.xml.dom.reflect.DomChildrenDescription;
+import consulo.xml.dom.reflect.DomCollectionChildDescription;
+import consulo.xml.dom.reflect.DomExtender;
+import consulo.xml.dom.reflect.DomFixedChildDescription;
+import consulo.xml.dom.reflect.DomReflectionUtil;
+import consulo.xml.dom.util.proxy.InvocationHandlerOwner;
+import consulo.xml.language.XmlName;
+import consulo.xml.language.psi.XmlFile;
+import consulo.xml.language.psi.parser.XmlBuilder;
+import consulo.xml.language.psi.parser.XmlBuilderDriver;
+import consulo.xml.util.xml.EvaluatedXmlNameImpl;
+import consulo.xml.util.xml.impl.AbstractDomChildDescriptionImpl;
+import consulo.xml.util.xml.impl.AttributeChildDescriptionImpl;
+import consulo.xml.util.xml.impl.DomImplUtil;
+import consulo.xml.util.xml.impl.DomManagerImpl;
+import consulo.xml.util.xml.impl.StaticGenericInfo;
+import consulo.xml.util.xml.reflect.DomExtensionImpl;
+import consulo.xml.util.xml.stubs.FileStub;
+import org.jspecify.annotations.Nullable;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.util.*;
+
+/**
+ * Builds the same stubs as {@link DomStubBuilderVisitor}, but from the {@link XmlBuilderDriver} events over the file text,
+ * without a PSI tree, a DOM file element or DOM handlers: the root tag is matched against the {@link DomFileDescription}
+ * and children against the {@link StaticGenericInfo} of their parent the way {@code DomSemContributor} does it.
+ * <p>
+ * Whenever the result could differ from the PSI based one, e.g. when DOM extenders, custom children or type choosers
+ * are involved, when stubbed tags contain entity references or XInclude tags, or when a namespace that matters would
+ * be resolved from a DTD or from implicit namespaces, nothing is built and the caller has to fall back to the visitor.
+ *
+ * @since 2026-10-18
+ */
+class StreamingDomStubBuilder implements XmlBuilder
+{
+	private static final Set<String> PREDEFINED_ENTITIES = Set.of("&lt;", "&gt;", "&amp;", "&quot;", "&apos;");
+	private static final String XMLNS = "xmlns";
+	private static final String XMLNS_COLON = "xmlns:";
+
+	private final DomManagerImpl myManager;
+	private final DomFileDescription<?> myDescription;
+	private final XmlFile myFile;
+	private final CharSequence myText;
+	private final FileStub.Builder myStubs;
+	private final List<DomExtender> myExtenders;
+
+	private final Deque<Frame> myFrames = new ArrayDeque<Frame>();
+	private boolean myRootSeen;
+	private boolean myRootHasNamespaceDeclarations;
+	private boolean myUnsupported;
+
+	private StreamingDomStubBuilder(DomManagerImpl manager, XmlFile file, DomFileDescription<?> description, CharSequence text, XmlFileHeader header)
+	{
+		myManager = manager;
+		myDescription = description;
+		myFile = file;
+		myText = text;
+		myStubs = new FileStub.Builder(header);
+		myExtenders = new ArrayList<DomExtender>();
+		for(DomExtender extender : manager.getProject().getApplication().getExtensionPoint(DomExtender.class))
+		{
+			myExtenders.add(extender);
+		}
+	}
+
+	/**
+	 * @return null if the stubs can't be built without PSI
+	 */
+	@Nullable
+	@RequiredReadAction
+	static FileStub build(DomManagerImpl manager, XmlFile file, DomFileDescription<?> description, CharSequence text, XmlFileHeader header)
+	{
+		StreamingDomStubBuilder builder = new StreamingDomStubBuilder(manager, file, description, text, header);
+		new XmlBuilderDriver(text).build(builder);
+		return builder.myUnsupported ? null : builder.myStubs.build();
+	}
+
+	private static class Frame
+	{
+		@Nullable
+		final Frame parent;
+		final String qName;
+		final int start;
+		final int end;
+		// whether the tag is visited at all, i.e. it's the root tag or its parent is a stubbed DOM element
+		final boolean live;
+		final int index;
+
+		@Nullable
+		Map<String, String> bindings;
+		final List<Attribute> attributes = new ArrayList<Attribute>();
+		boolean resolved;
+
+		// set if the tag is a stubbed DOM element
+		@Nullable
+		DomElementInfo dom;
+		final Map<String, Integer> indices = new HashMap<String, Integer>();
+		// namespaces of the sub tags seen so far by local name, null if a namespace isn't known
+		final Map<String, List<String>> siblingNamespaces = new HashMap<String, List<String>>();
+
+		Frame(@Nullable Frame parent, String qName, int start, int end, boolean live, int index)
+		{
+			this.parent = parent;
+			this.qName = qName;
+			this.start = start;
+			this.end = end;
+			this.live = live;
+			this.index = index;
+		}
+
+		int nextIndex(String qName)
+		{
+			Integer i = indices.get(qName);
+			i = i == null ? 0 : i + 1;
+			indices.put(qName, i);
+			return i;
+		}
+	}
+
+	private static class Attribute
+	{
+		final String qName;
+		@Nullable
+		final String value;
+
+		Attribute(String qName, @Nullable String value)
+		{
+			this.qName = qName;
+			this.value = value;
+		}
+	}
+
+	private static class DomElementInfo
+	{
+		final EvaluatedXmlNameImpl xmlName;
+		final StaticGenericInfo genericInfo;
+		// null if it can't be told without PSI
+		@Nullable
+		final String namespace;
+		// the stub node of the element
+		final int stub;
+
+		DomElementInfo(EvaluatedXmlNameImpl xmlName, StaticGenericInfo genericInfo, @Nullable String namespace, int stub)
+		{
+			this.xmlName = xmlName;
+			this.genericInfo = genericInfo;
+			this.namespace = namespace;
+			this.stub = stub;
+		}
+	}
+
+	@Override
+	public void doctype(@Nullable CharSequence publicId, @Nullable CharSequence systemId, int startOffset, int endOffset)
+	{
+	}
+
+	@Override
+	public ProcessingOrder startTag(CharSequence localName, String namespace, int startoffset, int endoffset, int headerEndOffset)
+	{
+		Frame parent = myFrames.peek();
+		if(parent != null)
+		{
+			resolve(parent);
+		}
+
+		String qName = getQualifiedName(startoffset, localName);
+		boolean live;
+		int index = 0;
+		if(parent == null)
+		{
+			// only the first top level tag is the root tag, the others are errors
+			live = !myRootSeen;
+			myRootSeen = true;
+		}
+		else
+		{
+			live = parent.dom != null;
+			if(live)
+			{
+				index = parent.nextIndex(qName);
+			}
+		}
+		Frame frame = new Frame(parent, qName, startoffset, endoffset, live && !myUnsupported, index);
+		myFrames.push(frame);
+		return frame.live ? ProcessingOrder.TAGS_AND_ATTRIBUTES : ProcessingOrder.TAGS;
+	}
+
+	@Override
+	public void endTag(CharSequence localName, String namespace, int startoffset, int endoffset)
+	{
+		resolve(myFrames.pop());
+	}
+
+	@Override
+	public void attribute(CharSequence name, CharSequence value, int startoffset, int endoffset)
+	{
+		Frame frame = myFrames.peek();
+		if(frame == null || !frame.live || frame.resolved)
+		{
+			return;
+		}
+
+		String qName = name.toString();
+		String attributeValue = getAttributeValue(qName, startoffset, endoffset);
+		if(XMLNS.equals(qName) || qName.startsWith(XMLNS_COLON))
+		{
+			if(attributeValue == null)
+			{
+				myUnsupported = true;
+				return;
+			}
+			if(frame.bindings == null)
+			{
+				frame.bindings = new HashMap<String, String>();
+			}
+			frame.bindings.put(XMLNS.equals(qName) ? "" : qName.substring(XMLNS_COLON.length()), attributeValue);
+			if(frame.parent == null)
+			{
+				myRootHasNamespaceDeclarations = true;
+			}
+		}
+		frame.attributes.add(new Attribute(qName, attributeValue));
+	}
+
+	@Override
+	public void textElement(CharSequence display, CharSequence physical, int startoffset, int endoffset)
+	{
+	}
+
+	@Override
+	public void entityRef(CharSequence ref, int startOffset, int endOffset)
+	{
+		Frame frame = myFrames.peek();
+		if(frame == null)
+		{
+			return;
+		}
+		resolve(frame);
+		// the sub tags of a tag include the ones coming from its entities
+		if(frame.dom != null && !PREDEFINED_ENTITIES.contains(ref.toString()))
+		{
+			myUnsupported = true;
+		}
+	}
+
+	@Override
+	public void error(LocalizeValue message, int startOffset, int endOffset)
+	{
+	}
+
+	/**
+	 * Called once everything up to the first child of the tag has been seen: the tag's own namespace declarations
+	 * and attributes are known, its sub tags are still to come.
+	 */
+	private void resolve(Frame frame)
+	{
+		if(frame.resolved)
+		{
+			return;
+		}
+		frame.resolved = true;
+		if(!frame.live || myUnsupported)
+		{
+			return;
+		}
+
+		String localName = XmlUtil.findLocalNameByQualifiedName(frame.qName);
+		String namespace = getNamespaceByPrefix(frame, XmlUtil.findPrefixByQualifiedName(frame.qName));
+		frame.dom = frame.parent == null ? resolveRoot(frame, localName, namespace) : resolveChild(frame, frame.parent, localName, namespace);
+		if(frame.dom != null && !myUnsupported)
+		{
+			for(Attribute attribute : frame.attributes)
+			{
+				visitAttribute(frame, frame.dom, attribute);
+			}
+		}
+	}
+
+	/**
+	 * See FileDescriptionCachedValueProvider and DomRootInvocationHandler: the root handler is described by the root
+	 * element class alone, it has no annotations or DOM extensions of its own.
+	 */
+	@Nullable
+	private DomElementInfo resolveRoot(Frame frame, String localName, @Nullable String namespace)
+	{
+		Class<?> rootClass = myDescription.getRootElementClass();
+		XmlName xmlName = DomImplUtil.createXmlName(myDescription.getRootTagName(), rootClass, null);
+		if(xmlName == null)
+		{
+			myUnsupported = true;
+			return null;
+		}
+		EvaluatedXmlNameImpl rootTagName = EvaluatedXmlNameImpl.createEvaluatedXmlName(xmlName, xmlName.getNamespaceKey(), false);
+
+		// see DomFileElementImpl.getRootTag()
+		if(frame.end <= frame.start || !myDescription.acceptsOtherRootTagNames())
+		{
+			if(!rootTagName.getXmlName().getLocalName().equals(localName) || !isNamespaceAllowed(rootTagName, namespace, false))
+			{
+				return null;
+			}
+		}
+
+		boolean stubbed = DomReflectionUtil.findAnnotationDFS(rootClass, Stubbed.class) != null || rootClass.getAnnotation(Stubbed.class) != null;
+		if(!stubbed || isExtended(rootClass))
+		{
+			return null;
+		}
+
+		String elementClass = rootClass.getAnnotation(StubbedOccurrence.class) != null ? rootClass.getName() : null;
+		int stub = myStubs.addElement(FileStub.Builder.FILE, frame.qName, "", 0, false, elementClass);
+		return new DomElementInfo(rootTagName, getStaticGenericInfo(rootClass), namespace, stub);
+	}
+
+	/**
+	 * See DomSemContributor, the handlers are looked for in the same order.
+	 */
+	@Nullable
+	private DomElementInfo resolveChild(Frame frame, Frame parentFrame, String localName, @Nullable String namespace)
+	{
+		DomElementInfo parent = parentFrame.dom;
+		assert parent != null;
+
+		// see XmlIncludeHandler.isXInclude()
+		if("include".equals(localName) && (namespace == null || XmlUtil.XINCLUDE_URI.equals(namespace)))
+		{
+			myUnsupported = true;
+			return null;
+		}
+
+		List<String> siblings = parentFrame.siblingNamespaces.get(localName);
+		if(siblings == null)
+		{
+			parentFrame.siblingNamespaces.put(localName, siblings = new ArrayList<String>(1));
+		}
+
+		DomChildrenDescription description = null;
+		int index = 0;
+		DomFixedChildDescription fixed = findChildrenDescription(parent.genericInfo.getFixedChildrenDescriptions(), parent, localName, frame.qName, namespace);
+		if(fixed != null)
+		{
+			for(String sibling : siblings)
+			{
+				if(namespace == null || sibling == null)
+				{
+					myUnsupported = true;
+					return null;
+				}
+				if(namespace.equals(sibling))
+				{
+					index++;
+				}
+			}
+			if(index < fixed.getCount())
+			{
+				description = fixed;
+			}
+		}
+		siblings.add(namespace);
+
+		if(description == null)
+		{
+			DomCollectionChildDescription collection = findChildrenDescription(parent.genericInfo.getCollectionChildrenDescriptions(), parent, localName, frame.qName, namespace);
+			if(collection != null)
+			{
+				if(myManager.getTypeChooserManager().hasTypeChooser(collection.getType()))
+				{
+					myUnsupported = true;
+					return null;
+				}
+				description = collection;
+				index = 0;
+			}
+		}
+
+		if(description == null)
+		{
+			if(!frame.qName.isEmpty() && !parent.genericInfo.getCustomNameChildrenDescription().isEmpty())
+			{
+				myUnsupported = true;
+			}
+			return null;
+		}
+
+		if(myUnsupported)
+		{
+			return null;
+		}
+
+		Type type = description.getType();
+		Class<?> rawType = ReflectionUtil.getRawType(type);
+		boolean stubbed = getAnnotation(description, index, rawType, Stubbed.class) != null || ((AbstractDomChildDescriptionImpl) description).isStubbed();
+		if(!stubbed || isExtended(type, (AbstractDomChildDescriptionImpl) description))
+		{
+			return null;
+		}
+
+		String elementClass = getAnnotation(description, index, rawType, StubbedOccurrence.class) != null ? ((Class) type).getName() : null;
+		int stub = myStubs.addElement(parent.stub, frame.qName, description.getXmlName().getNamespaceKey(), frame.index, false, elementClass);
+		EvaluatedXmlNameImpl xmlName = (EvaluatedXmlNameImpl) parent.xmlName.evaluateChildName(description.getXmlName());
+		return new DomElementInfo(xmlName, getStaticGenericInfo(type), namespace, stub);
+	}
+
+	@Nullable
+	private <T extends DomChildrenDescription> T findChildrenDescription(List<T> descriptions, DomElementInfo parent, String localName, String qName, @Nullable String namespace)
+	{
+		for(T description : descriptions)
+		{
+			XmlName xmlName = description.getXmlName();
+			String name = xmlName.getLocalName();
+			if(localName.equals(name) || qName.equals(name))
+			{
+				EvaluatedXmlNameImpl evaluatedXmlName = (EvaluatedXmlNameImpl) parent.xmlName.evaluateChildName(xmlName);
+				if(isNamespaceAllowed(evaluatedXmlName, namespace, !name.equals(qName)))
+				{
+					return description;
+				}
+			}
+		}
+		return null;
+	}
+
+	private void visitAttribute(Frame frame, DomElementInfo dom, Attribute attribute)
+	{
+		String localName = XmlUtil.findLocalNameByQualifiedName(attribute.qName);
+		String prefix = XmlUtil.findPrefixByQualifiedName(attribute.qName);
+		for(AttributeChildDescriptionImpl description : dom.genericInfo.getAttributeChildrenDescriptions())
+		{
+			if(!description.getXmlName().getLocalName().equals(localName))
+			{
+				continue;
+			}
+
+			// see the attribute handler provider in DomSemContributor
+			String attributeNamespace = prefix.isEmpty() ? XmlUtil.EMPTY_URI : getNamespaceByPrefix(frame, prefix);
+			if(dom.namespace == null || attributeNamespace == null)
+			{
+				myUnsupported = true;
+				return;
+			}
+			EvaluatedXmlNameImpl evaluatedXmlName = (EvaluatedXmlNameImpl) dom.xmlName.evaluateChildName(description.getXmlName());
+			String namespace = evaluatedXmlName.getNamespace(dom.namespace, myFile);
+			if(namespace.equals(dom.namespace) && localName.equals(attribute.qName) || namespace.equals(attributeNamespace))
+			{
+				Class<?> rawType = ReflectionUtil.getRawType(description.getType());
+				if(description.isStubbed() || getAnnotation(description, 0, rawType, Stubbed.class) != null)
+				{
+					myStubs.addAttribute(dom.stub, localName, description.getXmlName().getNamespaceKey(), attribute.value);
+				}
+				return;
+			}
+		}
+	}
+
+	private boolean isNamespaceAllowed(EvaluatedXmlNameImpl xmlName, @Nullable String namespace, boolean qualified)
+	{
+		if(!xmlName.isNamespaceSensitive(qualified))
+		{
+			return true;
+		}
+		if(namespace == null)
+		{
+			myUnsupported = true;
+			return false;
+		}
+		return xmlName.isNamespaceAllowed(namespace, myFile, qualified);
+	}
+
+	/**
+	 * See XmlTagImpl.getNamespaceByPrefix(), returns null where it would look at implicit namespaces or DTDs.
+	 */
+	@Nullable
+	private String getNamespaceByPrefix(Frame frame, String prefix)
+	{
+		for(Frame each = frame; each != null; each = each.parent)
+		{
+			if(each.bindings != null)
+			{
+				String namespace = each.bindings.get(prefix);
+				if(namespace != null)
+				{
+					return namespace;
+				}
+			}
+		}
+		if("xml".equals(prefix))
+		{
+			return XmlUtil.XML_NAMESPACE_URI;
+		}
+		return myRootHasNamespaceDeclarations ? XmlUtil.EMPTY_URI : null;
+	}
+
+	/**
+	 * DOM extenders may add children to an element, which only a {@code DynamicGenericInfo} knows about.
+	 */
+	private boolean isExtended(Type type, AbstractDomChildDescriptionImpl description)
+	{
+		if(description.getUserData(DomExtensionImpl.DOM_EXTENDER_KEY) != null)
+		{
+			myUnsupported = true;
+			return true;
+		}
+		return isExtended(type);
+	}
+
+	private boolean isExtended(Type type)
+	{
+		Class<?> rawType = ReflectionUtil.getRawType(type);
+		Class<? extends DomElement> implementation = myManager.getApplicationComponent().getImplementation(rawType);
+		for(DomExtender extender : myExtenders)
+		{
+			Class<?> elementClass = extender.getElementClass();
+			if(elementClass.isAssignableFrom(rawType) || elementClass.isAssignableFrom(InvocationHandlerOwner.class) ||
+					implementation != null && elementClass.isAssignableFrom(implementation))
+			{
+				myUnsupported = true;
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Nullable
+	private static <T extends Annotation> T getAnnotation(DomChildrenDescription description, int index, Class<?> rawType, Class<T> annotationClass)
+	{
+		T annotation = description instanceof DomFixedChildDescription
+				? ((DomFixedChildDescription) description).getAnnotation(index, annotationClass)
+				: description.getAnnotation(annotationClass);
+		return annotation != null ? annotation : rawType.getAnnotation(annotationClass);
+	}
+
+	private StaticGenericInfo getStaticGenericInfo(Type type)
+	{
+		return myManager.getApplicationComponent().getStaticGenericInfo(type);
+	}
+
+	/**
+	 * The driver only reports the local name of a tag, the stubs need the qualified one.
+	 */
+	private String getQualifiedName(int start, CharSequence localName)
+	{
+		int end = start + 1;
+		while(end < myText.length() && isNameChar(myText.charAt(end)))
+		{
+			end++;
+		}
+		String qName = myText.subSequence(Math.min(start + 1, end), end).toString();
+		if(!XmlUtil.findLocalNameByQualifiedName(qName).contentEquals(localName))
+		{
+			myUnsupported = true;
+		}
+		return qName;
+	}
+
+	private static boolean isNameChar(char c)
+	{
+		return !Character.isWhitespace(c) && c != '>' && c != '/' && c != '<' && c != '=' && c != '"' && c != '\'';
+	}
+
+	/**
+	 * The attribute value as {@code XmlAttribute.getValue()} returns it: null if there's none, without the quotes otherwise.
+	 */
+	@Nullable
+	private String getAttributeValue(String qName, int start, int end)
+	{
+		String text = myText.subSequence(start, end).toString();
+		int eq = text.indexOf('=', qName.length());
+		if(eq < 0)
+		{
+			return null;
+		}
+		String value = text.substring(eq + 1).trim();
+		if(value.length() < 2 || value.charAt(0) != '"' && value.charAt(0) != '\'' || value.charAt(value.length() - 1) != value.charAt(0))
+		{
+			// unterminated or unquoted value, leave it to PSI
+			myUnsupported = true;
+			return null;
+		}
+		return value.substring(1, value.length() - 1);
+	}
+}
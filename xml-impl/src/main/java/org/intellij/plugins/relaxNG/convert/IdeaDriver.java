@@ -24,6 +24,7 @@ import com.thaiopensource.relaxng.input.dtd.DtdInputFormat;
 import com.thaiopensource.relaxng.input.parse.compact.CompactParseInputFormat;
 import com.thaiopensource.relaxng.input.parse.sax.SAXParseInputFormat;
 import com.thaiopensource.relaxng.input.xml.XmlInputFormat;
+import com.thaiopensource.relaxng.output.BufferedOutputDirectory;
 import com.thaiopensource.relaxng.output.LocalOutputDirectory;
 import com.thaiopensource.relaxng.output.OutputDirectory;
 import com.thaiopensource.relaxng.output.OutputFailedException;
@@ -36,6 +37,7 @@ import com.thaiopensource.relaxng.translate.util.InvalidParamsException;
 import com.thaiopensource.resolver.BasicResolver;
 import com.thaiopensource.resolver.Resolver;
 import com.thaiopensource.util.UriOrFile;
+import consulo.logging.Logger;
 import consulo.project.Project;
 import consulo.ui.ex.awt.Messages;
 import consulo.util.collection.ArrayUtil;
@@ -48,7 +50,14 @@ import java.io.IOException;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
 
+/**
+ * Converts schemas with trang: the input is loaded into a single schema collection, converted into memory, using
+ * several threads for RELAX NG output where each document is translated on its own, and only then written to disk,
+ * so that a failed conversion leaves no partial output behind. Schemas inferred from several XML files parse the
+ * files on several threads as well.
+ */
 public class IdeaDriver {
+  private static final Logger LOG = Logger.getInstance(IdeaDriver.class);
 
   private static final int DEFAULT_LINE_LENGTH = 72;
   private static final int DEFAULT_INDENT = 2;
@@ -96,6 +105,7 @@ public class IdeaDriver {
       final SchemaCollection sc;
       final String input = inputFile.getPath();
       final String uri = UriOrFile.toUri(input);
+      final long start = System.nanoTime();
       try {
         if (inFormat instanceof MultiInputFormat) {
           final MultiInputFormat format = (MultiInputFormat) inFormat;
@@ -144,9 +154,19 @@ public class IdeaDriver {
           }
         };
 
+        final long loaded = System.nanoTime();
         final OutputFormat of = getOutputFormat(settings.getOutputType());
+        final BufferedOutputDirectory buffer = new BufferedOutputDirectory(od, settings.getOutputEncoding());
+        of.output(sc, buffer, ArrayUtil.toStringArray(outputParams), inputType.toString().toLowerCase(), errorHandler);
+
+        final long converted = System.nanoTime();
+        // on the calling thread, which may have to ask whether to overwrite existing files
+        buffer.commit();
 
-        of.output(sc, od, ArrayUtil.toStringArray(outputParams), inputType.toString().toLowerCase(), errorHandler);
+        final long written = System.nanoTime();
+        LOG.info("Converted " + sc.getSchemaDocumentMap().size() + " schema document(s) to " + outputType + ": loaded in " +
+                 (loaded - start) / 1000000 + " ms, converted in " + (converted - loaded) / 1000000 + " ms, written in " +
+                 (written - converted) / 1000000 + " ms");
       } catch (IOException e) {
         errorHandler.fatalError(new SAXParseException(e.getMessage(), null, UriOrFile.fileToUri(outputFile), -1, -1, e));
       }
@@ -167,9 +187,9 @@ public class IdeaDriver {
       case DTD:
         return new DtdOutputFormat();
       case RNC:
-        return new RncOutputFormat();
+        return new RncOutputFormat(Runtime.getRuntime().availableProcessors());
       case RNG:
-        return new RngOutputFormat();
+        return new RngOutputFormat(Runtime.getRuntime().availableProcessors());
       case XSD:
         return new XsdOutputFormat();
       default:
@@ -187,7 +207,7 @@ public class IdeaDriver {
       case RNG:
         return new SAXParseInputFormat();
       case XML:
-        return new XmlInputFormat();
+        return new XmlInputFormat(Runtime.getRuntime().availableProcessors());
       default:
         assert false : "Unsupported input type: " + type;
         return null;
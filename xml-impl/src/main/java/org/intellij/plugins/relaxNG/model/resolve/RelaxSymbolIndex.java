@@ -35,6 +35,7 @@ import consulo.language.psi.stub.DefaultFileTypeSpecificInputFilter;
 import consulo.language.psi.stub.FileBasedIndex;
 import consulo.language.psi.stub.FileContent;
 import consulo.language.psi.stub.ScalarIndexExtension;
+import consulo.logging.Logger;
 import consulo.navigation.ItemPresentation;
 import consulo.navigation.NavigationItem;
 import consulo.project.Project;
@@ -61,6 +62,17 @@ import java.util.*;
 @ExtensionImpl
 public class RelaxSymbolIndex extends ScalarIndexExtension<String> {
   public static final ID<String, Void> NAME = ID.create("RelaxSymbolIndex");
+  private static final Logger LOG = Logger.getInstance(RelaxSymbolIndex.class);
+
+  /**
+   * Set the property to true to index the defines of RNC files from lexer tokens instead of PSI, see
+   * {@link RncDefineExtractor}. Off by default until the lexer keys have been checked against the PSI ones.
+   */
+  private static final boolean LEXER_DEFINES = Boolean.getBoolean("rng.index.lexer.defines");
+  /**
+   * Set the property to true to compute the define names of every RNC file both ways and log the files where they differ.
+   */
+  private static final boolean CHECK_LEXER_DEFINES = Boolean.getBoolean("rng.index.lexer.defines.check");
 
   public static Collection<String> getSymbolNames(Project project) {
     return FileBasedIndex.getInstance().getAllKeys(NAME, project);
@@ -145,27 +157,43 @@ public class RelaxSymbolIndex extends ScalarIndexExtension<String> {
             }
           });
         } else if (inputData.getFileType() == RncFileType.getInstance()) {
-          final PsiFile file = inputData.getPsiFile();
-          if (file instanceof XmlFile) {
-            final Grammar grammar = GrammarFactory.getGrammar((XmlFile)file);
-            if (grammar != null) {
-              grammar.acceptChildren(new CommonElement.Visitor() {
-                @Override
-                public void visitDefine(Define define) {
-                  final String name = define.getName();
-                  if (name != null) {
-                    map.put(name, null);
-                  }
-                }
-              });
+          final Set<String> names = LEXER_DEFINES ? RncDefineExtractor.getDefineNames(inputData.getContentAsText()) : getDefineNames(inputData);
+          if (CHECK_LEXER_DEFINES) {
+            final Set<String> other = LEXER_DEFINES ? getDefineNames(inputData) : RncDefineExtractor.getDefineNames(inputData.getContentAsText());
+            if (!names.equals(other)) {
+              LOG.error("Lexer and PSI define names of " + inputData.getFileName() + " differ: " +
+                        (LEXER_DEFINES ? names + " vs. " + other : other + " vs. " + names));
             }
           }
+          for (String name : names) {
+            map.put(name, null);
+          }
         }
         return map;
       }
     };
   }
 
+  private static Set<String> getDefineNames(FileContent inputData) {
+    final Set<String> names = new LinkedHashSet<>();
+    final PsiFile file = inputData.getPsiFile();
+    if (file instanceof XmlFile) {
+      final Grammar grammar = GrammarFactory.getGrammar((XmlFile)file);
+      if (grammar != null) {
+        grammar.acceptChildren(new CommonElement.Visitor() {
+          @Override
+          public void visitDefine(Define define) {
+            final String name = define.getName();
+            if (name != null) {
+              names.add(name);
+            }
+          }
+        });
+      }
+    }
+    return names;
+  }
+
   @Override
   public KeyDescriptor<String> getKeyDescriptor() {
     return EnumeratorStringDescriptor.INSTANCE;
@@ -188,7 +216,8 @@ public class RelaxSymbolIndex extends ScalarIndexExtension<String> {
 
   @Override
   public int getVersion() {
-    return 0;
+    // the keys of malformed files may differ between the two ways
+    return LEXER_DEFINES ? 3 : 2;
   }
 
   private static class MyNavigationItem implements PsiElementNavigationItem, ItemPresentation {
@@ -0,0 +1,183 @@
+package org.intellij.plugins.relaxNG.model.resolve;
+
+import consulo.language.ast.IElementType;
+import consulo.language.ast.TokenSet;
+import consulo.language.ast.TokenType;
+import org.intellij.plugins.relaxNG.compact.RncTokenTypes;
+import org.intellij.plugins.relaxNG.compact.lexer.CompactSyntaxLexerAdapter;
+
+import org.jspecify.annotations.Nullable;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import static org.intellij.plugins.relaxNG.compact.RncTokenTypes.*;
+
+/**
+ * Collects the names of the defines of a RELAX NG compact syntax file from the tokens of
+ * {@link CompactSyntaxLexerAdapter}, without building PSI.
+ * <p>
+ * The result is meant to be the same as visiting the defines of {@link GrammarFactory#getGrammar} for a well-formed file: the defines
+ * that are direct children of the implicit top-level grammar or of a top-level {@code grammar { ... }} pattern. Like that
+ * visitor, it doesn't descend into {@code div} and {@code include} blocks or into nested grammars: the symbol index
+ * resolves its hits through the same visitor, so names from those blocks would be keys without a navigation item.
+ * {@link RelaxSymbolIndex} only uses it when asked to, and can compare both results on every indexed file.
+ *
+ * @since 2026-10-18
+ */
+class RncDefineExtractor {
+  private static final TokenSet SKIPPED = TokenSet.orSet(TokenSet.create(TokenType.WHITE_SPACE), COMMENTS, DOC_TOKENS);
+  private static final TokenSet DECLARATIONS = TokenSet.create(KEYWORD_DATATYPES, KEYWORD_NAMESPACE, KEYWORD_DEFAULT);
+  private static final TokenSet GRAMMAR_CONTENT =
+    TokenSet.orSet(TokenSet.create(KEYWORD_INCLUDE, KEYWORD_DIV, KEYWORD_START), IDENTIFIERS);
+  private static final TokenSet ASSIGN_METHOD = TokenSet.create(EQ, CHOICE_EQ, INTERLEAVE_EQ);
+  private static final TokenSet OPENING = TokenSet.create(LBRACE, LPAREN, LBRACKET);
+  private static final TokenSet CLOSING = TokenSet.create(RBRACE, RPAREN, RBRACKET);
+
+  private final CompactSyntaxLexerAdapter myLexer = new CompactSyntaxLexerAdapter();
+
+  // the current token and the one after it, whitespace and comments skipped
+  private IElementType myType;
+  private int myStart;
+  private int myEnd;
+  private IElementType myNextType;
+  private int myNextStart;
+  private int myNextEnd;
+
+  private RncDefineExtractor(CharSequence text) {
+    myLexer.start(text);
+    skip();
+    myNextType = myLexer.getTokenType();
+    myNextStart = myLexer.getTokenStart();
+    myNextEnd = myLexer.getTokenEnd();
+    advance();
+  }
+
+  static Set<String> getDefineNames(CharSequence text) {
+    return new RncDefineExtractor(text).extract();
+  }
+
+  private Set<String> extract() {
+    Set<String> names = new LinkedHashSet<>();
+
+    skipAnnotations();
+    while (myType != null && DECLARATIONS.contains(myType)) {
+      // namespace x = "...", default namespace [x] = "...", datatypes x = "..."
+      while (myType != null && myType != EQ) {
+        advance();
+      }
+      advance();
+      advance();
+      skipAnnotations();
+    }
+
+    if (myType == KEYWORD_GRAMMAR) {
+      advance();
+      if (myType != LBRACE) {
+        return names;
+      }
+      advance();
+      collectDefines(1, names);
+      // a grammar pattern that is only an operand isn't the grammar of the file
+      if (myType == RBRACE && myNextType != null && (BINARY_OPS.contains(myNextType) || QUANTIFIER_OPS.contains(myNextType))) {
+        names.clear();
+      }
+    }
+    else if (myType != null && GRAMMAR_CONTENT.contains(myType)) {
+      collectDefines(0, names);
+    }
+    return names;
+  }
+
+  /**
+   * Adds every identifier followed by an assignment at nesting level {@code level}, stops at the token closing that level.
+   */
+  private void collectDefines(int level, Set<String> names) {
+    int depth = level;
+    while (myType != null) {
+      if (OPENING.contains(myType)) {
+        depth++;
+      }
+      else if (CLOSING.contains(myType)) {
+        if (--depth < level) {
+          return;
+        }
+      }
+      else if (depth == level && IDENTIFIERS.contains(myType) && myNextType != null && ASSIGN_METHOD.contains(myNextType)) {
+        names.add(getName());
+      }
+      advance();
+    }
+  }
+
+  private String getName() {
+    String text = myLexer.getBufferSequence().subSequence(myStart, myEnd).toString();
+    if (myType == ESCAPED_IDENTIFIER) {
+      return text.length() > 1 ? text.substring(1) : "";
+    }
+    return text;
+  }
+
+  /**
+   * Skips {@code [...]}, {@code name [...]} and {@code >> name [...]} annotations, like the parser does.
+   */
+  private void skipAnnotations() {
+    while (myType != null) {
+      if (myType == LBRACKET) {
+        skipBrackets();
+      }
+      else if (isName(myType) && myNextType == LBRACKET) {
+        advance();
+        skipBrackets();
+      }
+      else if (myType == GTGT) {
+        advance();
+        if (isName(myType)) {
+          advance();
+          if (myType == LBRACKET) {
+            skipBrackets();
+          }
+        }
+      }
+      else {
+        return;
+      }
+    }
+  }
+
+  private void skipBrackets() {
+    int depth = 0;
+    do {
+      if (myType == LBRACKET) {
+        depth++;
+      }
+      else if (myType == RBRACKET) {
+        depth--;
+      }
+      advance();
+    }
+    while (myType != null && depth > 0);
+  }
+
+  private static boolean isName(@Nullable IElementType type) {
+    return IDENTIFIER_OR_KEYWORD.contains(type) || type == PREFIXED_NAME;
+  }
+
+  private void advance() {
+    myType = myNextType;
+    myStart = myNextStart;
+    myEnd = myNextEnd;
+    if (myNextType != null) {
+      myLexer.advance();
+      skip();
+      myNextType = myLexer.getTokenType();
+      myNextStart = myLexer.getTokenStart();
+      myNextEnd = myLexer.getTokenEnd();
+    }
+  }
+
+  private void skip() {
+    while (myLexer.getTokenType() != null && SKIPPED.contains(myLexer.getTokenType())) {
+      myLexer.advance();
+    }
+  }
+}
@@ -0,0 +1,439 @@
+package org.intellij.plugins.relaxNG.validation;
+
+import com.thaiopensource.relaxng.match.Matcher;
+import com.thaiopensource.relaxng.pattern.SharedPatternMemo;
+import com.thaiopensource.relaxng.pattern.ValidatorPatternBuilder;
+import com.thaiopensource.validate.rng.impl.PatternSchema;
+import com.thaiopensource.validate.rng.impl.RngValidator;
+import consulo.document.Document;
+import consulo.language.psi.PsiDocumentManager;
+import consulo.util.collection.primitive.ints.IntMaps;
+import consulo.util.collection.primitive.ints.IntObjectMap;
+import consulo.util.dataholder.Key;
+import consulo.virtualFileSystem.VirtualFile;
+import consulo.xml.language.psi.XmlDocument;
+import consulo.xml.language.psi.XmlFile;
+import consulo.xml.language.psi.XmlTag;
+import org.jspecify.annotations.Nullable;
+import org.xml.sax.ErrorHandler;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Validates an instance document the way {@link XmlInstanceValidator} does, but remembers the matcher state
+ * before and after the tags that the XML reparser can replace on their own, i.e. the non-root tags, as long as
+ * they are big enough to be worth skipping. On the next run, such a tag whose text lies completely outside of the
+ * edited region and which is entered with the same matcher state and namespace bindings as before is not replayed
+ * at all: the validator continues with the remembered exit state, the document locator is moved to where the tag
+ * left it, and the errors found inside the tag last time are reported again. Only the tags enclosing the edit and
+ * the tags following it up to the point where the state converges with the previous run are actually validated.
+ * <p>
+ * Matcher states belong to the {@link ValidatorPatternBuilder} that computed them. Each run borrows a builder
+ * from the {@link SharedPatternMemo} of the schema and asks for the one of the previous run, which is usually
+ * idle again; if another file got it in the meantime, the run starts from scratch.
+ *
+ * @since 2026-10-18
+ */
+class IncrementalInstanceValidator {
+  private static final Key<State> STATE_KEY = Key.create("RNG_INCREMENTAL_VALIDATION_STATE");
+
+  // off by default until the incremental results have been checked against full runs
+  private static final boolean ENABLED = Boolean.getBoolean("rng.incremental.validation");
+  // smaller documents are validated from scratch, which is cheap and keeps no state per file
+  private static final int MIN_DOCUMENT_LENGTH = 16 * 1024;
+  static final int MIN_CHECKPOINT_LENGTH = 256;
+
+  private static final int WARNING = 0;
+  private static final int ERROR = 1;
+  private static final int FATAL_ERROR = 2;
+
+  private IncrementalInstanceValidator() {
+  }
+
+  static boolean isApplicable(Document document) {
+    return ENABLED && document.getTextLength() >= MIN_DOCUMENT_LENGTH;
+  }
+
+  /**
+   * @return false if the document can't be validated incrementally right now, e.g. because it isn't committed;
+   * nothing has been reported then and the caller validates the whole document
+   */
+  static boolean validate(XmlFile file, XmlDocument doc, PatternSchema schema, Document document, ErrorHandler eh) {
+    if (!PsiDocumentManager.getInstance(file.getProject()).isCommitted(document)) {
+      return false;
+    }
+
+    State previous = takeState(file);
+    if (previous != null && previous.schema != schema) {
+      previous = null;
+    }
+
+    final XmlTag rootTag = doc.getRootTag();
+    final CharSequence text = document.getImmutableCharSequence();
+    final EditedRegion region = previous != null ? EditedRegion.compute(previous.text, text) : null;
+    // anything in the prolog (e.g. an internal DTD subset) may influence the whole document
+    if (region != null && rootTag != null && region.prefix < rootTag.getTextRange().getStartOffset()) {
+      previous = null;
+    }
+
+    final SharedPatternMemo memo = schema.getSharedMemo();
+    final ValidatorPatternBuilder builder;
+    if (memo != null) {
+      builder = previous != null ? memo.acquire(previous.builder) : memo.acquire();
+    }
+    else {
+      builder = previous != null ? previous.builder : new ValidatorPatternBuilder(schema.getPatternBuilder());
+    }
+    if (previous != null && previous.builder != builder) {
+      previous = null;
+    }
+
+    try {
+      final Map<String, String> noBindings = Collections.emptyMap();
+      final Checkpoint documentCheckpoint = new Checkpoint("", text.length(), null, noBindings);
+      final RecordingErrorHandler handler = new RecordingErrorHandler(eh, document);
+      final RngValidator validator = new RngValidator(schema.getStart(), builder, handler);
+
+      final IncrementalAdapter adapter =
+        new IncrementalAdapter(validator, handler, previous != null ? region : null, document, file.getVirtualFile());
+      adapter.push(new Frame(documentCheckpoint, 0, previous != null ? previous.root : null, 0));
+      doc.accept(adapter);
+
+      putState(file, new State(schema, builder, text, documentCheckpoint));
+    }
+    finally {
+      if (memo != null) {
+        memo.release(builder);
+      }
+    }
+    return true;
+  }
+
+  @Nullable
+  private static State takeState(XmlFile file) {
+    // the same file may be highlighted by more than one pass at a time, each run needs the state for itself
+    synchronized (STATE_KEY) {
+      final State state = file.getUserData(STATE_KEY);
+      file.putUserData(STATE_KEY, null);
+      return state;
+    }
+  }
+
+  private static void putState(XmlFile file, State state) {
+    synchronized (STATE_KEY) {
+      file.putUserData(STATE_KEY, state);
+    }
+  }
+
+  private static class State {
+    final PatternSchema schema;
+    // only used to get the same builder back, it is owned by the shared memo in between runs
+    final ValidatorPatternBuilder builder;
+    final CharSequence text;
+    final Checkpoint root;
+
+    State(PatternSchema schema, ValidatorPatternBuilder builder, CharSequence text, Checkpoint root) {
+      this.schema = schema;
+      this.builder = builder;
+      this.text = text;
+      this.root = root;
+    }
+  }
+
+  /**
+   * The old text is equal to the new one except for the range [prefix, oldLength - suffix).
+   */
+  private static class EditedRegion {
+    final int prefix;
+    final int suffix;
+    final int newLength;
+    final int delta;
+
+    private EditedRegion(int prefix, int suffix, int newLength, int delta) {
+      this.prefix = prefix;
+      this.suffix = suffix;
+      this.newLength = newLength;
+      this.delta = delta;
+    }
+
+    static EditedRegion compute(CharSequence oldText, CharSequence newText) {
+      final int oldLength = oldText.length();
+      final int newLength = newText.length();
+      final int max = Math.min(oldLength, newLength);
+      int prefix = 0;
+      while (prefix < max && oldText.charAt(prefix) == newText.charAt(prefix)) {
+        prefix++;
+      }
+      int suffix = 0;
+      while (suffix < max - prefix && oldText.charAt(oldLength - 1 - suffix) == newText.charAt(newLength - 1 - suffix)) {
+        suffix++;
+      }
+      return new EditedRegion(prefix, suffix, newLength, newLength - oldLength);
+    }
+
+    boolean isUnchanged(int start, int length) {
+      return start + length <= prefix || start >= newLength - suffix;
+    }
+
+    /**
+     * @return the offset the element starting at {@code start} had in the old text, or -1 if it didn't exist
+     */
+    int toOldOffset(int start) {
+      if (start < prefix) {
+        return start;
+      }
+      if (start >= newLength - suffix) {
+        return start - delta;
+      }
+      return -1;
+    }
+  }
+
+  private static class Checkpoint {
+    final String name;
+    final int length;
+    @Nullable final Matcher entry;
+    // the namespace bindings in effect outside of this tag
+    final Map<String, String> scope;
+    Matcher exit;
+    // where the last location was set inside of this tag, relative to this tag
+    int lastLocation = -1;
+    // the checkpoints of the nearest checkpointed descendants, keyed by their start offset relative to this tag
+    @Nullable IntObjectMap<Checkpoint> children;
+    // everything reported inside of this tag, with offsets relative to this tag
+    @Nullable List<RecordedError> errors;
+
+    Checkpoint(String name, int length, @Nullable Matcher entry, Map<String, String> scope) {
+      this.name = name;
+      this.length = length;
+      this.entry = entry;
+      this.scope = scope;
+    }
+
+    @Nullable
+    Checkpoint getChild(int offset) {
+      return children != null ? children.get(offset) : null;
+    }
+
+    void addChild(int offset, Checkpoint child) {
+      if (children == null) {
+        children = IntMaps.newIntObjectHashMap();
+      }
+      children.put(offset, child);
+    }
+
+    void addError(RecordedError error) {
+      if (errors == null) {
+        errors = new ArrayList<>();
+      }
+      errors.add(error);
+    }
+  }
+
+  private static class RecordedError {
+    final int kind;
+    final String message;
+    final String systemId;
+    final int offset;
+
+    RecordedError(int kind, String message, String systemId, int offset) {
+      this.kind = kind;
+      this.message = message;
+      this.systemId = systemId;
+      this.offset = offset;
+    }
+  }
+
+  private static class Frame {
+    final Checkpoint checkpoint;
+    final int start;
+    @Nullable final Checkpoint previous;
+    final int previousStart;
+
+    Frame(Checkpoint checkpoint, int start, @Nullable Checkpoint previous, int previousStart) {
+      this.checkpoint = checkpoint;
+      this.start = start;
+      this.previous = previous;
+      this.previousStart = previousStart;
+    }
+  }
+
+  private static class RecordingErrorHandler implements ErrorHandler {
+    private final ErrorHandler myDelegate;
+    private final Document myDocument;
+    private final Deque<Frame> myFrames = new ArrayDeque<>();
+
+    RecordingErrorHandler(ErrorHandler delegate, Document document) {
+      myDelegate = delegate;
+      myDocument = document;
+    }
+
+    @Override
+    public void warning(SAXParseException exception) throws SAXException {
+      record(WARNING, exception);
+      myDelegate.warning(exception);
+    }
+
+    @Override
+    public void error(SAXParseException exception) throws SAXException {
+      record(ERROR, exception);
+      myDelegate.error(exception);
+    }
+
+    @Override
+    public void fatalError(SAXParseException exception) throws SAXException {
+      record(FATAL_ERROR, exception);
+      myDelegate.fatalError(exception);
+    }
+
+    private void record(int kind, SAXParseException exception) {
+      final int line = exception.getLineNumber();
+      final int column = exception.getColumnNumber();
+      final int offset = line > 0 && column > 0 && line <= myDocument.getLineCount()
+                         ? myDocument.getLineStartOffset(line - 1) + column - 1 : -1;
+      for (Frame frame : myFrames) {
+        final int relative = offset < 0 ? -1 : offset - frame.start;
+        frame.checkpoint.addError(new RecordedError(kind, exception.getMessage(), exception.getSystemId(), relative));
+      }
+    }
+
+    void replay(@Nullable List<RecordedError> errors, int start) throws SAXException {
+      if (errors == null) {
+        return;
+      }
+      for (RecordedError error : errors) {
+        final SAXParseException exception;
+        if (error.offset < 0) {
+          exception = new SAXParseException(error.message, null, error.systemId, -1, -1);
+        }
+        else {
+          final int offset = Math.min(start + error.offset, myDocument.getTextLength());
+          final int line = myDocument.getLineNumber(offset);
+          exception = new SAXParseException(error.message, null, error.systemId, line + 1,
+                                            1 + offset - myDocument.getLineStartOffset(line));
+        }
+        switch (error.kind) {
+          case WARNING:
+            warning(exception);
+            break;
+          case FATAL_ERROR:
+            fatalError(exception);
+            break;
+          default:
+            error(exception);
+        }
+      }
+    }
+  }
+
+  private static class IncrementalAdapter extends Psi2SaxAdapter {
+    private final RngValidator myValidator;
+    private final RecordingErrorHandler myHandler;
+    @Nullable private final EditedRegion myRegion;
+    private final Document myDocument;
+    @Nullable private final VirtualFile myVirtualFile;
+    private Map<String, String> myScope = Collections.emptyMap();
+    private int myLastLocation = -1;
+
+    IncrementalAdapter(RngValidator validator,
+                       RecordingErrorHandler handler,
+                       @Nullable EditedRegion region,
+                       Document document,
+                       @Nullable VirtualFile virtualFile) {
+      super(validator);
+      myValidator = validator;
+      myHandler = handler;
+      myRegion = region;
+      myDocument = document;
+      myVirtualFile = virtualFile;
+    }
+
+    void push(Frame frame) {
+      myHandler.myFrames.push(frame);
+    }
+
+    @Override
+    protected void setLocation(Document document, VirtualFile virtualFile, int offset) {
+      myLastLocation = offset;
+      super.setLocation(document, virtualFile, offset);
+    }
+
+    @Override
+    public void visitXmlTag(XmlTag tag) {
+      final Map<String, String> scope = myScope;
+      final Map<String, String> declarations = tag.getLocalNamespaceDeclarations();
+      if (!declarations.isEmpty()) {
+        myScope = new HashMap<>(scope);
+        myScope.putAll(declarations);
+      }
+      try {
+        if (tag.getTextLength() >= MIN_CHECKPOINT_LENGTH && tag.getParentTag() != null) {
+          visitCheckpointedTag(tag, scope);
+        }
+        else {
+          super.visitXmlTag(tag);
+        }
+      }
+      finally {
+        myScope = scope;
+      }
+    }
+
+    private void visitCheckpointedTag(XmlTag tag, Map<String, String> scope) {
+      final Frame parent = myHandler.myFrames.peek();
+      final int start = tag.getTextRange().getStartOffset();
+      final int length = tag.getTextLength();
+      final String name = tag.getName();
+      final Matcher entry = myValidator.saveState();
+
+      Checkpoint previous = null;
+      int previousStart = -1;
+      if (myRegion != null && parent.previous != null) {
+        previousStart = myRegion.toOldOffset(start);
+        if (previousStart >= 0) {
+          previous = parent.previous.getChild(previousStart - parent.previousStart);
+          if (previous != null && !previous.name.equals(name)) {
+            previous = null;
+          }
+        }
+      }
+
+      if (previous != null && entry != null && myRegion.isUnchanged(start, length) && previous.length == length
+          && entry.equals(previous.entry) && scope.equals(previous.scope)) {
+        // converged with the previous run: nothing inside of this tag can validate differently
+        try {
+          myValidator.restoreState(previous.exit);
+          if (previous.lastLocation >= 0 && myVirtualFile != null) {
+            setLocation(myDocument, myVirtualFile, start + previous.lastLocation);
+          }
+          myHandler.replay(previous.errors, start);
+        }
+        catch (SAXException e) {
+          throw new ParseError(e);
+        }
+        parent.checkpoint.addChild(start - parent.start, previous);
+        return;
+      }
+
+      final Checkpoint checkpoint = new Checkpoint(name, length, entry, scope);
+      push(new Frame(checkpoint, start, previous, previousStart));
+      try {
+        super.visitXmlTag(tag);
+      }
+      finally {
+        myHandler.myFrames.pop();
+      }
+      checkpoint.exit = myValidator.saveState();
+      checkpoint.lastLocation = myLastLocation >= start ? myLastLocation - start : -1;
+      parent.checkpoint.addChild(start - parent.start, checkpoint);
+    }
+  }
+}
@@ -114,6 +114,15 @@ public class MessageViewHelper {
     );
   }
 
+  /**
+   * Adds a message that isn't about a particular file, e.g. a summary. The message view must have been opened.
+   */
+  public void addInfo(final String text) {
+    ApplicationManager.getApplication().invokeLater(
+      () -> myErrorsView.addMessage(MessageCategory.INFORMATION, new String[]{text}, null, -1, -1, null)
+    );
+  }
+
   public void close() {
     removeOldContents(null);
   }
@@ -152,11 +152,17 @@ class Psi2SaxAdapter extends XmlElementVisitor implements PsiElementProcessor<Ps
     if (virtualFile == null) {
       return;
     }
+    setLocation(document, virtualFile, text.getTextRange().getEndOffset());
+  }
 
+  /**
+   * Points the document locator of the handler at {@code offset}, which is where errors reported for the next
+   * events are shown.
+   */
+  protected void setLocation(Document document, VirtualFile virtualFile, int offset) {
     final Locator2Impl locator = new Locator2Impl();
     locator.setSystemId(VirtualFileUtil.fixIDEAUrl(virtualFile.getUrl()));
 
-    final int offset = text.getTextRange().getEndOffset();
     final int lineNumber = document.getLineNumber(offset);
 
     locator.setLineNumber(lineNumber + 1);
@@ -15,13 +15,15 @@
  */
 package org.intellij.plugins.relaxNG.validation;
 
+import com.intellij.xml.util.XmlUtil;
 import com.thaiopensource.datatype.xsd.DatatypeLibraryFactoryImpl;
-import com.thaiopensource.datatype.xsd.regex.java.RegexEngineImpl;
 import com.thaiopensource.relaxng.pattern.AnnotationsImpl;
 import com.thaiopensource.relaxng.pattern.CommentListImpl;
 import com.thaiopensource.relaxng.pattern.NameClass;
 import com.thaiopensource.relaxng.pattern.Pattern;
+import com.thaiopensource.relaxng.pattern.SchemaPatternBuilder;
 import com.thaiopensource.resolver.Input;
+import com.thaiopensource.resolver.ResolverException;
 import com.thaiopensource.resolver.xml.sax.SAX;
 import com.thaiopensource.resolver.xml.sax.SAXResolver;
 import com.thaiopensource.util.PropertyMap;
@@ -30,6 +32,7 @@ import com.thaiopensource.util.VoidValue;
 import com.thaiopensource.validate.Schema;
 import com.thaiopensource.validate.ValidateProperty;
 import com.thaiopensource.validate.prop.rng.RngProperty;
+import com.thaiopensource.validate.rng.impl.PatternSchema;
 import com.thaiopensource.validate.rng.impl.SchemaReaderImpl;
 import consulo.application.progress.ProgressManager;
 import consulo.application.util.*;
@@ -45,9 +48,11 @@ import consulo.xml.javaee.UriUtil;
 import consulo.xml.language.psi.XmlFile;
 import org.intellij.plugins.relaxNG.compact.RncFileType;
 import org.intellij.plugins.relaxNG.model.resolve.RelaxIncludeIndex;
+import org.jspecify.annotations.Nullable;
 import org.kohsuke.rngom.ast.builder.BuildException;
 import org.kohsuke.rngom.ast.builder.IncludedGrammar;
 import org.kohsuke.rngom.ast.builder.SchemaBuilder;
+import org.kohsuke.rngom.ast.builder.Scope;
 import org.kohsuke.rngom.ast.om.ParsedPattern;
 import org.kohsuke.rngom.binary.SchemaBuilderImpl;
 import org.kohsuke.rngom.binary.SchemaPatternBuilder;
@@ -68,7 +73,8 @@ import org.xml.sax.*;
 import org.xml.sax.helpers.DefaultHandler;
 
 import javax.xml.transform.sax.SAXSource;
-import java.io.StringReader;
+import java.io.IOException;
+import java.util.Collection;
 import java.util.concurrent.ConcurrentMap;
 
 /**
@@ -101,7 +107,7 @@ public class RngParser {
 
     private static DatatypeLibraryFactory createXsdDatatypeFactory() {
         try {
-            return new DatatypeLibraryFactoryImpl(new RegexEngineImpl());
+            return new DatatypeLibraryFactoryImpl(DatatypeLibraryFactoryImpl.createDefaultRegexEngine());
         }
         catch (Throwable e) {
             return new DoNothingDatatypeLibraryFactoryImpl();
@@ -129,7 +135,7 @@ public class RngParser {
         String url = file.getUrl();
         DPattern pattern = ourCache.get(url);
         if (pattern == null) {
-            pattern = parsePattern(descriptorFile, eh, false);
+            pattern = getPersistentPattern(descriptorFile, eh);
         }
         if (pattern != null) {
             DPattern oldPattern = ourCache.putIfAbsent(url, pattern);
@@ -140,9 +146,51 @@ public class RngParser {
         return pattern;
     }
 
+    private static DPattern getPersistentPattern(final PsiFile descriptorFile, final ErrorHandler eh) {
+        if (!(descriptorFile instanceof XmlFile)) {
+            return parsePattern(descriptorFile, eh, false);
+        }
+        final XmlFile xmlFile = (XmlFile)descriptorFile;
+        final String key = RngSchemaCache.computeKey(xmlFile, getForwardDependencies(xmlFile));
+        if (key == null) {
+            return parsePattern(descriptorFile, eh, false);
+        }
+        final RngSchemaCache.Entry<DPattern> entry = RngSchemaCache.readPattern(key);
+        if (entry != null) {
+            try {
+                entry.replayDiagnostics(eh);
+                return entry.getValue();
+            }
+            catch (SAXException e) {
+                // the handler gave up, like it would have during parsing
+                LOG.info(e);
+                return null;
+            }
+        }
+        final RngSchemaCache.Recorder recorder = new RngSchemaCache.Recorder(eh);
+        final DPattern pattern = parsePattern(descriptorFile, recorder, false, recorder);
+        if (pattern != null) {
+            RngSchemaCache.writePattern(key, pattern, recorder);
+        }
+        return pattern;
+    }
+
+    private static Collection<XmlFile> getForwardDependencies(XmlFile descriptorFile) {
+        final PsiElementProcessor.CollectElements<XmlFile> processor = new PsiElementProcessor.CollectElements<>();
+        RelaxIncludeIndex.processForwardDependencies(descriptorFile, processor);
+        return processor.getCollection();
+    }
+
     public static DPattern parsePattern(final PsiFile file, final ErrorHandler eh, boolean checking) {
+        return parsePattern(file, eh, checking, null);
+    }
+
+    private static DPattern parsePattern(final PsiFile file,
+                                         final ErrorHandler eh,
+                                         boolean checking,
+                                         @Nullable RngSchemaCache.Recorder recorder) {
         try {
-            final Parseable p = createParsable(file, eh);
+            final Parseable p = createParsable(file, eh, recorder);
             if (checking) {
                 p.parse(new SchemaBuilderImpl(eh, DT_LIBRARY_FACTORY.getValue(), new SchemaPatternBuilder()));
             }
@@ -167,7 +215,7 @@ public class RngParser {
         return null;
     }
 
-    private static Parseable createParsable(final PsiFile file, final ErrorHandler eh) {
+    private static Parseable createParsable(final PsiFile file, final ErrorHandler eh, @Nullable RngSchemaCache.Recorder recorder) {
         final InputSource source = makeInputSource(file);
         final VirtualFile virtualFile = file.getVirtualFile();
 
@@ -176,7 +224,13 @@ public class RngParser {
                 @Override
                 public ParsedPattern parseInclude(String uri, SchemaBuilder schemaBuilder, IncludedGrammar g, String inheritedNs) throws BuildException, IllegalSchemaException {
                     ProgressManager.checkCanceled();
-                    return super.parseInclude(resolveURI(virtualFile, uri), schemaBuilder, g, inheritedNs);
+                    return super.parseInclude(resolveURI(virtualFile, uri, recorder), schemaBuilder, g, inheritedNs);
+                }
+
+                @Override
+                public ParsedPattern parseExternal(String uri, SchemaBuilder schemaBuilder, Scope scope, String inheritedNs) throws BuildException, IllegalSchemaException {
+                    recordInclude(uri, recorder);
+                    return super.parseExternal(uri, schemaBuilder, scope, inheritedNs);
                 }
             };
         }
@@ -185,37 +239,50 @@ public class RngParser {
                 @Override
                 public ParsedPattern parseInclude(String uri, SchemaBuilder schemaBuilder, IncludedGrammar g, String inheritedNs) throws BuildException, IllegalSchemaException {
                     ProgressManager.checkCanceled();
-                    return super.parseInclude(resolveURI(virtualFile, uri), schemaBuilder, g, inheritedNs);
+                    return super.parseInclude(resolveURI(virtualFile, uri, recorder), schemaBuilder, g, inheritedNs);
+                }
+
+                @Override
+                public ParsedPattern parseExternal(String uri, SchemaBuilder schemaBuilder, Scope scope, String inheritedNs) throws BuildException, IllegalSchemaException {
+                    recordInclude(uri, recorder);
+                    return super.parseExternal(uri, schemaBuilder, scope, inheritedNs);
                 }
             };
         }
     }
 
-    private static String resolveURI(VirtualFile descriptorFile, String s) {
+    private static String resolveURI(VirtualFile descriptorFile, String s, @Nullable RngSchemaCache.Recorder recorder) {
         final VirtualFile file = UriUtil.findRelativeFile(s, descriptorFile);
         if (file != null) {
             s = VirtualFileUtil.fixIDEAUrl(file.getUrl());
         }
+        recordInclude(s, recorder);
         return s;
     }
 
+    private static void recordInclude(String uri, @Nullable RngSchemaCache.Recorder recorder) {
+        if (recorder != null) {
+            recorder.includeResolved(uri);
+        }
+    }
+
     public static Schema getCachedSchema(final XmlFile descriptorFile) {
         CachedValue<Schema> value = descriptorFile.getUserData(SCHEMA_KEY);
         if (value == null) {
             final CachedValueProvider<Schema> provider = () ->
             {
-                final InputSource inputSource = makeInputSource(descriptorFile);
+                final Collection<XmlFile> dependencies = getForwardDependencies(descriptorFile);
 
                 try {
                     PropertyMapBuilder properties = new PropertyMapBuilder();
                     properties.put(ValidateProperty.RESOLVER, new VirtualFileSystemResolver());
                     properties.put(RngProperty.DATATYPE_LIBRARY_FACTORY, DT_LIBRARY_FACTORY.get());
+                    // the schema is validated against over and over again by the highlighting passes
+                    RngProperty.SHARED_PATTERN_MEMO.add(properties);
 
-                    final Schema schema = new MySchemaReader(descriptorFile).createSchema(inputSource, properties.toPropertyMap());
-                    final PsiElementProcessor.CollectElements<XmlFile> processor = new PsiElementProcessor.CollectElements<>();
-                    RelaxIncludeIndex.processForwardDependencies(descriptorFile, processor);
-                    if (processor.getCollection().size() > 0) {
-                        return CachedValueProvider.Result.create(schema, processor.toArray(), descriptorFile);
+                    final Schema schema = createSchema(descriptorFile, dependencies, properties.toPropertyMap());
+                    if (dependencies.size() > 0) {
+                        return CachedValueProvider.Result.create(schema, dependencies.toArray(), descriptorFile);
                     }
                     else {
                         return CachedValueProvider.Result.createSingleDependency(schema, descriptorFile);
@@ -237,8 +304,41 @@ public class RngParser {
         return value.getValue();
     }
 
+    private static Schema createSchema(XmlFile descriptorFile, Collection<XmlFile> dependencies, PropertyMap properties)
+        throws Exception {
+        final String key = RngSchemaCache.computeKey(descriptorFile, dependencies);
+        if (key == null) {
+            return new MySchemaReader(descriptorFile).createSchema(makeInputSource(descriptorFile), properties);
+        }
+
+        final SchemaPatternBuilder spb = new SchemaPatternBuilder();
+        final RngSchemaCache.Entry<Pattern> entry = RngSchemaCache.readSchemaPattern(key, DT_LIBRARY_FACTORY.get(), spb);
+        if (entry != null) {
+            entry.replayDiagnostics(properties.get(ValidateProperty.ERROR_HANDLER));
+            return SchemaReaderImpl.wrapPattern(entry.getValue(), spb, properties);
+        }
+
+        final RngSchemaCache.Recorder recorder = new RngSchemaCache.Recorder(properties.get(ValidateProperty.ERROR_HANDLER));
+        final PropertyMapBuilder recording = new PropertyMapBuilder(properties);
+        recording.put(ValidateProperty.ERROR_HANDLER, recorder);
+        recording.put(ValidateProperty.RESOLVER, new VirtualFileSystemResolver() {
+            @Override
+            public void open(Input input) throws IOException, ResolverException {
+                super.open(input);
+                if (input.getUri() != null) {
+                    recorder.includeResolved(input.getUri());
+                }
+            }
+        });
+        final Schema schema = new MySchemaReader(descriptorFile).createSchema(makeInputSource(descriptorFile), recording.toPropertyMap());
+        if (schema instanceof PatternSchema) {
+            RngSchemaCache.writeSchemaPattern(key, ((PatternSchema)schema).getStart(), recorder);
+        }
+        return schema;
+    }
+
     private static InputSource makeInputSource(PsiFile descriptorFile) {
-        final InputSource inputSource = new InputSource(new StringReader(descriptorFile.getText()));
+        final InputSource inputSource = new InputSource(XmlUtil.createTextReader(descriptorFile));
         final VirtualFile file = descriptorFile.getVirtualFile();
         if (file != null) {
             inputSource.setSystemId(VirtualFileUtil.fixIDEAUrl(file.getUrl()));
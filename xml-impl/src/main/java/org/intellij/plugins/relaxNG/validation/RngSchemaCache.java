@@ -0,0 +1,424 @@
+package org.intellij.plugins.relaxNG.validation;
+
+import com.thaiopensource.relaxng.pattern.Pattern;
+import com.thaiopensource.relaxng.pattern.PatternSerializer;
+import com.thaiopensource.relaxng.pattern.SchemaPatternBuilder;
+import consulo.container.boot.ContainerPathManager;
+import consulo.logging.Logger;
+import consulo.virtualFileSystem.VirtualFile;
+import consulo.virtualFileSystem.VirtualFileManager;
+import consulo.virtualFileSystem.archive.ArchiveFileSystem;
+import consulo.virtualFileSystem.util.VirtualFileUtil;
+import consulo.xml.language.psi.XmlFile;
+import org.jspecify.annotations.Nullable;
+import org.kohsuke.rngom.digested.DPattern;
+import org.kohsuke.rngom.digested.DPatternSerializer;
+import org.relaxng.datatype.DatatypeLibraryFactory;
+import org.xml.sax.ErrorHandler;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+
+import java.io.*;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/**
+ * On-disk cache of compiled RELAX NG schemas, so that big schemas (DocBook, TEI, ODF, ...) don't have to be
+ * parsed again after a restart or after the in-memory caches of {@link RngParser} have been collected.
+ * <p>
+ * Entries are keyed by a digest over the URLs and contents of the schema file and of all files it includes according
+ * to the include index, so any change to one of them simply results in a new entry. Each entry also stores the
+ * time stamps of all includes the parser actually opened and the diagnostics it reported: an entry whose includes
+ * changed is dropped, and the diagnostics are reported again whenever the entry is used. The total size of the cache
+ * directory is bounded; least recently used entries are deleted first.
+ *
+ * @since 2026-10-18
+ */
+class RngSchemaCache {
+    private static final Logger LOG = Logger.getInstance(RngSchemaCache.class);
+
+    private static final String CACHE_DIR = "rng-schema-cache";
+    private static final String KEY_VERSION = "2";
+    private static final String PATTERN_SUFFIX = ".dpattern";
+    private static final String SCHEMA_SUFFIX = ".schema";
+    private static final long MAX_CACHE_SIZE = 64L * 1024 * 1024;
+
+    private RngSchemaCache() {
+    }
+
+    /**
+     * @return null if the schema or one of its includes doesn't exist on disk, such schemas are not cached
+     */
+    @Nullable
+    static String computeKey(XmlFile descriptorFile, Collection<XmlFile> dependencies) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        }
+        catch (NoSuchAlgorithmException e) {
+            return null;
+        }
+        digest.update(KEY_VERSION.getBytes(StandardCharsets.UTF_8));
+
+        List<XmlFile> files = new ArrayList<>(dependencies.size() + 1);
+        files.add(descriptorFile);
+        for (XmlFile dependency : dependencies) {
+            if (dependency != descriptorFile) {
+                files.add(dependency);
+            }
+        }
+        // the root file stays first, the order of the includes must not matter
+        files.subList(1, files.size()).sort(Comparator.comparing(file -> getUrl(file) == null ? "" : getUrl(file)));
+
+        for (XmlFile file : files) {
+            String url = getUrl(file);
+            if (url == null) {
+                return null;
+            }
+            digest.update(url.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte)0);
+            digest.update(StandardCharsets.UTF_8.encode(CharBuffer.wrap(file.getViewProvider().getContents())));
+            digest.update((byte)0);
+        }
+
+        StringBuilder key = new StringBuilder();
+        for (byte b : digest.digest()) {
+            key.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return key.toString();
+    }
+
+    @Nullable
+    private static String getUrl(XmlFile file) {
+        VirtualFile virtualFile = file.getVirtualFile();
+        return virtualFile != null ? virtualFile.getUrl() : null;
+    }
+
+    @Nullable
+    static Entry<DPattern> readPattern(String key) {
+        return read(key, PATTERN_SUFFIX, DPatternSerializer::read);
+    }
+
+    static void writePattern(String key, DPattern pattern, Recorder recorder) {
+        write(key, PATTERN_SUFFIX, recorder, out -> DPatternSerializer.write(pattern, out));
+    }
+
+    @Nullable
+    static Entry<Pattern> readSchemaPattern(String key, DatatypeLibraryFactory datatypeLibraryFactory, SchemaPatternBuilder spb) {
+        return read(key, SCHEMA_SUFFIX, in -> PatternSerializer.read(in, datatypeLibraryFactory, spb));
+    }
+
+    static void writeSchemaPattern(String key, Pattern start, Recorder recorder) {
+        write(key, SCHEMA_SUFFIX, recorder, out -> PatternSerializer.write(start, out));
+    }
+
+    /**
+     * A schema read from the cache, together with the warnings and errors reported when it was parsed.
+     */
+    static class Entry<T> {
+        private final T myValue;
+        private final List<Diagnostic> myDiagnostics;
+
+        private Entry(T value, List<Diagnostic> diagnostics) {
+            myValue = value;
+            myDiagnostics = diagnostics;
+        }
+
+        T getValue() {
+            return myValue;
+        }
+
+        /**
+         * Reports the diagnostics of the original parse again, so a broken schema doesn't look clean once it is cached.
+         */
+        void replayDiagnostics(@Nullable ErrorHandler eh) throws SAXException {
+            if (eh == null) {
+                return;
+            }
+            for (Diagnostic diagnostic : myDiagnostics) {
+                diagnostic.report(eh);
+            }
+        }
+    }
+
+    /**
+     * Records what parsing a schema depended on and reported, forwarding the diagnostics to the original handler.
+     * Includes that are resolved outside of {@link org.intellij.plugins.relaxNG.model.resolve.RelaxIncludeIndex}
+     * (catalogs, URLs, files outside of the project) are not part of the key, so every include the parser actually
+     * opened is stored with the entry and checked when the entry is read.
+     */
+    static class Recorder implements ErrorHandler {
+        @Nullable
+        private final ErrorHandler myDelegate;
+        private final Set<String> myIncludes = Collections.synchronizedSet(new LinkedHashSet<>());
+        private final List<Diagnostic> myDiagnostics = Collections.synchronizedList(new ArrayList<>());
+
+        Recorder(@Nullable ErrorHandler delegate) {
+            myDelegate = delegate;
+        }
+
+        void includeResolved(String url) {
+            myIncludes.add(url);
+        }
+
+        @Override
+        public void warning(SAXParseException e) throws SAXException {
+            myDiagnostics.add(new Diagnostic(Diagnostic.WARNING, e));
+            if (myDelegate != null) {
+                myDelegate.warning(e);
+            }
+        }
+
+        @Override
+        public void error(SAXParseException e) throws SAXException {
+            myDiagnostics.add(new Diagnostic(Diagnostic.ERROR, e));
+            if (myDelegate != null) {
+                myDelegate.error(e);
+            }
+        }
+
+        @Override
+        public void fatalError(SAXParseException e) throws SAXException {
+            myDiagnostics.add(new Diagnostic(Diagnostic.FATAL_ERROR, e));
+            if (myDelegate != null) {
+                myDelegate.fatalError(e);
+            }
+        }
+    }
+
+    private static class Diagnostic {
+        static final byte WARNING = 0;
+        static final byte ERROR = 1;
+        static final byte FATAL_ERROR = 2;
+
+        private final byte mySeverity;
+        @Nullable
+        private final String myMessage;
+        @Nullable
+        private final String myPublicId;
+        @Nullable
+        private final String mySystemId;
+        private final int myLineNumber;
+        private final int myColumnNumber;
+
+        Diagnostic(byte severity, SAXParseException e) {
+            this(severity, e.getMessage(), e.getPublicId(), e.getSystemId(), e.getLineNumber(), e.getColumnNumber());
+        }
+
+        private Diagnostic(byte severity, @Nullable String message, @Nullable String publicId, @Nullable String systemId,
+                           int lineNumber, int columnNumber) {
+            mySeverity = severity;
+            myMessage = message;
+            myPublicId = publicId;
+            mySystemId = systemId;
+            myLineNumber = lineNumber;
+            myColumnNumber = columnNumber;
+        }
+
+        void report(ErrorHandler eh) throws SAXException {
+            SAXParseException e = new SAXParseException(myMessage, myPublicId, mySystemId, myLineNumber, myColumnNumber);
+            switch (mySeverity) {
+                case WARNING:
+                    eh.warning(e);
+                    break;
+                case ERROR:
+                    eh.error(e);
+                    break;
+                default:
+                    eh.fatalError(e);
+            }
+        }
+
+        void write(DataOutputStream out) throws IOException {
+            out.writeByte(mySeverity);
+            writeNullableString(out, myMessage);
+            writeNullableString(out, myPublicId);
+            writeNullableString(out, mySystemId);
+            out.writeInt(myLineNumber);
+            out.writeInt(myColumnNumber);
+        }
+
+        static Diagnostic read(DataInputStream in) throws IOException {
+            return new Diagnostic(in.readByte(), readNullableString(in), readNullableString(in), readNullableString(in), in.readInt(),
+                in.readInt());
+        }
+    }
+
+    private interface EntryReader<T> {
+        T read(DataInputStream in) throws IOException;
+    }
+
+    @Nullable
+    private static <T> Entry<T> read(String key, String suffix, EntryReader<T> reader) {
+        File file = getEntry(key, suffix);
+        if (!file.isFile()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (!areIncludesUpToDate(in)) {
+                in.close();
+                file.delete();
+                return null;
+            }
+            int diagnosticCount = in.readInt();
+            List<Diagnostic> diagnostics = new ArrayList<>(diagnosticCount);
+            for (int i = 0; i < diagnosticCount; i++) {
+                diagnostics.add(Diagnostic.read(in));
+            }
+            T value = reader.read(in);
+            touch(file);
+            return new Entry<>(value, diagnostics);
+        }
+        catch (IOException | RuntimeException e) {
+            LOG.info("Dropping unreadable schema cache entry " + file, e);
+            file.delete();
+            return null;
+        }
+    }
+
+    private static boolean areIncludesUpToDate(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            String url = in.readUTF();
+            long timeStamp = in.readLong();
+            long length = in.readLong();
+            VirtualFile file = findFile(url);
+            if (file == null || file.getTimeStamp() != timeStamp || file.getLength() != length) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return false if an include can't be checked cheaply later, e.g. one opened from a http URL
+     */
+    private static boolean writeIncludes(DataOutputStream out, Collection<String> includes) throws IOException {
+        out.writeInt(includes.size());
+        for (String url : includes) {
+            VirtualFile file = findFile(url);
+            if (file == null || file.isDirectory() || !file.isInLocalFileSystem() && !(file.getFileSystem() instanceof ArchiveFileSystem)) {
+                return false;
+            }
+            out.writeUTF(url);
+            out.writeLong(file.getTimeStamp());
+            out.writeLong(file.getLength());
+        }
+        return true;
+    }
+
+    @Nullable
+    private static VirtualFile findFile(String url) {
+        VirtualFile file = VirtualFileManager.getInstance().findFileByUrl(url);
+        if (file != null) {
+            return file;
+        }
+        try {
+            // the parsers see the include URLs in java.net form
+            return VirtualFileUtil.findFileByURL(new URL(url));
+        }
+        catch (MalformedURLException e) {
+            return null;
+        }
+    }
+
+    private static void writeNullableString(DataOutputStream out, @Nullable String s) throws IOException {
+        out.writeBoolean(s != null);
+        if (s != null) {
+            out.writeUTF(s);
+        }
+    }
+
+    @Nullable
+    private static String readNullableString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private interface EntryWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    private static void write(String key, String suffix, Recorder recorder, EntryWriter writer) {
+        File dir = getCacheDir();
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            return;
+        }
+        File tmp = null;
+        try {
+            tmp = File.createTempFile(key, ".tmp", dir);
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+                if (!writeIncludes(out, new ArrayList<>(recorder.myIncludes))) {
+                    return;
+                }
+                List<Diagnostic> diagnostics = new ArrayList<>(recorder.myDiagnostics);
+                out.writeInt(diagnostics.size());
+                for (Diagnostic diagnostic : diagnostics) {
+                    diagnostic.write(out);
+                }
+                writer.write(out);
+            }
+            File target = getEntry(key, suffix);
+            try {
+                Files.move(tmp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+            catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            tmp = null;
+        }
+        catch (IOException e) {
+            // e.g. a context dependent value that can't be written; the schema is just parsed again next time
+            LOG.debug(e);
+        }
+        finally {
+            if (tmp != null) {
+                tmp.delete();
+            }
+        }
+        evictIfNeeded(dir);
+    }
+
+    private static synchronized void evictIfNeeded(File dir) {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        long size = 0;
+        for (File file : files) {
+            size += file.length();
+        }
+        if (size <= MAX_CACHE_SIZE) {
+            return;
+        }
+        Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+        for (File file : files) {
+            if (size <= MAX_CACHE_SIZE * 3 / 4) {
+                break;
+            }
+            long length = file.length();
+            if (file.delete()) {
+                size -= length;
+            }
+        }
+    }
+
+    private static void touch(File file) {
+        file.setLastModified(System.currentTimeMillis());
+    }
+
+    private static File getEntry(String key, String suffix) {
+        return new File(getCacheDir(), key + suffix);
+    }
+
+    private static File getCacheDir() {
+        return new File(ContainerPathManager.get().getSystemPath(), CACHE_DIR);
+    }
+}
@@ -128,9 +128,7 @@ public class RngValidateHandler implements ValidateXmlHandler {
     }
 
     private static void doValidation(VirtualFile instanceFile, VirtualFile schemaFile, org.xml.sax.ErrorHandler eh) {
-        final SchemaReader sr = FileTypeRegistry.getInstance().isFileOfType(schemaFile, RncFileType.getInstance()) ?
-            CompactSchemaReader.getInstance() :
-            new AutoSchemaReader();
+        final SchemaReader sr = getSchemaReader(schemaFile);
 
         final PropertyMapBuilder properties = new PropertyMapBuilder();
         ValidateProperty.ERROR_HANDLER.put(properties, eh);
@@ -168,6 +166,12 @@ public class RngValidateHandler implements ValidateXmlHandler {
         }
     }
 
+    static SchemaReader getSchemaReader(VirtualFile schemaFile) {
+        return FileTypeRegistry.getInstance().isFileOfType(schemaFile, RncFileType.getInstance()) ?
+            CompactSchemaReader.getInstance() :
+            new AutoSchemaReader();
+    }
+
     public static void saveFiles(VirtualFile... files) {
         // ensure the validation/conversion runs on the current content
         final FileDocumentManager mgr = FileDocumentManager.getInstance();
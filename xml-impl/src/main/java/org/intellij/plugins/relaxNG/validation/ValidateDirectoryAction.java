@@ -0,0 +1,198 @@
+package org.intellij.plugins.relaxNG.validation;
+
+import com.intellij.xml.actions.XmlActionsGroup;
+import com.thaiopensource.util.PropertyMap;
+import com.thaiopensource.util.PropertyMapBuilder;
+import com.thaiopensource.util.UriOrFile;
+import com.thaiopensource.validate.BatchValidationDriver;
+import com.thaiopensource.validate.ValidateProperty;
+import com.thaiopensource.validate.ValidationDriver;
+import com.thaiopensource.validate.prop.rng.RngProperty;
+import consulo.annotation.component.ActionImpl;
+import consulo.annotation.component.ActionParentRef;
+import consulo.annotation.component.ActionRef;
+import consulo.annotation.component.ActionRefAnchor;
+import consulo.application.ApplicationManager;
+import consulo.application.progress.ProgressIndicator;
+import consulo.application.progress.ProgressManager;
+import consulo.application.progress.Task;
+import consulo.document.FileDocumentManager;
+import consulo.fileChooser.FileChooserDescriptor;
+import consulo.fileChooser.IdeaFileChooser;
+import consulo.logging.Logger;
+import consulo.project.Project;
+import consulo.ui.annotation.RequiredUIAccess;
+import consulo.ui.ex.action.AnAction;
+import consulo.ui.ex.action.AnActionEvent;
+import consulo.ui.ex.errorTreeView.NewErrorTreeViewPanel;
+import consulo.util.dataholder.Key;
+import consulo.virtualFileSystem.VirtualFile;
+import consulo.virtualFileSystem.util.VirtualFileUtil;
+import consulo.virtualFileSystem.util.VirtualFileVisitor;
+import consulo.xml.language.XmlFileType;
+import consulo.xml.relaxNG.localize.RelaxNGLocalize;
+import org.intellij.plugins.relaxNG.convert.ConvertSchemaAction;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * Validates all XML files below a directory against a schema chosen by the user, using {@link BatchValidationDriver}:
+ * the schema is loaded once and the files are validated by several threads.
+ *
+ * @since 2026-10-18
+ */
+@ActionImpl(
+    id = "ValidateDirectoryAction",
+    parents = @ActionParentRef(
+        value = @ActionRef(type = XmlActionsGroup.class),
+        anchor = ActionRefAnchor.AFTER,
+        relatedToAction = @ActionRef(type = ConvertSchemaAction.class)
+    )
+)
+public class ValidateDirectoryAction extends AnAction {
+    private static final Logger LOG = Logger.getInstance(ValidateDirectoryAction.class);
+
+    private static final String CONTENT_NAME = "Validate Directory";
+    private static final Key<NewErrorTreeViewPanel> KEY = Key.create("VALIDATING_DIRECTORY");
+    private static final Set<String> SCHEMA_EXTENSIONS = Set.of("rng", "rnc", "xsd", "sch", "nvdl");
+
+    public ValidateDirectoryAction() {
+        super(RelaxNGLocalize.actionValidateDirectoryText(), RelaxNGLocalize.actionValidateDirectoryDescription());
+    }
+
+    @Override
+    public void update(AnActionEvent e) {
+        VirtualFile file = e.getData(VirtualFile.KEY);
+        e.getPresentation().setEnabledAndVisible(e.getData(Project.KEY) != null && file != null && file.isDirectory());
+    }
+
+    @Override
+    @RequiredUIAccess
+    public void actionPerformed(AnActionEvent e) {
+        VirtualFile directory = e.getData(VirtualFile.KEY);
+        Project project = e.getData(Project.KEY);
+        if (directory == null || project == null || !directory.isDirectory()) {
+            return;
+        }
+
+        FileChooserDescriptor descriptor = new FileChooserDescriptor(true, false, false, false, false, false) {
+            @Override
+            public boolean isFileSelectable(VirtualFile file) {
+                return !file.isDirectory() && SCHEMA_EXTENSIONS.contains(file.getExtension());
+            }
+        };
+        descriptor.setTitle(RelaxNGLocalize.validateDirectoryChooseSchemaTitle().get());
+        VirtualFile schemaFile = IdeaFileChooser.chooseFile(descriptor, project, directory);
+        if (schemaFile == null) {
+            return;
+        }
+
+        FileDocumentManager.getInstance().saveAllDocuments();
+
+        MessageViewHelper helper = new MessageViewHelper(project, CONTENT_NAME, KEY);
+        helper.openMessageView(null);
+        ProgressManager.getInstance().run(new Task.Backgroundable(
+            project,
+            RelaxNGLocalize.validateDirectoryProgressTitle(directory.getPresentableUrl())
+        ) {
+            @Override
+            public void run(ProgressIndicator indicator) {
+                indicator.setIndeterminate(true);
+                List<VirtualFile> files = ApplicationManager.getApplication().runReadAction(
+                    (Supplier<List<VirtualFile>>)() -> collectXmlFiles(directory, indicator)
+                );
+                indicator.setIndeterminate(false);
+                doValidation(schemaFile, files, helper, indicator);
+            }
+        });
+    }
+
+    private static List<VirtualFile> collectXmlFiles(VirtualFile directory, ProgressIndicator indicator) {
+        List<VirtualFile> files = new ArrayList<>();
+        VirtualFileUtil.visitChildrenRecursively(directory, new VirtualFileVisitor() {
+            @Override
+            public boolean visitFile(VirtualFile file) {
+                indicator.checkCanceled();
+                if (!file.isDirectory() && file.getFileType() == XmlFileType.INSTANCE) {
+                    files.add(file);
+                }
+                return true;
+            }
+        });
+        return files;
+    }
+
+    private static void doValidation(VirtualFile schemaFile, List<VirtualFile> files, MessageViewHelper helper, ProgressIndicator indicator) {
+        MessageViewHelper.ErrorHandler eh = helper.new ErrorHandler();
+
+        PropertyMapBuilder builder = new PropertyMapBuilder();
+        ValidateProperty.ERROR_HANDLER.put(builder, eh);
+        RngProperty.CHECK_ID_IDREF.add(builder);
+        PropertyMap properties = builder.toPropertyMap();
+
+        String schemaPath = VirtualFileUtil.fixIDEAUrl(schemaFile.getUrl());
+        try {
+            BatchValidationDriver driver = new BatchValidationDriver(properties, RngValidateHandler.getSchemaReader(schemaFile));
+            InputSource in = ValidationDriver.uriOrFileInputSource(schemaPath);
+            in.setEncoding(schemaFile.getCharset().name());
+            if (!driver.loadSchema(in)) {
+                return;
+            }
+
+            Iterator<VirtualFile> iterator = files.iterator();
+            Iterator<InputSource> inputs = new Iterator<>() {
+                @Override
+                public boolean hasNext() {
+                    return iterator.hasNext();
+                }
+
+                @Override
+                public InputSource next() {
+                    return ValidationDriver.uriOrFileInputSource(VirtualFileUtil.fixIDEAUrl(iterator.next().getUrl()));
+                }
+            };
+            int[] done = {0};
+            BatchValidationDriver.Summary summary = driver.validate(inputs, result -> {
+                indicator.checkCanceled();
+                indicator.setFraction((double)++done[0] / files.size());
+                for (SAXParseException warning : result.getWarnings()) {
+                    eh.warning(warning);
+                }
+                for (SAXParseException error : result.getErrors()) {
+                    eh.error(error);
+                }
+                IOException e = result.getIOException();
+                if (e != null) {
+                    eh.fatalError(new SAXParseException(e.getMessage(), null, result.getSystemId(), -1, -1, e));
+                }
+            });
+
+            helper.addInfo(RelaxNGLocalize.validateDirectorySummary(
+                summary.getDocumentCount(),
+                summary.getInvalidCount(),
+                summary.getElapsedNanos() / 1000000,
+                Math.round(summary.getDocumentsPerSecond())
+            ).get());
+        }
+        catch (SAXParseException e) {
+            helper.processError(e, false);
+        }
+        catch (IOException e) {
+            helper.processError(new SAXParseException(e.getMessage(), null, UriOrFile.fileToUri(schemaPath), -1, -1, e), false);
+        }
+        catch (SAXException e) {
+            LOG.error(e);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
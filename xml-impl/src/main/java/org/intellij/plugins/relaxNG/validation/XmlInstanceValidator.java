@@ -21,6 +21,7 @@ import consulo.xml.language.psi.XmlTag;
 import com.thaiopensource.util.PropertyMapBuilder;
 import com.thaiopensource.validate.Schema;
 import com.thaiopensource.validate.ValidateProperty;
+import com.thaiopensource.validate.rng.impl.PatternSchema;
 import consulo.component.ProcessCanceledException;
 import consulo.document.Document;
 import consulo.language.psi.PsiDocumentManager;
@@ -58,6 +59,14 @@ public class XmlInstanceValidator {
         return;
       }
 
+      final PsiFile file = doc.getContainingFile();
+      final Document document = PsiDocumentManager.getInstance(file.getProject()).getDocument(file);
+      if (schema instanceof PatternSchema && file instanceof XmlFile && document != null
+          && IncrementalInstanceValidator.isApplicable(document)
+          && IncrementalInstanceValidator.validate((XmlFile)file, doc, (PatternSchema)schema, document, eh)) {
+        return;
+      }
+
       final PropertyMapBuilder builder = new PropertyMapBuilder();
       builder.put(ValidateProperty.ERROR_HANDLER, eh);
 